@@ -0,0 +1,80 @@
+package io.github.swnck.bench;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.Callback;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An in-process Jetty server bound to the loopback interface that speaks both HTTP/1.1 and cleartext HTTP/2
+ * on the same port, so both protocol versions can be compared against the same backend. Clients that ask
+ * for {@link java.net.http.HttpClient.Version#HTTP_2} upgrade their connection with {@code Upgrade: h2c};
+ * the JDK's built-in server cannot, so the {@link io.github.swnck.stub.StubServer} fixture only serves HTTP/1.1.
+ * <p>
+ * Every request is answered immediately with a fixed body of the given size.
+ */
+public class H2cLoopbackServer implements AutoCloseable {
+    private final Server server = new Server();
+
+    private final ServerConnector connector;
+
+    /**
+     * Starts a new server on an ephemeral loopback port.
+     *
+     * @param bodySize the size in bytes of the response body returned for every request.
+     */
+    public H2cLoopbackServer(int bodySize) {
+        byte[] payload = new byte[bodySize];
+        Arrays.fill(payload, (byte) 'x');
+
+        HttpConfiguration config = new HttpConfiguration();
+        connector = new ServerConnector(server, new HttpConnectionFactory(config), new HTTP2CServerConnectionFactory(config));
+        connector.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+        connector.setPort(0);
+
+        server.addConnector(connector);
+        server.setHandler(new Handler.Abstract() {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) {
+                response.getHeaders().put(HttpHeader.CONTENT_TYPE, "text/plain");
+                response.getHeaders().put(HttpHeader.CONTENT_LENGTH, payload.length);
+                response.write(true, ByteBuffer.wrap(payload), callback);
+                return true;
+            }
+        });
+
+        try {
+            server.start();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not start loopback server", e);
+        }
+    }
+
+    /**
+     * Returns the base URL of the server, e.g. {@code http://127.0.0.1:54321}.
+     *
+     * @return the base URL without a trailing slash.
+     */
+    public String url() {
+        return "http://" + connector.getHost() + ":" + connector.getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        try {
+            server.stop();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not stop loopback server", e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.swnck.bench;
+
+import io.github.swnck.JxClient;
+import io.github.swnck.JxResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures end-to-end throughput and latency of blocking {@code send()} calls over HTTP/1.1 and HTTP/2 against
+ * an in-process {@link H2cLoopbackServer}, so the whole client path is covered: request building, the
+ * {@link HttpClient} exchange, body decoding, and {@link JxResponse} construction.
+ * <p>
+ * The benchmark runs on several threads that share one client, so HTTP/2 multiplexes them over one connection
+ * while HTTP/1.1 opens a connection per concurrent call. {@code SampleTime} reports latency percentiles.
+ * <pre>
+ * gradle jmh -Pjmh.args="SendBenchmark -p bodySize=16384"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class SendBenchmark {
+
+    @Param({"HTTP_1_1", "HTTP_2"})
+    public HttpClient.Version version;
+
+    @Param({"64", "16384"})
+    public int bodySize;
+
+    private H2cLoopbackServer server;
+
+    private JxClient client;
+
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new H2cLoopbackServer(bodySize);
+        client = JxClient.builder().version(version).build();
+        url = server.url() + "/items";
+
+        HttpResponse<Void> response = client.exchange(HttpRequest.newBuilder(URI.create(url)).build(),
+                HttpResponse.BodyHandlers.discarding()).join();
+        if (response.version() != version) {
+            throw new IllegalStateException("Expected " + version + " but the server negotiated " + response.version());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public JxResponse send() {
+        return client.get(url).send();
+    }
+}
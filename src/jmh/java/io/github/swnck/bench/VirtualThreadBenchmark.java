@@ -0,0 +1,90 @@
+package io.github.swnck.bench;
+
+import io.github.swnck.JxClient;
+import io.github.swnck.JxResponse;
+import io.github.swnck.stub.StubResponse;
+import io.github.swnck.stub.StubServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares blocking {@code send()} throughput of the default platform-thread client against
+ * {@link JxClient.Builder#virtualThreads() virtual-thread mode}.
+ * <p>
+ * Each invocation issues {@code calls} concurrent blocking requests against a loopback server that answers
+ * after {@code latencyMillis}. In {@code platform} mode every caller occupies its own platform thread and the
+ * client uses its default cached thread pool; in {@code virtual} mode callers are dispatched to the client's
+ * virtual-thread executor.
+ * <pre>
+ * gradle jmh -Pjmh.args="VirtualThreadBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"10000"})
+    public int calls;
+
+    @Param({"20"})
+    public long latencyMillis;
+
+    private StubServer server;
+
+    private JxClient client;
+
+    private ExecutorService callers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = StubServer.start()
+                .setLatency(Duration.ofMillis(latencyMillis))
+                .setDefaultResponse(StubResponse.ok("ok").header("Content-Type", "text/plain"));
+
+        if (mode.equals("virtual")) {
+            client = JxClient.builder().virtualThreads().build();
+            callers = (ExecutorService) client.getExecutor();
+        } else {
+            client = JxClient.builder().build();
+            callers = Executors.newCachedThreadPool();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        callers.shutdownNow();
+        server.close();
+    }
+
+    @Benchmark
+    public int concurrentBlockingSend() throws InterruptedException {
+        String url = server.url("/items");
+        CountDownLatch done = new CountDownLatch(calls);
+        AtomicInteger succeeded = new AtomicInteger();
+
+        for (int i = 0; i < calls; i++) {
+            callers.execute(() -> {
+                JxResponse response = client.get(url).send();
+                if (response.getStatusCode() == 200) succeeded.incrementAndGet();
+                done.countDown();
+            });
+        }
+
+        done.await();
+        return succeeded.get();
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.swnck.request;
+
+import io.github.swnck.JxRequest;
+import io.github.swnck.cors.Cors;
+import io.github.swnck.util.ContentType;
+import io.github.swnck.util.MultiValueMap;
+import io.github.swnck.util.SimulationAgent;
+import io.github.swnck.util.StatusCode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.URISyntaxException;
+import java.net.http.HttpRequest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the CPU cost of describing a request, without any I/O: construction through the fluent setters,
+ * query string encoding in {@link AbstractRequest#buildUrlWithParams(String, MultiValueMap)}, materialization of the
+ * headers set by {@link AbstractRequest#setCors(Cors)} and {@link AbstractRequest#simulate(SimulationAgent)}
+ * into an {@link HttpRequest}, binding the same request precompiled as a {@link RequestTemplate}, and
+ * {@link StatusCode#fromCode(int)} lookups.
+ * <p>
+ * The benchmark lives in the request package to reach the package-private query encoder.
+ * <pre>
+ * gradle jmh -Pjmh.args="RequestBenchmark"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBenchmark {
+    private static final String URL = "https://api.example.com/v1/products";
+
+    private static final int[] STATUS_CODES = {200, 201, 204, 301, 304, 400, 401, 404, 429, 500, 503, 599};
+
+    private static final Cors CORS = new Cors()
+            .allowOrigin("https://app.example.com")
+            .allowMethods("GET", "POST", "PUT", "DELETE")
+            .allowHeaders("Authorization", "Content-Type", "X-Request-Id")
+            .allowCredentials(true);
+
+    /**
+     * A fully configured request with a given number of query parameters whose values need encoding.
+     */
+    @State(Scope.Thread)
+    public static class Prepared {
+
+        @Param({"1", "8"})
+        public int queryParams;
+
+        private Map<String, Object> params;
+
+        private MultiValueMap query;
+
+        private GetRequest request;
+
+        private RequestTemplate template;
+
+        @Setup
+        public void setUp() {
+            params = new LinkedHashMap<>();
+            for (int i = 0; i < queryParams; i++) {
+                params.put("filter[" + i + "]", "name contains \"café & bar\" " + i);
+            }
+            query = MultiValueMap.forParameters();
+            params.forEach(query::add);
+
+            request = JxRequest.get(URL)
+                    .setQueryParams(params)
+                    .setHeader("Authorization", "Bearer 0123456789abcdef")
+                    .setHeader("X-Request-Id", "6f1c2d3e")
+                    .setContentType(ContentType.APPLICATION_JSON)
+                    .setCors(CORS)
+                    .simulate(SimulationAgent.CHROME);
+
+            template = JxRequest.get(URL + "/{id}")
+                    .setQueryParams(params)
+                    .setHeader("Authorization", "Bearer 0123456789abcdef")
+                    .setHeader("X-Request-Id", "6f1c2d3e")
+                    .setContentType(ContentType.APPLICATION_JSON)
+                    .setCors(CORS)
+                    .simulate(SimulationAgent.CHROME)
+                    .toTemplate();
+        }
+    }
+
+    @Benchmark
+    public GetRequest fluentConstruction() {
+        return JxRequest.get(URL)
+                .setHeader("Authorization", "Bearer 0123456789abcdef")
+                .setHeader("X-Request-Id", "6f1c2d3e")
+                .setQueryParam("page", "2")
+                .setContentType(ContentType.APPLICATION_JSON)
+                .setTimeout(5_000);
+    }
+
+    @Benchmark
+    public String buildUrlWithParams(Prepared prepared) {
+        return AbstractRequest.buildUrlWithParams(URL, prepared.query);
+    }
+
+    @Benchmark
+    public GetRequest corsAndSimulate() {
+        return JxRequest.get(URL).setCors(CORS).simulate(SimulationAgent.CHROME);
+    }
+
+    @Benchmark
+    public HttpRequest materializeHeaders(Prepared prepared) throws URISyntaxException {
+        return prepared.request.toHttpRequest();
+    }
+
+    @Benchmark
+    public HttpRequest bindTemplate(Prepared prepared) {
+        return prepared.template.toHttpRequest(42);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(12)
+    public void statusCodeFromCode(Blackhole blackhole) {
+        for (int code : STATUS_CODES) {
+            blackhole.consume(StatusCode.fromCode(code));
+        }
+    }
+}
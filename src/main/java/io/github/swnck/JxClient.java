@@ -0,0 +1,889 @@
+package io.github.swnck;
+
+import io.github.swnck.body.BodyPublishers;
+import io.github.swnck.cache.HttpCache;
+import io.github.swnck.metrics.MetricsRecorder;
+import io.github.swnck.metrics.RequestTrace;
+import io.github.swnck.request.*;
+import io.github.swnck.resilience.CircuitBreaker;
+import io.github.swnck.resilience.HedgingPolicy;
+import io.github.swnck.resilience.RateLimiter;
+import io.github.swnck.resilience.RetryBudget;
+import io.github.swnck.resilience.RetryPolicy;
+import io.github.swnck.util.MultiValueMap;
+import io.github.swnck.stream.ContentDecoding;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import javax.net.ssl.SSLContext;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * An instance-scoped HTTP client that owns its own {@link HttpClient}, executor, and request defaults.
+ * Every client keeps a separate connection pool, so slow backends can be isolated from each other by
+ * giving each of them its own client.
+ * <p>
+ * Requests created through the factory methods of a client ({@code client.get(url).send()}) are sent with
+ * that client and start out with its default timeout, HTTP version, and headers. The static entry points
+ * in {@link JxRequest} delegate to a lazily created default client.
+ * <p>
+ * In {@linkplain Builder#virtualThreads() virtual-thread mode} the client runs all of its asynchronous work on
+ * virtual threads. Blocking work submitted to {@link #getExecutor()}, such as calls to
+ * {@link AbstractRequest#send()}, then parks a cheap virtual thread instead of pinning a platform thread
+ * for the whole round trip.
+ * <p>
+ * With {@linkplain Builder#compression() compression} enabled, the client asks for gzip or deflate encoded
+ * responses and decodes them while they are received, and with a
+ * {@linkplain Builder#requestCompression(long) request compression threshold} it gzip-encodes large request
+ * bodies while they are sent.
+ * <p>
+ * With an {@link HttpCache} configured, buffered {@link JxResponse}s are served from and stored in the cache.
+ * <p>
+ * With a {@link RetryPolicy} configured, failed requests are sent again after an exponential backoff. All retries
+ * of a client draw from its {@link RetryBudget}, so that retries cannot multiply the load during an outage.
+ * With a {@link HedgingPolicy} configured, slow idempotent requests are raced against an identical second attempt.
+ * With a {@link CircuitBreaker} configured, requests to a host that keeps failing are rejected immediately,
+ * and with a {@link RateLimiter} configured, requests are paced to stay within the quotas of the servers.
+ * <p>
+ * With a {@link MetricsRecorder} configured, every network exchange reports its queue wait, time to headers,
+ * time to last byte, and body sizes. While a JDK Flight Recorder recording is running, every request is also
+ * recorded as an {@code io.github.swnck.HttpRequest} event.
+ */
+@Getter
+public class JxClient implements AutoCloseable {
+    private static final AtomicInteger CLIENT_COUNTER = new AtomicInteger();
+
+    private final HttpClient httpClient;
+
+    private final Executor executor;
+
+    private final Duration requestTimeout;
+
+    private final HttpClient.Version version;
+
+    private final MultiValueMap defaultHeaders;
+
+    private final boolean virtualThreads;
+
+    private final boolean compression;
+
+    /**
+     * The minimum body size in bytes from which request bodies are gzip-encoded, or {@code -1} if request
+     * bodies are never compressed.
+     */
+    private final long requestCompressionThreshold;
+
+    /**
+     * The response cache of the client, or {@code null} if responses are not cached.
+     */
+    private final HttpCache cache;
+
+    /**
+     * The retry policy of requests that do not set their own, or {@code null} if requests are not retried.
+     */
+    private final RetryPolicy retryPolicy;
+
+    private final RetryBudget retryBudget;
+
+    /**
+     * The hedging policy of requests that do not set their own, or {@code null} if requests are not hedged.
+     */
+    private final HedgingPolicy hedgingPolicy;
+
+    /**
+     * The per-host circuit breaker of the client, or {@code null} if requests are always sent.
+     */
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * The rate limiter of the client, or {@code null} if requests are not paced.
+     */
+    private final RateLimiter rateLimiter;
+
+    /**
+     * The coalescer that merges identical in-flight {@code GET} requests, or {@code null} if every request is sent.
+     */
+    private final RequestCoalescer requestCoalescer;
+
+    /**
+     * The recorder of the measurements of every network exchange, or {@code null} if exchanges are not measured.
+     */
+    private final MetricsRecorder metrics;
+
+    @Getter(AccessLevel.NONE)
+    private final boolean ownsExecutor;
+
+    private JxClient(Builder builder) {
+        if (builder.executor != null) {
+            this.executor = builder.executor;
+            this.ownsExecutor = false;
+        } else if (builder.virtualThreads) {
+            this.executor = Executors.newVirtualThreadPerTaskExecutor();
+            this.ownsExecutor = true;
+        } else {
+            this.executor = Executors.newCachedThreadPool(daemonThreadFactory("jxclient-" + CLIENT_COUNTER.incrementAndGet()));
+            this.ownsExecutor = true;
+        }
+
+        HttpClient.Builder clientBuilder = HttpClient.newBuilder()
+                .executor(executor)
+                .followRedirects(builder.redirect);
+
+        if (builder.connectTimeout != null) clientBuilder.connectTimeout(builder.connectTimeout);
+        if (builder.version != null) clientBuilder.version(builder.version);
+        if (builder.proxy != null) clientBuilder.proxy(builder.proxy);
+        if (builder.sslContext != null) clientBuilder.sslContext(builder.sslContext);
+
+        this.httpClient = clientBuilder.build();
+        this.virtualThreads = builder.virtualThreads;
+        this.requestTimeout = builder.requestTimeout;
+        this.version = builder.version;
+        this.defaultHeaders = builder.defaultHeaders.snapshot();
+        this.compression = builder.compression;
+        this.requestCompressionThreshold = builder.requestCompressionThreshold;
+        this.cache = builder.cache;
+        this.retryPolicy = builder.retryPolicy;
+        this.retryBudget = builder.retryBudget;
+        this.hedgingPolicy = builder.hedgingPolicy;
+        this.circuitBreaker = builder.circuitBreaker;
+        this.rateLimiter = builder.rateLimiter;
+        this.requestCoalescer = builder.requestCoalescer;
+        this.metrics = builder.metrics;
+    }
+
+    /**
+     * Creates a new {@link Builder} for configuring a {@code JxClient}.
+     *
+     * @return a new builder with the default settings.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the shared default client used by the static factory methods in {@link JxRequest}
+     * and by requests that were not created through a specific client.
+     * The default client is created on first use.
+     *
+     * @return the shared default {@code JxClient}.
+     */
+    public static JxClient getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    public GetRequest get(String url) {
+        return configure(new GetRequest(url));
+    }
+
+    public GetRequest get() {
+        return configure(new GetRequest());
+    }
+
+
+    public PostRequest post(String url) {
+        return configure(new PostRequest(url));
+    }
+
+    public PostRequest post() {
+        return configure(new PostRequest());
+    }
+
+
+    public DeleteRequest delete(String url) {
+        return configure(new DeleteRequest(url));
+    }
+
+    public DeleteRequest delete() {
+        return configure(new DeleteRequest());
+    }
+
+
+    public PatchRequest patch(String url) {
+        return configure(new PatchRequest(url));
+    }
+
+    public PatchRequest patch() {
+        return configure(new PatchRequest());
+    }
+
+
+    public PutRequest put(String url) {
+        return configure(new PutRequest(url));
+    }
+
+    public PutRequest put() {
+        return configure(new PutRequest());
+    }
+
+    /**
+     * Sends the given request with this client without blocking the calling thread.
+     * The returned future is completed from this client's executor once the full response has been received.
+     * If the client has a {@linkplain Builder#cache(HttpCache) cache}, the response may be served from it, and
+     * if it {@linkplain Builder#coalesceRequests(String...) coalesces requests}, the response may be shared with
+     * identical requests in flight.
+     *
+     * @param request the request to send; must not be null.
+     * @return a {@link CompletableFuture} that completes with the {@link JxResponse}, or completes
+     * exceptionally if the request could not be built or sent.
+     * @throws IllegalArgumentException if the provided request is null.
+     */
+    public CompletableFuture<JxResponse> sendAsync(AbstractRequest<?> request) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request cannot be null");
+        }
+
+        if (requestCoalescer != null) {
+            return requestCoalescer.execute(request, this::dispatch);
+        }
+
+        return dispatch(request);
+    }
+
+    /**
+     * Sends an already built {@link HttpRequest} with this client without blocking the calling thread, like
+     * {@link #sendAsync(AbstractRequest)}: the response may be served from the cache or shared with identical built
+     * requests in flight, and the request passes the circuit breaker, rate limiter, hedging, and retries of this
+     * client. This is how {@link RequestTemplate}s are sent.
+     *
+     * @param httpRequest the request to send; must not be null.
+     * @param retryPolicy the retry policy overriding this client's, or {@code null} to use this client's.
+     * @param hedgingPolicy the hedging policy overriding this client's, or {@code null} to use this client's.
+     * @return a {@link CompletableFuture} that completes with the {@link JxResponse}, or completes
+     * exceptionally if the request could not be sent.
+     * @throws IllegalArgumentException if the provided request is null.
+     */
+    public CompletableFuture<JxResponse> sendAsync(HttpRequest httpRequest, RetryPolicy retryPolicy, HedgingPolicy hedgingPolicy) {
+        if (httpRequest == null) {
+            throw new IllegalArgumentException("Request cannot be null");
+        }
+
+        RetryPolicy retry = retryPolicy != null ? retryPolicy : this.retryPolicy;
+        HedgingPolicy hedging = hedgingPolicy != null ? hedgingPolicy : this.hedgingPolicy;
+
+        if (requestCoalescer != null) {
+            return requestCoalescer.execute(httpRequest, coalesced -> dispatch(coalesced, retry, hedging));
+        }
+
+        return dispatch(httpRequest, retry, hedging);
+    }
+
+    private CompletableFuture<JxResponse> dispatch(AbstractRequest<?> request) {
+        HttpRequest httpRequest;
+
+        try {
+            httpRequest = request.toHttpRequest();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if (!request.isReplayable()) {
+            return dispatch(httpRequest, null, null);
+        }
+
+        RetryPolicy retry = request.getRetryPolicy() != null ? request.getRetryPolicy() : retryPolicy;
+        HedgingPolicy hedging = request.getHedgingPolicy() != null ? request.getHedgingPolicy() : hedgingPolicy;
+
+        return dispatch(httpRequest, retry, hedging);
+    }
+
+    private CompletableFuture<JxResponse> dispatch(HttpRequest httpRequest, RetryPolicy retry, HedgingPolicy hedging) {
+        if (cache != null) {
+            return cache.send(httpRequest, cacheRequest -> send(cacheRequest, HttpResponse.BodyHandlers.ofByteArray(), retry, hedging));
+        }
+
+        long start = System.nanoTime();
+
+        return send(httpRequest, HttpResponse.BodyHandlers.ofByteArray(), retry, hedging).thenApply(httpResponse -> {
+            JxResponse response = new JxResponse(httpResponse, -1);
+            response.setDurationNanos(System.nanoTime() - start);
+            return response;
+        });
+    }
+
+    private <B> CompletableFuture<HttpResponse<B>> send(HttpRequest httpRequest, HttpResponse.BodyHandler<B> bodyHandler,
+                                                       RetryPolicy retry, HedgingPolicy hedging) {
+        RequestTrace trace = RequestTrace.begin(httpRequest, metrics);
+        Function<HttpRequest, CompletableFuture<HttpResponse<B>>> guarded = circuitBreaker == null
+                ? guardedRequest -> exchange(guardedRequest, bodyHandler, trace)
+                : guardedRequest -> circuitBreaker.execute(guardedRequest, admitted -> exchange(admitted, bodyHandler, trace));
+        Function<HttpRequest, CompletableFuture<HttpResponse<B>>> network = rateLimiter == null
+                ? guarded
+                : networkRequest -> rateLimiter.execute(networkRequest, guarded, executor);
+        Function<HttpRequest, CompletableFuture<HttpResponse<B>>> attempt = hedging == null
+                ? network
+                : attemptRequest -> hedging.execute(attemptRequest, network, executor);
+
+        CompletableFuture<HttpResponse<B>> future = retry == null
+                ? attempt.apply(httpRequest)
+                : retry.execute(httpRequest, attempt, retryBudget, executor);
+
+        if (trace != null) {
+            future.whenComplete(trace::end);
+        }
+
+        return future;
+    }
+
+    /**
+     * Sends the given request with this client and hands the response body to the given handler.
+     * This is the low-level entry point used by all send methods; it allows bodies to be streamed
+     * instead of buffered. The returned future completes when the handler's body is available, which for
+     * streaming handlers such as {@link HttpResponse.BodyHandlers#ofInputStream()} is as soon as the
+     * response headers have arrived.
+     *
+     * @param request the request to send; must not be null.
+     * @param bodyHandler the handler that consumes the response body; must not be null.
+     * @param <B> the type of the response body produced by the handler
+     * @return a {@link CompletableFuture} that completes with the {@link HttpResponse}, or completes
+     * exceptionally if the request could not be built or sent.
+     * @throws IllegalArgumentException if the request or body handler is null.
+     */
+    public <B> CompletableFuture<HttpResponse<B>> exchange(AbstractRequest<?> request, HttpResponse.BodyHandler<B> bodyHandler) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request cannot be null");
+        }
+        if (bodyHandler == null) {
+            throw new IllegalArgumentException("Body handler cannot be null");
+        }
+
+        HttpRequest httpRequest;
+
+        try {
+            httpRequest = request.toHttpRequest();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return exchange(httpRequest, bodyHandler);
+    }
+
+    /**
+     * Sends an already built {@link HttpRequest} with this client and hands the response body to the given handler.
+     * This allows derived requests, such as range requests created from a {@link AbstractRequest#toHttpRequest()
+     * request template}, to be sent without modifying the original request.
+     * <p>
+     * If {@linkplain Builder#compression() compression} is enabled and the request neither sets Accept-Encoding
+     * itself nor asks for a byte range, gzip and deflate encoded responses are accepted and decoded before they
+     * reach the handler. The Content-Encoding and Content-Length headers of a decoded response are removed, as
+     * they describe the encoded body, so the headers seen by the handler, the returned response, and the
+     * {@linkplain Builder#cache(HttpCache) cache} match the decoded body. Request
+     * bodies are gzip-encoded if they reach the {@linkplain Builder#requestCompression(long) threshold} and the
+     * request does not set a Content-Encoding itself.
+     *
+     * @param httpRequest the request to send; must not be null.
+     * @param bodyHandler the handler that consumes the response body; must not be null.
+     * @param <B> the type of the response body produced by the handler
+     * @return a {@link CompletableFuture} that completes with the {@link HttpResponse}.
+     * @throws IllegalArgumentException if the request or body handler is null.
+     */
+    public <B> CompletableFuture<HttpResponse<B>> exchange(HttpRequest httpRequest, HttpResponse.BodyHandler<B> bodyHandler) {
+        if (httpRequest == null) {
+            throw new IllegalArgumentException("Request cannot be null");
+        }
+        if (bodyHandler == null) {
+            throw new IllegalArgumentException("Body handler cannot be null");
+        }
+
+        RequestTrace trace = RequestTrace.begin(httpRequest, metrics);
+        CompletableFuture<HttpResponse<B>> future = exchange(httpRequest, bodyHandler, trace);
+
+        if (trace != null) {
+            future.whenComplete(trace::end);
+        }
+
+        return future;
+    }
+
+    private <B> CompletableFuture<HttpResponse<B>> exchange(HttpRequest httpRequest, HttpResponse.BodyHandler<B> bodyHandler,
+                                                           RequestTrace trace) {
+        boolean decode = compression
+                && httpRequest.headers().firstValue("Accept-Encoding").isEmpty()
+                && httpRequest.headers().firstValue("Range").isEmpty();
+        boolean encode = shouldCompressBody(httpRequest);
+
+        HttpRequest request = httpRequest;
+        HttpResponse.BodyHandler<B> handler = decode ? ContentDecoding.decoding(bodyHandler) : bodyHandler;
+
+        if (decode || encode) {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(httpRequest, (name, value) -> true);
+
+            if (decode) {
+                builder.header("Accept-Encoding", ContentDecoding.ACCEPT_ENCODING);
+            }
+            if (encode) {
+                builder.method(httpRequest.method(), BodyPublishers.gzip(httpRequest.bodyPublisher().orElseThrow()))
+                        .header("Content-Encoding", "gzip");
+            }
+
+            request = builder.build();
+        }
+
+        CompletableFuture<HttpResponse<B>> response = trace == null
+                ? httpClient.sendAsync(request, handler)
+                : trace.send(httpClient, request, handler);
+
+        if (!decode) return response;
+
+        CompletableFuture<HttpResponse<B>> decoded = response.thenApply(ContentDecoding::decoded);
+        decoded.whenComplete((ignored, error) -> {
+            if (decoded.isCancelled()) response.cancel(true);
+        });
+        return decoded;
+    }
+
+    /**
+     * Closes the underlying {@link HttpClient}, waiting for in-flight requests to complete,
+     * and shuts down the executor if it was created by this client.
+     * The shared {@link #getDefault() default client} should not be closed.
+     */
+    @Override
+    public void close() {
+        httpClient.close();
+
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private boolean shouldCompressBody(HttpRequest httpRequest) {
+        if (requestCompressionThreshold < 0 || httpRequest.headers().firstValue("Content-Encoding").isPresent()) {
+            return false;
+        }
+
+        long contentLength = httpRequest.bodyPublisher()
+                .map(HttpRequest.BodyPublisher::contentLength)
+                .orElse(0L);
+
+        return contentLength < 0 || (contentLength > 0 && contentLength >= requestCompressionThreshold);
+    }
+
+    private <T extends AbstractRequest<T>> T configure(T request) {
+        request.setClient(this);
+
+        if (requestTimeout != null) request.setTimeout(requestTimeout);
+        if (version != null) request.setVersion(version);
+        if (!defaultHeaders.isEmpty()) request.getHeaders().setAll(defaultHeaders);
+
+        return request;
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger threadCounter = new AtomicInteger();
+
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class DefaultHolder {
+        private static final JxClient INSTANCE = builder().build();
+    }
+
+    /**
+     * Builder for {@link JxClient} instances.
+     * All settings are optional; unset values fall back to the defaults of {@link HttpClient}
+     * and {@link AbstractRequest}.
+     */
+    public static class Builder {
+        private Executor executor;
+
+        private Duration connectTimeout;
+
+        private Duration requestTimeout;
+
+        private HttpClient.Version version;
+
+        private HttpClient.Redirect redirect = HttpClient.Redirect.NEVER;
+
+        private ProxySelector proxy;
+
+        private SSLContext sslContext;
+
+        private boolean virtualThreads;
+
+        private boolean compression;
+
+        private long requestCompressionThreshold = -1;
+
+        private HttpCache cache;
+
+        private RetryPolicy retryPolicy;
+
+        private RetryBudget retryBudget = RetryBudget.of(0.2, 10);
+
+        private HedgingPolicy hedgingPolicy;
+
+        private CircuitBreaker circuitBreaker;
+
+        private RateLimiter rateLimiter;
+
+        private RequestCoalescer requestCoalescer;
+
+        private MetricsRecorder metrics;
+
+        private final MultiValueMap defaultHeaders = MultiValueMap.forHeaders();
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the executor used by the underlying {@link HttpClient} for asynchronous work and for
+         * completing response futures. An executor passed here is not shut down when the client is closed.
+         * If no executor is set, the client creates and owns a cached pool of daemon threads.
+         *
+         * @param executor the executor to use; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided executor is null.
+         */
+        public Builder executor(Executor executor) {
+            if (executor == null) {
+                throw new IllegalArgumentException("Executor cannot be null");
+            }
+
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Runs the client on virtual threads. The client creates and owns an
+         * {@link Executors#newVirtualThreadPerTaskExecutor() virtual-thread-per-task executor} that is used by
+         * the underlying {@link HttpClient} and exposed through {@link JxClient#getExecutor()}, so that
+         * blocking {@code send()} calls dispatched to it only park a virtual thread while waiting.
+         * Cannot be combined with {@link #executor(Executor)}.
+         *
+         * @return this builder, allowing for method chaining.
+         */
+        public Builder virtualThreads() {
+            this.virtualThreads = true;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time to wait for a connection to be established.
+         *
+         * @param connectTimeout the connect timeout; must not be null, zero, or negative.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided timeout is null, zero, or negative.
+         */
+        public Builder connectTimeout(Duration connectTimeout) {
+            if (connectTimeout == null || connectTimeout.isZero() || connectTimeout.isNegative()) {
+                throw new IllegalArgumentException("Connect timeout must be > 0");
+            }
+
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the default timeout applied to requests created by this client.
+         *
+         * @param requestTimeout the default request timeout; must not be null and must lie between one millisecond
+         *                       and {@link Integer#MAX_VALUE} milliseconds.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided timeout is null, shorter than one millisecond, or
+         *                                  longer than {@link Integer#MAX_VALUE} milliseconds.
+         */
+        public Builder requestTimeout(Duration requestTimeout) {
+            if (requestTimeout == null || requestTimeout.compareTo(Duration.ofMillis(1)) < 0
+                    || requestTimeout.compareTo(Duration.ofMillis(Integer.MAX_VALUE)) > 0) {
+                throw new IllegalArgumentException("Request timeout must be between 1 ms and " + Integer.MAX_VALUE + " ms");
+            }
+
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the preferred HTTP protocol version of the client. It is also used as the
+         * default version of requests created by this client.
+         *
+         * @param version the preferred HTTP version; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided version is null.
+         */
+        public Builder version(HttpClient.Version version) {
+            if (version == null) {
+                throw new IllegalArgumentException("Version cannot be null");
+            }
+
+            this.version = version;
+            return this;
+        }
+
+        /**
+         * Sets the redirect policy of the client. Defaults to {@link HttpClient.Redirect#NEVER}.
+         *
+         * @param redirect the redirect policy; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided policy is null.
+         */
+        public Builder followRedirects(HttpClient.Redirect redirect) {
+            if (redirect == null) {
+                throw new IllegalArgumentException("Redirect policy cannot be null");
+            }
+
+            this.redirect = redirect;
+            return this;
+        }
+
+        /**
+         * Sets the proxy selector used to choose a proxy for each request.
+         *
+         * @param proxy the proxy selector; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided proxy selector is null.
+         */
+        public Builder proxy(ProxySelector proxy) {
+            if (proxy == null) {
+                throw new IllegalArgumentException("Proxy cannot be null");
+            }
+
+            this.proxy = proxy;
+            return this;
+        }
+
+        /**
+         * Routes all requests through the HTTP proxy at the given host and port.
+         *
+         * @param host the proxy host; must not be null.
+         * @param port the proxy port.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the host is null or the port is out of range.
+         */
+        public Builder proxy(String host, int port) {
+            if (host == null) {
+                throw new IllegalArgumentException("Proxy host cannot be null");
+            }
+
+            return proxy(ProxySelector.of(new InetSocketAddress(host, port)));
+        }
+
+        /**
+         * Sets the SSL context used for HTTPS connections.
+         *
+         * @param sslContext the SSL context; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided SSL context is null.
+         */
+        public Builder sslContext(SSLContext sslContext) {
+            if (sslContext == null) {
+                throw new IllegalArgumentException("SSL context cannot be null");
+            }
+
+            this.sslContext = sslContext;
+            return this;
+        }
+
+        /**
+         * Enables transparent response decompression. Requests are sent with {@code Accept-Encoding: gzip, deflate}
+         * and encoded response bodies are inflated while they are received, so buffered, streamed, and callback
+         * bodies all see the decoded content. Requests that set Accept-Encoding themselves or ask for a byte range
+         * are sent and received unchanged.
+         *
+         * @return this builder, allowing for method chaining.
+         */
+        public Builder compression() {
+            this.compression = true;
+            return this;
+        }
+
+        /**
+         * Enables gzip compression of request bodies with at least the given size. Bodies of unknown size, such
+         * as streams, are always compressed. Compressed bodies are encoded while they are sent, are sent with
+         * {@code Content-Encoding: gzip}, and use chunked transfer encoding as their compressed length is not
+         * known up front. Only enable this for servers that accept gzip encoded request bodies.
+         *
+         * @param minimumBytes the minimum body size in bytes; must not be negative.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided size is negative.
+         */
+        public Builder requestCompression(long minimumBytes) {
+            if (minimumBytes < 0) {
+                throw new IllegalArgumentException("Request compression threshold must be >= 0");
+            }
+
+            this.requestCompressionThreshold = minimumBytes;
+            return this;
+        }
+
+        /**
+         * Sets the cache used for the buffered responses of this client. Streamed responses and downloads
+         * always go to the network. A cache may be shared by several clients.
+         *
+         * @param cache the response cache; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided cache is null.
+         */
+        public Builder cache(HttpCache cache) {
+            if (cache == null) {
+                throw new IllegalArgumentException("Cache cannot be null");
+            }
+
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Sets the retry policy for the buffered requests of this client. Requests can override it with
+         * {@link AbstractRequest#setRetryPolicy(RetryPolicy)}. Streamed responses and downloads are not retried.
+         *
+         * @param retryPolicy the retry policy; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided policy is null.
+         */
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            if (retryPolicy == null) {
+                throw new IllegalArgumentException("Retry policy cannot be null");
+            }
+
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Sets the budget all retries of this client draw from. By default, retries may add up to 20% to the
+         * regular requests, with at most 10 retries saved up.
+         *
+         * @param retryBudget the retry budget; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided budget is null.
+         */
+        public Builder retryBudget(RetryBudget retryBudget) {
+            if (retryBudget == null) {
+                throw new IllegalArgumentException("Retry budget cannot be null");
+            }
+
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+        /**
+         * Sets the hedging policy for the buffered requests of this client. Requests can override it with
+         * {@link AbstractRequest#setHedgingPolicy(HedgingPolicy)}. Hedging happens per attempt, so with a
+         * {@linkplain #retryPolicy(RetryPolicy) retry policy} every retry may be hedged as well.
+         *
+         * @param hedgingPolicy the hedging policy; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided policy is null.
+         */
+        public Builder hedgingPolicy(HedgingPolicy hedgingPolicy) {
+            if (hedgingPolicy == null) {
+                throw new IllegalArgumentException("Hedging policy cannot be null");
+            }
+
+            this.hedgingPolicy = hedgingPolicy;
+            return this;
+        }
+
+        /**
+         * Sets the circuit breaker for the buffered requests of this client. Every attempt, including retries
+         * and hedges, passes the breaker and is recorded by it. While the circuit of a host is open, requests to it
+         * fail with a {@link io.github.swnck.resilience.CircuitBreakerOpenException}.
+         *
+         * @param circuitBreaker the circuit breaker; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided circuit breaker is null.
+         */
+        public Builder circuitBreaker(CircuitBreaker circuitBreaker) {
+            if (circuitBreaker == null) {
+                throw new IllegalArgumentException("Circuit breaker cannot be null");
+            }
+
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * Sets the rate limiter for the buffered requests of this client. Every attempt, including retries and
+         * hedges, needs a permit before it is sent.
+         *
+         * @param rateLimiter the rate limiter; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided rate limiter is null.
+         */
+        public Builder rateLimiter(RateLimiter rateLimiter) {
+            if (rateLimiter == null) {
+                throw new IllegalArgumentException("Rate limiter cannot be null");
+            }
+
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * Coalesces identical {@code GET} requests of this client that are in flight at the same time into a single
+         * network call whose {@link JxResponse} is shared by all callers. Requests are identical if their URL,
+         * query parameters, and headers match, apart from the given ignored headers.
+         *
+         * @param ignoredHeaders the names of headers that do not distinguish requests, e.g. trace IDs; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the header names are null.
+         */
+        public Builder coalesceRequests(String... ignoredHeaders) {
+            this.requestCoalescer = new RequestCoalescer(ignoredHeaders);
+            return this;
+        }
+
+        /**
+         * Sets the recorder that receives the measurements of every network exchange of this client,
+         * such as a {@link io.github.swnck.metrics.HistogramMetrics}.
+         *
+         * @param metrics the metrics recorder; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the provided recorder is null.
+         */
+        public Builder metrics(MetricsRecorder metrics) {
+            if (metrics == null) {
+                throw new IllegalArgumentException("Metrics recorder cannot be null");
+            }
+
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Adds a header that is set on every request created by this client.
+         *
+         * @param key the name of the header; must not be null.
+         * @param value the value of the header; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the key or value is null.
+         */
+        public Builder defaultHeader(String key, String value) {
+            if (key == null || value == null) {
+                throw new IllegalArgumentException("Header key and value cannot be null");
+            }
+
+            this.defaultHeaders.set(key, value);
+            return this;
+        }
+
+        /**
+         * Builds a new {@link JxClient} with the configured settings.
+         *
+         * @return the new client.
+         * @throws IllegalStateException if both a custom executor and virtual-thread mode were configured.
+         */
+        public JxClient build() {
+            if (executor != null && virtualThreads) {
+                throw new IllegalStateException("A custom executor cannot be combined with virtual threads");
+            }
+
+            return new JxClient(this);
+        }
+    }
+}
@@ -1,58 +1,112 @@
 package io.github.swnck;
 
+import io.github.swnck.batch.Batch;
+import io.github.swnck.batch.BatchResult;
 import io.github.swnck.request.*;
 import lombok.Getter;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 /**
  * Provides static factory methods to generate various types of HTTP requests.
  * This class simplifies the creation of requests like GET, POST, PUT, PATCH, and DELETE,
  * with or without URLs, providing flexibility for diverse use cases.
  * Each method returns a specific request object tailored to the HTTP method being invoked.
+ * <p>
+ * All requests created here are sent with the shared {@link JxClient#getDefault() default client}.
+ * Use {@link JxClient#builder()} to create a client with its own executor, connection pool, and defaults.
  */
 @Getter
 public class JxRequest {
 
     public static GetRequest get(String url) {
-        return new GetRequest(url);
+        return JxClient.getDefault().get(url);
     }
 
     public static GetRequest get() {
-        return new GetRequest();
+        return JxClient.getDefault().get();
     }
 
 
     public static PostRequest post(String url) {
-        return new PostRequest(url);
+        return JxClient.getDefault().post(url);
     }
 
     public static PostRequest post() {
-        return new PostRequest();
+        return JxClient.getDefault().post();
     }
 
 
     public static DeleteRequest delete(String url) {
-        return new DeleteRequest(url);
+        return JxClient.getDefault().delete(url);
     }
 
     public static DeleteRequest delete() {
-        return new DeleteRequest();
+        return JxClient.getDefault().delete();
     }
 
 
     public static PatchRequest patch(String url) {
-        return new PatchRequest(url);
+        return JxClient.getDefault().patch(url);
     }
 
     public static PatchRequest patch() {
-        return new PatchRequest();
+        return JxClient.getDefault().patch();
     }
 
 
     public static PutRequest put(String url) {
-        return new PutRequest(url);
+        return JxClient.getDefault().put(url);
     }
 
     public static PutRequest put() {
-        return new PutRequest();
+        return JxClient.getDefault().put();
+    }
+
+
+    /**
+     * Sends all given requests concurrently with at most {@code maxInFlight} requests in flight at the same time,
+     * and blocks until every request has completed. A failing request does not abort the batch; its
+     * {@link BatchResult} carries the error instead of a response.
+     *
+     * @param requests the requests to send; must not be null or contain null elements.
+     * @param maxInFlight the maximum number of concurrent requests; must be greater than 0.
+     * @return one {@link BatchResult} per request, in the order of the given collection.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public static List<BatchResult> sendAll(Collection<? extends AbstractRequest<?>> requests, int maxInFlight) {
+        return Batch.collect(requests, maxInFlight).join();
+    }
+
+    /**
+     * Sends all given requests concurrently with at most {@code maxInFlight} requests in flight at the same time,
+     * without blocking the calling thread.
+     *
+     * @param requests the requests to send; must not be null or contain null elements.
+     * @param maxInFlight the maximum number of concurrent requests; must be greater than 0.
+     * @return a {@link CompletableFuture} that completes with one {@link BatchResult} per request,
+     * in the order of the given collection.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public static CompletableFuture<List<BatchResult>> sendAllAsync(Collection<? extends AbstractRequest<?>> requests, int maxInFlight) {
+        return Batch.collect(requests, maxInFlight);
+    }
+
+    /**
+     * Sends all given requests concurrently with at most {@code maxInFlight} requests in flight at the same time,
+     * and streams each {@link BatchResult} to the consumer as soon as its request completes.
+     *
+     * @param requests the requests to send; must not be null or contain null elements.
+     * @param maxInFlight the maximum number of concurrent requests; must be greater than 0.
+     * @param onResult the consumer receiving results in completion order; it is never invoked concurrently.
+     * @return a {@link CompletableFuture} that completes once every result has been delivered.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public static CompletableFuture<Void> sendAll(Collection<? extends AbstractRequest<?>> requests, int maxInFlight,
+                                                  Consumer<BatchResult> onResult) {
+        return Batch.stream(requests, maxInFlight, onResult);
     }
 }
@@ -1,130 +1,351 @@
 package io.github.swnck;
 
-import io.github.swnck.request.AbstractBody;
+import io.github.swnck.json.JsonMapper;
+import io.github.swnck.json.JsonMappingException;
 import io.github.swnck.request.AbstractRequest;
 import io.github.swnck.util.ContentType;
 import io.github.swnck.util.StatusCode;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.net.URI;
-import java.net.URLEncoder;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 
 /**
- * Represents an HTTP response retrieved using an asynchronous HTTP client.
- * This class is designed to process a given request, initiate the corresponding HTTP call,
- * and handle the response data, including body, status code, headers, and timing.
+ * Represents the result of an HTTP call made through a {@link AbstractRequest}.
+ * This class is a plain result object: it performs no I/O itself and only carries the
+ * response data, including body, status code, headers, and timing.
+ * <p>
+ * The body is kept as the bytes that were received and is only decoded into a string when {@link #getBody()}
+ * is first called, using the charset of the Content-Type header. Calls that only look at the status or a header
+ * therefore never pay for decoding, and {@link #as(Class)} maps JSON straight from the bytes. The headers are
+ * those of the {@link HttpResponse}, looked up case-insensitively without being copied.
  */
 @Getter
 @Setter
 public class JxResponse {
-    private static final HttpClient CLIENT = HttpClient.newBuilder().build();
-    private static final Logger LOGGER = LoggerFactory.getLogger(JxResponse.class);
+    /**
+     * The number of bytes of the body that {@link #toString()} shows.
+     */
+    private static final int TO_STRING_BODY_LIMIT = 256;
 
+    private static final HttpHeaders NO_HEADERS = HttpHeaders.of(Map.of(), (name, value) -> true);
+
+    /**
+     * The body as received, or {@code null} if the body was given as a string or there is none.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private ByteBuffer rawBody;
+
+    /**
+     * The decoded body, set on the first call to {@link #getBody()}. Decoding is idempotent, so a race between
+     * two threads only costs a second decode.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
     private String body;
+
+    @Getter(AccessLevel.NONE)
     private String contentType;
+
     private String uri;
 
     private int statusCode;
     private long durationMs = -1;
 
-    private Map<String, List<String>> headers;
+    /**
+     * The time it took to receive the response in nanoseconds, measured with {@link System#nanoTime()},
+     * or {@code -1} if the request could not be completed.
+     */
+    private long durationNanos = -1;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private HttpHeaders headers;
+
+    /**
+     * Constructs an empty JxResponse. It is returned by {@link AbstractRequest#send()} when the request
+     * could not be completed; in that case {@link #getDurationMs()} and {@link #getDurationNanos()} stay at {@code -1}.
+     */
+    public JxResponse() {
+    }
 
     /**
-     * Constructs a JxResponse object by initiating and handling an asynchronous HTTP request based on the provided request object.
-     * Handles the composition of the request URI with query parameters, method type, headers, and optional body content.
-     * Completes the operation by storing the response details such as body, status code, headers, and execution duration.
+     * Constructs a JxResponse from a completed {@link HttpResponse} whose body is a {@code byte[]}, a
+     * {@link ByteBuffer}, or a {@link String}. The body and headers are kept without being copied or decoded.
      *
-     * @param request the {@link AbstractRequest} object containing the details of the HTTP request,
-     *                including the URL, query parameters, headers, method, timeout, and body (if applicable).
-     */
-    public JxResponse(AbstractRequest<?> request) {
-        String urlWithParams = buildUrlWithParams(request.getUrl(), request.getQueryParams());
-        String bodyContent = (request instanceof AbstractBody<?>) ? ((AbstractBody<?>) request).getBody() : null;
-
-        HttpRequest.Builder requestBuilder;
-
-        try {
-            requestBuilder = HttpRequest.newBuilder()
-                    .uri(new URI(urlWithParams))
-                    .version(request.getVersion())
-                    .timeout(Duration.ofMillis(request.getTimeoutMillis()))
-                    .method(request.getMethod().toString(),
-                            (bodyContent == null) ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(bodyContent));
-        } catch (Exception e) {
-            LOGGER.error("Error creating request: {}", e.getMessage());
-            return;
+     * @param httpResponse the completed response whose data should be exposed; must not be null.
+     * @param durationMs the time in milliseconds it took to receive the response.
+     * @throws IllegalArgumentException if the response body is of another type.
+     */
+    public JxResponse(HttpResponse<?> httpResponse, long durationMs) {
+        this(httpResponse.uri().toString(), httpResponse.statusCode(), httpResponse.headers(), null);
+
+        switch (httpResponse.body()) {
+            case null -> {
+            }
+            case byte[] bytes -> this.rawBody = ByteBuffer.wrap(bytes);
+            case ByteBuffer buffer -> this.rawBody = buffer;
+            case String text -> this.body = text;
+            default -> throw new IllegalArgumentException("Unsupported body type: " + httpResponse.body().getClass().getName());
         }
 
-        request.getHeaders().forEach((key, value) -> requestBuilder.header(key, value.toString()));
+        this.durationMs = durationMs;
+    }
 
-        HttpRequest httpRequest = requestBuilder.build();
+    /**
+     * Constructs a JxResponse from the parts of a response, such as one that was stored by a cache.
+     * The buffer is not copied and must not be modified afterwards.
+     *
+     * @param uri the URI of the response; must not be null.
+     * @param statusCode the status code.
+     * @param headers the response headers; must not be null.
+     * @param body the bytes of the body from its position to its limit, or {@code null} if there is none.
+     * @throws IllegalArgumentException if the URI or the headers are null.
+     */
+    public JxResponse(String uri, int statusCode, HttpHeaders headers, ByteBuffer body) {
+        if (uri == null || headers == null) {
+            throw new IllegalArgumentException("URI and headers cannot be null");
+        }
 
-        long start = System.currentTimeMillis();
+        this.uri = uri;
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.rawBody = body;
+    }
 
-        CompletableFuture<HttpResponse<String>> response = CLIENT.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString());
+    /**
+     * Returns the body decoded with the charset of the Content-Type header, defaulting to UTF-8.
+     * The body is decoded on the first call only.
+     *
+     * @return the body, or {@code null} if there is none.
+     */
+    public String getBody() {
+        String decoded = body;
+        if (decoded == null && rawBody != null) {
+            decoded = getCharset().decode(rawBody.duplicate()).toString();
+            body = decoded;
+        }
+        return decoded;
+    }
+
+    /**
+     * Replaces the body with the given string.
+     *
+     * @param body the new body; may be null.
+     */
+    public void setBody(String body) {
+        this.body = body;
+        this.rawBody = null;
+    }
 
-        response.thenAccept(httpResponse -> {
-            this.body = httpResponse.body();
-            this.contentType = httpResponse.headers().firstValue("Content-Type")
-                    .orElse(ContentType.TEXT_PLAIN.getMimeType());
-            this.statusCode = httpResponse.statusCode();
-            this.uri = httpResponse.uri().toString();
-            this.headers = httpResponse.headers().map();
+    /**
+     * Returns a copy of the bytes of the body. If the body was given as a string, it is encoded with the
+     * charset of the Content-Type header.
+     *
+     * @return the bytes of the body, or {@code null} if there is none.
+     * @see #bodyAsByteBuffer()
+     */
+    public byte[] bodyAsBytes() {
+        if (rawBody == null) {
+            return body == null ? null : body.getBytes(getCharset());
+        }
 
-            this.durationMs = System.currentTimeMillis() - start;
-        }).exceptionally(e -> {
-            LOGGER.error("Error during request: {}", e.getMessage());
-            durationMs = -1;
-            return null;
-        }).join();
+        byte[] bytes = new byte[rawBody.remaining()];
+        rawBody.duplicate().get(bytes);
+        return bytes;
     }
 
     /**
-     * Constructs a complete URL by appending query parameters to the base URL.
-     * If the provided query parameters are null or empty, the original URL is returned as is.
-     * Handles encoding of both keys and values in the query parameters to ensure proper URL formatting.
+     * Returns a read-only view of the bytes of the body, without copying them.
      *
-     * @param url the base URL to which query parameters will be appended
-     * @param queryParams a map containing query parameter keys and their corresponding values
-     * @return the complete URL with query parameters appended and properly encoded
-     */
-    private String buildUrlWithParams(String url, Map<String, Object> queryParams) {
-        if (queryParams == null || queryParams.isEmpty()) return url;
-        StringBuilder sb = new StringBuilder(url);
-        sb.append(url.contains("?") ? "&" : "?");
-        for (Map.Entry<String, Object> entry : queryParams.entrySet()) {
-            String key = URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8);
-            String value = entry.getValue() == null ? "" : URLEncoder.encode(entry.getValue().toString(), StandardCharsets.UTF_8);
-            sb.append(key).append('=').append(value).append('&');
+     * @return the bytes of the body from the buffer's position to its limit, or {@code null} if there is none.
+     */
+    public ByteBuffer bodyAsByteBuffer() {
+        if (rawBody == null) {
+            return body == null ? null : ByteBuffer.wrap(body.getBytes(getCharset())).asReadOnlyBuffer();
         }
-        sb.deleteCharAt(sb.length() - 1);
-        return sb.toString();
+
+        return rawBody.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the value of the Content-Type header, or {@code text/plain} if the server did not send one.
+     *
+     * @return the content type, or {@code null} if this response has neither a content type nor headers.
+     */
+    public String getContentType() {
+        String resolved = contentType;
+        if (resolved == null && headers != null) {
+            resolved = headers.firstValue("Content-Type").orElse(ContentType.TEXT_PLAIN.getMimeType());
+            contentType = resolved;
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns the charset of the body, as named by the Content-Type header.
+     *
+     * @return the charset, defaulting to UTF-8.
+     */
+    public Charset getCharset() {
+        return ContentType.charsetOf(getContentType());
+    }
+
+    /**
+     * Returns the response headers. The map is the one held by the {@link HttpResponse}: it is unmodifiable and
+     * its keys are compared case-insensitively.
+     *
+     * @return the headers, or {@code null} if this response has none.
+     */
+    public Map<String, List<String>> getHeaders() {
+        return headers == null ? null : headers.map();
+    }
+
+    /**
+     * Replaces the response headers.
+     *
+     * @param headers the new headers; may be null.
+     */
+    public void setHeaders(Map<String, List<String>> headers) {
+        this.headers = headers == null ? null : HttpHeaders.of(headers, (name, value) -> true);
+    }
+
+    /**
+     * Returns the first value of the given header.
+     *
+     * @param name the name of the header, in any case; must not be null.
+     * @return the first value, or {@code null} if the header is not present.
+     * @throws IllegalArgumentException if the name is null.
+     */
+    public String getHeader(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Header name cannot be null");
+        }
+
+        return headers == null ? null : headers.firstValue(name).orElse(null);
+    }
+
+    /**
+     * Returns all values of the given header.
+     *
+     * @param name the name of the header, in any case; must not be null.
+     * @return the values, empty if the header is not present.
+     * @throws IllegalArgumentException if the name is null.
+     */
+    public List<String> getHeaderValues(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Header name cannot be null");
+        }
+
+        return (headers == null ? NO_HEADERS : headers).allValues(name);
+    }
+
+    /**
+     * Sets the time it took to receive the response, keeping {@link #getDurationMs()} in sync.
+     *
+     * @param durationNanos the duration in nanoseconds.
+     */
+    public void setDurationNanos(long durationNanos) {
+        this.durationNanos = durationNanos;
+        this.durationMs = durationNanos < 0 ? -1 : durationNanos / 1_000_000;
+    }
+
+    /**
+     * Maps the JSON body to an instance of the given type, such as a record or a plain Java object.
+     * The JSON is read from the bytes of the body without decoding it into a string first.
+     *
+     * @param type the type to map to; must not be null.
+     * @param <T> the type to map to
+     * @return the mapped body, or {@code null} if the body is empty or {@code null}.
+     * @throws IllegalArgumentException if the type is null.
+     * @throws JsonMappingException if the body is not valid JSON or does not match the type.
+     * @see JsonMapper
+     */
+    public <T> T as(Class<T> type) {
+        byte[] json = jsonBytes();
+        if (json == null) return null;
+
+        return JsonMapper.read(json, type);
+    }
+
+    /**
+     * Maps the JSON array in the body to a list of instances of the given type.
+     * The JSON is read from the bytes of the body without decoding it into a string first.
+     *
+     * @param type the type of the elements; must not be null.
+     * @param <T> the type of the elements
+     * @return the mapped list, or {@code null} if the body is empty or {@code null}.
+     * @throws IllegalArgumentException if the type is null.
+     * @throws JsonMappingException if the body is not a valid JSON array or does not match the type.
+     * @see JsonMapper
+     */
+    public <T> List<T> asList(Class<T> type) {
+        byte[] json = jsonBytes();
+        if (json == null) return null;
+
+        return JsonMapper.readList(json, type);
     }
 
     public StatusCode getStatus() {
         return StatusCode.fromCode(statusCode);
     }
 
+    /**
+     * Returns the body as UTF-8 bytes for the JSON mapper, using the received bytes directly when they are
+     * UTF-8 (or ASCII) and span a whole array.
+     */
+    private byte[] jsonBytes() {
+        if (rawBody == null) {
+            return body == null ? null : body.getBytes(StandardCharsets.UTF_8);
+        }
+
+        Charset charset = getCharset();
+        if (!charset.equals(StandardCharsets.UTF_8) && !charset.equals(StandardCharsets.US_ASCII)) {
+            return getBody().getBytes(StandardCharsets.UTF_8);
+        }
+
+        if (rawBody.hasArray() && rawBody.arrayOffset() == 0 && rawBody.position() == 0
+                && rawBody.remaining() == rawBody.array().length) {
+            return rawBody.array();
+        }
+        return bodyAsBytes();
+    }
+
+    /**
+     * Returns the body for {@link #toString()}, decoding at most {@link #TO_STRING_BODY_LIMIT} bytes.
+     */
+    private String bodyPreview() {
+        if (body != null || rawBody == null) {
+            return body == null || body.length() <= TO_STRING_BODY_LIMIT ? body
+                    : body.substring(0, TO_STRING_BODY_LIMIT) + "... (" + body.length() + " chars)";
+        }
+
+        int length = rawBody.remaining();
+        if (length <= TO_STRING_BODY_LIMIT) return getBody();
+
+        ByteBuffer head = rawBody.duplicate();
+        head.limit(head.position() + TO_STRING_BODY_LIMIT);
+        return getCharset().decode(head) + "... (" + length + " bytes)";
+    }
+
     @Override
     public String toString() {
         return "JxResponse{" +
-                "body='" + body + '\'' +
-                ", contentType='" + contentType + '\'' +
+                "body='" + bodyPreview() + '\'' +
+                ", contentType='" + getContentType() + '\'' +
                 ", uri='" + uri + '\'' +
                 ", statusCode=" + statusCode +
                 ", durationMs=" + durationMs +
-                ", headers=" + headers +
+                ", durationNanos=" + durationNanos +
+                ", headers=" + getHeaders() +
                 '}';
     }
-}
\ No newline at end of file
+}
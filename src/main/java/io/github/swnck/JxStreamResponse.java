@@ -0,0 +1,124 @@
+package io.github.swnck;
+
+import io.github.swnck.json.JsonMapper;
+import io.github.swnck.json.JsonMappingException;
+import io.github.swnck.util.ContentType;
+import io.github.swnck.util.StatusCode;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents an HTTP response whose body is streamed instead of being buffered into memory.
+ * Status code, headers, and URI are available as soon as the response headers have arrived,
+ * before the body has been consumed.
+ * <p>
+ * Streamed bodies hold on to the underlying connection until they are fully read or closed,
+ * so callers should close the response, e.g. with a try-with-resources statement.
+ *
+ * @param <B> the type of the streamed body, such as {@link java.io.InputStream}
+ */
+@Getter
+public class JxStreamResponse<B> implements AutoCloseable {
+    private final B body;
+    private final String contentType;
+    private final String uri;
+
+    private final int statusCode;
+
+    private final Map<String, List<String>> headers;
+
+    /**
+     * Constructs a JxStreamResponse from an {@link HttpResponse} whose headers have been received.
+     *
+     * @param httpResponse the response whose data should be exposed; must not be null.
+     */
+    public JxStreamResponse(HttpResponse<B> httpResponse) {
+        this.body = httpResponse.body();
+        this.contentType = httpResponse.headers().firstValue("Content-Type")
+                .orElse(ContentType.TEXT_PLAIN.getMimeType());
+        this.statusCode = httpResponse.statusCode();
+        this.uri = httpResponse.uri().toString();
+        this.headers = httpResponse.headers().map();
+    }
+
+    public StatusCode getStatus() {
+        return StatusCode.fromCode(statusCode);
+    }
+
+    /**
+     * Maps the streamed JSON body to an instance of the given type while it is read from the connection, without
+     * buffering it, and closes the body.
+     *
+     * @param type the type to map to; must not be null.
+     * @param <T> the type to map to
+     * @return the mapped body, or {@code null} if the body is empty or {@code null}.
+     * @throws IllegalArgumentException if the type is null.
+     * @throws IllegalStateException if the body is not an {@link InputStream}.
+     * @throws JsonMappingException if the body is not valid JSON or does not match the type.
+     * @throws UncheckedIOException if reading the body fails.
+     * @see JsonMapper
+     */
+    public <T> T as(Class<T> type) {
+        try (this) {
+            return JsonMapper.read(inputStream(), type);
+        }
+    }
+
+    /**
+     * Maps the streamed JSON array in the body to a list of instances of the given type while it is read from the
+     * connection, without buffering it, and closes the body.
+     *
+     * @param type the type of the elements; must not be null.
+     * @param <T> the type of the elements
+     * @return the mapped list, or {@code null} if the body is empty or {@code null}.
+     * @throws IllegalArgumentException if the type is null.
+     * @throws IllegalStateException if the body is not an {@link InputStream}.
+     * @throws JsonMappingException if the body is not a valid JSON array or does not match the type.
+     * @throws UncheckedIOException if reading the body fails.
+     * @see JsonMapper
+     */
+    public <T> List<T> asList(Class<T> type) {
+        try (this) {
+            return JsonMapper.readList(inputStream(), type);
+        }
+    }
+
+    private InputStream inputStream() {
+        if (body instanceof InputStream in) return in;
+
+        throw new IllegalStateException("Body is not an input stream");
+    }
+
+    /**
+     * Closes the body if it is {@link Closeable}, releasing the underlying connection.
+     *
+     * @throws UncheckedIOException if closing the body fails.
+     */
+    @Override
+    public void close() {
+        if (body instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JxStreamResponse{" +
+                "contentType='" + contentType + '\'' +
+                ", uri='" + uri + '\'' +
+                ", statusCode=" + statusCode +
+                ", headers=" + headers +
+                '}';
+    }
+}
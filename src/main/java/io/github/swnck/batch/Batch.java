@@ -0,0 +1,163 @@
+package io.github.swnck.batch;
+
+import io.github.swnck.JxResponse;
+import io.github.swnck.request.AbstractRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Sends a collection of requests concurrently while keeping at most a fixed number of them in flight.
+ * <p>
+ * The batch starts {@code maxInFlight} lanes. Whenever a request of a lane completes, the lane picks up the
+ * next request that has not been started yet, so no thread is ever blocked while waiting for a free slot and
+ * the client's connections stay saturated without being overrun. Each request is sent with its own
+ * {@link AbstractRequest#getClient() client}. Failures are reported per request and never abort the batch.
+ */
+public final class Batch {
+    private final List<AbstractRequest<?>> requests;
+
+    private final Consumer<BatchResult> onResult;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final AtomicInteger remaining;
+
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    private volatile Throwable consumerError;
+
+    private Batch(List<AbstractRequest<?>> requests, Consumer<BatchResult> onResult) {
+        this.requests = requests;
+        this.onResult = onResult;
+        this.remaining = new AtomicInteger(requests.size());
+    }
+
+    /**
+     * Sends all requests and reports every result to the given consumer as soon as it is available.
+     * The consumer is never invoked concurrently, but it may be invoked from different threads.
+     *
+     * @param requests the requests to send; must not be null or contain null elements.
+     * @param maxInFlight the maximum number of requests in flight at the same time; must be greater than 0.
+     * @param onResult the consumer receiving results in completion order; must not be null.
+     * @return a {@link CompletableFuture} that completes once every result has been delivered. It completes
+     * exceptionally only if the consumer threw an exception.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public static CompletableFuture<Void> stream(Collection<? extends AbstractRequest<?>> requests, int maxInFlight,
+                                                 Consumer<BatchResult> onResult) {
+        if (requests == null) {
+            throw new IllegalArgumentException("Requests cannot be null or contain null elements");
+        }
+        for (AbstractRequest<?> request : requests) {
+            if (request == null) {
+                throw new IllegalArgumentException("Requests cannot be null or contain null elements");
+            }
+        }
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Max in-flight must be > 0");
+        }
+        if (onResult == null) {
+            throw new IllegalArgumentException("Result consumer cannot be null");
+        }
+
+        Batch batch = new Batch(new ArrayList<>(requests), onResult);
+        batch.start(maxInFlight);
+        return batch.done;
+    }
+
+    /**
+     * Sends all requests and collects the results in the order of the given collection.
+     *
+     * @param requests the requests to send; must not be null or contain null elements.
+     * @param maxInFlight the maximum number of requests in flight at the same time; must be greater than 0.
+     * @return a {@link CompletableFuture} that completes with one {@link BatchResult} per request, in input order.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public static CompletableFuture<List<BatchResult>> collect(Collection<? extends AbstractRequest<?>> requests, int maxInFlight) {
+        BatchResult[] results = new BatchResult[requests == null ? 0 : requests.size()];
+
+        return stream(requests, maxInFlight, result -> results[result.getIndex()] = result)
+                .thenApply(ignored -> Arrays.asList(results));
+    }
+
+    private void start(int maxInFlight) {
+        if (requests.isEmpty()) {
+            done.complete(null);
+            return;
+        }
+
+        for (int lane = 0; lane < Math.min(maxInFlight, requests.size()); lane++) {
+            launchNext();
+        }
+    }
+
+    /**
+     * Starts the next pending request. Requests that complete immediately are handled in a loop
+     * instead of recursively, so a long run of synchronous failures cannot overflow the stack.
+     */
+    private void launchNext() {
+        while (true) {
+            int index = next.getAndIncrement();
+            if (index >= requests.size()) return;
+
+            AbstractRequest<?> request = requests.get(index);
+            CompletableFuture<JxResponse> future;
+
+            try {
+                future = request.sendAsync();
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+
+            if (!future.isDone()) {
+                future.whenComplete((response, error) -> {
+                    complete(index, request, response, error);
+                    launchNext();
+                });
+                return;
+            }
+
+            JxResponse response = null;
+            Throwable error = null;
+
+            try {
+                response = future.join();
+            } catch (CompletionException e) {
+                error = e;
+            }
+
+            complete(index, request, response, error);
+        }
+    }
+
+    private void complete(int index, AbstractRequest<?> request, JxResponse response, Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+
+        BatchResult result = new BatchResult(index, request, error == null ? response : null, error);
+
+        synchronized (this) {
+            try {
+                onResult.accept(result);
+            } catch (RuntimeException e) {
+                if (consumerError == null) consumerError = e;
+            }
+        }
+
+        if (remaining.decrementAndGet() == 0) {
+            if (consumerError != null) {
+                done.completeExceptionally(consumerError);
+            } else {
+                done.complete(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.swnck.batch;
+
+import io.github.swnck.JxResponse;
+import io.github.swnck.request.AbstractRequest;
+import lombok.Getter;
+
+/**
+ * The outcome of a single request within a batch started by {@link io.github.swnck.JxRequest#sendAll}.
+ * A result is either successful and carries the {@link JxResponse}, or failed and carries the error
+ * that prevented the request from completing. HTTP error status codes count as successful results.
+ */
+@Getter
+public class BatchResult {
+    /**
+     * The position of the request in the collection passed to the batch.
+     */
+    private final int index;
+
+    private final AbstractRequest<?> request;
+
+    private final JxResponse response;
+
+    private final Throwable error;
+
+    BatchResult(int index, AbstractRequest<?> request, JxResponse response, Throwable error) {
+        this.index = index;
+        this.request = request;
+        this.response = response;
+        this.error = error;
+    }
+
+    /**
+     * Indicates whether the request completed with a response.
+     *
+     * @return {@code true} if a response was received, {@code false} if the request failed.
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "index=" + index +
+                ", success=" + isSuccess() +
+                ", statusCode=" + (response == null ? "-" : response.getStatusCode()) +
+                ", error=" + error +
+                '}';
+    }
+}
@@ -0,0 +1,146 @@
+package io.github.swnck.body;
+
+import io.github.swnck.json.JsonMapper;
+
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Provides {@link HttpRequest.BodyPublisher} implementations that complement
+ * {@link HttpRequest.BodyPublishers}.
+ */
+public final class BodyPublishers {
+
+    private BodyPublishers() {
+    }
+
+    /**
+     * Returns a publisher that sends the remaining bytes of the given buffer without copying them.
+     * Heap buffers are published from their backing array, direct buffers as a single read-only view.
+     * The position and limit of the given buffer are not modified, and the content length is known up front.
+     *
+     * @param buffer the buffer to send; must not be null.
+     * @return the body publisher.
+     * @throws IllegalArgumentException if the provided buffer is null.
+     */
+    public static HttpRequest.BodyPublisher ofByteBuffer(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Buffer cannot be null");
+        }
+
+        if (buffer.hasArray()) {
+            return HttpRequest.BodyPublishers.ofByteArray(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+
+        if (!buffer.hasRemaining()) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+
+        ByteBuffer content = buffer.asReadOnlyBuffer();
+        Flow.Publisher<ByteBuffer> publisher = subscriber -> subscriber.onSubscribe(new SingleItemSubscription(subscriber, content));
+        return HttpRequest.BodyPublishers.fromPublisher(publisher, content.remaining());
+    }
+
+    /**
+     * Returns a publisher that sends the gzip encoding of the given publisher's content. The content is
+     * compressed while it is sent, so neither the original nor the compressed body is ever held in memory
+     * as a whole. As the compressed length is not known up front, the body is sent using chunked transfer
+     * encoding. The caller is responsible for setting the {@code Content-Encoding: gzip} header.
+     *
+     * @param publisher the publisher of the uncompressed content; must not be null.
+     * @return the compressing body publisher.
+     * @throws IllegalArgumentException if the provided publisher is null.
+     */
+    public static HttpRequest.BodyPublisher gzip(Flow.Publisher<ByteBuffer> publisher) {
+        if (publisher == null) {
+            throw new IllegalArgumentException("Publisher cannot be null");
+        }
+
+        return HttpRequest.BodyPublishers.ofInputStream(() -> new GzipEncodingInputStream(toInputStream(publisher)));
+    }
+
+    /**
+     * Returns a publisher that sends the given value as UTF-8 encoded JSON, serialized by {@link JsonMapper}. The
+     * value is serialized each time the request is sent and only as fast as the body is transmitted, so the JSON is
+     * never held in memory as a whole. As its length is not known up front, the body is sent using chunked
+     * transfer encoding. The value should not be modified until the request has been sent.
+     *
+     * @param value the value to send; may be null, which sends {@code null}.
+     * @return the body publisher.
+     * @see JsonMapper#toInputStream(Object)
+     */
+    public static HttpRequest.BodyPublisher ofJson(Object value) {
+        return HttpRequest.BodyPublishers.ofInputStream(() -> JsonMapper.toInputStream(value));
+    }
+
+    /**
+     * Subscribes to the publisher and exposes its content as a blocking input stream that requests
+     * further buffers only as it is read.
+     */
+    private static InputStream toInputStream(Flow.Publisher<ByteBuffer> publisher) {
+        HttpResponse.BodySubscriber<InputStream> subscriber = HttpResponse.BodySubscribers.ofInputStream();
+
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscriber.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                subscriber.onNext(List.of(item));
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                subscriber.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                subscriber.onComplete();
+            }
+        });
+
+        return subscriber.getBody().toCompletableFuture().join();
+    }
+
+    /**
+     * A subscription that emits a fresh view of one buffer on the first request and then completes.
+     */
+    private static final class SingleItemSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+
+        private final ByteBuffer content;
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private SingleItemSubscription(Flow.Subscriber<? super ByteBuffer> subscriber, ByteBuffer content) {
+            this.subscriber = subscriber;
+            this.content = content;
+        }
+
+        @Override
+        public void request(long n) {
+            if (done.getAndSet(true)) return;
+
+            if (n <= 0) {
+                subscriber.onError(new IllegalArgumentException("Requested items must be > 0"));
+                return;
+            }
+
+            subscriber.onNext(content.duplicate());
+            subscriber.onComplete();
+        }
+
+        @Override
+        public void cancel() {
+            done.set(true);
+        }
+    }
+}
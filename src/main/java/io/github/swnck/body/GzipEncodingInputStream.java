@@ -0,0 +1,83 @@
+package io.github.swnck.body;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+
+/**
+ * An input stream that reads the gzip encoding of another stream.
+ * <p>
+ * The source is compressed while it is read: the gzip header is emitted first, followed by the deflated
+ * content and, once the source is exhausted, the CRC-32 and size trailer. Only the buffers of the
+ * {@link Deflater} are held in memory.
+ */
+final class GzipEncodingInputStream extends InputStream {
+    private static final byte[] HEADER = {0x1F, (byte) 0x8B, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xFF};
+
+    private final CRC32 crc = new CRC32();
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+    private final DeflaterInputStream deflated;
+
+    private int headerPosition;
+
+    private byte[] trailer;
+
+    private int trailerPosition;
+
+    GzipEncodingInputStream(InputStream source) {
+        this.deflated = new DeflaterInputStream(new CheckedInputStream(source, crc), deflater);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+
+        if (headerPosition < HEADER.length) {
+            int count = Math.min(length, HEADER.length - headerPosition);
+            System.arraycopy(HEADER, headerPosition, buffer, offset, count);
+            headerPosition += count;
+            return count;
+        }
+
+        if (trailer == null) {
+            int read = deflated.read(buffer, offset, length);
+            if (read >= 0) return read;
+
+            trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt((int) crc.getValue())
+                    .putInt((int) deflater.getBytesRead())
+                    .array();
+            deflater.end();
+        }
+
+        if (trailerPosition == trailer.length) return -1;
+
+        int count = Math.min(length, trailer.length - trailerPosition);
+        System.arraycopy(trailer, trailerPosition, buffer, offset, count);
+        trailerPosition += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            deflated.close();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package io.github.swnck.body;
+
+import io.github.swnck.util.ContentType;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * A {@code multipart/form-data} request body composed of string fields, byte arrays, files, and streams.
+ * <p>
+ * The body is encoded lazily while it is sent: part contents are read one after another directly from their
+ * source, so files are streamed from disk and the whole payload is never held in memory. If the size of every
+ * part is known, the total length is computed up front and sent as Content-Length; otherwise the body is sent
+ * using chunked transfer encoding.
+ * <pre>{@code
+ * MultipartBody body = MultipartBody.builder()
+ *         .field("title", "Holiday")
+ *         .file("image", Path.of("beach.png"), ContentType.IMAGE_PNG)
+ *         .build();
+ *
+ * JxRequest.post("https://api.example.com/uploads").setBody(body).send();
+ * }</pre>
+ */
+@Getter
+public class MultipartBody {
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final String boundary;
+
+    /**
+     * The total length of the encoded body in bytes, or {@code -1} if at least one part has an unknown size.
+     */
+    private final long contentLength;
+
+    @Getter(AccessLevel.NONE)
+    private final List<Part> parts;
+
+    private MultipartBody(Builder builder) {
+        this.boundary = builder.boundary;
+        this.parts = builder.parts.stream()
+                .map(spec -> new Part(spec.header(boundary), spec.contentLength, spec.content))
+                .toList();
+
+        long length = closingDelimiter().length;
+        for (Part part : parts) {
+            if (part.contentLength < 0) {
+                length = -1;
+                break;
+            }
+            length += part.header.length + part.contentLength + CRLF.length;
+        }
+        this.contentLength = length;
+    }
+
+    /**
+     * Creates a new {@link Builder} with a randomly generated boundary.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the value for the Content-Type header of this body, including the boundary parameter.
+     *
+     * @return the Content-Type, e.g. {@code multipart/form-data; boundary=...}.
+     */
+    public String getContentType() {
+        return ContentType.MULTIPART_FORM_DATA.getMimeType() + "; boundary=" + boundary;
+    }
+
+    /**
+     * Returns a publisher that encodes this body while it is sent. The publisher can be subscribed to
+     * several times, e.g. for retries, and re-reads all sources each time.
+     *
+     * @return the body publisher.
+     */
+    public HttpRequest.BodyPublisher toBodyPublisher() {
+        HttpRequest.BodyPublisher publisher = HttpRequest.BodyPublishers.ofInputStream(this::openStream);
+        return contentLength < 0 ? publisher : HttpRequest.BodyPublishers.fromPublisher(publisher, contentLength);
+    }
+
+    private InputStream openStream() {
+        return new SequenceInputStream(new Enumeration<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasMoreElements() {
+                return index <= parts.size() * 3;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                if (!hasMoreElements()) throw new NoSuchElementException();
+
+                int current = index++;
+                if (current == parts.size() * 3) return new ByteArrayInputStream(closingDelimiter());
+
+                Part part = parts.get(current / 3);
+                return switch (current % 3) {
+                    case 0 -> new ByteArrayInputStream(part.header);
+                    case 1 -> part.content.get();
+                    default -> new ByteArrayInputStream(CRLF);
+                };
+            }
+        });
+    }
+
+    private byte[] closingDelimiter() {
+        return ("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * A single part of the body: its encoded delimiter and headers, and a lazily opened content stream.
+     */
+    private record Part(byte[] header, long contentLength, Supplier<InputStream> content) {
+    }
+
+    /**
+     * A part as added to the builder, before the boundary is fixed.
+     */
+    private record PartSpec(String name, String filename, String contentType, long contentLength,
+                            Supplier<InputStream> content) {
+
+        private byte[] header(String boundary) {
+            StringBuilder header = new StringBuilder()
+                    .append("--").append(boundary).append("\r\n")
+                    .append("Content-Disposition: form-data; name=\"").append(escape(name)).append('"');
+
+            if (filename != null) {
+                header.append("; filename=\"").append(escape(filename)).append('"');
+            }
+            header.append("\r\n");
+
+            if (contentType != null) {
+                header.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            header.append("\r\n");
+
+            return header.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Escapes quotes and line breaks in names and filenames as described by the HTML form encoding rules.
+         */
+        private static String escape(String value) {
+            return value.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A");
+        }
+    }
+
+    /**
+     * Builder for {@link MultipartBody} instances. Parts are encoded in the order in which they are added.
+     */
+    public static class Builder {
+        private final List<PartSpec> parts = new ArrayList<>();
+
+        private String boundary = "JxRequestBoundary" + Long.toHexString(ThreadLocalRandom.current().nextLong())
+                + Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the boundary that separates the parts. A random boundary is used by default.
+         *
+         * @param boundary the boundary; must be 1 to 70 characters long.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the boundary is null or has an invalid length.
+         */
+        public Builder boundary(String boundary) {
+            if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+                throw new IllegalArgumentException("Boundary must be 1 to 70 characters long");
+            }
+
+            this.boundary = boundary;
+            return this;
+        }
+
+        /**
+         * Adds a plain text field encoded as UTF-8.
+         *
+         * @param name the name of the field; must not be null.
+         * @param value the value of the field; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the name or value is null.
+         */
+        public Builder field(String name, String value) {
+            if (name == null || value == null) {
+                throw new IllegalArgumentException("Field name and value cannot be null");
+            }
+
+            byte[] content = value.getBytes(StandardCharsets.UTF_8);
+            return addPart(name, null, null, content.length, () -> new ByteArrayInputStream(content));
+        }
+
+        /**
+         * Adds a part with the given bytes. The array is not copied and must not be modified until the request has been sent.
+         *
+         * @param name the name of the part; must not be null.
+         * @param content the content of the part; must not be null.
+         * @param filename the filename announced for the part, or null to send none.
+         * @param contentType the content type of the part; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the name, content, or content type is null.
+         */
+        public Builder part(String name, byte[] content, String filename, ContentType contentType) {
+            if (name == null || content == null || contentType == null) {
+                throw new IllegalArgumentException("Part name, content and content type cannot be null");
+            }
+
+            return addPart(name, filename, contentType.getMimeType(), content.length, () -> new ByteArrayInputStream(content));
+        }
+
+        /**
+         * Adds a part whose content is read from the streams returned by the given supplier. As the size of the
+         * stream is unknown, a body with such a part is sent using chunked transfer encoding.
+         *
+         * @param name the name of the part; must not be null.
+         * @param content the supplier of the content stream; invoked each time the body is sent; must not be null.
+         * @param filename the filename announced for the part, or null to send none.
+         * @param contentType the content type of the part; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the name, content, or content type is null.
+         */
+        public Builder part(String name, Supplier<InputStream> content, String filename, ContentType contentType) {
+            if (name == null || content == null || contentType == null) {
+                throw new IllegalArgumentException("Part name, content and content type cannot be null");
+            }
+
+            return addPart(name, filename, contentType.getMimeType(), -1, content);
+        }
+
+        /**
+         * Adds a file part with the content type {@link ContentType#APPLICATION_OCTET_STREAM}.
+         *
+         * @param name the name of the part; must not be null.
+         * @param file the file to send; must not be null and must be readable.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the name or file is null, or the file cannot be read.
+         */
+        public Builder file(String name, Path file) {
+            return file(name, file, ContentType.APPLICATION_OCTET_STREAM);
+        }
+
+        /**
+         * Adds a file part. The file is streamed from disk while the body is sent and announced
+         * with its file name.
+         *
+         * @param name the name of the part; must not be null.
+         * @param file the file to send; must not be null and must be readable.
+         * @param contentType the content type of the part; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if any argument is null, or the file cannot be read.
+         */
+        public Builder file(String name, Path file, ContentType contentType) {
+            if (name == null || file == null || contentType == null) {
+                throw new IllegalArgumentException("Part name, file and content type cannot be null");
+            }
+
+            long size;
+            try {
+                size = Files.size(file);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot read file: " + file, e);
+            }
+
+            Path fileName = file.getFileName();
+            return addPart(name, fileName == null ? null : fileName.toString(), contentType.getMimeType(), size, () -> {
+                try {
+                    return Files.newInputStream(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        /**
+         * Builds the multipart body with the parts added so far.
+         *
+         * @return the new body.
+         */
+        public MultipartBody build() {
+            return new MultipartBody(this);
+        }
+
+        private Builder addPart(String name, String filename, String contentType, long contentLength, Supplier<InputStream> content) {
+            parts.add(new PartSpec(name, filename, contentType, contentLength, content));
+            return this;
+        }
+    }
+}
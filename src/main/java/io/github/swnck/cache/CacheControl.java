@@ -0,0 +1,69 @@
+package io.github.swnck.cache;
+
+import java.net.http.HttpHeaders;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The parsed directives of a Cache-Control header. Directive names are case-insensitive; directives without
+ * a value are stored with an empty value.
+ */
+final class CacheControl {
+    private final Map<String, String> directives;
+
+    private CacheControl(Map<String, String> directives) {
+        this.directives = directives;
+    }
+
+    /**
+     * Parses all Cache-Control headers of the given header set, and a {@code Pragma: no-cache} for compatibility
+     * with HTTP/1.0 caches.
+     */
+    static CacheControl of(HttpHeaders headers) {
+        Map<String, String> directives = new HashMap<>();
+
+        for (String header : headers.allValues("Cache-Control")) {
+            for (String directive : header.split(",")) {
+                String trimmed = directive.trim();
+                if (trimmed.isEmpty()) continue;
+
+                int separator = trimmed.indexOf('=');
+                if (separator < 0) {
+                    directives.put(trimmed.toLowerCase(Locale.ROOT), "");
+                } else {
+                    String value = trimmed.substring(separator + 1).trim();
+                    if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                        value = value.substring(1, value.length() - 1);
+                    }
+                    directives.put(trimmed.substring(0, separator).trim().toLowerCase(Locale.ROOT), value);
+                }
+            }
+        }
+
+        if (headers.allValues("Pragma").stream().anyMatch(value -> value.trim().equalsIgnoreCase("no-cache"))) {
+            directives.putIfAbsent("no-cache", "");
+        }
+
+        return new CacheControl(directives);
+    }
+
+    boolean has(String directive) {
+        return directives.containsKey(directive);
+    }
+
+    /**
+     * Returns the value of a delta-seconds directive such as {@code max-age}, or -1 if it is absent or invalid.
+     */
+    long seconds(String directive) {
+        String value = directives.get(directive);
+        if (value == null || value.isEmpty()) return -1;
+
+        try {
+            return Math.max(0, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            // Values beyond the range of a long are treated as "forever", as recommended by RFC 9111.
+            return value.chars().allMatch(Character::isDigit) ? Integer.MAX_VALUE : -1;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package io.github.swnck.cache;
+
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A stored response as held by a {@link CacheStore}. Entries are immutable; a revalidated response is stored as
+ * a new entry.
+ *
+ * @param uri the URI of the response.
+ * @param statusCode the status code of the response.
+ * @param headers the response headers.
+ * @param body the response body as a read-only buffer; its position and limit are never modified.
+ * @param varyHeaders the values of the request headers named by the Vary header of the response, keyed by their
+ *                    lower-case name; a request only matches the entry if it sends the same values.
+ * @param requestTime the time in epoch milliseconds at which the request that produced the response was sent.
+ * @param responseTime the time in epoch milliseconds at which the response was received.
+ */
+public record CacheEntry(String uri, int statusCode, HttpHeaders headers, ByteBuffer body,
+                         Map<String, List<String>> varyHeaders, long requestTime, long responseTime) {
+
+    /**
+     * Returns the approximate number of bytes this entry occupies, used to enforce the size budget of a store.
+     *
+     * @return the weight of the entry in bytes.
+     */
+    public long weight() {
+        long weight = 128L + uri.length() + body.remaining();
+
+        for (Map.Entry<String, List<String>> header : headers.map().entrySet()) {
+            weight += header.getKey().length();
+            for (String value : header.getValue()) {
+                weight += value.length() + 16;
+            }
+        }
+
+        return weight;
+    }
+
+    /**
+     * Returns the value of the ETag header, or null if the response has none.
+     */
+    String etag() {
+        return headers.firstValue("ETag").orElse(null);
+    }
+
+    /**
+     * Returns the value of the Last-Modified header, or null if the response has none.
+     */
+    String lastModified() {
+        return headers.firstValue("Last-Modified").orElse(null);
+    }
+
+    /**
+     * Returns whether the given request selects this entry according to the Vary header of the response.
+     */
+    boolean matches(HttpRequest request) {
+        for (Map.Entry<String, List<String>> vary : varyHeaders.entrySet()) {
+            if (!request.headers().allValues(vary.getKey()).equals(vary.getValue())) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the age of the response in milliseconds at the given time, as defined by RFC 9111 section 4.2.3.
+     */
+    long currentAge(long now) {
+        long ageValue = headers.firstValue("Age").map(CacheEntry::parseSeconds).orElse(0L) * 1000;
+        long apparentAge = Math.max(0, responseTime - dateOr(responseTime));
+        long correctedAge = ageValue + (responseTime - requestTime);
+
+        return Math.max(apparentAge, correctedAge) + (now - responseTime);
+    }
+
+    /**
+     * Returns how long the response stays fresh in milliseconds. Responses without {@code max-age} or
+     * {@code Expires}, and responses marked {@code no-cache}, have no freshness and are revalidated on every use.
+     */
+    long freshnessLifetime() {
+        CacheControl cacheControl = CacheControl.of(headers);
+        if (cacheControl.has("no-cache")) return 0;
+
+        long maxAge = cacheControl.seconds("max-age");
+        if (maxAge >= 0) return maxAge * 1000;
+
+        return headers.firstValue("Expires")
+                .map(expires -> {
+                    Long expiresAt = parseDate(expires);
+                    return expiresAt == null ? 0L : Math.max(0, expiresAt - dateOr(responseTime));
+                })
+                .orElse(0L);
+    }
+
+    /**
+     * Returns for how long in milliseconds a stale response may still be served while it is revalidated in the
+     * background, as allowed by the {@code stale-while-revalidate} directive.
+     */
+    long staleWhileRevalidate() {
+        return Math.max(0, CacheControl.of(headers).seconds("stale-while-revalidate")) * 1000;
+    }
+
+    /**
+     * Returns a copy of this entry after a successful revalidation: the headers of the {@code 304 Not Modified}
+     * response replace the stored ones of the same name, and the timestamps are reset.
+     */
+    CacheEntry revalidated(HttpHeaders notModifiedHeaders, long requestTime, long responseTime) {
+        Map<String, List<String>> merged = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        merged.putAll(headers.map());
+
+        notModifiedHeaders.map().forEach((name, values) -> {
+            if (!name.equalsIgnoreCase("Content-Length")) merged.put(name, values);
+        });
+
+        return new CacheEntry(uri, statusCode, HttpHeaders.of(merged, (name, value) -> true), body,
+                varyHeaders, requestTime, responseTime);
+    }
+
+    private long dateOr(long fallback) {
+        Long date = headers.firstValue("Date").map(CacheEntry::parseDate).orElse(null);
+        return date == null ? fallback : date;
+    }
+
+    private static Long parseDate(String value) {
+        try {
+            return Instant.from(ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static long parseSeconds(String value) {
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the lower-case names of the request headers listed in a Vary header.
+     */
+    static List<String> varyNames(HttpHeaders headers) {
+        return headers.allValues("Vary").stream()
+                .flatMap(value -> List.of(value.split(",")).stream())
+                .map(name -> name.trim().toLowerCase(Locale.ROOT))
+                .filter(name -> !name.isEmpty())
+                .distinct()
+                .toList();
+    }
+}
@@ -0,0 +1,25 @@
+package io.github.swnck.cache;
+
+/**
+ * A snapshot of the counters of an {@link HttpCache}.
+ *
+ * @param hitCount the number of responses served from the cache, including those confirmed by a {@code 304 Not Modified}.
+ * @param missCount the number of responses that had to be fetched in full from the network.
+ * @param revalidationCount the number of conditional requests sent to revalidate a stored response.
+ * @param evictionCount the number of entries evicted by the store.
+ * @param size the total weight of the stored entries in bytes.
+ * @param entryCount the number of stored entries.
+ */
+public record CacheStats(long hitCount, long missCount, long revalidationCount, long evictionCount,
+                         long size, long entryCount) {
+
+    /**
+     * Returns the share of lookups that were served from the cache.
+     *
+     * @return the hit rate between 0 and 1, or 0 if there were no lookups yet.
+     */
+    public double hitRate() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.swnck.cache;
+
+/**
+ * The storage behind an {@link HttpCache}. A store only keeps entries; all HTTP caching rules, such as freshness
+ * and revalidation, are applied by the cache.
+ * <p>
+ * Implementations must be safe for concurrent use and should bound their size, evicting entries as needed.
+ */
+public interface CacheStore extends AutoCloseable {
+
+    /**
+     * Returns the entry stored under the given key and marks it as recently used.
+     *
+     * @param key the cache key.
+     * @return the entry, or null if there is none.
+     */
+    CacheEntry get(String key);
+
+    /**
+     * Stores an entry, replacing any entry with the same key. The store may decline to keep entries that do not
+     * fit into its budget.
+     *
+     * @param key the cache key.
+     * @param entry the entry to store.
+     */
+    void put(String key, CacheEntry entry);
+
+    /**
+     * Removes the entry stored under the given key, if any.
+     *
+     * @param key the cache key.
+     */
+    void remove(String key);
+
+    /**
+     * Removes all entries.
+     */
+    void clear();
+
+    /**
+     * Returns the total {@linkplain CacheEntry#weight() weight} of the stored entries in bytes.
+     *
+     * @return the size of the store in bytes.
+     */
+    long getSize();
+
+    /**
+     * Returns the number of stored entries.
+     *
+     * @return the number of entries.
+     */
+    long getEntryCount();
+
+    /**
+     * Returns the number of entries that were evicted to stay within the budget of the store.
+     *
+     * @return the number of evictions.
+     */
+    long getEvictionCount();
+
+    /**
+     * Releases the resources held by the store, such as open files. The default implementation does nothing.
+     */
+    @Override
+    default void close() {
+    }
+}
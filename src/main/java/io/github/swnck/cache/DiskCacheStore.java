@@ -0,0 +1,727 @@
+package io.github.swnck.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link CacheStore} that persists entries on disk, so that a restarted process starts with a warm cache.
+ * <p>
+ * Entries are appended to segment files in the store directory. Each record holds the key, the response
+ * metadata, and the body; removing an entry appends a small tombstone record. A compact index mapping every key
+ * to the location of its latest record is kept in memory and written to an index file whenever a segment is
+ * sealed, segments are evicted or compacted, and when the store is closed. On startup the index file is loaded and
+ * the records appended after it was written are replayed, so entries written before an unclean shutdown are
+ * recovered as well; a torn record at the end of a segment is truncated.
+ * <p>
+ * Bodies are read through memory-mapped segments and handed out as read-only slices of the mapping, without
+ * copying them onto the heap. The total size of all segment files is bounded: once it exceeds the budget, the
+ * least recently used sealed segment is evicted as a whole, and sealed segments that mostly hold replaced or
+ * removed records are compacted by copying their live records into the active segment.
+ * <p>
+ * I/O errors never fail a request: a failed read is treated as a miss and a failed write as an entry that was
+ * not stored; both are logged.
+ */
+public final class DiskCacheStore implements CacheStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskCacheStore.class);
+
+    private static final int RECORD_MAGIC = 0x4A584352;
+
+    private static final int INDEX_MAGIC = 0x4A584349;
+
+    /**
+     * Magic number, metadata length, and body length ({@code -1} for tombstones).
+     */
+    private static final int RECORD_HEADER_LENGTH = 16;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".jxc";
+
+    private static final String INDEX_FILE = "index.jxi";
+
+    private final Path directory;
+
+    private final long maxBytes;
+
+    private final long segmentBytes;
+
+    private final Map<String, Location> index = new HashMap<>();
+
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private Segment active;
+
+    private long totalBytes;
+
+    private long evictions;
+
+    private long accessCounter;
+
+    private boolean closed;
+
+    private DiskCacheStore(Path directory, long maxBytes, long segmentBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Opens the store in the given directory, creating the directory if needed and loading the entries of a
+     * previous run. The segment size is derived from the budget.
+     *
+     * @param directory the directory holding the segment and index files; must not be null.
+     * @param maxBytes the maximum total size of the segment files in bytes; must be greater than 0.
+     * @return the opened store.
+     * @throws IOException if the directory cannot be created or read.
+     * @throws IllegalArgumentException if the directory is null or the budget is zero or negative.
+     */
+    public static DiskCacheStore open(Path directory, long maxBytes) throws IOException {
+        return open(directory, maxBytes, Math.max(1L << 20, Math.min(64L << 20, maxBytes / 16)));
+    }
+
+    /**
+     * Opens the store in the given directory with an explicit segment size.
+     *
+     * @param directory the directory holding the segment and index files; must not be null.
+     * @param maxBytes the maximum total size of the segment files in bytes; must be greater than 0.
+     * @param segmentBytes the size at which the active segment is sealed and a new one is started; must be
+     *                     greater than 0 and at most {@link Integer#MAX_VALUE}. Larger records get a segment of their own.
+     * @return the opened store.
+     * @throws IOException if the directory cannot be created or read.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public static DiskCacheStore open(Path directory, long maxBytes, long segmentBytes) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory cannot be null");
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be > 0");
+        }
+        if (segmentBytes <= 0 || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be > 0 and <= " + Integer.MAX_VALUE);
+        }
+
+        Files.createDirectories(directory);
+
+        DiskCacheStore store = new DiskCacheStore(directory, maxBytes, segmentBytes);
+        store.lock.lock();
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            store.segments.values().forEach(Segment::closeQuietly);
+            throw e;
+        } finally {
+            store.lock.unlock();
+        }
+        return store;
+    }
+
+    @Override
+    public CacheEntry get(String key) {
+        ByteBuffer record;
+
+        lock.lock();
+        try {
+            if (closed) return null;
+
+            Location location = index.get(key);
+            if (location == null) return null;
+
+            Segment segment = segments.get(location.segment());
+            segment.lastAccess = ++accessCounter;
+
+            try {
+                record = segment.read(location.offset(), location.length());
+            } catch (IOException e) {
+                LOGGER.warn("Could not read cached response for {}", key, e);
+                release(index.remove(key));
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            return decode(record);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Discarding corrupt cached response for {}", key, e);
+            remove(key);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, CacheEntry entry) {
+        byte[] metadata = encodeMetadata(key, entry);
+        long bodyLength = entry.body().remaining();
+        long length = RECORD_HEADER_LENGTH + metadata.length + bodyLength;
+
+        if (length > maxBytes || length > Integer.MAX_VALUE) {
+            remove(key);
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (closed) return;
+
+            Location location = append(record(metadata, bodyLength), entry.body().duplicate());
+            release(index.put(key, location));
+            active.liveBytes += location.length();
+
+            enforceBudget();
+        } catch (IOException e) {
+            LOGGER.warn("Could not store cached response for {}", key, e);
+            release(index.remove(key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        lock.lock();
+        try {
+            if (closed) return;
+
+            Location removed = index.remove(key);
+            if (removed == null) return;
+
+            release(removed);
+            append(record(encodeKey(key), -1), ByteBuffer.allocate(0));
+        } catch (IOException e) {
+            LOGGER.warn("Could not record removal of cached response for {}", key, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            if (closed) return;
+
+            index.clear();
+            for (Segment segment : segments.values()) {
+                segment.delete();
+            }
+            segments.clear();
+            active = null;
+            totalBytes = 0;
+
+            writeIndex();
+        } catch (IOException e) {
+            LOGGER.warn("Could not clear disk cache in {}", directory, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the total size of the segment files in bytes, including replaced records and tombstones that have
+     * not been compacted yet.
+     */
+    @Override
+    public long getSize() {
+        lock.lock();
+        try {
+            return totalBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getEntryCount() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getEvictionCount() {
+        lock.lock();
+        try {
+            return evictions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the index file and closes the segment files. Entries handed out by {@link #get(String)} remain
+     * readable, as their bodies are backed by the memory mappings.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+
+            writeIndex();
+        } catch (IOException e) {
+            LOGGER.warn("Could not write disk cache index in {}", directory, e);
+        } finally {
+            segments.values().forEach(Segment::closeQuietly);
+            lock.unlock();
+        }
+    }
+
+    private void load() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(id, Segment.open(id, file));
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("Ignoring unexpected file {} in disk cache", file);
+                }
+            }
+        }
+
+        int replaySegment = Integer.MIN_VALUE;
+        long replayOffset = 0;
+
+        Snapshot snapshot = readIndex();
+        if (snapshot != null) {
+            snapshot.entries().forEach((key, location) -> {
+                Segment segment = segments.get(location.segment());
+                if (segment != null && location.offset() + location.length() <= segment.size) {
+                    index.put(key, location);
+                }
+            });
+            replaySegment = snapshot.activeSegment();
+            replayOffset = snapshot.activeSize();
+        }
+
+        for (Segment segment : segments.values()) {
+            if (segment.id < replaySegment) continue;
+            replay(segment, segment.id == replaySegment ? replayOffset : 0);
+        }
+
+        for (Location location : index.values()) {
+            segments.get(location.segment()).liveBytes += location.length();
+        }
+
+        for (Segment segment : segments.values()) {
+            segment.lastAccess = ++accessCounter;
+            totalBytes += segment.size;
+        }
+        active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+
+        enforceBudget();
+    }
+
+    /**
+     * Applies the records of a segment from the given offset to the index. A record that is cut off or does not
+     * start with the record magic ends the segment, which is then truncated to its last complete record.
+     */
+    private void replay(Segment segment, long offset) throws IOException {
+        long position = offset;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+
+        while (position + RECORD_HEADER_LENGTH <= segment.size) {
+            header.clear();
+            readFully(segment.channel, header, position);
+
+            int metadataLength = header.getInt(4);
+            long bodyLength = header.getLong(8);
+            long length = RECORD_HEADER_LENGTH + (long) metadataLength + Math.max(0, bodyLength);
+
+            if (header.getInt(0) != RECORD_MAGIC || metadataLength < 4 || bodyLength < -1 || position + length > segment.size) {
+                break;
+            }
+
+            ByteBuffer metadata = ByteBuffer.allocate(metadataLength);
+            readFully(segment.channel, metadata, position + RECORD_HEADER_LENGTH);
+            String key = readString(metadata);
+
+            if (bodyLength < 0) {
+                index.remove(key);
+            } else {
+                index.put(key, new Location(segment.id, position, metadataLength, bodyLength));
+            }
+            position += length;
+        }
+
+        if (position < segment.size) {
+            LOGGER.warn("Truncating incomplete record at offset {} of {}", position, segment.path);
+            segment.channel.truncate(position);
+            segment.size = position;
+        }
+    }
+
+    /**
+     * Appends a record to the active segment, starting a new segment first if the record does not fit.
+     */
+    private Location append(ByteBuffer header, ByteBuffer body) throws IOException {
+        long length = (long) header.remaining() + body.remaining();
+
+        if (active == null || (active.size > 0 && active.size + length > segmentBytes)) {
+            roll();
+        }
+
+        long offset = active.size;
+        long position = offset;
+        while (header.hasRemaining()) {
+            position += active.channel.write(header, position);
+        }
+        while (body.hasRemaining()) {
+            position += active.channel.write(body, position);
+        }
+
+        active.size += length;
+        active.lastAccess = ++accessCounter;
+        totalBytes += length;
+
+        return new Location(active.id, offset, header.getInt(4), header.getLong(8));
+    }
+
+    /**
+     * Seals the active segment and starts a new one. The index is written at this point, so that a restart only
+     * has to replay the records of the new segment.
+     */
+    private void roll() throws IOException {
+        int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Segment segment = Segment.create(id, directory.resolve(SEGMENT_PREFIX + String.format("%08d", id) + SEGMENT_SUFFIX));
+
+        segments.put(id, segment);
+        active = segment;
+        writeIndex();
+    }
+
+    /**
+     * Evicts the least recently used sealed segments while the store exceeds its budget, then compacts the sealed
+     * segment with the smallest share of live records if less than half of it is live.
+     */
+    private void enforceBudget() throws IOException {
+        while (totalBytes > maxBytes && segments.size() > 1) {
+            Segment victim = segments.values().stream()
+                    .filter(segment -> segment != active)
+                    .min(Comparator.comparingLong(segment -> segment.lastAccess))
+                    .orElseThrow();
+
+            Iterator<Location> locations = index.values().iterator();
+            while (locations.hasNext()) {
+                if (locations.next().segment() == victim.id) {
+                    locations.remove();
+                    evictions++;
+                }
+            }
+            drop(victim);
+        }
+
+        Segment sparse = segments.values().stream()
+                .filter(segment -> segment != active && segment.liveBytes * 2 < segment.size)
+                .min(Comparator.comparingDouble(segment -> (double) segment.liveBytes / Math.max(1, segment.size)))
+                .orElse(null);
+
+        if (sparse != null) {
+            compact(sparse);
+        }
+    }
+
+    /**
+     * Copies the live records of a sealed segment into the active segment and deletes the sealed segment.
+     */
+    private void compact(Segment segment) throws IOException {
+        List<Map.Entry<String, Location>> live = new ArrayList<>();
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            if (entry.getValue().segment() == segment.id) live.add(entry);
+        }
+
+        for (Map.Entry<String, Location> entry : live) {
+            Location location = entry.getValue();
+            ByteBuffer record = segment.read(location.offset(), location.length());
+
+            ByteBuffer header = record.slice(0, RECORD_HEADER_LENGTH);
+            ByteBuffer rest = record.slice(RECORD_HEADER_LENGTH, record.remaining() - RECORD_HEADER_LENGTH);
+            Location copied = append(ByteBuffer.allocate(RECORD_HEADER_LENGTH).put(header).flip(), rest);
+
+            index.put(entry.getKey(), copied);
+            active.liveBytes += copied.length();
+        }
+
+        drop(segment);
+    }
+
+    /**
+     * Removes a segment whose records are no longer referenced by the index. The index is written before the
+     * file is deleted, so a restart never sees index entries pointing into a missing segment.
+     */
+    private void drop(Segment segment) throws IOException {
+        segments.remove(segment.id);
+        totalBytes -= segment.size;
+        writeIndex();
+        segment.delete();
+    }
+
+    private void release(Location location) {
+        if (location == null) return;
+
+        Segment segment = segments.get(location.segment());
+        if (segment != null) segment.liveBytes -= location.length();
+    }
+
+    private void writeIndex() throws IOException {
+        Path temporary = directory.resolve(INDEX_FILE + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(active == null ? 0 : active.id);
+            out.writeLong(active == null ? 0 : active.size);
+            out.writeInt(index.size());
+
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                Location location = entry.getValue();
+
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeInt(location.segment());
+                out.writeLong(location.offset());
+                out.writeInt(location.metadataLength());
+                out.writeLong(location.bodyLength());
+            }
+        }
+
+        Files.move(temporary, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the index file, or returns null if there is none or it cannot be read, in which case all segments
+     * are replayed.
+     */
+    private Snapshot readIndex() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(INDEX_FILE))))) {
+            if (in.readInt() != INDEX_MAGIC) return null;
+
+            int activeSegment = in.readInt();
+            long activeSize = in.readLong();
+            int count = in.readInt();
+
+            Map<String, Location> entries = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[in.readInt()];
+                in.readFully(key);
+                entries.put(new String(key, StandardCharsets.UTF_8),
+                        new Location(in.readInt(), in.readLong(), in.readInt(), in.readLong()));
+            }
+
+            return new Snapshot(activeSegment, activeSize, entries);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Ignoring unreadable disk cache index in {}", directory, e);
+            return null;
+        }
+    }
+
+    private static ByteBuffer record(byte[] metadata, long bodyLength) {
+        return ByteBuffer.allocate(RECORD_HEADER_LENGTH + metadata.length)
+                .putInt(RECORD_MAGIC)
+                .putInt(metadata.length)
+                .putLong(bodyLength)
+                .put(metadata)
+                .flip();
+    }
+
+    private static byte[] encodeKey(String key) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, key);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeMetadata(String key, CacheEntry entry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, key);
+            writeString(out, entry.uri());
+            out.writeInt(entry.statusCode());
+            out.writeLong(entry.requestTime());
+            out.writeLong(entry.responseTime());
+            writeMultimap(out, entry.headers().map());
+            writeMultimap(out, entry.varyHeaders());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static CacheEntry decode(ByteBuffer record) {
+        int metadataLength = record.getInt(4);
+        long bodyLength = record.getLong(8);
+
+        ByteBuffer metadata = record.slice(RECORD_HEADER_LENGTH, metadataLength);
+        readString(metadata);
+        String uri = readString(metadata);
+        int statusCode = metadata.getInt();
+        long requestTime = metadata.getLong();
+        long responseTime = metadata.getLong();
+        Map<String, List<String>> headers = readMultimap(metadata);
+        Map<String, List<String>> varyHeaders = readMultimap(metadata);
+
+        ByteBuffer body = record.slice(RECORD_HEADER_LENGTH + metadataLength, (int) bodyLength).asReadOnlyBuffer();
+
+        return new CacheEntry(uri, statusCode, HttpHeaders.of(headers, (name, value) -> true), body,
+                Map.copyOf(varyHeaders), requestTime, responseTime);
+    }
+
+    private static void writeMultimap(DataOutputStream out, Map<String, List<String>> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (String value : entry.getValue()) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    private static Map<String, List<String>> readMultimap(ByteBuffer in) {
+        int size = in.getInt();
+        Map<String, List<String>> map = new LinkedHashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            String name = readString(in);
+            int count = in.getInt();
+            List<String> values = new ArrayList<>(count);
+            for (int j = 0; j < count; j++) {
+                values.add(readString(in));
+            }
+            map.put(name, List.copyOf(values));
+        }
+        return map;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Unexpected end of segment");
+        }
+        buffer.flip();
+    }
+
+    /**
+     * The location of the latest record of a key.
+     */
+    private record Location(int segment, long offset, int metadataLength, long bodyLength) {
+        long length() {
+            return RECORD_HEADER_LENGTH + metadataLength + Math.max(0, bodyLength);
+        }
+    }
+
+    private record Snapshot(int activeSegment, long activeSize, Map<String, Location> entries) {
+    }
+
+    /**
+     * A segment file. Reads go through a read-only mapping of the file, which is renewed when a record beyond
+     * the mapped region is read.
+     */
+    private static final class Segment {
+        private final int id;
+
+        private final Path path;
+
+        private final FileChannel channel;
+
+        private long size;
+
+        private long liveBytes;
+
+        private long lastAccess;
+
+        private MappedByteBuffer mapping;
+
+        private Segment(int id, Path path, FileChannel channel, long size) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+
+        private static Segment open(int id, Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(id, path, channel, channel.size());
+        }
+
+        private static Segment create(int id, Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            return new Segment(id, path, channel, 0);
+        }
+
+        private ByteBuffer read(long offset, long length) throws IOException {
+            if (mapping == null || mapping.capacity() < offset + length) {
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            return mapping.slice((int) offset, (int) length);
+        }
+
+        private void delete() throws IOException {
+            closeQuietly();
+            Files.deleteIfExists(path);
+        }
+
+        private void closeQuietly() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close {}", path, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package io.github.swnck.cache;
+
+import io.github.swnck.JxClient;
+import io.github.swnck.JxResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A private HTTP response cache for a {@link JxClient}, following the caching rules of RFC 9111.
+ * <p>
+ * {@code GET} responses with a cacheable status code are stored if they carry an explicit freshness lifetime
+ * ({@code Cache-Control: max-age} or {@code Expires}) or a validator ({@code ETag} or {@code Last-Modified}),
+ * and are not marked {@code no-store}. While a stored response is fresh, it is returned without any network
+ * round trip. Once it is stale, it is revalidated with a conditional request carrying {@code If-None-Match} and
+ * {@code If-Modified-Since}; a {@code 304 Not Modified} answer turns into the stored response with refreshed
+ * headers. Within the {@code stale-while-revalidate} window of a response, the stale response is returned
+ * immediately and revalidated in the background. Successful unsafe requests ({@code POST}, {@code PUT},
+ * {@code PATCH}, {@code DELETE}) invalidate the stored response of their URI.
+ * <p>
+ * Requests that send {@code Cache-Control: no-store}, a Range header, or their own conditional headers bypass
+ * the cache; {@code Cache-Control: no-cache} forces a revalidation.
+ * <pre>{@code
+ * HttpCache cache = HttpCache.inMemory(64 * 1024 * 1024);
+ * JxClient client = JxClient.builder().cache(cache).build();
+ *
+ * client.get("https://api.example.com/config").send();
+ * System.out.println(cache.getStats().hitRate());
+ * }</pre>
+ * A {@linkplain #persistent(Path, long, long) persistent} cache additionally keeps responses on disk, so that
+ * they survive a restart of the process.
+ */
+public final class HttpCache implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpCache.class);
+
+    private static final Set<Integer> CACHEABLE_STATUS_CODES = Set.of(200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501);
+
+    private final CacheStore store;
+
+    private final Clock clock;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder revalidations = new LongAdder();
+
+    private final Set<String> backgroundRevalidations = ConcurrentHashMap.newKeySet();
+
+    HttpCache(CacheStore store, Clock clock) {
+        this.store = store;
+        this.clock = clock;
+    }
+
+    /**
+     * Creates a cache backed by a {@link MemoryCacheStore} with the given budget.
+     *
+     * @param maxBytes the maximum total size of the stored responses in bytes; must be greater than 0.
+     * @return the new cache.
+     * @throws IllegalArgumentException if the budget is zero or negative.
+     */
+    public static HttpCache inMemory(long maxBytes) {
+        return new HttpCache(new MemoryCacheStore(maxBytes), Clock.systemUTC());
+    }
+
+    /**
+     * Creates a cache that keeps recently used responses in memory in front of a {@link DiskCacheStore} in the
+     * given directory. Responses stored by a previous run are available immediately.
+     *
+     * @param directory the directory of the disk store; must not be null.
+     * @param memoryBytes the budget of the memory tier in bytes; must be greater than 0.
+     * @param diskBytes the budget of the disk tier in bytes; must be greater than 0.
+     * @return the new cache; it should be {@linkplain #close() closed} when it is no longer used.
+     * @throws IOException if the disk store cannot be opened.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public static HttpCache persistent(Path directory, long memoryBytes, long diskBytes) throws IOException {
+        MemoryCacheStore memory = new MemoryCacheStore(memoryBytes);
+        return new HttpCache(new TieredCacheStore(memory, DiskCacheStore.open(directory, diskBytes)), Clock.systemUTC());
+    }
+
+    /**
+     * Creates a cache backed by the given store.
+     *
+     * @param store the store that keeps the cached responses; must not be null.
+     * @return the new cache.
+     * @throws IllegalArgumentException if the provided store is null.
+     */
+    public static HttpCache of(CacheStore store) {
+        if (store == null) {
+            throw new IllegalArgumentException("Cache store cannot be null");
+        }
+
+        return new HttpCache(store, Clock.systemUTC());
+    }
+
+    /**
+     * Returns the store that keeps the cached responses.
+     *
+     * @return the cache store.
+     */
+    public CacheStore getStore() {
+        return store;
+    }
+
+    /**
+     * Returns a snapshot of the hit, miss, revalidation, and eviction counters and of the current size.
+     *
+     * @return the cache statistics.
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), revalidations.sum(), store.getEvictionCount(),
+                store.getSize(), store.getEntryCount());
+    }
+
+    /**
+     * Removes the stored response for the given URI, if any.
+     *
+     * @param uri the URI of the response; must not be null.
+     * @throws IllegalArgumentException if the provided URI is null.
+     */
+    public void invalidate(URI uri) {
+        if (uri == null) {
+            throw new IllegalArgumentException("URI cannot be null");
+        }
+
+        store.remove(uri.toString());
+    }
+
+    /**
+     * Removes all stored responses. The counters are not reset.
+     */
+    public void clear() {
+        store.clear();
+    }
+
+    /**
+     * Closes the store of this cache, e.g. to write the index of a {@link DiskCacheStore}.
+     */
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    /**
+     * Sends a request through the cache. This is called by {@link JxClient#sendAsync} for clients configured
+     * with a cache; the given function performs the actual network exchange.
+     *
+     * @param request the request to send; must not be null.
+     * @param network the function sending a request over the network; must not be null.
+     * @return a {@link CompletableFuture} that completes with the cached or fetched {@link JxResponse}.
+     * @throws IllegalArgumentException if the request or network function is null.
+     */
+    public CompletableFuture<JxResponse> send(HttpRequest request, Function<HttpRequest, CompletableFuture<HttpResponse<byte[]>>> network) {
+        if (request == null || network == null) {
+            throw new IllegalArgumentException("Request and network function cannot be null");
+        }
+
+        long start = System.nanoTime();
+        String key = request.uri().toString();
+
+        if (!request.method().equals("GET")) {
+            return network.apply(request).thenApply(response -> {
+                if (response.statusCode() < 400) store.remove(key);
+                return toResponse(response, start);
+            });
+        }
+
+        CacheControl requestCacheControl = CacheControl.of(request.headers());
+        if (bypasses(request, requestCacheControl)) {
+            return network.apply(request).thenApply(response -> toResponse(response, start));
+        }
+
+        CacheEntry entry = store.get(key);
+        if (entry == null || !entry.matches(request)) {
+            misses.increment();
+            return fetch(key, request, network, start);
+        }
+
+        if (!requestCacheControl.has("no-cache") && requestCacheControl.seconds("max-age") != 0) {
+            long age = entry.currentAge(clock.millis());
+            long lifetime = entry.freshnessLifetime();
+
+            if (age < lifetime) {
+                hits.increment();
+                return CompletableFuture.completedFuture(toResponse(entry, start));
+            }
+
+            if (age < lifetime + entry.staleWhileRevalidate()) {
+                hits.increment();
+                revalidateInBackground(key, entry, request, network);
+                return CompletableFuture.completedFuture(toResponse(entry, start));
+            }
+        }
+
+        return revalidate(key, entry, request, network, start, true);
+    }
+
+    private CompletableFuture<JxResponse> fetch(String key, HttpRequest request,
+                                                Function<HttpRequest, CompletableFuture<HttpResponse<byte[]>>> network, long start) {
+        long requestTime = clock.millis();
+
+        return network.apply(request).thenApply(response -> {
+            store(key, request, response, requestTime, clock.millis());
+            return toResponse(response, start);
+        });
+    }
+
+    private CompletableFuture<JxResponse> revalidate(String key, CacheEntry entry, HttpRequest request,
+                                                     Function<HttpRequest, CompletableFuture<HttpResponse<byte[]>>> network,
+                                                     long start, boolean count) {
+        String etag = entry.etag();
+        String lastModified = entry.lastModified();
+
+        if (etag == null && lastModified == null) {
+            if (count) misses.increment();
+            return fetch(key, request, network, start);
+        }
+
+        HttpRequest.Builder conditional = HttpRequest.newBuilder(request, (name, value) -> true);
+        if (etag != null) conditional.header("If-None-Match", etag);
+        if (lastModified != null) conditional.header("If-Modified-Since", lastModified);
+
+        revalidations.increment();
+        long requestTime = clock.millis();
+
+        return network.apply(conditional.build()).thenApply(response -> {
+            long responseTime = clock.millis();
+
+            if (response.statusCode() == 304) {
+                if (count) hits.increment();
+                CacheEntry refreshed = entry.revalidated(response.headers(), requestTime, responseTime);
+                store.put(key, refreshed);
+                return toResponse(refreshed, start);
+            }
+
+            if (count) misses.increment();
+            store(key, request, response, requestTime, responseTime);
+            return toResponse(response, start);
+        });
+    }
+
+    private void revalidateInBackground(String key, CacheEntry entry, HttpRequest request,
+                                        Function<HttpRequest, CompletableFuture<HttpResponse<byte[]>>> network) {
+        if (!backgroundRevalidations.add(key)) return;
+
+        try {
+            revalidate(key, entry, request, network, System.nanoTime(), false).whenComplete((response, error) -> {
+                backgroundRevalidations.remove(key);
+                if (error != null) LOGGER.debug("Background revalidation of {} failed", key, error);
+            });
+        } catch (RuntimeException e) {
+            backgroundRevalidations.remove(key);
+            LOGGER.debug("Background revalidation of {} failed", key, e);
+        }
+    }
+
+    private void store(String key, HttpRequest request, HttpResponse<byte[]> response, long requestTime, long responseTime) {
+        CacheControl cacheControl = CacheControl.of(response.headers());
+
+        if (cacheControl.has("no-store")) {
+            store.remove(key);
+            return;
+        }
+        if (!CACHEABLE_STATUS_CODES.contains(response.statusCode())) return;
+
+        List<String> varyNames = CacheEntry.varyNames(response.headers());
+        if (varyNames.contains("*")) return;
+
+        Map<String, List<String>> varyHeaders = new LinkedHashMap<>();
+        for (String name : varyNames) {
+            varyHeaders.put(name, request.headers().allValues(name));
+        }
+
+        CacheEntry entry = new CacheEntry(response.uri().toString(), response.statusCode(), response.headers(),
+                ByteBuffer.wrap(response.body()).asReadOnlyBuffer(), Map.copyOf(varyHeaders), requestTime, responseTime);
+
+        if (entry.freshnessLifetime() > 0 || entry.etag() != null || entry.lastModified() != null) {
+            store.put(key, entry);
+        }
+    }
+
+    private static boolean bypasses(HttpRequest request, CacheControl cacheControl) {
+        HttpHeaders headers = request.headers();
+
+        return cacheControl.has("no-store")
+                || headers.firstValue("Range").isPresent()
+                || headers.firstValue("If-None-Match").isPresent()
+                || headers.firstValue("If-Modified-Since").isPresent()
+                || headers.firstValue("If-Match").isPresent()
+                || headers.firstValue("If-Unmodified-Since").isPresent();
+    }
+
+    private static JxResponse toResponse(HttpResponse<byte[]> response, long start) {
+        return toResponse(response.uri().toString(), response.statusCode(), response.headers(), ByteBuffer.wrap(response.body()), start);
+    }
+
+    private static JxResponse toResponse(CacheEntry entry, long start) {
+        return toResponse(entry.uri(), entry.statusCode(), entry.headers(), entry.body(), start);
+    }
+
+    private static JxResponse toResponse(String uri, int statusCode, HttpHeaders headers, ByteBuffer body, long start) {
+        JxResponse response = new JxResponse(uri, statusCode, headers, body.duplicate());
+        response.setDurationNanos(System.nanoTime() - start);
+        return response;
+    }
+}
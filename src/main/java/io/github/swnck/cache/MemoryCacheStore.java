@@ -0,0 +1,130 @@
+package io.github.swnck.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link CacheStore} that keeps entries on the heap and evicts the least recently used entries once the
+ * total {@linkplain CacheEntry#weight() weight} exceeds its budget.
+ * <p>
+ * All operations take a single short lock; no I/O or body copying happens while it is held.
+ */
+public final class MemoryCacheStore implements CacheStore {
+    private final long maxBytes;
+
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long size;
+
+    private long evictions;
+
+    /**
+     * Creates a store that holds at most the given number of bytes.
+     *
+     * @param maxBytes the budget in bytes; must be greater than 0.
+     * @throws IllegalArgumentException if the budget is zero or negative.
+     */
+    public MemoryCacheStore(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be > 0");
+        }
+
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public CacheEntry get(String key) {
+        lock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores an entry and evicts the least recently used entries until the store fits its budget again.
+     * Entries larger than the whole budget are not stored, and replace nothing.
+     */
+    @Override
+    public void put(String key, CacheEntry entry) {
+        long weight = entry.weight();
+
+        lock.lock();
+        try {
+            if (weight > maxBytes) {
+                CacheEntry removed = entries.remove(key);
+                if (removed != null) size -= removed.weight();
+                return;
+            }
+
+            CacheEntry previous = entries.put(key, entry);
+            size += weight - (previous == null ? 0 : previous.weight());
+
+            Iterator<Map.Entry<String, CacheEntry>> eldest = entries.entrySet().iterator();
+            while (size > maxBytes && eldest.hasNext()) {
+                size -= eldest.next().getValue().weight();
+                eldest.remove();
+                evictions++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        lock.lock();
+        try {
+            CacheEntry removed = entries.remove(key);
+            if (removed != null) size -= removed.weight();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getSize() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getEntryCount() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getEvictionCount() {
+        lock.lock();
+        try {
+            return evictions;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.swnck.cache;
+
+/**
+ * A {@link CacheStore} that keeps recently used entries in a fast first tier, usually a {@link MemoryCacheStore},
+ * in front of a larger second tier, usually a {@link DiskCacheStore}.
+ * <p>
+ * Every entry is written to both tiers. Lookups are answered by the first tier when possible; entries found only
+ * in the second tier are promoted to the first. As the second tier holds every entry, the size, entry count, and
+ * eviction count reported by this store are those of the second tier.
+ */
+public final class TieredCacheStore implements CacheStore {
+    private final CacheStore first;
+
+    private final CacheStore second;
+
+    /**
+     * Creates a store from two tiers.
+     *
+     * @param first the fast tier that is consulted first; must not be null.
+     * @param second the large tier that holds every entry; must not be null.
+     * @throws IllegalArgumentException if either tier is null.
+     */
+    public TieredCacheStore(CacheStore first, CacheStore second) {
+        if (first == null || second == null) {
+            throw new IllegalArgumentException("Cache tiers cannot be null");
+        }
+
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public CacheEntry get(String key) {
+        CacheEntry entry = first.get(key);
+        if (entry != null) return entry;
+
+        entry = second.get(key);
+        if (entry != null) first.put(key, entry);
+
+        return entry;
+    }
+
+    @Override
+    public void put(String key, CacheEntry entry) {
+        first.put(key, entry);
+        second.put(key, entry);
+    }
+
+    @Override
+    public void remove(String key) {
+        first.remove(key);
+        second.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        first.clear();
+        second.clear();
+    }
+
+    @Override
+    public long getSize() {
+        return second.getSize();
+    }
+
+    @Override
+    public long getEntryCount() {
+        return second.getEntryCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return second.getEvictionCount();
+    }
+
+    /**
+     * Closes both tiers.
+     */
+    @Override
+    public void close() {
+        try {
+            first.close();
+        } finally {
+            second.close();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.swnck.download;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The progress sidecar of a segmented download, stored next to the target file.
+ * <p>
+ * The file starts with a fixed header (magic number, total length, segment count, and the validator of the
+ * resource) followed by one {@code long} per segment holding the number of bytes of that segment that have
+ * already been written to the target. Segment counters are updated in place with positional writes, so
+ * concurrent segments never contend with each other.
+ */
+final class DownloadProgress implements AutoCloseable {
+    private static final int MAGIC = 0x4A584450;
+
+    private final FileChannel channel;
+
+    private final long totalLength;
+
+    private final int segments;
+
+    private final String validator;
+
+    private final long[] completed;
+
+    private final int headerLength;
+
+    private DownloadProgress(FileChannel channel, long totalLength, int segments, String validator, long[] completed) {
+        this.channel = channel;
+        this.totalLength = totalLength;
+        this.segments = segments;
+        this.validator = validator;
+        this.completed = completed;
+        this.headerLength = 4 + 8 + 4 + 4 + validator.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Returns the sidecar path used for the given target file.
+     */
+    static Path sidecarOf(Path target) {
+        return target.resolveSibling(target.getFileName() + ".jxpart");
+    }
+
+    /**
+     * Creates a fresh progress file in which no segment has been written yet, replacing any existing one.
+     */
+    static DownloadProgress create(Path sidecar, long totalLength, int segments, String validator) throws IOException {
+        FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        DownloadProgress progress = new DownloadProgress(channel, totalLength, segments, validator, new long[segments]);
+
+        try {
+            progress.writeHeader();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return progress;
+    }
+
+    /**
+     * Opens the progress of a previous download of the same resource. Returns {@code null} if there is none, if
+     * it was written for a different length, segment count, or validator, or if the target file does not have
+     * the size of the resource.
+     */
+    static DownloadProgress resume(Path sidecar, long totalLength, int segments, String validator, long targetSize) throws IOException {
+        if (targetSize != totalLength || !Files.exists(sidecar)) return null;
+
+        FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.WRITE, StandardOpenOption.READ);
+
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) break;
+            }
+            buffer.flip();
+
+            if (buffer.remaining() < 20 || buffer.getInt() != MAGIC || buffer.getLong() != totalLength
+                    || buffer.getInt() != segments) {
+                channel.close();
+                return null;
+            }
+
+            int validatorLength = buffer.getInt();
+            if (validatorLength < 0 || buffer.remaining() < validatorLength + 8L * segments) {
+                channel.close();
+                return null;
+            }
+
+            byte[] storedValidator = new byte[validatorLength];
+            buffer.get(storedValidator);
+            if (!validator.equals(new String(storedValidator, StandardCharsets.UTF_8))) {
+                channel.close();
+                return null;
+            }
+
+            long[] completed = new long[segments];
+            for (int i = 0; i < segments; i++) {
+                completed[i] = buffer.getLong();
+            }
+
+            return new DownloadProgress(channel, totalLength, segments, validator, completed);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the given segment that were written by previous runs.
+     */
+    long completed(int segment) {
+        return completed[segment];
+    }
+
+    /**
+     * Records that the given number of bytes of a segment have been written to the target.
+     */
+    void update(int segment, long completedBytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8).putLong(0, completedBytes);
+        long position = headerLength + 8L * segment;
+
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        byte[] validatorBytes = validator.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(headerLength + 8 * segments)
+                .putInt(MAGIC)
+                .putLong(totalLength)
+                .putInt(segments)
+                .putInt(validatorBytes.length)
+                .put(validatorBytes);
+        buffer.flip().limit(buffer.capacity());
+
+        long position = 0;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,350 @@
+package io.github.swnck.download;
+
+import io.github.swnck.JxClient;
+import io.github.swnck.request.AbstractRequest;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads a resource into a file by fetching several byte ranges of it concurrently.
+ * <p>
+ * The download first probes the resource with a one-byte range request. If the server supports ranges and
+ * reports the total length, the target file is pre-sized and split into segments that are requested in parallel
+ * over the request's {@link JxClient}. Each segment is written directly into its region of the file with
+ * positional {@link FileChannel} writes, so the body never passes through heap strings. If the server does not
+ * support ranges, the response of the probe is streamed into the file as a whole.
+ * <p>
+ * Progress is recorded in a small sidecar file next to the target ({@code <target>.jxpart}). If a download fails
+ * or the process stops, starting it again for the same target resumes every segment where it left off, as long
+ * as the resource still has the same length and ETag or Last-Modified validator. The sidecar is removed once the
+ * download has completed.
+ * <p>
+ * The validator is also sent as {@code If-Range} with every range request, so a resource that changes during the
+ * download is not stitched together from different versions. Weak ETags ({@code W/"..."}) are not allowed in
+ * {@code If-Range} and would make the server answer every range with the full body, so a weak ETag is ignored in
+ * favor of Last-Modified, and no {@code If-Range} is sent if neither is available.
+ */
+public final class SegmentedDownload {
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+    private final JxClient client;
+
+    private final HttpRequest baseRequest;
+
+    private final Path target;
+
+    private final long totalLength;
+
+    private final int segments;
+
+    private final String validator;
+
+    private SegmentedDownload(JxClient client, HttpRequest baseRequest, Path target, long totalLength, int segments, String validator) {
+        this.client = client;
+        this.baseRequest = baseRequest;
+        this.target = target;
+        this.totalLength = totalLength;
+        this.segments = (int) Math.min(segments, totalLength);
+        this.validator = validator;
+    }
+
+    /**
+     * Starts downloading the resource described by the given request into the target file.
+     *
+     * @param request the request describing the resource; its URL, query parameters, and headers are used for every range request.
+     * @param target the file to write; existing content is overwritten unless the download is resumed.
+     * @param segments the maximum number of ranges fetched concurrently; must be greater than 0.
+     * @return a {@link CompletableFuture} that completes with the target path once the whole resource has been written.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public static CompletableFuture<Path> start(AbstractRequest<?> request, Path target, int segments) {
+        if (request == null || target == null) {
+            throw new IllegalArgumentException("Request and target cannot be null");
+        }
+        if (segments <= 0) {
+            throw new IllegalArgumentException("Segments must be > 0");
+        }
+
+        HttpRequest baseRequest;
+
+        try {
+            baseRequest = request.toHttpRequest();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        JxClient client = request.getClient();
+        HttpRequest probe = withRange(baseRequest, "bytes=0-0", null);
+
+        return client.exchange(probe, responseInfo -> responseInfo.statusCode() == 200
+                        ? HttpResponse.BodySubscribers.ofFile(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                        : HttpResponse.BodySubscribers.replacing(target))
+                .thenCompose(response -> {
+                    if (response.statusCode() == 200) {
+                        return deleteSidecar(target);
+                    }
+
+                    Matcher contentRange = CONTENT_RANGE.matcher(response.headers().firstValue("Content-Range").orElse(""));
+
+                    if (response.statusCode() == 206 && contentRange.matches() && !contentRange.group(3).equals("*")) {
+                        String validator = response.headers().firstValue("ETag")
+                                .filter(etag -> !etag.startsWith("W/"))
+                                .or(() -> response.headers().firstValue("Last-Modified"))
+                                .orElse("");
+
+                        return new SegmentedDownload(client, baseRequest, target, Long.parseLong(contentRange.group(3)), segments, validator).run();
+                    }
+
+                    if (response.statusCode() == 206 || response.statusCode() == 416) {
+                        return client.exchange(baseRequest, HttpResponse.BodyHandlers.ofFile(target,
+                                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+                                .thenCompose(fullResponse -> fullResponse.statusCode() == 200
+                                        ? deleteSidecar(target)
+                                        : CompletableFuture.failedFuture(new IOException("Unexpected status code " + fullResponse.statusCode())));
+                    }
+
+                    return CompletableFuture.failedFuture(new IOException("Unexpected status code " + response.statusCode()));
+                });
+    }
+
+    private CompletableFuture<Path> run() {
+        Path sidecar = DownloadProgress.sidecarOf(target);
+        FileChannel channel = null;
+        DownloadProgress progress = null;
+
+        try {
+            channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+
+            progress = DownloadProgress.resume(sidecar, totalLength, segments, validator, channel.size());
+            if (progress == null) {
+                progress = DownloadProgress.create(sidecar, totalLength, segments, validator);
+                presize(channel);
+            }
+        } catch (IOException e) {
+            closeQuietly(channel, progress);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long segmentLength = (totalLength + segments - 1) / segments;
+        List<CompletableFuture<HttpResponse<Long>>> exchanges = new ArrayList<>(segments);
+        List<CompletableFuture<Long>> transfers = new ArrayList<>(segments);
+
+        for (int segment = 0; segment < segments; segment++) {
+            long start = segment * segmentLength;
+            long end = Math.min(start + segmentLength, totalLength) - 1;
+            long from = start + progress.completed(segment);
+
+            if (from > end) continue;
+
+            int index = segment;
+            CompletableFuture<HttpResponse<Long>> exchange = fetch(channel, progress, segment, start, from, end);
+            exchanges.add(exchange);
+            transfers.add(exchange.thenApply(response -> {
+                if (response.body() < 0) {
+                    throw new CompletionException(new IOException("Server did not honor the range request for segment " + index
+                            + " (status code " + response.statusCode() + ")"));
+                }
+                return response.body();
+            }));
+        }
+
+        transfers.forEach(transfer -> transfer.whenComplete((ignored, error) -> {
+            if (error != null) exchanges.forEach(exchange -> exchange.cancel(true));
+        }));
+
+        CompletableFuture<Path> result = new CompletableFuture<>();
+        FileChannel openChannel = channel;
+        DownloadProgress openProgress = progress;
+
+        CompletableFuture.allOf(transfers.stream()
+                        .map(transfer -> transfer.handle((ignored, error) -> null))
+                        .toArray(CompletableFuture[]::new))
+                .whenComplete((ignored, unused) -> {
+                    // Segments cancelled because of another failure are only reported if nothing else failed.
+                    Throwable failure = transfers.stream()
+                            .map(SegmentedDownload::failureOf)
+                            .filter(error -> error != null)
+                            .min(Comparator.comparing(error -> error instanceof CancellationException))
+                            .orElse(null);
+
+                    try {
+                        openChannel.close();
+                        openProgress.close();
+                        if (failure == null) Files.deleteIfExists(sidecar);
+                    } catch (IOException e) {
+                        if (failure == null) failure = e;
+                    }
+
+                    if (failure != null) {
+                        result.completeExceptionally(failure);
+                    } else {
+                        result.complete(target);
+                    }
+                });
+
+        return result;
+    }
+
+    private CompletableFuture<HttpResponse<Long>> fetch(FileChannel channel, DownloadProgress progress, int segment, long start, long from, long end) {
+        HttpRequest rangeRequest = withRange(baseRequest, "bytes=" + from + "-" + end, validator.isEmpty() ? null : validator);
+
+        return client.exchange(rangeRequest, responseInfo -> {
+            Matcher contentRange = CONTENT_RANGE.matcher(responseInfo.headers().firstValue("Content-Range").orElse(""));
+
+            if (responseInfo.statusCode() != 206 || !contentRange.matches() || Long.parseLong(contentRange.group(1)) != from) {
+                return HttpResponse.BodySubscribers.replacing(-1L);
+            }
+
+            return new SegmentSubscriber(channel, progress, segment, start, from, end);
+        });
+    }
+
+    /**
+     * Sizes the target file to the total length of the resource before the segments are written.
+     */
+    private void presize(FileChannel channel) throws IOException {
+        if (channel.size() > totalLength) {
+            channel.truncate(totalLength);
+        } else if (channel.size() < totalLength) {
+            channel.write(ByteBuffer.allocate(1), totalLength - 1);
+        }
+    }
+
+    private static HttpRequest withRange(HttpRequest baseRequest, String range, String ifRange) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(baseRequest,
+                        (name, value) -> !name.equalsIgnoreCase("Range") && !name.equalsIgnoreCase("If-Range"))
+                .header("Range", range);
+
+        if (ifRange != null) builder.header("If-Range", ifRange);
+
+        return builder.build();
+    }
+
+    private static void closeQuietly(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            try {
+                if (resource != null) resource.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private static CompletableFuture<Path> deleteSidecar(Path target) {
+        try {
+            Files.deleteIfExists(DownloadProgress.sidecarOf(target));
+            return CompletableFuture.completedFuture(target);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static Throwable failureOf(CompletableFuture<?> future) {
+        if (!future.isCompletedExceptionally()) return null;
+
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause() == null ? e : e.getCause();
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Writes the body of one range response into its region of the target file and records the progress.
+     */
+    private static final class SegmentSubscriber implements HttpResponse.BodySubscriber<Long> {
+        private final FileChannel channel;
+
+        private final DownloadProgress progress;
+
+        private final int segment;
+
+        private final long start;
+
+        private final long end;
+
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        private long position;
+
+        private Flow.Subscription subscription;
+
+        private SegmentSubscriber(FileChannel channel, DownloadProgress progress, int segment, long start, long from, long end) {
+            this.channel = channel;
+            this.progress = progress;
+            this.segment = segment;
+            this.start = start;
+            this.position = from;
+            this.end = end;
+        }
+
+        @Override
+        public CompletionStage<Long> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (result.isDone()) return;
+
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    if (buffer.remaining() > end + 1 - position) {
+                        throw new IOException("Server sent more data than requested for segment " + segment);
+                    }
+
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                }
+
+                progress.update(segment, position - start);
+            } catch (IOException e) {
+                subscription.cancel();
+                result.completeExceptionally(e);
+                return;
+            }
+
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (position != end + 1) {
+                result.completeExceptionally(new IOException("Segment " + segment + " ended at byte " + position + " instead of " + (end + 1)));
+            } else {
+                result.complete(position - start);
+            }
+        }
+    }
+}
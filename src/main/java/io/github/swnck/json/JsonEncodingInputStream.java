@@ -0,0 +1,474 @@
+package io.github.swnck.json;
+
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Period;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * An input stream that serializes a value to UTF-8 encoded JSON while it is read. The object graph is walked with
+ * an explicit stack, so serialization pauses whenever a chunk of output is ready and resumes on the next read; the
+ * JSON is never held in memory as a whole, and strings and numbers are encoded straight into a reused buffer.
+ * <p>
+ * Records are written through their accessors and other objects through their non-static, non-transient fields,
+ * using {@link MethodHandle}s that are looked up once per class.
+ */
+final class JsonEncodingInputStream extends InputStream {
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final int MAX_DEPTH = JsonReader.MAX_DEPTH;
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final ClassValue<Property[]> PROPERTIES = new ClassValue<>() {
+        @Override
+        protected Property[] computeValue(Class<?> type) {
+            return type.isRecord() ? recordProperties(type) : fieldProperties(type);
+        }
+    };
+
+    private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+
+    private byte[] buffer = new byte[CHUNK_SIZE + 64];
+
+    private int position;
+
+    private int limit;
+
+    JsonEncodingInputStream(Object value) {
+        writeValue(value);
+    }
+
+    @Override
+    public int read() {
+        if (position == limit && !fill()) return -1;
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) return 0;
+        if (position == limit && !fill()) return -1;
+
+        int count = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    /**
+     * Serializes the next chunk of output into the buffer.
+     *
+     * @return {@code false} if the whole value has been written.
+     */
+    private boolean fill() {
+        position = 0;
+        limit = 0;
+
+        while (limit < CHUNK_SIZE && !stack.isEmpty()) {
+            stack.peek().step(this);
+        }
+
+        return limit > 0;
+    }
+
+    private void writeValue(Object value) {
+        switch (value) {
+            case null -> write(NULL);
+            case CharSequence text -> writeString(text);
+            case Boolean bool -> write(bool ? TRUE : FALSE);
+            case Integer number -> writeLong(number);
+            case Long number -> writeLong(number);
+            case Short number -> writeLong(number);
+            case Byte number -> writeLong(number);
+            case Double number -> writeDouble(number);
+            case Float number -> writeFloat(number);
+            case BigDecimal number -> writeAscii(number.toString());
+            case BigInteger number -> writeAscii(number.toString());
+            case Number number -> writeAscii(number.toString());
+            case Character character -> writeString(String.valueOf(character));
+            case Enum<?> constant -> writeString(constant.name());
+            case UUID uuid -> writeString(uuid.toString());
+            case TemporalAccessor temporal -> writeString(temporal.toString());
+            case Duration duration -> writeString(duration.toString());
+            case Period period -> writeString(period.toString());
+            case Optional<?> optional -> writeValue(optional.orElse(null));
+            case Map<?, ?> map -> open('{', new MapFrame(map.entrySet().iterator()));
+            case Iterable<?> iterable -> open('[', new IterableFrame(iterable.iterator()));
+            case Object[] array -> open('[', new IterableFrame(Arrays.asList(array).iterator()));
+            default -> {
+                if (value.getClass().isArray()) {
+                    open('[', new PrimitiveArrayFrame(value));
+                } else {
+                    open('{', new ObjectFrame(value, PROPERTIES.get(value.getClass())));
+                }
+            }
+        }
+    }
+
+    private void open(int bracket, Frame frame) {
+        if (stack.size() >= MAX_DEPTH) {
+            throw new JsonMappingException("Maximum nesting depth of " + MAX_DEPTH + " exceeded; the value may contain a cycle");
+        }
+
+        write(bracket);
+        stack.push(frame);
+    }
+
+    private void close(int bracket) {
+        write(bracket);
+        stack.pop();
+    }
+
+    private void writeString(CharSequence text) {
+        int length = text.length();
+        ensure(length + 2);
+        buffer[limit++] = '"';
+
+        for (int i = 0; i < length; i++) {
+            if (limit + 12 > buffer.length) ensure(Math.max(12, length - i));
+
+            char c = text.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                buffer[limit++] = (byte) c;
+            } else if (c < 0x80) {
+                writeEscaped(c);
+            } else if (c < 0x800) {
+                buffer[limit++] = (byte) (0xC0 | c >> 6);
+                buffer[limit++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer[limit++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[limit++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[limit++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[limit++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                writeUnicodeEscape(c);
+            } else {
+                buffer[limit++] = (byte) (0xE0 | c >> 12);
+                buffer[limit++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[limit++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+
+        ensure(1);
+        buffer[limit++] = '"';
+    }
+
+    private void writeEscaped(char c) {
+        buffer[limit++] = '\\';
+        switch (c) {
+            case '"' -> buffer[limit++] = '"';
+            case '\\' -> buffer[limit++] = '\\';
+            case '\n' -> buffer[limit++] = 'n';
+            case '\r' -> buffer[limit++] = 'r';
+            case '\t' -> buffer[limit++] = 't';
+            case '\b' -> buffer[limit++] = 'b';
+            case '\f' -> buffer[limit++] = 'f';
+            default -> {
+                limit--;
+                writeUnicodeEscape(c);
+            }
+        }
+    }
+
+    private void writeUnicodeEscape(char c) {
+        buffer[limit++] = '\\';
+        buffer[limit++] = 'u';
+        buffer[limit++] = HEX[c >> 12 & 0xF];
+        buffer[limit++] = HEX[c >> 8 & 0xF];
+        buffer[limit++] = HEX[c >> 4 & 0xF];
+        buffer[limit++] = HEX[c & 0xF];
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+
+        ensure(20);
+        if (value < 0) {
+            buffer[limit++] = '-';
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long remaining = value / 10; remaining != 0; remaining /= 10) {
+            digits++;
+        }
+
+        for (int i = limit + digits - 1; i >= limit; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        limit += digits;
+    }
+
+    private void writeDouble(double value) {
+        if (!Double.isFinite(value)) {
+            throw new JsonMappingException("Cannot write " + value + " as JSON");
+        }
+
+        writeAscii(Double.toString(value));
+    }
+
+    /**
+     * Writes a float in its own shortest form, so {@code 0.1f} is written as {@code 0.1} rather than as the decimal
+     * expansion of its widened double value.
+     */
+    private void writeFloat(float value) {
+        if (!Float.isFinite(value)) {
+            throw new JsonMappingException("Cannot write " + value + " as JSON");
+        }
+
+        writeAscii(Float.toString(value));
+    }
+
+    private void writeAscii(String text) {
+        int length = text.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            buffer[limit++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void write(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, limit, bytes.length);
+        limit += bytes.length;
+    }
+
+    private void write(int b) {
+        ensure(1);
+        buffer[limit++] = (byte) b;
+    }
+
+    private void ensure(int count) {
+        if (limit + count > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, limit + count));
+        }
+    }
+
+    private static Property[] recordProperties(Class<?> type) {
+        RecordComponent[] components = type.getRecordComponents();
+        Property[] properties = new Property[components.length];
+
+        for (int i = 0; i < components.length; i++) {
+            Method accessor = components[i].getAccessor();
+            try {
+                accessor.setAccessible(true);
+                properties[i] = new Property(components[i].getName(), MethodHandles.lookup().unreflect(accessor));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new JsonMappingException("Cannot write " + type.getName() + " as JSON: " + components[i].getName() + " is not accessible", e);
+            }
+        }
+
+        return properties;
+    }
+
+    private static Property[] fieldProperties(Class<?> type) {
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            hierarchy.add(0, current);
+        }
+
+        List<Property> properties = new ArrayList<>();
+        for (Class<?> current : hierarchy) {
+            for (Field field : current.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) continue;
+
+                try {
+                    field.setAccessible(true);
+                    properties.add(new Property(field.getName(), MethodHandles.lookup().unreflectGetter(field)));
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    throw new JsonMappingException("Cannot write " + type.getName() + " as JSON: field " + field.getName() + " is not accessible", e);
+                }
+            }
+        }
+
+        return properties.toArray(Property[]::new);
+    }
+
+    /**
+     * A property of a record or object, with its name encoded once as {@code ,"name":}.
+     */
+    private static final class Property {
+        private final byte[] prefix;
+
+        private final MethodHandle getter;
+
+        private Property(String name, MethodHandle getter) {
+            JsonEncodingInputStream encoded = new JsonEncodingInputStream(name);
+            byte[] nameBytes = Arrays.copyOf(encoded.buffer, encoded.limit);
+
+            this.prefix = new byte[nameBytes.length + 2];
+            this.prefix[0] = ',';
+            System.arraycopy(nameBytes, 0, prefix, 1, nameBytes.length);
+            this.prefix[prefix.length - 1] = ':';
+            this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+        }
+
+        private Object get(Object instance) {
+            try {
+                return (Object) getter.invokeExact(instance);
+            } catch (Throwable e) {
+                throw new JsonMappingException("Could not read property " + new String(prefix, 1, prefix.length - 2, StandardCharsets.UTF_8), e);
+            }
+        }
+    }
+
+    /**
+     * A composite value that is being written; every step writes one member or the closing bracket.
+     */
+    private abstract static class Frame {
+        abstract void step(JsonEncodingInputStream out);
+    }
+
+    private static final class ObjectFrame extends Frame {
+        private final Object instance;
+
+        private final Property[] properties;
+
+        private int index;
+
+        private ObjectFrame(Object instance, Property[] properties) {
+            this.instance = instance;
+            this.properties = properties;
+        }
+
+        @Override
+        void step(JsonEncodingInputStream out) {
+            if (index == properties.length) {
+                out.close('}');
+                return;
+            }
+
+            Property property = properties[index];
+            byte[] prefix = property.prefix;
+            out.ensure(prefix.length);
+
+            int offset = index++ == 0 ? 1 : 0;
+            System.arraycopy(prefix, offset, out.buffer, out.limit, prefix.length - offset);
+            out.limit += prefix.length - offset;
+
+            out.writeValue(property.get(instance));
+        }
+    }
+
+    private static final class MapFrame extends Frame {
+        private final Iterator<? extends Map.Entry<?, ?>> entries;
+
+        private boolean first = true;
+
+        private MapFrame(Iterator<? extends Map.Entry<?, ?>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        void step(JsonEncodingInputStream out) {
+            if (!entries.hasNext()) {
+                out.close('}');
+                return;
+            }
+
+            if (!first) out.write(',');
+            first = false;
+
+            Map.Entry<?, ?> entry = entries.next();
+            Object key = entry.getKey();
+            out.writeString(key instanceof Enum<?> constant ? constant.name() : String.valueOf(key));
+            out.write(':');
+            out.writeValue(entry.getValue());
+        }
+    }
+
+    private static final class IterableFrame extends Frame {
+        private final Iterator<?> elements;
+
+        private boolean first = true;
+
+        private IterableFrame(Iterator<?> elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        void step(JsonEncodingInputStream out) {
+            if (!elements.hasNext()) {
+                out.close(']');
+                return;
+            }
+
+            if (!first) out.write(',');
+            first = false;
+
+            out.writeValue(elements.next());
+        }
+    }
+
+    private static final class PrimitiveArrayFrame extends Frame {
+        private final Object array;
+
+        private final int length;
+
+        private int index;
+
+        private PrimitiveArrayFrame(Object array) {
+            this.array = array;
+            this.length = java.lang.reflect.Array.getLength(array);
+        }
+
+        @Override
+        void step(JsonEncodingInputStream out) {
+            int end = Math.min(length, index + 256);
+
+            for (; index < end; index++) {
+                if (index > 0) out.write(',');
+
+                switch (array) {
+                    case int[] values -> out.writeLong(values[index]);
+                    case long[] values -> out.writeLong(values[index]);
+                    case double[] values -> out.writeDouble(values[index]);
+                    case float[] values -> out.writeFloat(values[index]);
+                    case short[] values -> out.writeLong(values[index]);
+                    case byte[] values -> out.writeLong(values[index]);
+                    case boolean[] values -> out.write(values[index] ? TRUE : FALSE);
+                    case char[] values -> out.writeString(String.valueOf(values[index]));
+                    default -> throw new JsonMappingException("Cannot write " + array.getClass().getName() + " as JSON");
+                }
+            }
+
+            if (index == length) out.close(']');
+        }
+    }
+}
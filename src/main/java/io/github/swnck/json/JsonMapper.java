@@ -0,0 +1,635 @@
+package io.github.swnck.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Maps JSON directly onto records, plain Java objects, collections, and scalar values, and back, without building
+ * an intermediate string or tree.
+ * <p>
+ * The JSON is parsed from its UTF-8 bytes and every value is bound as soon as it is read. How a class is bound is
+ * worked out once and cached: records are created through their canonical constructor, and other classes through
+ * their no-argument constructor, with every non-static, non-transient field (including inherited ones) set
+ * through a {@link MethodHandle}. Properties are matched to components and fields by their exact name, directly on
+ * the bytes of the input, and unknown properties are skipped. Missing properties and {@code null}s leave fields
+ * at their default value.
+ * <p>
+ * Besides nested objects, the supported types are strings, primitives and their wrappers, {@link BigDecimal},
+ * {@link BigInteger}, enums (by constant name), {@link UUID}, the {@code java.time} types in their ISO-8601 form,
+ * arrays, {@link List}, {@link Set}, and other {@link Collection}s, and {@link Map}s with string, number, or enum
+ * keys. Values declared as {@link Object} are read as {@link Map}, {@link List}, {@link String}, {@link Long},
+ * {@link BigInteger}, {@link Double}, or {@link Boolean}.
+ * <pre>{@code
+ * record User(long id, String name, List<String> roles) {}
+ *
+ * User user = JsonMapper.read(bytes, User.class);
+ * List<User> users = JsonMapper.readList(inputStream, User.class);
+ * byte[] json = JsonMapper.write(user);
+ * }</pre>
+ */
+public final class JsonMapper {
+    private static final ClassValue<Decoder> DECODERS = new ClassValue<>() {
+        @Override
+        protected Decoder computeValue(Class<?> type) {
+            return createDecoder(type);
+        }
+    };
+
+    private static final Map<Class<?>, Decoder> SCALARS = new HashMap<>();
+
+    static {
+        SCALARS.put(String.class, JsonReader::readString);
+        SCALARS.put(boolean.class, JsonReader::readBoolean);
+        SCALARS.put(Boolean.class, JsonReader::readBoolean);
+        SCALARS.put(long.class, JsonReader::readLong);
+        SCALARS.put(Long.class, JsonReader::readLong);
+        SCALARS.put(int.class, reader -> (int) ranged(reader, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        SCALARS.put(Integer.class, reader -> (int) ranged(reader, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        SCALARS.put(short.class, reader -> (short) ranged(reader, Short.MIN_VALUE, Short.MAX_VALUE));
+        SCALARS.put(Short.class, reader -> (short) ranged(reader, Short.MIN_VALUE, Short.MAX_VALUE));
+        SCALARS.put(byte.class, reader -> (byte) ranged(reader, Byte.MIN_VALUE, Byte.MAX_VALUE));
+        SCALARS.put(Byte.class, reader -> (byte) ranged(reader, Byte.MIN_VALUE, Byte.MAX_VALUE));
+        SCALARS.put(double.class, JsonReader::readDouble);
+        SCALARS.put(Double.class, JsonReader::readDouble);
+        SCALARS.put(float.class, reader -> (float) reader.readDouble());
+        SCALARS.put(Float.class, reader -> (float) reader.readDouble());
+        SCALARS.put(char.class, JsonMapper::readChar);
+        SCALARS.put(Character.class, JsonMapper::readChar);
+        SCALARS.put(BigDecimal.class, JsonReader::readBigDecimal);
+        SCALARS.put(BigInteger.class, JsonMapper::readBigInteger);
+        SCALARS.put(Number.class, JsonReader::readNumber);
+        SCALARS.put(UUID.class, parsed(UUID::fromString));
+        SCALARS.put(Instant.class, parsed(Instant::parse));
+        SCALARS.put(LocalDate.class, parsed(LocalDate::parse));
+        SCALARS.put(LocalTime.class, parsed(LocalTime::parse));
+        SCALARS.put(LocalDateTime.class, parsed(LocalDateTime::parse));
+        SCALARS.put(OffsetDateTime.class, parsed(OffsetDateTime::parse));
+        SCALARS.put(ZonedDateTime.class, parsed(ZonedDateTime::parse));
+        SCALARS.put(Duration.class, parsed(Duration::parse));
+        SCALARS.put(Object.class, JsonMapper::readAny);
+    }
+
+    private JsonMapper() {
+    }
+
+    /**
+     * Maps a JSON document to an instance of the given type.
+     *
+     * @param json the UTF-8 encoded JSON; must not be null.
+     * @param type the type to map to; must not be null.
+     * @param <T> the type to map to
+     * @return the mapped value, or {@code null} if the document is empty or {@code null}.
+     * @throws IllegalArgumentException if the JSON or the type is null.
+     * @throws JsonMappingException if the JSON is malformed or does not match the type.
+     */
+    public static <T> T read(byte[] json, Class<T> type) {
+        if (json == null) {
+            throw new IllegalArgumentException("JSON cannot be null");
+        }
+
+        return read(new JsonReader(json), type);
+    }
+
+    /**
+     * Maps a JSON document read from the given stream to an instance of the given type. The stream is read to its
+     * end but not closed.
+     *
+     * @param in the stream of UTF-8 encoded JSON; must not be null.
+     * @param type the type to map to; must not be null.
+     * @param <T> the type to map to
+     * @return the mapped value, or {@code null} if the document is empty or {@code null}.
+     * @throws IllegalArgumentException if the stream or the type is null.
+     * @throws JsonMappingException if the JSON is malformed or does not match the type.
+     * @throws UncheckedIOException if reading the stream fails.
+     */
+    public static <T> T read(InputStream in, Class<T> type) {
+        if (in == null) {
+            throw new IllegalArgumentException("Input stream cannot be null");
+        }
+
+        return read(new JsonReader(in), type);
+    }
+
+    /**
+     * Maps a JSON array to a list of instances of the given type.
+     *
+     * @param json the UTF-8 encoded JSON; must not be null.
+     * @param type the type of the elements; must not be null.
+     * @param <T> the type of the elements
+     * @return the mapped list, or {@code null} if the document is empty or {@code null}.
+     * @throws IllegalArgumentException if the JSON or the type is null.
+     * @throws JsonMappingException if the JSON is malformed or does not match the type.
+     */
+    public static <T> List<T> readList(byte[] json, Class<T> type) {
+        if (json == null) {
+            throw new IllegalArgumentException("JSON cannot be null");
+        }
+
+        return readList(new JsonReader(json), type);
+    }
+
+    /**
+     * Maps a JSON array read from the given stream to a list of instances of the given type. The stream is read to
+     * its end but not closed.
+     *
+     * @param in the stream of UTF-8 encoded JSON; must not be null.
+     * @param type the type of the elements; must not be null.
+     * @param <T> the type of the elements
+     * @return the mapped list, or {@code null} if the document is empty or {@code null}.
+     * @throws IllegalArgumentException if the stream or the type is null.
+     * @throws JsonMappingException if the JSON is malformed or does not match the type.
+     * @throws UncheckedIOException if reading the stream fails.
+     */
+    public static <T> List<T> readList(InputStream in, Class<T> type) {
+        if (in == null) {
+            throw new IllegalArgumentException("Input stream cannot be null");
+        }
+
+        return readList(new JsonReader(in), type);
+    }
+
+    /**
+     * Returns a stream of the UTF-8 encoded JSON form of the given value. The value is serialized while the stream
+     * is read, one chunk at a time, so the JSON is never held in memory as a whole; the value should therefore not
+     * be modified until the stream has been read to its end.
+     * <p>
+     * Records are written with their components and other objects with their non-static, non-transient fields
+     * (including inherited ones), in declaration order and including {@code null}s. Strings, numbers, booleans,
+     * enums (by constant name), {@link UUID}s, and the {@code java.time} types in their ISO-8601 form are written
+     * as scalars, arrays and {@link Iterable}s as JSON arrays, and {@link Map}s as objects keyed by the string form
+     * of their keys.
+     *
+     * @param value the value to serialize; may be null.
+     * @return the stream of JSON.
+     * @throws JsonMappingException while reading, if the value cannot be represented as JSON.
+     */
+    public static InputStream toInputStream(Object value) {
+        return new JsonEncodingInputStream(value);
+    }
+
+    /**
+     * Serializes the given value to UTF-8 encoded JSON, as described for {@link #toInputStream(Object)}.
+     *
+     * @param value the value to serialize; may be null.
+     * @return the JSON.
+     * @throws JsonMappingException if the value cannot be represented as JSON.
+     */
+    public static byte[] write(Object value) {
+        try (InputStream in = new JsonEncodingInputStream(value)) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> T read(JsonReader reader, Class<T> type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+
+        @SuppressWarnings("unchecked")
+        T value = (T) readDocument(reader, DECODERS.get(type));
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> readList(JsonReader reader, Class<T> type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+
+        return (List<T>) readDocument(reader, collectionDecoder(ArrayList::new, DECODERS.get(type)));
+    }
+
+    private static Object readDocument(JsonReader reader, Decoder decoder) {
+        try {
+            Object value = reader.peek() == -1 || reader.readNull() ? null : decoder.read(reader);
+            reader.endDocument();
+            return value;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads one JSON value that is known not to be {@code null}.
+     */
+    @FunctionalInterface
+    interface Decoder {
+        Object read(JsonReader reader) throws IOException;
+    }
+
+    private static Decoder createDecoder(Class<?> type) {
+        Decoder scalar = SCALARS.get(type);
+        if (scalar != null) return scalar;
+
+        if (type.isEnum()) return enumDecoder(type);
+        if (type.isArray()) return arrayDecoder(type.getComponentType(), decoderFor(type.getComponentType()));
+        if (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) return decoderFor((Type) type);
+        if (type.isRecord()) return new RecordBinding(type);
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isPrimitive()) {
+            throw new JsonMappingException("Cannot map JSON to " + type.getName());
+        }
+
+        return new BeanBinding(type);
+    }
+
+    /**
+     * Returns the decoder of a declared type. Nested objects are looked up on use, so classes that refer to
+     * themselves can be bound.
+     */
+    private static Decoder decoderFor(Type type) {
+        if (type instanceof Class<?> clazz) {
+            if (SCALARS.containsKey(clazz) || clazz.isEnum() || clazz.isArray()) return DECODERS.get(clazz);
+            if (Collection.class.isAssignableFrom(clazz)) return collectionDecoder(collectionFactory(clazz), DECODERS.get(Object.class));
+            if (Map.class.isAssignableFrom(clazz)) return mapDecoder(mapFactory(clazz), String::valueOf, DECODERS.get(Object.class));
+
+            return reader -> DECODERS.get(clazz).read(reader);
+        }
+
+        if (type instanceof ParameterizedType parameterized && parameterized.getRawType() instanceof Class<?> raw) {
+            Type[] arguments = parameterized.getActualTypeArguments();
+
+            if (Collection.class.isAssignableFrom(raw)) {
+                return collectionDecoder(collectionFactory(raw), decoderFor(arguments[0]));
+            }
+            if (Map.class.isAssignableFrom(raw)) {
+                return mapDecoder(mapFactory(raw), keyParser(arguments[0]), decoderFor(arguments[1]));
+            }
+
+            return decoderFor(raw);
+        }
+
+        if (type instanceof GenericArrayType array) {
+            Class<?> component = rawType(array.getGenericComponentType());
+            return arrayDecoder(component, decoderFor(array.getGenericComponentType()));
+        }
+        if (type instanceof WildcardType wildcard) {
+            return decoderFor(wildcard.getUpperBounds()[0]);
+        }
+
+        return DECODERS.get(Object.class);
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class<?> clazz) return clazz;
+        if (type instanceof ParameterizedType parameterized) return rawType(parameterized.getRawType());
+        if (type instanceof GenericArrayType array) return rawType(array.getGenericComponentType()).arrayType();
+
+        return Object.class;
+    }
+
+    private static Decoder collectionDecoder(Supplier<Collection<Object>> factory, Decoder element) {
+        return reader -> {
+            Collection<Object> collection = factory.get();
+
+            reader.beginArray();
+            for (boolean first = true; reader.hasNext(']', first); first = false) {
+                collection.add(reader.readNull() ? null : element.read(reader));
+            }
+
+            return collection;
+        };
+    }
+
+    private static Decoder mapDecoder(Supplier<Map<Object, Object>> factory, Function<String, Object> key, Decoder value) {
+        return reader -> {
+            Map<Object, Object> map = factory.get();
+
+            reader.beginObject();
+            for (boolean first = true; reader.hasNext('}', first); first = false) {
+                String name = reader.readName();
+                Object parsed;
+                try {
+                    parsed = key.apply(name);
+                } catch (IllegalArgumentException e) {
+                    throw reader.error("Invalid property name '" + name + "'");
+                }
+
+                map.put(parsed, reader.readNull() ? null : value.read(reader));
+            }
+
+            return map;
+        };
+    }
+
+    private static Decoder arrayDecoder(Class<?> component, Decoder element) {
+        Decoder list = collectionDecoder(ArrayList::new, element);
+
+        return reader -> {
+            List<?> values = (List<?>) list.read(reader);
+            Object array = Array.newInstance(component, values.size());
+
+            for (int i = 0; i < values.size(); i++) {
+                Object value = values.get(i);
+                if (value != null || !component.isPrimitive()) Array.set(array, i, value);
+            }
+
+            return array;
+        };
+    }
+
+    private static Decoder enumDecoder(Class<?> type) {
+        Map<String, Object> constants = new HashMap<>();
+        for (Object constant : type.getEnumConstants()) {
+            constants.put(((Enum<?>) constant).name(), constant);
+        }
+
+        return reader -> {
+            String name = reader.readString();
+            Object constant = constants.get(name);
+            if (constant == null) throw reader.error("Unknown constant '" + name + "' of " + type.getSimpleName());
+
+            return constant;
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Function<String, Object> keyParser(Type type) {
+        Class<?> key = rawType(type);
+
+        if (key.isEnum()) return name -> Enum.valueOf((Class) key, name);
+        if (key == Integer.class) return Integer::valueOf;
+        if (key == Long.class) return Long::valueOf;
+        if (key == String.class || key == Object.class) return name -> name;
+
+        throw new JsonMappingException("Cannot map JSON property names to " + key.getName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Collection<Object>> collectionFactory(Class<?> type) {
+        if (type.isAssignableFrom(ArrayList.class)) return ArrayList::new;
+        if (type.isAssignableFrom(LinkedHashSet.class)) return LinkedHashSet::new;
+        if (type.isAssignableFrom(TreeSet.class) || type == SortedSet.class) return TreeSet::new;
+
+        Supplier<Object> constructor = constructor(type);
+        return () -> (Collection<Object>) constructor.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Map<Object, Object>> mapFactory(Class<?> type) {
+        if (type.isAssignableFrom(LinkedHashMap.class)) return LinkedHashMap::new;
+
+        Supplier<Object> constructor = constructor(type);
+        return () -> (Map<Object, Object>) constructor.get();
+    }
+
+    private static Supplier<Object> constructor(Class<?> type) {
+        MethodHandle handle;
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            handle = MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new JsonMappingException("Cannot map JSON to " + type.getName() + ": it has no accessible no-argument constructor", e);
+        }
+
+        return () -> {
+            try {
+                return (Object) handle.invokeExact();
+            } catch (Throwable e) {
+                throw new JsonMappingException("Could not create " + type.getName(), e);
+            }
+        };
+    }
+
+    private static Object readAny(JsonReader reader) throws IOException {
+        return switch (reader.peek()) {
+            case '{' -> {
+                Map<String, Object> map = new LinkedHashMap<>();
+                reader.beginObject();
+                for (boolean first = true; reader.hasNext('}', first); first = false) {
+                    String name = reader.readName();
+                    map.put(name, reader.readNull() ? null : readAny(reader));
+                }
+                yield map;
+            }
+            case '[' -> {
+                List<Object> list = new ArrayList<>();
+                reader.beginArray();
+                for (boolean first = true; reader.hasNext(']', first); first = false) {
+                    list.add(reader.readNull() ? null : readAny(reader));
+                }
+                yield list;
+            }
+            case '"' -> reader.readString();
+            case 't', 'f' -> reader.readBoolean();
+            default -> reader.readNumber();
+        };
+    }
+
+    private static long ranged(JsonReader reader, long min, long max) throws IOException {
+        long value = reader.readLong();
+        if (value < min || value > max) throw reader.error("Number " + value + " is out of range");
+
+        return value;
+    }
+
+    private static BigInteger readBigInteger(JsonReader reader) throws IOException {
+        BigDecimal value = reader.readBigDecimal();
+        try {
+            return value.toBigIntegerExact();
+        } catch (ArithmeticException e) {
+            throw reader.error("Number " + value + " is not an integer");
+        }
+    }
+
+    private static char readChar(JsonReader reader) throws IOException {
+        String value = reader.readString();
+        if (value.length() != 1) throw reader.error("Expected a single character");
+
+        return value.charAt(0);
+    }
+
+    private static Decoder parsed(Function<String, Object> parser) {
+        return reader -> {
+            String value = reader.readString();
+            try {
+                return parser.apply(value);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw reader.error("Invalid value '" + value + "'");
+            }
+        };
+    }
+
+    /**
+     * Binds JSON objects to a record through its canonical constructor.
+     */
+    private static final class RecordBinding implements Decoder {
+        private final Class<?> type;
+
+        private final NameTable names;
+
+        private final Decoder[] decoders;
+
+        private final Object[] defaults;
+
+        private final MethodHandle constructor;
+
+        private RecordBinding(Class<?> type) {
+            RecordComponent[] components = type.getRecordComponents();
+            Class<?>[] parameterTypes = new Class<?>[components.length];
+            String[] componentNames = new String[components.length];
+
+            this.type = type;
+            this.decoders = new Decoder[components.length];
+            this.defaults = new Object[components.length];
+
+            for (int i = 0; i < components.length; i++) {
+                parameterTypes[i] = components[i].getType();
+                componentNames[i] = components[i].getName();
+                decoders[i] = decoderFor(components[i].getGenericType());
+                defaults[i] = defaultValue(parameterTypes[i]);
+            }
+
+            try {
+                Constructor<?> canonical = type.getDeclaredConstructor(parameterTypes);
+                canonical.setAccessible(true);
+                this.constructor = MethodHandles.lookup().unreflectConstructor(canonical)
+                        .asType(MethodType.methodType(Object.class, parameterTypes))
+                        .asSpreader(Object[].class, components.length);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new JsonMappingException("Cannot map JSON to " + type.getName() + ": its canonical constructor is not accessible", e);
+            }
+
+            this.names = new NameTable(componentNames);
+        }
+
+        @Override
+        public Object read(JsonReader reader) throws IOException {
+            Object[] arguments = defaults.clone();
+
+            reader.beginObject();
+            for (boolean first = true; reader.hasNext('}', first); first = false) {
+                int index = reader.readName(names);
+
+                if (index < 0) {
+                    reader.skipValue();
+                } else if (!reader.readNull()) {
+                    arguments[index] = decoders[index].read(reader);
+                }
+            }
+
+            try {
+                return (Object) constructor.invokeExact(arguments);
+            } catch (Throwable e) {
+                throw new JsonMappingException("Could not create " + type.getName(), e);
+            }
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            return type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+        }
+    }
+
+    /**
+     * Binds JSON objects to a class with a no-argument constructor by setting its fields.
+     */
+    private static final class BeanBinding implements Decoder {
+        private final Class<?> type;
+
+        private final Supplier<Object> constructor;
+
+        private final NameTable names;
+
+        private final String[] fieldNames;
+
+        private final Decoder[] decoders;
+
+        private final MethodHandle[] setters;
+
+        private BeanBinding(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                        fields.add(field);
+                    }
+                }
+            }
+
+            this.type = type;
+            this.constructor = constructor(type);
+            this.decoders = new Decoder[fields.size()];
+            this.setters = new MethodHandle[fields.size()];
+
+            this.fieldNames = new String[fields.size()];
+            MethodType setterType = MethodType.methodType(void.class, Object.class, Object.class);
+
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                fieldNames[i] = field.getName();
+                decoders[i] = decoderFor(field.getGenericType());
+
+                try {
+                    field.setAccessible(true);
+                    setters[i] = MethodHandles.lookup().unreflectSetter(field).asType(setterType);
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    throw new JsonMappingException("Cannot map JSON to " + type.getName() + ": field " + field.getName() + " is not accessible", e);
+                }
+            }
+
+            this.names = new NameTable(fieldNames);
+        }
+
+        @Override
+        public Object read(JsonReader reader) throws IOException {
+            Object instance = constructor.get();
+
+            reader.beginObject();
+            for (boolean first = true; reader.hasNext('}', first); first = false) {
+                int index = reader.readName(names);
+
+                if (index < 0) {
+                    reader.skipValue();
+                } else if (!reader.readNull()) {
+                    Object value = decoders[index].read(reader);
+                    try {
+                        setters[index].invokeExact(instance, value);
+                    } catch (Throwable e) {
+                        throw new JsonMappingException("Could not set " + type.getName() + "." + fieldNames[index], e);
+                    }
+                }
+            }
+
+            return instance;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.swnck.json;
+
+/**
+ * Thrown when JSON is malformed or cannot be mapped to the requested type, e.g. because a value has the wrong type
+ * or the target class has no usable constructor.
+ */
+public class JsonMappingException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public JsonMappingException(String message) {
+        super(message);
+    }
+
+    public JsonMappingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
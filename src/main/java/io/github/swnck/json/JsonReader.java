@@ -0,0 +1,506 @@
+package io.github.swnck.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A pull parser that reads JSON directly from UTF-8 bytes, either from an array or from a stream through a
+ * refillable buffer. Structural tokens, numbers, and literals are parsed on the raw bytes; only string values are
+ * decoded, and strings without escapes are created straight from the buffer.
+ * <p>
+ * Objects and arrays are iterated with {@link #hasNext(int, boolean)}:
+ * <pre>{@code
+ * reader.beginObject();
+ * for (boolean first = true; reader.hasNext('}', first); first = false) {
+ *     int index = reader.readName(names);
+ *     ...
+ * }
+ * }</pre>
+ */
+final class JsonReader {
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The deepest nesting of objects and arrays that is read; deeper input is rejected instead of exhausting the
+     * stack of the recursive readers. The same limit applies when writing.
+     */
+    static final int MAX_DEPTH = 1000;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final InputStream in;
+
+    private byte[] buffer;
+
+    private int position;
+
+    private int limit;
+
+    private long discarded;
+
+    private byte[] scratch = new byte[0];
+
+    private int scratchLength;
+
+    private int depth;
+
+    JsonReader(byte[] json) {
+        this.in = null;
+        this.buffer = json;
+        this.limit = json.length;
+    }
+
+    JsonReader(InputStream in) {
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Skips whitespace and returns the next significant byte without consuming it, or {@code -1} at the end of input.
+     */
+    int peek() throws IOException {
+        while (true) {
+            if (position == limit && !require(1)) return -1;
+
+            byte b = buffer[position];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return b;
+            position++;
+        }
+    }
+
+    void beginObject() throws IOException {
+        expect('{', "an object");
+        enter();
+    }
+
+    void beginArray() throws IOException {
+        expect('[', "an array");
+        enter();
+    }
+
+    /**
+     * Returns whether the current object or array has another member, consuming the separating comma or the
+     * closing bracket.
+     *
+     * @param close the closing bracket, {@code '}'} or {@code ']'}.
+     * @param first whether no member has been read yet.
+     */
+    boolean hasNext(int close, boolean first) throws IOException {
+        int next = peek();
+        if (next == close) {
+            position++;
+            depth--;
+            return false;
+        }
+
+        if (!first) {
+            if (next != ',') throw error("Expected ',' or '" + (char) close + "'");
+            position++;
+            next = peek();
+        }
+        if (next == -1) throw error("Unexpected end of input");
+
+        return true;
+    }
+
+    /**
+     * Reads a property name and the following colon, and returns its index in the given table, or {@code -1} if the
+     * name is unknown.
+     */
+    int readName(NameTable names) throws IOException {
+        if (peek() != '"') throw error("Expected a property name");
+        position++;
+
+        int index;
+        int end = scanString();
+        if (end >= 0) {
+            index = names.indexOf(buffer, position, end);
+            position = end + 1;
+        } else {
+            index = names.indexOf(readEscaped());
+        }
+
+        expect(':', "':'");
+        return index;
+    }
+
+    /**
+     * Reads a property name and the following colon.
+     */
+    String readName() throws IOException {
+        String name = readString();
+        expect(':', "':'");
+        return name;
+    }
+
+    String readString() throws IOException {
+        if (peek() != '"') throw error("Expected a string");
+        position++;
+
+        int end = scanString();
+        if (end < 0) return readEscaped();
+
+        boolean ascii = true;
+        for (int i = position; i < end; i++) {
+            if (buffer[i] < 0) {
+                ascii = false;
+                break;
+            }
+        }
+
+        String value = new String(buffer, position, end - position, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+        position = end + 1;
+        return value;
+    }
+
+    boolean readBoolean() throws IOException {
+        int next = peek();
+        if (next == 't' && literal("true")) return true;
+        if (next == 'f' && literal("false")) return false;
+
+        throw error("Expected a boolean");
+    }
+
+    /**
+     * Consumes a {@code null} literal if it is next.
+     *
+     * @return whether a null was read.
+     */
+    boolean readNull() throws IOException {
+        return peek() == 'n' && literal("null");
+    }
+
+    long readLong() throws IOException {
+        int end = scanNumber();
+        long value = 0;
+        boolean negative = buffer[position] == '-';
+
+        for (int i = negative ? position + 1 : position; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9 || value < -(Long.MAX_VALUE / 10)) {
+                return readIntegralDecimal(end);
+            }
+
+            value = value * 10 - digit;
+            if (value > 0) return readIntegralDecimal(end);
+        }
+
+        if (!negative && value == Long.MIN_VALUE) return readIntegralDecimal(end);
+
+        position = end;
+        return negative ? value : -value;
+    }
+
+    double readDouble() throws IOException {
+        int end = scanNumber();
+        int i = position;
+        boolean negative = buffer[i] == '-';
+        if (negative) i++;
+
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+
+        for (; i < end; i++) {
+            byte b = buffer[i];
+            if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else if (b >= '0' && b <= '9' && digits < 15) {
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa != 0) digits++;
+                if (fraction >= 0) fraction++;
+            } else {
+                break;
+            }
+        }
+
+        if (i == end && fraction <= 22) {
+            double value = fraction <= 0 ? mantissa : mantissa / POWERS_OF_TEN[fraction];
+            position = end;
+            return negative ? -value : value;
+        }
+
+        String text = numberText(end);
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + text + "'");
+        }
+    }
+
+    BigDecimal readBigDecimal() throws IOException {
+        String text = numberText(scanNumber());
+        try {
+            return new BigDecimal(text);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + text + "'");
+        }
+    }
+
+    /**
+     * Reads a number as the narrowest of {@link Long}, {@link BigInteger}, or {@link Double}.
+     */
+    Number readNumber() throws IOException {
+        int end = scanNumber();
+        for (int i = position; i < end; i++) {
+            byte b = buffer[i];
+            if (b == '.' || b == 'e' || b == 'E') return readDouble();
+        }
+
+        if (end - position < 19) return readLong();
+
+        String text = numberText(end);
+        try {
+            BigInteger value = new BigInteger(text);
+            return value.bitLength() < 64 ? (Number) value.longValue() : value;
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + text + "'");
+        }
+    }
+
+    /**
+     * Skips the next value, including nested objects and arrays.
+     */
+    void skipValue() throws IOException {
+        switch (peek()) {
+            case '{' -> {
+                beginObject();
+                for (boolean first = true; hasNext('}', first); first = false) {
+                    readName();
+                    skipValue();
+                }
+            }
+            case '[' -> {
+                beginArray();
+                for (boolean first = true; hasNext(']', first); first = false) {
+                    skipValue();
+                }
+            }
+            case '"' -> {
+                position++;
+                int end = scanString();
+                if (end < 0) readEscaped();
+                else position = end + 1;
+            }
+            case 't', 'f' -> readBoolean();
+            case 'n' -> {
+                if (!readNull()) throw error("Expected null");
+            }
+            default -> position = scanNumber();
+        }
+    }
+
+    /**
+     * Verifies that only whitespace follows the parsed value.
+     */
+    void endDocument() throws IOException {
+        if (peek() != -1) throw error("Unexpected content after the JSON value");
+    }
+
+    JsonMappingException error(String message) {
+        return new JsonMappingException(message + " at offset " + (discarded + position));
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH) throw error("Maximum nesting depth of " + MAX_DEPTH + " exceeded");
+    }
+
+    private void expect(int token, String description) throws IOException {
+        if (peek() != token) throw error("Expected " + description);
+        position++;
+    }
+
+    private boolean literal(String literal) throws IOException {
+        int length = literal.length();
+        if (!require(length)) throw error("Unexpected end of input");
+
+        for (int i = 0; i < length; i++) {
+            if (buffer[position + i] != literal.charAt(i)) throw error("Unexpected literal");
+        }
+
+        position += length;
+        return true;
+    }
+
+    /**
+     * Finds the closing quote of the string starting at the current position, keeping the whole string in the
+     * buffer. Returns its index, or {@code -1} if the string contains escapes.
+     */
+    private int scanString() throws IOException {
+        for (int i = position; ; i++) {
+            if (i == limit) {
+                int offset = i - position;
+                if (!require(offset + 1)) throw error("Unterminated string");
+                i = position + offset;
+            }
+
+            byte b = buffer[i];
+            if (b == '"') return i;
+            if (b == '\\') return -1;
+            if (b >= 0 && b < 0x20) throw error("Unescaped control character in string");
+        }
+    }
+
+    /**
+     * Decodes the string at the current position, which contains escapes, up to and including its closing quote.
+     */
+    private String readEscaped() throws IOException {
+        scratchLength = 0;
+
+        while (true) {
+            int b = next();
+            if (b == '"') return new String(scratch, 0, scratchLength, StandardCharsets.UTF_8);
+
+            if (b == '\\') {
+                int escaped = next();
+                switch (escaped) {
+                    case '"', '\\', '/' -> append(escaped);
+                    case 'b' -> append('\b');
+                    case 'f' -> append('\f');
+                    case 'n' -> append('\n');
+                    case 'r' -> append('\r');
+                    case 't' -> append('\t');
+                    case 'u' -> appendCodePoint(readEscapedChar());
+                    default -> throw error("Invalid escape sequence");
+                }
+            } else if (b < 0x20) {
+                throw error("Unescaped control character in string");
+            } else {
+                append(b);
+            }
+        }
+    }
+
+    private int readEscapedChar() throws IOException {
+        char high = readHex();
+        if (!Character.isHighSurrogate(high) || !require(2) || buffer[position] != '\\' || buffer[position + 1] != 'u') {
+            return high;
+        }
+
+        position += 2;
+        char low = readHex();
+        if (Character.isLowSurrogate(low)) return Character.toCodePoint(high, low);
+
+        appendCodePoint(high);
+        return low;
+    }
+
+    private char readHex() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(next(), 16);
+            if (digit < 0) throw error("Invalid unicode escape");
+            value = value << 4 | digit;
+        }
+
+        return (char) value;
+    }
+
+    private void appendCodePoint(int codePoint) {
+        if (codePoint < 0x80) {
+            append(codePoint);
+        } else if (codePoint < 0x800) {
+            append(0xC0 | codePoint >> 6);
+            append(0x80 | codePoint & 0x3F);
+        } else if (codePoint < 0x10000) {
+            append(0xE0 | codePoint >> 12);
+            append(0x80 | codePoint >> 6 & 0x3F);
+            append(0x80 | codePoint & 0x3F);
+        } else {
+            append(0xF0 | codePoint >> 18);
+            append(0x80 | codePoint >> 12 & 0x3F);
+            append(0x80 | codePoint >> 6 & 0x3F);
+            append(0x80 | codePoint & 0x3F);
+        }
+    }
+
+    private void append(int b) {
+        if (scratchLength == scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(64, scratch.length * 2));
+        }
+
+        scratch[scratchLength++] = (byte) b;
+    }
+
+    /**
+     * Finds the end of the number starting at the next significant byte, keeping the whole number in the buffer.
+     */
+    private int scanNumber() throws IOException {
+        int first = peek();
+        if (first != '-' && (first < '0' || first > '9')) throw error("Expected a number");
+
+        for (int i = position + 1; ; i++) {
+            if (i == limit) {
+                int offset = i - position;
+                if (!require(offset + 1)) {
+                    if (first == '-' && offset == 1) throw error("Expected a number");
+                    return limit;
+                }
+                i = position + offset;
+            }
+
+            byte b = buffer[i];
+            if ((b < '0' || b > '9') && b != '.' && b != 'e' && b != 'E' && b != '+' && b != '-') {
+                if (first == '-' && i == position + 1) throw error("Expected a number");
+                return i;
+            }
+        }
+    }
+
+    private String numberText(int end) {
+        String text = new String(buffer, position, end - position, StandardCharsets.ISO_8859_1);
+        position = end;
+        return text;
+    }
+
+    private long readIntegralDecimal(int end) {
+        String text = numberText(end);
+        try {
+            return new BigDecimal(text).longValueExact();
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + text + "'");
+        } catch (ArithmeticException e) {
+            throw error("Number '" + text + "' is not an integer in the range of a long");
+        }
+    }
+
+    private int next() throws IOException {
+        if (position == limit && !require(1)) throw error("Unexpected end of input");
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * Makes at least the given number of bytes available from the current position, moving the unread bytes to the
+     * start of the buffer and growing it if needed.
+     *
+     * @return {@code false} if the input ends first.
+     */
+    private boolean require(int count) throws IOException {
+        if (limit - position >= count) return true;
+        if (in == null) return false;
+
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            discarded += position;
+            limit -= position;
+            position = 0;
+        }
+
+        while (limit < count) {
+            if (limit == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) return false;
+            limit += read;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.swnck.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An immutable open-addressing table that maps the UTF-8 bytes of property names to their index, so names can be
+ * looked up directly in the read buffer of a {@link JsonReader} without creating a string per property.
+ */
+final class NameTable {
+    private final byte[][] keys;
+
+    private final int[] indexes;
+
+    private final int mask;
+
+    NameTable(String[] names) {
+        int capacity = Integer.highestOneBit(Math.max(2, names.length * 2 - 1)) << 1;
+
+        keys = new byte[capacity][];
+        indexes = new int[capacity];
+        mask = capacity - 1;
+
+        for (int i = 0; i < names.length; i++) {
+            byte[] key = names[i].getBytes(StandardCharsets.UTF_8);
+            int slot = hash(key, 0, key.length) & mask;
+
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            indexes[slot] = i;
+        }
+    }
+
+    /**
+     * Returns the index of the name stored in the given range of bytes, or {@code -1} if it is unknown.
+     */
+    int indexOf(byte[] bytes, int from, int to) {
+        int slot = hash(bytes, from, to) & mask;
+
+        for (byte[] key; (key = keys[slot]) != null; slot = (slot + 1) & mask) {
+            if (Arrays.equals(key, 0, key.length, bytes, from, to)) return indexes[slot];
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the index of the given name, or {@code -1} if it is unknown.
+     */
+    int indexOf(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return indexOf(bytes, 0, bytes.length);
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int hash = 0x811C9DC5;
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ bytes[i]) * 0x01000193;
+        }
+
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.swnck.metrics;
+
+import io.github.swnck.util.StatusClass;
+
+/**
+ * The metrics of the exchanges with one host, method, and status class. Durations are in nanoseconds.
+ *
+ * @param host the host and, if not the default, the port.
+ * @param method the HTTP method.
+ * @param statusClass the class of the response status.
+ * @param throughput the average number of exchanges per second since the metrics were created or last reset.
+ * @param queueWait the time requests waited before they were handed to the HTTP client.
+ * @param timeToHeaders the time until the response headers arrived.
+ * @param timeToLastByte the time until the response body was received.
+ * @param bytesIn the number of body bytes received.
+ * @param bytesOut the number of body bytes sent.
+ */
+public record EndpointSnapshot(String host, String method, StatusClass statusClass, double throughput,
+                               HistogramSnapshot queueWait, HistogramSnapshot timeToHeaders,
+                               HistogramSnapshot timeToLastByte, long bytesIn, long bytesOut) {
+
+    /**
+     * Returns the number of recorded exchanges.
+     *
+     * @return the number of exchanges.
+     */
+    public long count() {
+        return timeToLastByte.getCount();
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.swnck.metrics;
+
+import io.github.swnck.util.StatusClass;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link MetricsRecorder} that aggregates the measurements of a client into {@link LogLinearHistogram}s per host,
+ * method, and status class. Recording is lock-free; {@link #snapshot()} returns the percentiles and throughput of
+ * every endpoint, and {@link MetricsSnapshot#toText()} renders them for scraping.
+ * <pre>{@code
+ * HistogramMetrics metrics = new HistogramMetrics();
+ * JxClient client = JxClient.builder().metrics(metrics).build();
+ *
+ * // ...
+ * String exposition = metrics.snapshot().toText();
+ * }</pre>
+ */
+public final class HistogramMetrics implements MetricsRecorder {
+    private final Map<Key, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * The {@link System#nanoTime()} from which throughput is measured: the creation of this recorder or its last
+     * {@link #reset()}.
+     */
+    private volatile long startNanos = System.nanoTime();
+
+    @Override
+    public void record(RequestMetrics metrics) {
+        if (metrics == null) return;
+
+        Key key = new Key(metrics.host(), metrics.method(), metrics.statusClass());
+        Endpoint endpoint = endpoints.get(key);
+        if (endpoint == null) {
+            endpoint = endpoints.computeIfAbsent(key, ignored -> new Endpoint());
+        }
+
+        endpoint.queueWait.record(metrics.queueWaitNanos());
+        if (metrics.timeToHeadersNanos() >= 0) endpoint.timeToHeaders.record(metrics.timeToHeadersNanos());
+        endpoint.timeToLastByte.record(metrics.timeToLastByteNanos());
+        endpoint.bytesIn.add(metrics.bytesIn());
+        endpoint.bytesOut.add(metrics.bytesOut());
+    }
+
+    /**
+     * Returns the metrics of all endpoints recorded so far, sorted by host, method, and status class.
+     *
+     * @return the snapshot.
+     */
+    public MetricsSnapshot snapshot() {
+        long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+        List<EndpointSnapshot> snapshots = new ArrayList<>();
+
+        endpoints.forEach((key, endpoint) -> {
+            HistogramSnapshot timeToLastByte = endpoint.timeToLastByte.snapshot();
+            snapshots.add(new EndpointSnapshot(key.host, key.method, key.statusClass,
+                    timeToLastByte.getCount() * 1e9 / elapsedNanos,
+                    endpoint.queueWait.snapshot(), endpoint.timeToHeaders.snapshot(), timeToLastByte,
+                    endpoint.bytesIn.sum(), endpoint.bytesOut.sum()));
+        });
+
+        snapshots.sort(Comparator.comparing(EndpointSnapshot::host)
+                .thenComparing(EndpointSnapshot::method)
+                .thenComparing(EndpointSnapshot::statusClass));
+        return new MetricsSnapshot(elapsedNanos, List.copyOf(snapshots));
+    }
+
+    /**
+     * Forgets all recorded measurements and restarts the period over which throughput is measured.
+     */
+    public void reset() {
+        startNanos = System.nanoTime();
+        endpoints.clear();
+    }
+
+    private record Key(String host, String method, StatusClass statusClass) {
+    }
+
+    private static final class Endpoint {
+        private final LogLinearHistogram queueWait = new LogLinearHistogram();
+
+        private final LogLinearHistogram timeToHeaders = new LogLinearHistogram();
+
+        private final LogLinearHistogram timeToLastByte = new LogLinearHistogram();
+
+        private final LongAdder bytesIn = new LongAdder();
+
+        private final LongAdder bytesOut = new LongAdder();
+    }
+}
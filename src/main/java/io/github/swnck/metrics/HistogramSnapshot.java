@@ -0,0 +1,82 @@
+package io.github.swnck.metrics;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * An immutable view of the values recorded by a {@link LogLinearHistogram} up to a point in time.
+ * Percentiles are reported as the highest value of the bucket they fall into, capped at the largest recorded
+ * value, so they are never below the true percentile and at most about 3% above it.
+ */
+@Getter
+public final class HistogramSnapshot {
+    private final long count;
+
+    private final long sum;
+
+    private final long max;
+
+    @Getter(AccessLevel.NONE)
+    private final long[] counts;
+
+    HistogramSnapshot(long[] counts, long sum, long max) {
+        long count = 0;
+        for (long bucketCount : counts) {
+            count += bucketCount;
+        }
+
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * Returns the value below which the given share of the recorded values fall.
+     *
+     * @param quantile the quantile, between 0 and 1.
+     * @return the value at the quantile, or 0 if no values were recorded.
+     * @throws IllegalArgumentException if the quantile is out of range.
+     */
+    public long valueAt(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        }
+        if (count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) return Math.min(max, LogLinearHistogram.highestValueOf(bucket));
+        }
+
+        return max;
+    }
+
+    /**
+     * Returns the average of the recorded values.
+     *
+     * @return the mean, or 0 if no values were recorded.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    public long getP50() {
+        return valueAt(0.5);
+    }
+
+    public long getP90() {
+        return valueAt(0.9);
+    }
+
+    public long getP99() {
+        return valueAt(0.99);
+    }
+
+    public long getP999() {
+        return valueAt(0.999);
+    }
+}
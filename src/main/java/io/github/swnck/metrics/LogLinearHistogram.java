@@ -0,0 +1,117 @@
+package io.github.swnck.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free histogram of non-negative {@code long} values, such as latencies in nanoseconds or sizes in bytes.
+ * <p>
+ * Buckets are log-linear: every power of two is split into 32 linear sub-buckets, so recorded values keep a
+ * relative precision of about 3% over the whole range of up to {@code 2^40} (about 18 minutes in nanoseconds).
+ * Larger values are counted in the last bucket. Recording computes the bucket with a few bit operations and
+ * increments it with a single atomic add.
+ * <p>
+ * To keep concurrent writers from contending on the same cache lines, the counts are striped over several arrays
+ * selected by the recording thread. Stripes are allocated on first use, so a histogram that is only written by one
+ * thread costs a single array. {@link #snapshot()} merges the stripes without stopping writers.
+ */
+public final class LogLinearHistogram {
+    static final int SUB_BUCKET_BITS = 5;
+
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    static final int MAX_EXPONENT = 40;
+
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private static final int SUM = BUCKETS;
+
+    private static final int MAX = BUCKETS + 1;
+
+    private static final int STRIPES = Math.min(16, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1));
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value the value to record.
+     */
+    public void record(long value) {
+        long clamped = Math.max(0, value);
+        AtomicLongArray stripe = stripe();
+
+        stripe.getAndIncrement(bucketOf(clamped));
+        stripe.getAndAdd(SUM, clamped);
+
+        long max;
+        while (clamped > (max = stripe.get(MAX))) {
+            if (stripe.compareAndSet(MAX, max, clamped)) break;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the values recorded so far.
+     *
+     * @return the merged counts of all stripes.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long sum = 0;
+        long max = 0;
+
+        for (int i = 0; i < STRIPES; i++) {
+            AtomicLongArray stripe = stripes.get(i);
+            if (stripe == null) continue;
+
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                counts[bucket] += stripe.get(bucket);
+            }
+            sum += stripe.get(SUM);
+            max = Math.max(max, stripe.get(MAX));
+        }
+
+        return new HistogramSnapshot(counts, sum, max);
+    }
+
+    /**
+     * Returns the index of the bucket holding the given non-negative value.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the highest value that falls into the given bucket.
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long top = SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1));
+        return ((top + 1) << shift) - 1;
+    }
+
+    private AtomicLongArray stripe() {
+        int index = (int) (mix(Thread.currentThread().threadId()) & (STRIPES - 1));
+        AtomicLongArray stripe = stripes.get(index);
+
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new AtomicLongArray(BUCKETS + 2));
+            stripe = stripes.get(index);
+        }
+
+        return stripe;
+    }
+
+    private static long mix(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 32);
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.swnck.metrics;
+
+/**
+ * The service provider interface through which a {@link io.github.swnck.JxClient} reports the measurements of its
+ * network exchanges. Implementations can aggregate them, like {@link HistogramMetrics}, or forward them to a metrics
+ * library of choice.
+ * <p>
+ * {@link #record(RequestMetrics)} is called on the threads that complete the exchanges, so implementations must be
+ * thread-safe and should return quickly.
+ */
+@FunctionalInterface
+public interface MetricsRecorder {
+
+    /**
+     * Records the measurements of one completed or failed exchange.
+     *
+     * @param metrics the measurements of the exchange.
+     */
+    void record(RequestMetrics metrics);
+}
@@ -0,0 +1,73 @@
+package io.github.swnck.metrics;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * The metrics of all endpoints of a client at a point in time, as returned by {@link HistogramMetrics#snapshot()}.
+ *
+ * @param elapsedNanos the time since the metrics were created or last reset.
+ * @param endpoints the metrics per host, method, and status class.
+ */
+public record MetricsSnapshot(long elapsedNanos, List<EndpointSnapshot> endpoints) {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * Renders this snapshot in the Prometheus text exposition format. Durations are exposed as summaries in
+     * seconds with the quantiles 0.5, 0.9, 0.99, and 0.999, and byte counts as counters.
+     *
+     * @return the exposition text.
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+
+        summary(text, "jxrequest_queue_wait_seconds", "Time requests waited before they were sent.", EndpointSnapshot::queueWait);
+        summary(text, "jxrequest_time_to_headers_seconds", "Time until the response headers arrived.", EndpointSnapshot::timeToHeaders);
+        summary(text, "jxrequest_time_to_last_byte_seconds", "Time until the response body was received.", EndpointSnapshot::timeToLastByte);
+        counter(text, "jxrequest_received_bytes_total", "Response body bytes received.", true);
+        counter(text, "jxrequest_sent_bytes_total", "Request body bytes sent.", false);
+
+        return text.toString();
+    }
+
+    private void summary(StringBuilder text, String name, String help, Function<EndpointSnapshot, HistogramSnapshot> metric) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" summary\n");
+
+        for (EndpointSnapshot endpoint : endpoints) {
+            HistogramSnapshot histogram = metric.apply(endpoint);
+            String labels = labels(endpoint);
+
+            for (double quantile : QUANTILES) {
+                text.append(name).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(histogram.valueAt(quantile))).append('\n');
+            }
+            text.append(name).append("_sum{").append(labels).append("} ").append(seconds(histogram.getSum())).append('\n');
+            text.append(name).append("_count{").append(labels).append("} ").append(histogram.getCount()).append('\n');
+        }
+    }
+
+    private void counter(StringBuilder text, String name, String help, boolean received) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+
+        for (EndpointSnapshot endpoint : endpoints) {
+            text.append(name).append('{').append(labels(endpoint)).append("} ")
+                    .append(received ? endpoint.bytesIn() : endpoint.bytesOut()).append('\n');
+        }
+    }
+
+    private static String labels(EndpointSnapshot endpoint) {
+        return "host=\"" + escape(endpoint.host()) + "\",method=\"" + escape(endpoint.method())
+                + "\",status=\"" + endpoint.statusClass().getLabel() + "\"";
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static String escape(String value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.swnck.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JDK Flight Recorder event of one request sent by a {@link io.github.swnck.JxClient}, from its submission
+ * until its response arrived, over all retries and hedged exchanges. The phase durations and byte counts are those
+ * of the exchange that completed last.
+ */
+@Name(RequestEvent.NAME)
+@Label("HTTP Request")
+@Category({"JxRequest", "HTTP"})
+@Description("An HTTP request sent by a JxClient, including its retries and hedged exchanges")
+@StackTrace(false)
+final class RequestEvent extends Event {
+    static final String NAME = "io.github.swnck.HttpRequest";
+
+    @Label("Method")
+    String method;
+
+    @Label("Host")
+    String host;
+
+    @Label("Path")
+    @Description("The request path with identifier segments replaced by {id}")
+    String path;
+
+    @Label("Status Code")
+    @Description("The status code of the response, or -1 if no response was received")
+    int statusCode;
+
+    @Label("Bytes Received")
+    @DataAmount
+    long bytesIn;
+
+    @Label("Bytes Sent")
+    @DataAmount
+    long bytesOut;
+
+    @Label("Retries")
+    @Description("The number of exchanges completed after the first, by retries or hedging")
+    int retries;
+
+    @Label("Queue Wait")
+    @Timespan
+    long queueWait;
+
+    @Label("Time to Headers")
+    @Timespan
+    long timeToHeaders;
+
+    @Label("Time to Last Byte")
+    @Timespan
+    long timeToLastByte;
+
+    @Label("Error")
+    String error;
+
+    @Label("Caller Thread")
+    @Description("The thread that submitted the request")
+    Thread callerThread;
+}
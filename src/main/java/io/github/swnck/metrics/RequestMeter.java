@@ -0,0 +1,183 @@
+package io.github.swnck.metrics;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures one exchange of an {@link HttpClient} and reports it to a {@link MetricsRecorder}.
+ * <p>
+ * The meter wraps the body handler to note when the response headers arrive and to count the body bytes as they
+ * are received, and wraps the request body publisher to count the bytes that are sent. The measurements are
+ * reported once, when the body has been received or the exchange has failed; cancelled exchanges are not reported.
+ * Because the meter is applied to what goes over the wire, it counts compressed bytes when compression is enabled.
+ */
+public final class RequestMeter {
+    private final MetricsRecorder recorder;
+
+    private final String host;
+
+    private final String method;
+
+    private final long submittedNanos;
+
+    private final LongAdder bytesIn = new LongAdder();
+
+    private final LongAdder bytesOut = new LongAdder();
+
+    private final AtomicBoolean reported = new AtomicBoolean();
+
+    private volatile long sentNanos;
+
+    private volatile long headersNanos = -1;
+
+    private volatile int statusCode = -1;
+
+    private RequestMeter(MetricsRecorder recorder, HttpRequest request, long submittedNanos) {
+        this.recorder = recorder;
+        this.host = hostOf(request.uri());
+        this.method = request.method();
+        this.submittedNanos = submittedNanos;
+    }
+
+    /**
+     * Sends a request with the given client and reports its measurements to the recorder.
+     *
+     * @param httpClient the client sending the request; must not be null.
+     * @param request the request to send; must not be null.
+     * @param bodyHandler the handler that consumes the response body; must not be null.
+     * @param submittedNanos the {@link System#nanoTime()} at which the request was submitted, used for the queue wait.
+     * @param recorder the recorder of the measurements; must not be null.
+     * @param <B> the type of the response body produced by the handler
+     * @return the future returned by {@link HttpClient#sendAsync(HttpRequest, HttpResponse.BodyHandler)}.
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public static <B> CompletableFuture<HttpResponse<B>> send(HttpClient httpClient, HttpRequest request,
+                                                              HttpResponse.BodyHandler<B> bodyHandler, long submittedNanos,
+                                                              MetricsRecorder recorder) {
+        if (httpClient == null || request == null || bodyHandler == null || recorder == null) {
+            throw new IllegalArgumentException("Client, request, body handler and recorder cannot be null");
+        }
+
+        RequestMeter meter = new RequestMeter(recorder, request, submittedNanos);
+        HttpRequest counted = meter.counting(request);
+
+        meter.sentNanos = System.nanoTime();
+        CompletableFuture<HttpResponse<B>> future = httpClient.sendAsync(counted, responseInfo -> {
+            meter.headersNanos = System.nanoTime();
+            meter.statusCode = responseInfo.statusCode();
+            return new CountingSubscriber<>(bodyHandler.apply(responseInfo), meter);
+        });
+
+        future.whenComplete((response, error) -> {
+            if (error != null) meter.report(error);
+        });
+
+        return future;
+    }
+
+    private HttpRequest counting(HttpRequest request) {
+        HttpRequest.BodyPublisher publisher = request.bodyPublisher().orElse(null);
+        if (publisher == null || publisher.contentLength() == 0) return request;
+
+        return HttpRequest.newBuilder(request, (name, value) -> true)
+                .method(request.method(), new CountingPublisher(publisher, bytesOut))
+                .build();
+    }
+
+    private void report(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof CancellationException || !reported.compareAndSet(false, true)) return;
+
+        long now = System.nanoTime();
+        long headers = headersNanos;
+
+        recorder.record(new RequestMetrics(host, method, statusCode, sentNanos - submittedNanos,
+                headers < 0 ? -1 : headers - sentNanos, now - sentNanos, bytesIn.sum(), bytesOut.sum(), cause));
+    }
+
+    private static String hostOf(URI uri) {
+        return uri.getPort() == -1 ? String.valueOf(uri.getHost()) : uri.getHost() + ":" + uri.getPort();
+    }
+
+    private record CountingSubscriber<T>(HttpResponse.BodySubscriber<T> delegate,
+                                         RequestMeter meter) implements HttpResponse.BodySubscriber<T> {
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            long bytes = 0;
+            for (ByteBuffer buffer : item) {
+                bytes += buffer.remaining();
+            }
+            meter.bytesIn.add(bytes);
+
+            delegate.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            meter.report(throwable);
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            meter.report(null);
+            delegate.onComplete();
+        }
+    }
+
+    private record CountingPublisher(HttpRequest.BodyPublisher delegate, LongAdder bytes) implements HttpRequest.BodyPublisher {
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            delegate.subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscriber.onSubscribe(subscription);
+                }
+
+                @Override
+                public void onNext(ByteBuffer item) {
+                    bytes.add(item.remaining());
+                    subscriber.onNext(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    subscriber.onError(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            });
+        }
+    }
+}
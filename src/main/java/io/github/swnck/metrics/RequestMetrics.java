@@ -0,0 +1,33 @@
+package io.github.swnck.metrics;
+
+import io.github.swnck.util.StatusClass;
+
+/**
+ * The measurements of one network exchange, handed to a {@link MetricsRecorder} once the response body has been
+ * received or the exchange has failed. All durations are measured with {@link System#nanoTime()}.
+ *
+ * @param host the host and, if not the default, the port of the request.
+ * @param method the HTTP method of the request.
+ * @param statusCode the status code of the response, or {@code -1} if no response was received.
+ * @param queueWaitNanos the time from the submission of the request until it was handed to the HTTP client,
+ *                       including rate-limit delays, retry backoff, and hedging delays.
+ * @param timeToHeadersNanos the time from handing the request to the HTTP client until the response headers arrived,
+ *                           or {@code -1} if they never arrived.
+ * @param timeToLastByteNanos the time from handing the request to the HTTP client until the body was received or the
+ *                            exchange failed.
+ * @param bytesIn the number of body bytes received, before content decoding.
+ * @param bytesOut the number of body bytes sent, after content encoding.
+ * @param error the error that ended the exchange, or {@code null} if it succeeded.
+ */
+public record RequestMetrics(String host, String method, int statusCode, long queueWaitNanos, long timeToHeadersNanos,
+                             long timeToLastByteNanos, long bytesIn, long bytesOut, Throwable error) {
+
+    /**
+     * Returns the class of the response status, or {@link StatusClass#FAILED} if no response was received.
+     *
+     * @return the status class.
+     */
+    public StatusClass statusClass() {
+        return StatusClass.of(statusCode);
+    }
+}
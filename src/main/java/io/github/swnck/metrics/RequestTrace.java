@@ -0,0 +1,149 @@
+package io.github.swnck.metrics;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Follows one request of a {@link io.github.swnck.JxClient} through all of its network exchanges. Every exchange is
+ * measured by a {@link RequestMeter} and forwarded to the client's {@link MetricsRecorder}, and when the request
+ * ends, a JDK Flight Recorder event named {@code io.github.swnck.HttpRequest} is committed with the method, host,
+ * path template, status code, byte counts, retry count, and phase durations.
+ * <p>
+ * The event carries the thread that submitted the request, so requests can be correlated with what that thread
+ * did, even though the response is handled on a thread of the client. If no recorder is configured and no
+ * recording enables the event, {@link #begin(HttpRequest, MetricsRecorder)} returns {@code null} and the request
+ * is sent without any measurement.
+ */
+public final class RequestTrace implements MetricsRecorder {
+    private static final Pattern IDENTIFIER = Pattern.compile(
+            "\\d+|\\p{XDigit}{8}-\\p{XDigit}{4}-\\p{XDigit}{4}-\\p{XDigit}{4}-\\p{XDigit}{12}|\\p{XDigit}{16,}");
+
+    private final HttpRequest request;
+
+    private final MetricsRecorder recorder;
+
+    private final RequestEvent event;
+
+    private final Thread callerThread = Thread.currentThread();
+
+    private final long submittedNanos = System.nanoTime();
+
+    private final AtomicInteger exchanges = new AtomicInteger();
+
+    private volatile RequestMetrics last;
+
+    private RequestTrace(HttpRequest request, MetricsRecorder recorder, RequestEvent event) {
+        this.request = request;
+        this.recorder = recorder;
+        this.event = event;
+    }
+
+    /**
+     * Starts tracing a request on the calling thread.
+     *
+     * @param request the request to trace; must not be null.
+     * @param recorder the recorder of the measurements of every exchange, or {@code null}.
+     * @return the trace, or {@code null} if there is no recorder and the event is not enabled.
+     * @throws IllegalArgumentException if the request is null.
+     */
+    public static RequestTrace begin(HttpRequest request, MetricsRecorder recorder) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request cannot be null");
+        }
+
+        RequestEvent event = new RequestEvent();
+        if (!event.isEnabled()) {
+            if (recorder == null) return null;
+            event = null;
+        } else {
+            event.begin();
+        }
+
+        return new RequestTrace(request, recorder, event);
+    }
+
+    /**
+     * Sends one exchange of the traced request and measures it.
+     *
+     * @param httpClient the client sending the exchange; must not be null.
+     * @param exchangeRequest the request as it goes over the wire; must not be null.
+     * @param bodyHandler the handler that consumes the response body; must not be null.
+     * @param <B> the type of the response body produced by the handler
+     * @return the future returned by {@link HttpClient#sendAsync(HttpRequest, HttpResponse.BodyHandler)}.
+     */
+    public <B> CompletableFuture<HttpResponse<B>> send(HttpClient httpClient, HttpRequest exchangeRequest,
+                                                      HttpResponse.BodyHandler<B> bodyHandler) {
+        return RequestMeter.send(httpClient, exchangeRequest, bodyHandler, submittedNanos, this);
+    }
+
+    @Override
+    public void record(RequestMetrics metrics) {
+        exchanges.incrementAndGet();
+        last = metrics;
+
+        if (recorder != null) {
+            recorder.record(metrics);
+        }
+    }
+
+    /**
+     * Ends the trace and commits the flight recorder event if a recording enables it.
+     *
+     * @param response the response of the request, or {@code null} if it failed.
+     * @param error the error that ended the request, or {@code null} if it succeeded.
+     */
+    public void end(HttpResponse<?> response, Throwable error) {
+        if (event == null) return;
+
+        event.end();
+        if (!event.shouldCommit()) return;
+
+        RequestMetrics metrics = last;
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        URI uri = request.uri();
+
+        event.method = request.method();
+        event.host = uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+        event.path = pathTemplate(uri.getRawPath());
+        event.statusCode = response != null ? response.statusCode() : -1;
+        event.retries = Math.max(0, exchanges.get() - 1);
+        event.error = cause == null ? null : cause.toString();
+        event.callerThread = callerThread;
+
+        if (metrics != null) {
+            event.bytesIn = metrics.bytesIn();
+            event.bytesOut = metrics.bytesOut();
+            event.queueWait = metrics.queueWaitNanos();
+            event.timeToHeaders = metrics.timeToHeadersNanos();
+            event.timeToLastByte = metrics.timeToLastByteNanos();
+        } else {
+            event.timeToHeaders = -1;
+            event.timeToLastByte = -1;
+        }
+
+        event.commit();
+    }
+
+    /**
+     * Returns the path with every segment that looks like an identifier - a number, a UUID, or a long hexadecimal
+     * string - replaced by {@code {id}}, so paths of the same endpoint can be grouped.
+     */
+    static String pathTemplate(String path) {
+        if (path == null || path.isEmpty()) return "/";
+
+        String[] segments = path.split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            if (!segments[i].isEmpty() && IDENTIFIER.matcher(segments[i]).matches()) {
+                segments[i] = "{id}";
+            }
+        }
+
+        return String.join("/", segments);
+    }
+}
@@ -1,8 +1,19 @@
 package io.github.swnck.request;
 
+import io.github.swnck.body.BodyPublishers;
+import io.github.swnck.body.MultipartBody;
+import io.github.swnck.util.ContentType;
 import io.github.swnck.util.Method;
 import lombok.Getter;
 
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
+
 /**
  * AbstractBody is an abstract base class to handle HTTP request bodies in concrete implementations of various HTTP methods.
  * It provides mechanisms for setting and validating the body content of HTTP requests.
@@ -19,6 +30,26 @@ public abstract class AbstractBody<T extends AbstractBody<T>> extends AbstractRe
      */
     private String body;
 
+    /**
+     * The publisher that streams the request body to the server. It is derived from the value passed to
+     * one of the {@code setBody} methods and carries the content length whenever it is known up front,
+     * which the HTTP client sends as the Content-Length header. Without a known length the body is sent
+     * using chunked transfer encoding.
+     */
+    private HttpRequest.BodyPublisher bodyPublisher;
+
+    /**
+     * Whether the request asks the server for confirmation with {@code Expect: 100-continue}
+     * before the body is transmitted.
+     */
+    private boolean expectContinue;
+
+    /**
+     * Whether the body publisher can be subscribed more than once. Only bodies set from an arbitrary
+     * {@link Flow.Publisher} are not, since the publisher may emit its content a single time.
+     */
+    private boolean replayable = true;
+
     /**
      * Constructs a new {@code AbstractBody} instance with the specified URL and HTTP method.
      * This constructor initializes the HTTP request body handler using the provided URL and method.
@@ -58,6 +89,232 @@ public abstract class AbstractBody<T extends AbstractBody<T>> extends AbstractRe
         }
 
         this.body = body;
+        this.bodyPublisher = HttpRequest.BodyPublishers.ofString(body);
+        this.replayable = true;
+        return (T) this;
+    }
+
+    /**
+     * Sets the body of the HTTP request to the given bytes. The array is not copied and
+     * must not be modified until the request has been sent.
+     *
+     * @param body the bytes to be sent as the body of the HTTP request; must not be null
+     * @return the current instance of the subclass implementation for method chaining
+     * @throws IllegalArgumentException if the provided body is null
+     */
+    public T setBody(byte[] body) {
+        if (body == null) {
+            throw new IllegalArgumentException("AbstractBody cannot be null");
+        }
+
+        return setBodyPublisher(HttpRequest.BodyPublishers.ofByteArray(body));
+    }
+
+    /**
+     * Sets the body of the HTTP request to the remaining bytes of the given buffer.
+     * The buffer is not copied and must not be modified until the request has been sent.
+     *
+     * @param body the buffer to be sent as the body of the HTTP request; must not be null
+     * @return the current instance of the subclass implementation for method chaining
+     * @throws IllegalArgumentException if the provided body is null
+     */
+    public T setBody(ByteBuffer body) {
+        if (body == null) {
+            throw new IllegalArgumentException("AbstractBody cannot be null");
+        }
+
+        return setBodyPublisher(BodyPublishers.ofByteBuffer(body));
+    }
+
+    /**
+     * Sets the body of the HTTP request to the content of the given file.
+     * The file is streamed from disk while the request is sent, so its size is not limited by the heap.
+     *
+     * @param body the file to be sent as the body of the HTTP request; must not be null and must exist
+     * @return the current instance of the subclass implementation for method chaining
+     * @throws IllegalArgumentException if the provided path is null or the file does not exist
+     */
+    public T setBody(Path body) {
+        if (body == null) {
+            throw new IllegalArgumentException("AbstractBody cannot be null");
+        }
+
+        try {
+            return setBodyPublisher(HttpRequest.BodyPublishers.ofFile(body));
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException("File not found: " + body, e);
+        }
+    }
+
+    /**
+     * Sets the body of the HTTP request to the content of the streams returned by the given supplier.
+     * The supplier is invoked each time the request is sent, and the stream is read and closed while sending.
+     * As the length is unknown, the body is sent using chunked transfer encoding.
+     *
+     * @param body the supplier of the stream to be sent as the body of the HTTP request; must not be null
+     * @return the current instance of the subclass implementation for method chaining
+     * @throws IllegalArgumentException if the provided supplier is null
+     */
+    public T setBody(Supplier<? extends InputStream> body) {
+        if (body == null) {
+            throw new IllegalArgumentException("AbstractBody cannot be null");
+        }
+
+        return setBodyPublisher(HttpRequest.BodyPublishers.ofInputStream(body));
+    }
+
+    /**
+     * Sets the body of the HTTP request to the content of the streams returned by the given supplier,
+     * announcing the given length as Content-Length. If the length is 0, the supplier is not invoked and an empty
+     * body is sent.
+     *
+     * @param body the supplier of the stream to be sent as the body of the HTTP request; must not be null
+     * @param contentLength the exact number of bytes the stream provides; must not be negative
+     * @return the current instance of the subclass implementation for method chaining
+     * @throws IllegalArgumentException if the provided supplier is null or the length is negative
+     */
+    public T setBody(Supplier<? extends InputStream> body, long contentLength) {
+        if (body == null) {
+            throw new IllegalArgumentException("AbstractBody cannot be null");
+        }
+        if (contentLength < 0) {
+            throw new IllegalArgumentException("Content length must be >= 0");
+        }
+        if (contentLength == 0) {
+            return setBodyPublisher(HttpRequest.BodyPublishers.noBody());
+        }
+
+        return setBodyPublisher(HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(body), contentLength));
+    }
+
+    /**
+     * Sets the body of the HTTP request to the buffers emitted by the given publisher.
+     * A {@link HttpRequest.BodyPublisher} is used as is, including its content length; any other publisher
+     * is sent using chunked transfer encoding.
+     * <p>
+     * Unlike a {@link HttpRequest.BodyPublisher}, such a publisher is assumed to emit its content only once. The
+     * request is therefore neither retried nor hedged, and cannot be compiled into a {@link RequestTemplate}. A publisher that can be subscribed
+     * repeatedly should be wrapped with {@link HttpRequest.BodyPublishers#fromPublisher(Flow.Publisher)} to
+     * keep these features.
+     *
+     * @param body the publisher of the body content; must not be null
+     * @return the current instance of the subclass implementation for method chaining
+     * @throws IllegalArgumentException if the provided publisher is null
+     */
+    @SuppressWarnings("unchecked")
+    public T setBody(Flow.Publisher<? extends ByteBuffer> body) {
+        if (body == null) {
+            throw new IllegalArgumentException("AbstractBody cannot be null");
+        }
+
+        if (body instanceof HttpRequest.BodyPublisher bodyPublisher) {
+            return setBodyPublisher(bodyPublisher);
+        }
+
+        setBodyPublisher(HttpRequest.BodyPublishers.fromPublisher(body));
+        this.replayable = false;
+        return (T) this;
+    }
+
+    /**
+     * Sets the body of the HTTP request to the buffers emitted by the given publisher,
+     * announcing the given length as Content-Length. Like {@link #setBody(Flow.Publisher)}, the publisher is
+     * assumed to emit its content only once.
+     *
+     * @param body the publisher of the body content; must not be null
+     * @param contentLength the exact number of bytes the publisher emits; must be greater than 0
+     * @return the current instance of the subclass implementation for method chaining
+     * @throws IllegalArgumentException if the provided publisher is null or the length is not positive
+     */
+    @SuppressWarnings("unchecked")
+    public T setBody(Flow.Publisher<? extends ByteBuffer> body, long contentLength) {
+        if (body == null) {
+            throw new IllegalArgumentException("AbstractBody cannot be null");
+        }
+        if (contentLength <= 0) {
+            throw new IllegalArgumentException("Content length must be > 0");
+        }
+
+        setBodyPublisher(HttpRequest.BodyPublishers.fromPublisher(body, contentLength));
+        this.replayable = false;
+        return (T) this;
+    }
+
+    /**
+     * Sets the body of the HTTP request to the given multipart body and sets the Content-Type header
+     * to {@code multipart/form-data} with the body's boundary. The parts are encoded while the request is sent.
+     *
+     * @param body the multipart body to be sent; must not be null
+     * @return the current instance of the subclass implementation for method chaining
+     * @throws IllegalArgumentException if the provided body is null
+     */
+    public T setBody(MultipartBody body) {
+        if (body == null) {
+            throw new IllegalArgumentException("AbstractBody cannot be null");
+        }
+
+        setContentType(body.getContentType());
+        return setBodyPublisher(body.toBodyPublisher());
+    }
+
+    /**
+     * Sets the body of the HTTP request to the JSON form of the given record, object, collection, or map, and sets
+     * the Content-Type header to {@code application/json}. The value is serialized to UTF-8 while the request is
+     * sent, as described for {@link io.github.swnck.json.JsonMapper#toInputStream(Object)}, and is sent using
+     * chunked transfer encoding. Values of a type that has its own {@code setBody} overload, such as strings,
+     * byte arrays, files, publishers, and multipart bodies, are set through that overload instead.
+     *
+     * @param body the value to be sent as JSON; must not be null
+     * @return the current instance of the subclass implementation for method chaining
+     * @throws IllegalArgumentException if the provided body is null
+     */
+    @SuppressWarnings("unchecked")
+    public T setBody(Object body) {
+        return switch (body) {
+            case null -> throw new IllegalArgumentException("AbstractBody cannot be null");
+            case String text -> setBody(text);
+            case byte[] bytes -> setBody(bytes);
+            case ByteBuffer buffer -> setBody(buffer);
+            case Path path -> setBody(path);
+            case MultipartBody multipart -> setBody(multipart);
+            case Flow.Publisher<?> publisher -> setBody((Flow.Publisher<? extends ByteBuffer>) publisher);
+            default -> {
+                setContentType(ContentType.APPLICATION_JSON);
+                yield setBodyPublisher(BodyPublishers.ofJson(body));
+            }
+        };
+    }
+
+    /**
+     * Sets whether the request sends {@code Expect: 100-continue} and waits for the server to accept
+     * the request before the body is transmitted. This avoids uploading large bodies that would be rejected.
+     *
+     * @param expectContinue {@code true} to request confirmation before sending the body
+     * @return the current instance of the subclass implementation for method chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T setExpectContinue(boolean expectContinue) {
+        this.expectContinue = expectContinue;
+        return (T) this;
+    }
+
+    /**
+     * Applies the method, the body publisher, and the {@code Expect: 100-continue} setting to the given builder.
+     *
+     * @param requestBuilder the builder of the HTTP request
+     */
+    @Override
+    protected void applyBody(HttpRequest.Builder requestBuilder) {
+        requestBuilder.method(getMethod().toString(),
+                bodyPublisher == null ? HttpRequest.BodyPublishers.noBody() : bodyPublisher);
+        requestBuilder.expectContinue(expectContinue);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T setBodyPublisher(HttpRequest.BodyPublisher bodyPublisher) {
+        this.body = null;
+        this.bodyPublisher = bodyPublisher;
+        this.replayable = true;
         return (T) this;
     }
-}
\ No newline at end of file
+}
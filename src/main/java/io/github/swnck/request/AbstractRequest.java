@@ -1,17 +1,40 @@
 package io.github.swnck.request;
 
+import io.github.swnck.JxClient;
 import io.github.swnck.JxResponse;
+import io.github.swnck.JxStreamResponse;
 import io.github.swnck.cors.Cors;
+import io.github.swnck.json.JsonMappingException;
+import io.github.swnck.resilience.HedgingPolicy;
+import io.github.swnck.resilience.RequestRejectedException;
+import io.github.swnck.resilience.RetryPolicy;
+import io.github.swnck.stream.StreamingHandlers;
 import io.github.swnck.util.ContentType;
 import io.github.swnck.util.Method;
+import io.github.swnck.util.MultiValueMap;
 import io.github.swnck.util.SimulationAgent;
 import lombok.Getter;
 import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * AbstractRequest represents a template for constructing and sending HTTP requests.
@@ -24,9 +47,11 @@ import java.util.Map;
 @Getter
 @Setter
 public abstract class AbstractRequest<T extends AbstractRequest<T>>{
-    private final Map<String, Object> headers = new HashMap<>();
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractRequest.class);
 
-    private final Map<String, Object> queryParams = new HashMap<>();
+    private final MultiValueMap headers = MultiValueMap.forHeaders();
+
+    private final MultiValueMap queryParams = MultiValueMap.forParameters();
 
     private Method method;
 
@@ -38,6 +63,12 @@ public abstract class AbstractRequest<T extends AbstractRequest<T>>{
 
     private HttpClient.Version version = HttpClient.Version.HTTP_1_1;
 
+    private JxClient client = null;
+
+    private RetryPolicy retryPolicy = null;
+
+    private HedgingPolicy hedgingPolicy = null;
+
     /**
      * Constructs a new instance of {@code AbstractRequest} with the specified URL and HTTP method.
      * This constructor initializes the request with the provided URL and method, sets the default
@@ -69,18 +100,322 @@ public abstract class AbstractRequest<T extends AbstractRequest<T>>{
     }
 
     /**
-     * Executes the HTTP request defined by this instance and returns the resulting response.
+     * Executes the HTTP request defined by this instance and blocks until the resulting response is available.
      * <p>
-     * This method initiates the request processing with the configured URL, method, headers,
-     * query parameters, and optional body content (if applicable). It constructs an HTTP client request
-     * and performs the call using asynchronous handling, capturing details such as the status code,
-     * headers, body content, and response timing.
+     * This is a convenience wrapper around {@link #sendAsync()}. If the request cannot be completed,
+     * the error is logged and an empty {@link JxResponse} with a duration of {@code -1} is returned.
+     * Requests rejected on the client side, e.g. by a {@link io.github.swnck.resilience.CircuitBreaker} or a
+     * {@link io.github.swnck.resilience.RateLimiter}, fail fast instead.
      *
      * @return an instance of {@link JxResponse} containing the HTTP response details such as
      * status code, headers, body, and execution duration.
+     * @throws RequestRejectedException if the request was rejected without being sent.
      */
     public JxResponse send() {
-        return new JxResponse(this);
+        try {
+            return sendAsync().join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            if (cause instanceof RequestRejectedException rejected) throw rejected;
+
+            LOGGER.error("Error during request: {}", cause.getMessage());
+            return new JxResponse();
+        }
+    }
+
+    /**
+     * Executes the HTTP request defined by this instance without blocking the calling thread.
+     * <p>
+     * The request is built from the configured URL, method, headers, query parameters, and optional
+     * body content (if applicable) and handed to the {@link JxClient} returned by {@link #getClient()}.
+     * The returned future is completed from the client's executor once the full response has been received.
+     *
+     * @return a {@link CompletableFuture} that completes with the {@link JxResponse}, or completes
+     * exceptionally if the request could not be built or sent.
+     */
+    public CompletableFuture<JxResponse> sendAsync() {
+        return getClient().sendAsync(this);
+    }
+
+    /**
+     * Executes the HTTP request and maps the JSON body of the response to an instance of the given type.
+     *
+     * @param type the type to map the body to; must not be null.
+     * @param <R> the type to map the body to
+     * @return the mapped body, or {@code null} if the body is empty or the request could not be completed.
+     * @throws IllegalArgumentException if the provided type is null.
+     * @throws JsonMappingException if the body is not valid JSON or does not match the type.
+     * @see JxResponse#as(Class)
+     */
+    public <R> R send(Class<R> type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+
+        return send().as(type);
+    }
+
+    /**
+     * Executes the HTTP request without blocking the calling thread and maps the JSON body of the response to an
+     * instance of the given type.
+     *
+     * @param type the type to map the body to; must not be null.
+     * @param <R> the type to map the body to
+     * @return a {@link CompletableFuture} that completes with the mapped body, or {@code null} if the body is empty,
+     * and completes exceptionally with a {@link JsonMappingException} if the body does not match the type.
+     * @throws IllegalArgumentException if the provided type is null.
+     * @see JxResponse#as(Class)
+     */
+    public <R> CompletableFuture<R> sendAsync(Class<R> type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+
+        return sendAsync().thenApply(response -> response.as(type));
+    }
+
+    /**
+     * Executes the HTTP request asynchronously and transforms the response with the given function
+     * once it is available.
+     *
+     * @param mapper the function applied to the {@link JxResponse}; must not be null.
+     * @param <R> the type of the mapped result
+     * @return a {@link CompletableFuture} that completes with the mapped result.
+     * @throws IllegalArgumentException if the provided mapper is null.
+     */
+    public <R> CompletableFuture<R> thenApply(Function<? super JxResponse, ? extends R> mapper) {
+        if (mapper == null) {
+            throw new IllegalArgumentException("Mapper cannot be null");
+        }
+
+        return sendAsync().thenApply(mapper);
+    }
+
+    /**
+     * Executes the HTTP request asynchronously and passes the response to the given consumer
+     * once it is available.
+     *
+     * @param consumer the action performed with the {@link JxResponse}; must not be null.
+     * @return a {@link CompletableFuture} that completes after the consumer has run.
+     * @throws IllegalArgumentException if the provided consumer is null.
+     */
+    public CompletableFuture<Void> thenAccept(Consumer<? super JxResponse> consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("Consumer cannot be null");
+        }
+
+        return sendAsync().thenAccept(consumer);
+    }
+
+    /**
+     * Executes the HTTP request and blocks until the response headers have arrived.
+     * The body is not buffered; it is exposed as an {@link InputStream} that reads directly from the connection.
+     * The returned response must be closed once the body is no longer needed.
+     *
+     * @return a {@link JxStreamResponse} whose body is the response stream.
+     * @throws CompletionException if the request could not be built or sent.
+     */
+    public JxStreamResponse<InputStream> sendStream() {
+        return sendStreamAsync().join();
+    }
+
+    /**
+     * Executes the HTTP request asynchronously and completes as soon as the response headers have arrived.
+     * The body is exposed as an {@link InputStream} that reads directly from the connection.
+     *
+     * @return a {@link CompletableFuture} that completes with a {@link JxStreamResponse} whose body is the response stream.
+     */
+    public CompletableFuture<JxStreamResponse<InputStream>> sendStreamAsync() {
+        return getClient().exchange(this, HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(JxStreamResponse::new);
+    }
+
+    /**
+     * Executes the HTTP request asynchronously and completes as soon as the response headers have arrived.
+     * The body is exposed as a {@link Flow.Publisher} of byte buffers that must be subscribed to exactly once.
+     *
+     * @return a {@link CompletableFuture} that completes with a {@link JxStreamResponse} whose body is the publisher.
+     */
+    public CompletableFuture<JxStreamResponse<Flow.Publisher<List<ByteBuffer>>>> sendPublisherAsync() {
+        return getClient().exchange(this, HttpResponse.BodyHandlers.ofPublisher())
+                .thenApply(JxStreamResponse::new);
+    }
+
+    /**
+     * Executes the HTTP request asynchronously and passes the body to the given consumer line by line.
+     * The charset is taken from the Content-Type header and defaults to UTF-8.
+     *
+     * @param onLine the consumer receiving each line of the body; must not be null.
+     * @return a {@link CompletableFuture} that completes with the response once the whole body has been consumed.
+     * @throws IllegalArgumentException if the provided consumer is null.
+     */
+    public CompletableFuture<JxStreamResponse<Void>> sendLinesAsync(Consumer<String> onLine) {
+        return getClient().exchange(this, StreamingHandlers.lines(onLine))
+                .thenApply(JxStreamResponse::new);
+    }
+
+    /**
+     * Executes the HTTP request asynchronously and passes the body to the given consumer chunk by chunk
+     * as it arrives. The buffers are only valid for the duration of the callback.
+     *
+     * @param onChunk the consumer receiving each chunk of the body; must not be null.
+     * @return a {@link CompletableFuture} that completes with the response once the whole body has been consumed.
+     * @throws IllegalArgumentException if the provided consumer is null.
+     */
+    public CompletableFuture<JxStreamResponse<Void>> sendChunksAsync(Consumer<ByteBuffer> onChunk) {
+        return getClient().exchange(this, StreamingHandlers.chunks(onChunk))
+                .thenApply(JxStreamResponse::new);
+    }
+
+    /**
+     * Returns the client used to send this request. Requests that were not bound to a specific client
+     * are sent with the shared {@link JxClient#getDefault() default client}.
+     *
+     * @return the {@link JxClient} used by {@link #send()} and {@link #sendAsync()}.
+     */
+    public JxClient getClient() {
+        return client == null ? JxClient.getDefault() : client;
+    }
+
+    /**
+     * Binds this request to the given client, so that it is sent with the client's
+     * {@link HttpClient}, connection pool, and executor.
+     *
+     * @param client the client used to send this request; must not be null.
+     * @return the updated instance of the request, allowing for method chaining.
+     * @throws IllegalArgumentException if the provided client is null.
+     */
+    @SuppressWarnings("unchecked")
+    public T setClient(JxClient client) {
+        if (client == null) {
+            throw new IllegalArgumentException("Client cannot be null");
+        }
+
+        this.client = client;
+        return (T) this;
+    }
+
+    /**
+     * Sets the retry policy of this request, overriding the policy of its client.
+     * Use {@link RetryPolicy#none()} to send this request only once.
+     *
+     * @param retryPolicy the retry policy of this request; must not be null.
+     * @return the updated instance of the request, allowing for method chaining.
+     * @throws IllegalArgumentException if the provided policy is null.
+     */
+    @SuppressWarnings("unchecked")
+    public T setRetryPolicy(RetryPolicy retryPolicy) {
+        if (retryPolicy == null) {
+            throw new IllegalArgumentException("Retry policy cannot be null");
+        }
+
+        this.retryPolicy = retryPolicy;
+        return (T) this;
+    }
+
+    /**
+     * Sets the hedging policy of this request, overriding the policy of its client.
+     * Only idempotent requests are hedged.
+     *
+     * @param hedgingPolicy the hedging policy of this request; must not be null.
+     * @return the updated instance of the request, allowing for method chaining.
+     * @throws IllegalArgumentException if the provided policy is null.
+     */
+    @SuppressWarnings("unchecked")
+    public T setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        if (hedgingPolicy == null) {
+            throw new IllegalArgumentException("Hedging policy cannot be null");
+        }
+
+        this.hedgingPolicy = hedgingPolicy;
+        return (T) this;
+    }
+
+    /**
+     * Builds the {@link HttpRequest} described by this instance.
+     * Composes the request URI with the query parameters and applies the method, version, timeout,
+     * headers, and body content (if applicable).
+     *
+     * @return the immutable {@link HttpRequest} ready to be sent.
+     * @throws URISyntaxException if the URL combined with the query parameters is not a valid URI.
+     */
+    public HttpRequest toHttpRequest() throws URISyntaxException {
+        return toHttpRequest(new URI(buildUrlWithParams(url, queryParams)));
+    }
+
+    /**
+     * Compiles this request into an immutable {@link RequestTemplate} that can be sent any number of times, from
+     * any thread, with different values for the variables in its URL, such as {@code /users/{id}}.
+     *
+     * @return the template.
+     * @throws IllegalArgumentException if the request is not {@linkplain #isReplayable() replayable}, the URL has
+     *                                  malformed variables or is not a valid URI, or one of the headers is not allowed.
+     */
+    public RequestTemplate toTemplate() {
+        return RequestTemplate.compile(this);
+    }
+
+    /**
+     * Builds the {@link HttpRequest} described by this instance for the given URI, ignoring the URL and
+     * query parameters.
+     *
+     * @param uri the URI of the request
+     * @return the immutable {@link HttpRequest}.
+     */
+    HttpRequest toHttpRequest(URI uri) {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                .uri(uri)
+                .version(version)
+                .timeout(Duration.ofMillis(timeoutMillis));
+
+        applyBody(requestBuilder);
+
+        headers.forEach(requestBuilder::header);
+
+        return requestBuilder.build();
+    }
+
+    /**
+     * Returns whether the body of this request can be sent more than once. Requests whose body cannot be replayed
+     * are neither retried nor hedged, and cannot be compiled into a {@link RequestTemplate}.
+     *
+     * @return {@code true} if the request can be sent repeatedly.
+     */
+    public boolean isReplayable() {
+        return true;
+    }
+
+    /**
+     * Applies the HTTP method and the body of this request to the given builder.
+     * Requests without a body send no content; subclasses that carry a body override this method.
+     *
+     * @param requestBuilder the builder of the HTTP request
+     */
+    protected void applyBody(HttpRequest.Builder requestBuilder) {
+        requestBuilder.method(method.toString(), HttpRequest.BodyPublishers.noBody());
+    }
+
+    /**
+     * Constructs a complete URL by appending query parameters to the base URL.
+     * If the provided query parameters are null or empty, the original URL is returned as is.
+     * Handles encoding of both keys and values in the query parameters to ensure proper URL formatting.
+     * Repeated parameters are appended once for each value, in insertion order.
+     *
+     * @param url the base URL to which query parameters will be appended
+     * @param queryParams the query parameter names and their values
+     * @return the complete URL with query parameters appended and properly encoded
+     */
+    static String buildUrlWithParams(String url, MultiValueMap queryParams) {
+        if (queryParams == null || queryParams.isEmpty()) return url;
+        StringBuilder sb = new StringBuilder(url);
+        sb.append(url.contains("?") ? "&" : "?");
+        for (int i = 0; i < queryParams.size(); i++) {
+            String key = URLEncoder.encode(queryParams.getName(i), StandardCharsets.UTF_8);
+            String value = URLEncoder.encode(queryParams.getValue(i), StandardCharsets.UTF_8);
+            sb.append(key).append('=').append(value).append('&');
+        }
+        sb.deleteCharAt(sb.length() - 1);
+        return sb.toString();
     }
 
     /**
@@ -98,7 +433,7 @@ public abstract class AbstractRequest<T extends AbstractRequest<T>>{
             throw new IllegalArgumentException("Simulation agent cannot be null");
         }
 
-        headers.put("User-Agent", agent.getUserAgent());
+        headers.set("User-Agent", agent.getUserAgent());
         return (T) this;
     }
 
@@ -115,7 +450,7 @@ public abstract class AbstractRequest<T extends AbstractRequest<T>>{
             throw new IllegalArgumentException("Simulation agent cannot be null");
         }
 
-        headers.put("User-Agent", agent);
+        headers.set("User-Agent", agent);
         return (T) this;
     }
 
@@ -132,7 +467,7 @@ public abstract class AbstractRequest<T extends AbstractRequest<T>>{
             throw new IllegalArgumentException("Content-Type cannot be null");
         }
 
-        headers.put("Content-Type", contentType);
+        headers.set("Content-Type", contentType);
 
         return (T) this;
     }
@@ -150,14 +485,14 @@ public abstract class AbstractRequest<T extends AbstractRequest<T>>{
             throw new IllegalArgumentException("Content-Type cannot be null");
         }
 
-        headers.put("Content-Type", contentType.getMimeType());
+        headers.set("Content-Type", contentType.getMimeType());
 
         return (T) this;
     }
 
     /**
-     * Sets a header for the current request. If a header with the given key already exists,
-     * it will be replaced with the specified value.
+     * Sets a header for the current request. If a header with the given key already exists, in any case,
+     * all of its values will be replaced with the specified value.
      *
      * @param key the name of the header to set; must not be null.
      * @param value the value of the header to set; must not be null.
@@ -170,13 +505,32 @@ public abstract class AbstractRequest<T extends AbstractRequest<T>>{
             throw new IllegalArgumentException("Header key and value cannot be null");
         }
 
-        headers.put(key, value);
+        headers.set(key, value);
+        return (T) this;
+    }
+
+    /**
+     * Adds a value to a header of the current request, keeping the values it already has.
+     * Each value is sent as a separate header line.
+     *
+     * @param key the name of the header to add to; must not be null.
+     * @param value the value to add; must not be null.
+     * @return the updated instance of the request, allowing for method chaining.
+     * @throws IllegalArgumentException if the key or value is null.
+     */
+    @SuppressWarnings("unchecked")
+    public T addHeader(String key, String value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Header key and value cannot be null");
+        }
+
+        headers.add(key, value);
         return (T) this;
     }
 
     /**
      * Sets multiple headers for the current request by merging the provided map of headers.
-     * If a header with the same key already exists, it will be overwritten with the new value.
+     * If a header with the same key already exists, in any case, it will be overwritten with the new value.
      *
      * @param headers a map of header names and their corresponding values to set; must not be null.
      * @return the updated instance of the request, allowing for method chaining.
@@ -188,7 +542,12 @@ public abstract class AbstractRequest<T extends AbstractRequest<T>>{
             throw new IllegalArgumentException("Headers cannot be null");
         }
 
-        this.headers.putAll(headers);
+        headers.forEach((key, value) -> {
+            if (key == null || value == null) {
+                throw new IllegalArgumentException("Header key and value cannot be null");
+            }
+            this.headers.set(key, value);
+        });
         return (T) this;
     }
 
@@ -207,7 +566,26 @@ public abstract class AbstractRequest<T extends AbstractRequest<T>>{
             throw new IllegalArgumentException("Query parameter key and value cannot be null");
         }
 
-        queryParams.put(key, value);
+        queryParams.set(key, value);
+        return (T) this;
+    }
+
+    /**
+     * Adds a value to a query parameter of the current request, keeping the values it already has,
+     * so that the parameter is repeated in the query string, as in {@code ?id=1&id=2}.
+     *
+     * @param key the key of the query parameter to add to; must not be null.
+     * @param value the value to add; must not be null.
+     * @return the updated instance of the request, allowing for method chaining.
+     * @throws IllegalArgumentException if the key or value is null.
+     */
+    @SuppressWarnings("unchecked")
+    public T addQueryParam(String key, String value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Query parameter key and value cannot be null");
+        }
+
+        queryParams.add(key, value);
         return (T) this;
     }
 
@@ -215,14 +593,23 @@ public abstract class AbstractRequest<T extends AbstractRequest<T>>{
      * Sets multiple query parameters for the current request by merging the provided map of parameters.
      * If a query parameter with the same key already exists, it will be overwritten with the new value.
      *
-     * @param queryParams a map of query parameter keys and*/
+     * @param queryParams a map of query parameter keys and their values; must not be null. A null value is
+     *                    sent as an empty value.
+     * @return the updated instance of the request, allowing for method chaining.
+     * @throws IllegalArgumentException if the provided map is null or contains a null key.
+     */
     @SuppressWarnings("unchecked")
     public T setQueryParams(Map<String, Object> queryParams) {
         if (queryParams == null) {
             throw new IllegalArgumentException("Query parameters cannot be null");
         }
 
-        this.queryParams.putAll(queryParams);
+        queryParams.forEach((key, value) -> {
+            if (key == null) {
+                throw new IllegalArgumentException("Query parameter key cannot be null");
+            }
+            this.queryParams.set(key, value == null ? "" : value);
+        });
         return (T) this;
     }
 
@@ -243,12 +630,10 @@ public abstract class AbstractRequest<T extends AbstractRequest<T>>{
 
         cors.getCorsMap().forEach(
                 (key, value) -> {
-                    if (value instanceof String) {
-                        this.headers.put(key, value);
-                    } else if (value instanceof String[]) {
-                        this.headers.put(key, String.join(", ", (String[]) value));
+                    if (value instanceof String[]) {
+                        this.headers.set(key, String.join(", ", (String[]) value));
                     } else {
-                        this.headers.put(key, value);
+                        this.headers.set(key, value);
                     }
                 }
         );
@@ -323,15 +708,19 @@ public abstract class AbstractRequest<T extends AbstractRequest<T>>{
      * Sets the timeout duration for the request execution.
      * The timeout specifies the period after which the request will time out if not completed.
      *
-     * @param timeout the timeout duration as a {@link Duration} object; must be non-negative.
-     *                If the duration is negative, an {@link IllegalArgumentException} is thrown.
+     * @param timeout the timeout duration as a {@link Duration} object; must not be null and must lie between
+     *                one millisecond and {@link Integer#MAX_VALUE} milliseconds.
      * @return the updated instance of the request, allowing for method chaining.
-     * @throws IllegalArgumentException if the specified timeout duration is less than 0.
+     * @throws IllegalArgumentException if the specified timeout is null, shorter than one millisecond, or
+     *                                  longer than {@link Integer#MAX_VALUE} milliseconds.
      */
     @SuppressWarnings("unchecked")
     public T setTimeout(Duration timeout) {
-        if (timeoutMillis < 0) {
-            throw new IllegalArgumentException("Timeout must be >= 0");
+        if (timeout == null) {
+            throw new IllegalArgumentException("Timeout cannot be null");
+        }
+        if (timeout.compareTo(Duration.ofMillis(1)) < 0 || timeout.compareTo(Duration.ofMillis(Integer.MAX_VALUE)) > 0) {
+            throw new IllegalArgumentException("Timeout must be between 1 ms and " + Integer.MAX_VALUE + " ms");
         }
         this.timeoutMillis = (int) timeout.toMillis();
         return (T) this;
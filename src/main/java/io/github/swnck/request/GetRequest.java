@@ -1,8 +1,12 @@
 package io.github.swnck.request;
 
+import io.github.swnck.download.SegmentedDownload;
 import io.github.swnck.util.Method;
 import lombok.Getter;
 
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * GetRequest is a specialized implementation of the AbstractRequest class
  * tailored for HTTP GET requests. This class provides constructors to
@@ -26,4 +30,33 @@ public class GetRequest extends AbstractRequest<GetRequest> {
     public GetRequest() {
         super(Method.GET);
     }
+
+    /**
+     * Downloads the resource into the given file by fetching up to {@code segments} byte ranges concurrently,
+     * and blocks until the download has completed. An interrupted download of the same resource into the same
+     * file is resumed where it left off.
+     *
+     * @param target the file to write the resource to; must not be null.
+     * @param segments the maximum number of ranges fetched concurrently; must be greater than 0.
+     * @return the path of the downloaded file.
+     * @throws IllegalArgumentException if the target is null or the number of segments is not positive.
+     * @see SegmentedDownload
+     */
+    public Path download(Path target, int segments) {
+        return downloadAsync(target, segments).join();
+    }
+
+    /**
+     * Downloads the resource into the given file by fetching up to {@code segments} byte ranges concurrently,
+     * without blocking the calling thread.
+     *
+     * @param target the file to write the resource to; must not be null.
+     * @param segments the maximum number of ranges fetched concurrently; must be greater than 0.
+     * @return a {@link CompletableFuture} that completes with the path of the downloaded file.
+     * @throws IllegalArgumentException if the target is null or the number of segments is not positive.
+     * @see SegmentedDownload
+     */
+    public CompletableFuture<Path> downloadAsync(Path target, int segments) {
+        return SegmentedDownload.start(this, target, segments);
+    }
 }
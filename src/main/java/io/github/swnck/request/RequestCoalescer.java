@@ -0,0 +1,209 @@
+package io.github.swnck.request;
+
+import io.github.swnck.JxResponse;
+import io.github.swnck.util.Method;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.net.http.HttpRequest;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Coalesces identical {@code GET} requests that are in flight at the same time into a single network call.
+ * <p>
+ * Requests are identical if they have the same URL, query parameters, and headers, apart from the
+ * {@linkplain #RequestCoalescer(String...) ignored headers}. The first request starts the call, and every identical
+ * request that arrives while it is in flight shares its {@link JxResponse}. The call is removed from the in-flight
+ * map as soon as it completes or fails, so that later requests fetch fresh data.
+ * <p>
+ * Every caller receives its own future, so cancelling it does not affect the other callers or the shared call.
+ * The shared {@link JxResponse} is the same instance for all callers and should not be modified.
+ */
+@Getter
+public final class RequestCoalescer {
+    private static final char SEPARATOR = '\u0000';
+
+    private final Set<String> ignoredHeaders;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<String, CompletableFuture<JxResponse>> inFlight = new ConcurrentHashMap<>();
+
+    @Getter(AccessLevel.NONE)
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Creates a coalescer that ignores the given headers when comparing requests, e.g. per-call trace IDs.
+     *
+     * @param ignoredHeaders the names of the headers to ignore; must not be null.
+     * @throws IllegalArgumentException if the header names are null.
+     */
+    public RequestCoalescer(String... ignoredHeaders) {
+        if (ignoredHeaders == null) {
+            throw new IllegalArgumentException("Ignored headers cannot be null");
+        }
+
+        this.ignoredHeaders = Stream.of(ignoredHeaders)
+                .map(name -> name.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Sends a request with the given function, or joins the identical request already in flight.
+     * Requests other than {@code GET} are always sent.
+     *
+     * @param request the request to send; must not be null.
+     * @param send the function sending the request; must not be null.
+     * @return a {@link CompletableFuture} that completes with the shared {@link JxResponse}.
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public CompletableFuture<JxResponse> execute(AbstractRequest<?> request,
+                                                 Function<AbstractRequest<?>, CompletableFuture<JxResponse>> send) {
+        if (request == null || send == null) {
+            throw new IllegalArgumentException("Request and send function cannot be null");
+        }
+
+        if (request.getMethod() != Method.GET) {
+            return send.apply(request);
+        }
+
+        return join(fingerprint(request), () -> send.apply(request));
+    }
+
+    /**
+     * Sends an already built request with the given function, or joins the identical request already in flight.
+     * Requests other than {@code GET} are always sent. Built requests are compared by their method, URI, and
+     * headers, so they are only coalesced with other built requests.
+     *
+     * @param request the request to send; must not be null.
+     * @param send the function sending the request; must not be null.
+     * @return a {@link CompletableFuture} that completes with the shared {@link JxResponse}.
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public CompletableFuture<JxResponse> execute(HttpRequest request,
+                                                 Function<HttpRequest, CompletableFuture<JxResponse>> send) {
+        if (request == null || send == null) {
+            throw new IllegalArgumentException("Request and send function cannot be null");
+        }
+
+        if (!"GET".equals(request.method())) {
+            return send.apply(request);
+        }
+
+        return join(fingerprint(request), () -> send.apply(request));
+    }
+
+    private CompletableFuture<JxResponse> join(String key, Supplier<CompletableFuture<JxResponse>> send) {
+        CompletableFuture<JxResponse> shared = new CompletableFuture<>();
+        CompletableFuture<JxResponse> existing = inFlight.putIfAbsent(key, shared);
+
+        if (existing != null) {
+            coalesced.increment();
+            return existing.copy();
+        }
+
+        CompletableFuture<JxResponse> call;
+        try {
+            call = send.get();
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+
+        call.whenComplete((response, error) -> {
+            inFlight.remove(key, shared);
+
+            if (error != null) {
+                shared.completeExceptionally(error);
+            } else {
+                shared.complete(response);
+            }
+        });
+
+        return shared.copy();
+    }
+
+    /**
+     * Returns the canonical fingerprint of the given request: its method, URL, sorted query parameters, and
+     * sorted headers with lower-cased names, without the ignored headers.
+     *
+     * @param request the request; must not be null.
+     * @return the fingerprint.
+     * @throws IllegalArgumentException if the request is null.
+     */
+    public String fingerprint(AbstractRequest<?> request) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request cannot be null");
+        }
+
+        StringBuilder fingerprint = new StringBuilder()
+                .append(request.getMethod()).append(SEPARATOR)
+                .append(request.getUrl()).append(SEPARATOR);
+
+        new TreeMap<>(request.getQueryParams().toMap()).forEach((key, values) -> values.forEach(value ->
+                fingerprint.append(key).append('=').append(value).append(SEPARATOR)));
+        fingerprint.append(SEPARATOR);
+
+        request.getHeaders().toMap().forEach((key, values) -> {
+            String name = key.toLowerCase(Locale.ROOT);
+            if (!ignoredHeaders.contains(name)) {
+                fingerprint.append(name).append(':').append(String.join(",", values)).append(SEPARATOR);
+            }
+        });
+
+        return fingerprint.toString();
+    }
+
+    /**
+     * Returns the canonical fingerprint of the given built request: its method, URI, and sorted headers with
+     * lower-cased names, without the ignored headers.
+     *
+     * @param request the request; must not be null.
+     * @return the fingerprint.
+     * @throws IllegalArgumentException if the request is null.
+     */
+    public String fingerprint(HttpRequest request) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request cannot be null");
+        }
+
+        StringBuilder fingerprint = new StringBuilder()
+                .append(request.method()).append(SEPARATOR)
+                .append(request.uri()).append(SEPARATOR).append(SEPARATOR);
+
+        request.headers().map().forEach((key, values) -> {
+            String name = key.toLowerCase(Locale.ROOT);
+            if (!ignoredHeaders.contains(name)) {
+                fingerprint.append(name).append(':').append(String.join(",", values)).append(SEPARATOR);
+            }
+        });
+
+        return fingerprint.toString();
+    }
+
+    /**
+     * Returns the number of distinct requests currently in flight.
+     *
+     * @return the number of in-flight calls.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Returns the number of requests that joined a call already in flight instead of sending their own.
+     *
+     * @return the number of coalesced requests.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+}
@@ -0,0 +1,415 @@
+package io.github.swnck.request;
+
+import io.github.swnck.JxClient;
+import io.github.swnck.JxResponse;
+import io.github.swnck.resilience.HedgingPolicy;
+import io.github.swnck.resilience.RequestRejectedException;
+import io.github.swnck.resilience.RetryPolicy;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * An immutable, precompiled form of a request whose URL may contain variables, such as
+ * {@code https://api.example.com/users/{id}/orders?page={page}}.
+ * <p>
+ * Everything that does not change between calls is worked out once, when the template is
+ * {@linkplain AbstractRequest#toTemplate() compiled}: the URL is split into literal segments and variables, the
+ * query parameters are encoded into a fixed suffix, and the headers, including those set by
+ * {@link AbstractRequest#setCors(io.github.swnck.cors.Cors)} and
+ * {@link AbstractRequest#simulate(io.github.swnck.util.SimulationAgent)}, are validated into a frozen header block
+ * that every request built from the template shares. Binding a call then only encodes the variable values and
+ * parses the resulting URI.
+ * <p>
+ * Variables in the path are percent-encoded, so that a value such as {@code a/b} stays one path segment, and
+ * variables in the query are form-encoded like query parameters. Integral numbers are appended without encoding.
+ * <p>
+ * Templates are safe to use from any number of threads at once. Later changes to the request they were compiled
+ * from do not affect them. The request body, if any, is shared by all calls, so it must be one that can be sent
+ * repeatedly; requests that are not {@linkplain AbstractRequest#isReplayable() replayable} cannot be compiled.
+ * <pre>{@code
+ * RequestTemplate orders = JxRequest.get("https://api.example.com/users/{id}/orders?page={page}")
+ *         .setHeader("Authorization", "Bearer " + token)
+ *         .toTemplate();
+ *
+ * JxResponse response = orders.send(42, 1);
+ * CompletableFuture<JxResponse> async = orders.sendAsync(Map.of("id", 42, "page", 2));
+ * }</pre>
+ */
+@Getter
+public final class RequestTemplate {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestTemplate.class);
+
+    /**
+     * The URL of the template, with its variables in braces.
+     */
+    private final String url;
+
+    /**
+     * The names of the variables in the order in which they first appear in the URL.
+     */
+    private final List<String> variables;
+
+    private final String method;
+
+    private final HttpHeaders headers;
+
+    private final JxClient client;
+
+    private final RetryPolicy retryPolicy;
+
+    private final HedgingPolicy hedgingPolicy;
+
+    @Getter(AccessLevel.NONE)
+    private final String[] literals;
+
+    @Getter(AccessLevel.NONE)
+    private final int[] slots;
+
+    @Getter(AccessLevel.NONE)
+    private final boolean[] inQuery;
+
+    @Getter(AccessLevel.NONE)
+    private final String querySuffix;
+
+    @Getter(AccessLevel.NONE)
+    private final int estimatedLength;
+
+    @Getter(AccessLevel.NONE)
+    private final URI fixedUri;
+
+    @Getter(AccessLevel.NONE)
+    private final Optional<HttpRequest.BodyPublisher> bodyPublisher;
+
+    @Getter(AccessLevel.NONE)
+    private final Optional<Duration> timeout;
+
+    @Getter(AccessLevel.NONE)
+    private final Optional<HttpClient.Version> version;
+
+    @Getter(AccessLevel.NONE)
+    private final boolean expectContinue;
+
+    private RequestTemplate(AbstractRequest<?> request) {
+        this.url = request.getUrl();
+        this.client = request.getClient();
+        this.retryPolicy = request.getRetryPolicy();
+        this.hedgingPolicy = request.getHedgingPolicy();
+
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        List<Boolean> inQuery = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+
+        boolean query = false;
+        int start = 0;
+        for (int open = url.indexOf('{'); open >= 0; open = url.indexOf('{', start)) {
+            int close = url.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed variable in URL: " + url);
+            }
+
+            String name = url.substring(open + 1, close).trim();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Empty variable name in URL: " + url);
+            }
+
+            String literal = url.substring(start, open);
+            query |= literal.indexOf('?') >= 0 || literal.indexOf('#') >= 0;
+
+            if (!variables.contains(name)) variables.add(name);
+            literals.add(literal);
+            slots.add(variables.indexOf(name));
+            inQuery.add(query);
+            start = close + 1;
+        }
+        literals.add(url.substring(start));
+
+        this.variables = List.copyOf(variables);
+        this.literals = literals.toArray(String[]::new);
+        this.slots = slots.stream().mapToInt(Integer::intValue).toArray();
+        this.inQuery = new boolean[this.slots.length];
+        for (int i = 0; i < this.slots.length; i++) {
+            this.inQuery[i] = inQuery.get(i);
+        }
+
+        String params = AbstractRequest.buildUrlWithParams("", request.getQueryParams());
+        this.querySuffix = params.isEmpty() || url.indexOf('?') < 0 ? params : '&' + params.substring(1);
+        this.estimatedLength = url.length() + querySuffix.length() + 16 * this.slots.length;
+
+        HttpRequest prototype = request.toHttpRequest(URI.create("http://localhost/"));
+        this.method = prototype.method();
+        this.headers = prototype.headers();
+        this.bodyPublisher = prototype.bodyPublisher();
+        this.timeout = prototype.timeout();
+        this.version = prototype.version();
+        this.expectContinue = prototype.expectContinue();
+
+        Object[] samples = new Object[this.variables.size()];
+        Arrays.fill(samples, "x");
+        URI sample = toUri(samples);
+        this.fixedUri = this.variables.isEmpty() ? sample : null;
+    }
+
+    /**
+     * Compiles the given request into a template. The request's client, retry policy, and hedging policy are
+     * captured along with its URL, method, headers, query parameters, timeout, version, and body.
+     *
+     * @param request the request to compile; must not be null.
+     * @return the template.
+     * @throws IllegalArgumentException if the request is null or not replayable, its URL has malformed variables or
+     *                                  is not a valid URI, or one of its headers is not allowed.
+     */
+    public static RequestTemplate compile(AbstractRequest<?> request) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request cannot be null");
+        }
+        if (request.getUrl() == null) {
+            throw new IllegalArgumentException("URL cannot be null");
+        }
+        if (!request.isReplayable()) {
+            throw new IllegalArgumentException("Request body cannot be sent repeatedly");
+        }
+
+        return new RequestTemplate(request);
+    }
+
+    /**
+     * Expands the URL with the given values, one for each {@linkplain #getVariables() variable} in order.
+     *
+     * @param values the values of the variables; must not be null and must not contain null.
+     * @return the expanded URI, including the query parameters of the template.
+     * @throws IllegalArgumentException if the number of values does not match, a value is null, or the expanded
+     *                                  URL is not a valid URI.
+     */
+    public URI toUri(Object... values) {
+        if (values == null || values.length != variables.size()) {
+            throw new IllegalArgumentException("Expected " + variables.size() + " values for " + variables
+                    + ", got " + (values == null ? 0 : values.length));
+        }
+        if (fixedUri != null) return fixedUri;
+
+        StringBuilder expanded = new StringBuilder(estimatedLength);
+        for (int i = 0; i < slots.length; i++) {
+            expanded.append(literals[i]);
+
+            Object value = values[slots[i]];
+            if (value == null) {
+                throw new IllegalArgumentException("Value of " + variables.get(slots[i]) + " cannot be null");
+            }
+            appendEncoded(expanded, value, inQuery[i]);
+        }
+        expanded.append(literals[slots.length]).append(querySuffix);
+
+        return URI.create(expanded.toString());
+    }
+
+    /**
+     * Expands the URL with the values of the given map, keyed by variable name.
+     *
+     * @param values the values of the variables; must not be null and must contain a value for every variable.
+     * @return the expanded URI, including the query parameters of the template.
+     * @throws IllegalArgumentException if the map is null, a variable has no value, or the expanded URL is not a
+     *                                  valid URI.
+     */
+    public URI toUri(Map<String, ?> values) {
+        return toUri(valuesOf(values));
+    }
+
+    /**
+     * Builds the {@link HttpRequest} for the given values, one for each {@linkplain #getVariables() variable} in
+     * order. The request shares the header block and body of the template.
+     *
+     * @param values the values of the variables; must not be null and must not contain null.
+     * @return the request, ready to be sent.
+     * @throws IllegalArgumentException if the values do not match the variables.
+     */
+    public HttpRequest toHttpRequest(Object... values) {
+        return new BoundRequest(this, toUri(values));
+    }
+
+    /**
+     * Builds the {@link HttpRequest} for the values of the given map, keyed by variable name.
+     *
+     * @param values the values of the variables; must not be null and must contain a value for every variable.
+     * @return the request, ready to be sent.
+     * @throws IllegalArgumentException if the values do not match the variables.
+     */
+    public HttpRequest toHttpRequest(Map<String, ?> values) {
+        return new BoundRequest(this, toUri(values));
+    }
+
+    /**
+     * Sends the request for the given values and blocks until the response is available. Like
+     * {@link AbstractRequest#send()}, failures are logged and answered with an empty {@link JxResponse}, while
+     * requests rejected on the client side fail fast.
+     *
+     * @param values the values of the variables, in order; must not be null and must not contain null.
+     * @return the response.
+     * @throws IllegalArgumentException if the values do not match the variables.
+     * @throws RequestRejectedException if the request was rejected without being sent.
+     */
+    public JxResponse send(Object... values) {
+        return join(sendAsync(values));
+    }
+
+    /**
+     * Sends the request for the values of the given map and blocks until the response is available.
+     *
+     * @param values the values of the variables, keyed by name; must not be null.
+     * @return the response.
+     * @throws IllegalArgumentException if the values do not match the variables.
+     * @throws RequestRejectedException if the request was rejected without being sent.
+     * @see #send(Object...)
+     */
+    public JxResponse send(Map<String, ?> values) {
+        return join(sendAsync(values));
+    }
+
+    /**
+     * Sends the request for the given values with the template's client, without blocking the calling thread.
+     *
+     * @param values the values of the variables, in order; must not be null and must not contain null.
+     * @return a {@link CompletableFuture} that completes with the {@link JxResponse}.
+     * @throws IllegalArgumentException if the values do not match the variables.
+     * @see JxClient#sendAsync(HttpRequest, RetryPolicy, HedgingPolicy)
+     */
+    public CompletableFuture<JxResponse> sendAsync(Object... values) {
+        return client.sendAsync(toHttpRequest(values), retryPolicy, hedgingPolicy);
+    }
+
+    /**
+     * Sends the request for the values of the given map with the template's client, without blocking the
+     * calling thread.
+     *
+     * @param values the values of the variables, keyed by name; must not be null.
+     * @return a {@link CompletableFuture} that completes with the {@link JxResponse}.
+     * @throws IllegalArgumentException if the values do not match the variables.
+     */
+    public CompletableFuture<JxResponse> sendAsync(Map<String, ?> values) {
+        return client.sendAsync(toHttpRequest(values), retryPolicy, hedgingPolicy);
+    }
+
+    private Object[] valuesOf(Map<String, ?> values) {
+        if (values == null) {
+            throw new IllegalArgumentException("Values cannot be null");
+        }
+
+        Object[] ordered = new Object[variables.size()];
+        for (int i = 0; i < ordered.length; i++) {
+            ordered[i] = values.get(variables.get(i));
+            if (ordered[i] == null) {
+                throw new IllegalArgumentException("Missing value for " + variables.get(i));
+            }
+        }
+        return ordered;
+    }
+
+    private static JxResponse join(CompletableFuture<JxResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            if (cause instanceof RequestRejectedException rejected) throw rejected;
+
+            LOGGER.error("Error during request: {}", cause.getMessage());
+            return new JxResponse();
+        }
+    }
+
+    /**
+     * Appends the encoded value of a variable. Values consisting only of characters that need no encoding, and
+     * integral numbers, are appended as they are.
+     */
+    private static void appendEncoded(StringBuilder target, Object value, boolean query) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            target.append(((Number) value).longValue());
+            return;
+        }
+
+        String text = value.toString();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '.' || c == '_' || c == '*';
+
+            if (!safe) {
+                String encoded = URLEncoder.encode(text, StandardCharsets.UTF_8);
+                target.append(query ? encoded : encoded.replace("+", "%20"));
+                return;
+            }
+        }
+
+        target.append(text);
+    }
+
+    /**
+     * A request bound to a URI that takes everything else from its template without copying it.
+     */
+    private static final class BoundRequest extends HttpRequest {
+        private final RequestTemplate template;
+
+        private final URI uri;
+
+        private BoundRequest(RequestTemplate template, URI uri) {
+            this.template = template;
+            this.uri = uri;
+        }
+
+        @Override
+        public Optional<BodyPublisher> bodyPublisher() {
+            return template.bodyPublisher;
+        }
+
+        @Override
+        public String method() {
+            return template.method;
+        }
+
+        @Override
+        public Optional<Duration> timeout() {
+            return template.timeout;
+        }
+
+        @Override
+        public boolean expectContinue() {
+            return template.expectContinue;
+        }
+
+        @Override
+        public URI uri() {
+            return uri;
+        }
+
+        @Override
+        public Optional<HttpClient.Version> version() {
+            return template.version;
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return template.headers;
+        }
+
+        @Override
+        public String toString() {
+            return uri + " " + template.method;
+        }
+    }
+}
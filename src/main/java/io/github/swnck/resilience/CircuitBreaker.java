@@ -0,0 +1,469 @@
+package io.github.swnck.resilience;
+
+import io.github.swnck.util.StatusCode;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Stops sending requests to a host that keeps failing, so that callers fail fast instead of waiting for timeouts.
+ * <p>
+ * Every host (and port) has its own circuit. A circuit starts {@linkplain State#CLOSED closed} and records the
+ * outcomes of the last {@code windowSize} calls. Once at least {@code minimumCalls} outcomes are recorded and
+ * the failure rate or the slow-call rate reaches its threshold, the circuit {@linkplain State#OPEN opens}: requests
+ * to the host are rejected immediately with a {@link CircuitBreakerOpenException}. After the cool-down, the circuit
+ * turns {@linkplain State#HALF_OPEN half-open} and lets a few trial requests through. If all of them succeed,
+ * the circuit closes again; if one of them fails or is slow, it opens for another cool-down.
+ * <p>
+ * A call fails if it completes exceptionally or with one of the {@linkplain Builder#failOnStatus(StatusCode...)
+ * failure status codes}, and it is slow if it takes longer than the {@linkplain Builder#slowCallDuration(Duration)
+ * slow-call duration}. Cancelled calls are not recorded.
+ * <p>
+ * Admitting a request only reads the circuit's state; all state changes are made with atomic compare-and-set
+ * operations, so the breaker never blocks the calling thread.
+ */
+@Getter
+public final class CircuitBreaker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private static final int RECORDED = 1;
+
+    private static final int FAILED = 2;
+
+    private static final int SLOW = 4;
+
+    private final double failureRateThreshold;
+
+    private final double slowCallRateThreshold;
+
+    private final Duration slowCallDuration;
+
+    private final int windowSize;
+
+    private final int minimumCalls;
+
+    private final Duration coolDown;
+
+    private final int halfOpenCalls;
+
+    private final Set<StatusCode> failureStatusCodes;
+
+    private final Predicate<Throwable> failureException;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    private CircuitBreaker(Builder builder) {
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.slowCallDuration = builder.slowCallDuration;
+        this.windowSize = builder.windowSize;
+        this.minimumCalls = Math.min(builder.minimumCalls, builder.windowSize);
+        this.coolDown = builder.coolDown;
+        this.halfOpenCalls = builder.halfOpenCalls;
+        this.failureStatusCodes = Set.copyOf(builder.failureStatusCodes);
+        this.failureException = builder.failureException;
+    }
+
+    /**
+     * Creates a new {@link Builder} with the default settings: the circuit opens when at least half of the last
+     * 100 calls failed (after at least 20 calls) or all of them took longer than 10 s, stays open for 30 s, and
+     * closes after 5 successful trial calls. Exceptions and the status codes 500, 502, 503, and 504 count as failures.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the state of the circuit of the given host.
+     *
+     * @param uri a URI of the host; must not be null.
+     * @return the state of the host's circuit; {@link State#CLOSED} for hosts that were never called.
+     * @throws IllegalArgumentException if the URI is null.
+     */
+    public State getState(URI uri) {
+        if (uri == null) {
+            throw new IllegalArgumentException("URI cannot be null");
+        }
+
+        Circuit circuit = circuits.get(key(uri));
+        return circuit == null ? State.CLOSED : circuit.phase.get().state;
+    }
+
+    /**
+     * Closes the circuit of the given host and forgets its recorded outcomes.
+     *
+     * @param uri a URI of the host; must not be null.
+     * @throws IllegalArgumentException if the URI is null.
+     */
+    public void reset(URI uri) {
+        if (uri == null) {
+            throw new IllegalArgumentException("URI cannot be null");
+        }
+
+        circuits.remove(key(uri));
+    }
+
+    /**
+     * Sends a request with the given function if the circuit of its host admits it, and records the outcome.
+     *
+     * @param request the request to send; must not be null.
+     * @param attempt the function sending the request; must not be null.
+     * @param <B> the type of the response body
+     * @return the future returned by the function, or a future that failed with a
+     * {@link CircuitBreakerOpenException} if the circuit is open.
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public <B> CompletableFuture<HttpResponse<B>> execute(HttpRequest request,
+                                                          Function<HttpRequest, CompletableFuture<HttpResponse<B>>> attempt) {
+        if (request == null || attempt == null) {
+            throw new IllegalArgumentException("Request and attempt cannot be null");
+        }
+
+        String key = key(request.uri());
+        Circuit circuit = circuits.computeIfAbsent(key, host -> new Circuit());
+        long now = System.nanoTime();
+        Phase admitted = circuit.acquire(key, now);
+
+        if (admitted == null) {
+            Phase phase = circuit.phase.get();
+            long remaining = Math.max(0, coolDown.toNanos() - (now - phase.since));
+            return CompletableFuture.failedFuture(new CircuitBreakerOpenException(key, Duration.ofNanos(remaining)));
+        }
+
+        CompletableFuture<HttpResponse<B>> future;
+        try {
+            future = attempt.apply(request);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.whenComplete((response, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+
+            if (cause instanceof CancellationException) {
+                circuit.release(admitted);
+                return;
+            }
+
+            int outcome = RECORDED;
+            if (cause != null ? failureException.test(cause) : failureStatusCodes.contains(StatusCode.fromCode(response.statusCode()))) {
+                outcome |= FAILED;
+            }
+            if (System.nanoTime() - now > slowCallDuration.toNanos()) {
+                outcome |= SLOW;
+            }
+
+            circuit.record(key, admitted, outcome);
+        });
+
+        return future;
+    }
+
+    private static String key(URI uri) {
+        return uri.getPort() == -1 ? String.valueOf(uri.getHost()) : uri.getHost() + ":" + uri.getPort();
+    }
+
+    /**
+     * The states of a circuit.
+     */
+    public enum State {
+        /**
+         * Requests are sent and their outcomes recorded.
+         */
+        CLOSED,
+        /**
+         * Requests are rejected until the cool-down has elapsed.
+         */
+        OPEN,
+        /**
+         * A limited number of trial requests is sent to decide whether the circuit closes again.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * An immutable state of a circuit. Each half-open phase carries its own trial counters, so that counters of
+     * an earlier phase can never leak into a later one.
+     */
+    private record Phase(State state, long since, AtomicInteger permits, AtomicInteger successes) {
+    }
+
+    /**
+     * The circuit of one host: its current phase and a ring of the last {@code windowSize} outcomes. Running totals
+     * are updated by the difference between the new and the replaced outcome of a slot, so they always match
+     * the ring without a lock.
+     */
+    private final class Circuit {
+        private final AtomicReference<Phase> phase = new AtomicReference<>(new Phase(State.CLOSED, System.nanoTime(), null, null));
+
+        private final AtomicIntegerArray outcomes = new AtomicIntegerArray(windowSize);
+
+        private final AtomicLong index = new AtomicLong();
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        /**
+         * Returns the phase the call is admitted under, or null if the call is rejected.
+         */
+        Phase acquire(String host, long now) {
+            while (true) {
+                Phase current = phase.get();
+
+                switch (current.state) {
+                    case CLOSED:
+                        return current;
+                    case HALF_OPEN:
+                        return takePermit(current.permits) ? current : null;
+                    default:
+                        if (now - current.since < coolDown.toNanos()) return null;
+
+                        Phase halfOpen = new Phase(State.HALF_OPEN, now, new AtomicInteger(halfOpenCalls), new AtomicInteger());
+                        if (phase.compareAndSet(current, halfOpen)) {
+                            LOGGER.info("Circuit breaker for {} is half-open", host);
+                        }
+                }
+            }
+        }
+
+        /**
+         * Takes a trial permit if one is left. Rejected calls leave the count unchanged, so a permit released by
+         * a cancelled trial call can always be taken again.
+         */
+        private static boolean takePermit(AtomicInteger permits) {
+            while (true) {
+                int available = permits.get();
+                if (available <= 0) return false;
+                if (permits.compareAndSet(available, available - 1)) return true;
+            }
+        }
+
+        void release(Phase admitted) {
+            if (admitted.state == State.HALF_OPEN) admitted.permits.incrementAndGet();
+        }
+
+        void record(String host, Phase admitted, int outcome) {
+            if (admitted.state == State.HALF_OPEN) {
+                if ((outcome & (FAILED | SLOW)) != 0) {
+                    open(host, admitted);
+                } else if (admitted.successes.incrementAndGet() >= halfOpenCalls) {
+                    clear();
+                    if (phase.compareAndSet(admitted, new Phase(State.CLOSED, System.nanoTime(), null, null))) {
+                        LOGGER.info("Circuit breaker for {} is closed", host);
+                    }
+                }
+                return;
+            }
+
+            // Outcomes of calls admitted before the circuit last opened belong to a window that was already judged.
+            if (phase.get() != admitted) return;
+
+            int slot = (int) (index.getAndIncrement() % windowSize);
+            int replaced = outcomes.getAndSet(slot, outcome);
+            int total = calls.addAndGet((outcome & RECORDED) - (replaced & RECORDED));
+            int failed = failures.addAndGet(((outcome & FAILED) - (replaced & FAILED)) / FAILED);
+            int slow = slowCalls.addAndGet(((outcome & SLOW) - (replaced & SLOW)) / SLOW);
+
+            if (total >= minimumCalls && ((double) failed / total >= failureRateThreshold || (double) slow / total >= slowCallRateThreshold)) {
+                open(host, admitted);
+            }
+        }
+
+        private void open(String host, Phase current) {
+            if (phase.compareAndSet(current, new Phase(State.OPEN, System.nanoTime(), null, null))) {
+                LOGGER.warn("Circuit breaker for {} is open for {} ms", host, coolDown.toMillis());
+            }
+        }
+
+        private void clear() {
+            for (int i = 0; i < windowSize; i++) {
+                int replaced = outcomes.getAndSet(i, 0);
+                calls.addAndGet(-(replaced & RECORDED));
+                failures.addAndGet(-(replaced & FAILED) / FAILED);
+                slowCalls.addAndGet(-(replaced & SLOW) / SLOW);
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link CircuitBreaker} instances.
+     */
+    public static class Builder {
+        private double failureRateThreshold = 0.5;
+
+        private double slowCallRateThreshold = 1.0;
+
+        private Duration slowCallDuration = Duration.ofSeconds(10);
+
+        private int windowSize = 100;
+
+        private int minimumCalls = 20;
+
+        private Duration coolDown = Duration.ofSeconds(30);
+
+        private int halfOpenCalls = 5;
+
+        private Set<StatusCode> failureStatusCodes = EnumSet.of(StatusCode.INTERNAL_SERVER_ERROR, StatusCode.BAD_GATEWAY,
+                StatusCode.SERVICE_UNAVAILABLE, StatusCode.GATEWAY_TIMEOUT);
+
+        private Predicate<Throwable> failureException = error -> true;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the share of failed calls in the window at which the circuit opens.
+         *
+         * @param failureRateThreshold the failure rate, between 0 (exclusive) and 1 (inclusive).
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the rate is out of range.
+         */
+        public Builder failureRateThreshold(double failureRateThreshold) {
+            if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+                throw new IllegalArgumentException("Failure rate threshold must be between 0 and 1");
+            }
+
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the share of slow calls in the window at which the circuit opens, and the duration from which a
+         * call counts as slow.
+         *
+         * @param slowCallRateThreshold the slow-call rate, between 0 (exclusive) and 1 (inclusive).
+         * @param slowCallDuration the duration from which a call is slow; must not be null or negative.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if any argument is out of range.
+         */
+        public Builder slowCallRateThreshold(double slowCallRateThreshold, Duration slowCallDuration) {
+            if (slowCallRateThreshold <= 0 || slowCallRateThreshold > 1) {
+                throw new IllegalArgumentException("Slow call rate threshold must be between 0 and 1");
+            }
+            if (slowCallDuration == null || slowCallDuration.isNegative()) {
+                throw new IllegalArgumentException("Slow call duration must be >= 0");
+            }
+
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            this.slowCallDuration = slowCallDuration;
+            return this;
+        }
+
+        /**
+         * Sets the number of recent calls whose outcomes are recorded, and how many of them are needed before
+         * the rates are evaluated.
+         *
+         * @param windowSize the number of recorded calls; must be greater than 0.
+         * @param minimumCalls the minimum number of recorded calls; must be greater than 0.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if any argument is zero or negative.
+         */
+        public Builder slidingWindow(int windowSize, int minimumCalls) {
+            if (windowSize <= 0 || minimumCalls <= 0) {
+                throw new IllegalArgumentException("Window size and minimum calls must be > 0");
+            }
+
+            this.windowSize = windowSize;
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * Sets how long an open circuit rejects requests before it lets trial requests through.
+         *
+         * @param coolDown the cool-down; must not be null or negative.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the cool-down is null or negative.
+         */
+        public Builder coolDown(Duration coolDown) {
+            if (coolDown == null || coolDown.isNegative()) {
+                throw new IllegalArgumentException("Cool-down must be >= 0");
+            }
+
+            this.coolDown = coolDown;
+            return this;
+        }
+
+        /**
+         * Sets the number of trial requests of a half-open circuit that must succeed before it closes.
+         *
+         * @param halfOpenCalls the number of trial requests; must be greater than 0.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the value is zero or negative.
+         */
+        public Builder halfOpenCalls(int halfOpenCalls) {
+            if (halfOpenCalls <= 0) {
+                throw new IllegalArgumentException("Half-open calls must be > 0");
+            }
+
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        /**
+         * Sets the status codes whose responses count as failures, replacing the default set.
+         *
+         * @param statusCodes the failure status codes; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the status codes are null.
+         */
+        public Builder failOnStatus(StatusCode... statusCodes) {
+            if (statusCodes == null) {
+                throw new IllegalArgumentException("Status codes cannot be null");
+            }
+
+            this.failureStatusCodes = statusCodes.length == 0 ? EnumSet.noneOf(StatusCode.class) : EnumSet.of(statusCodes[0], statusCodes);
+            return this;
+        }
+
+        /**
+         * Sets the condition under which a failed call counts as a failure. By default, all errors count.
+         *
+         * @param failureException the condition tested against the error of a call; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the condition is null.
+         */
+        public Builder failOnException(Predicate<Throwable> failureException) {
+            if (failureException == null) {
+                throw new IllegalArgumentException("Exception predicate cannot be null");
+            }
+
+            this.failureException = failureException;
+            return this;
+        }
+
+        /**
+         * Builds the circuit breaker.
+         *
+         * @return the new circuit breaker.
+         */
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+    }
+}
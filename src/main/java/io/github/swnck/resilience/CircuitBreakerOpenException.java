@@ -0,0 +1,16 @@
+package io.github.swnck.resilience;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a request is rejected without being sent because the {@link CircuitBreaker} of its host is open.
+ * The {@linkplain #getRetryAfter() retry-after} is the remaining cool-down after which the circuit lets trial
+ * requests through again.
+ */
+public class CircuitBreakerOpenException extends RequestRejectedException {
+    private static final long serialVersionUID = 1L;
+
+    public CircuitBreakerOpenException(String host, Duration retryAfter) {
+        super("Circuit breaker for " + host + " is open, retry after " + retryAfter.toMillis() + " ms", host, retryAfter);
+    }
+}
@@ -0,0 +1,319 @@
+package io.github.swnck.resilience;
+
+import io.github.swnck.util.Method;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Describes when a slow request is raced against identical copies of itself to cut tail latency.
+ * <p>
+ * If an idempotent request ({@code GET}, {@code PUT}, {@code DELETE}) has not completed after the hedging delay, a
+ * second identical attempt is sent. The first successful response, i.e. one with a status code below 500, wins and
+ * the other attempts are cancelled through their {@link CompletableFuture}s. If no attempt succeeds, the outcome of
+ * the attempt that completed last is returned.
+ * <p>
+ * By default, the delay is the observed 95th latency percentile of the request's host, so that only the slowest
+ * requests are hedged. Until enough latencies have been observed, the initial delay is used. Hedges draw from a
+ * token bucket that caps them at a share of the traffic, 10% by default.
+ * <p>
+ * A policy keeps the latency statistics and the hedge budget of all requests sent under it, so a client should
+ * use a single instance for all of its requests.
+ * <pre>{@code
+ * JxClient client = JxClient.builder()
+ *         .hedgingPolicy(HedgingPolicy.builder()
+ *                 .adaptiveDelay(0.95, Duration.ofMillis(50))
+ *                 .maxHedgeRatio(0.05)
+ *                 .build())
+ *         .build();
+ * }</pre>
+ */
+@Getter
+public final class HedgingPolicy {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HedgingPolicy.class);
+
+    private static final Set<Method> IDEMPOTENT_METHODS = EnumSet.of(Method.GET, Method.PUT, Method.DELETE);
+
+    /**
+     * The fixed hedging delay, or {@code null} if the delay is derived from the observed latencies.
+     */
+    private final Duration delay;
+
+    private final double percentile;
+
+    private final Duration initialDelay;
+
+    private final int maxHedges;
+
+    private final RetryBudget hedgeBudget;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    private HedgingPolicy(Builder builder) {
+        this.delay = builder.delay;
+        this.percentile = builder.percentile;
+        this.initialDelay = builder.initialDelay;
+        this.maxHedges = builder.maxHedges;
+        this.hedgeBudget = RetryBudget.of(builder.maxHedgeRatio, builder.maxHedgeBurst);
+    }
+
+    /**
+     * Creates a new {@link Builder} with the default settings: one hedge after the observed 95th latency
+     * percentile of the host (100 ms until enough latencies are known), for at most 10% of the requests.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the delay after which a request to the given host is hedged.
+     *
+     * @param host the host of the request; may be null.
+     * @return the current hedging delay.
+     */
+    public Duration delayFor(String host) {
+        if (delay != null) return delay;
+
+        LatencyWindow window = latencies.get(String.valueOf(host));
+        long nanos = window == null ? -1 : window.percentileNanos();
+        return nanos < 0 ? initialDelay : Duration.ofNanos(nanos);
+    }
+
+    /**
+     * Sends a request with the given function and hedges it according to this policy.
+     * Cancelling the returned future cancels all attempts in flight.
+     *
+     * @param request the request to send; must not be null.
+     * @param attempt the function sending one attempt of the request; must not be null.
+     * @param executor the executor that sends hedges once their delay has elapsed; must not be null.
+     * @param <B> the type of the response body
+     * @return a {@link CompletableFuture} that completes with the winning response.
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public <B> CompletableFuture<HttpResponse<B>> execute(HttpRequest request,
+                                                          Function<HttpRequest, CompletableFuture<HttpResponse<B>>> attempt,
+                                                          Executor executor) {
+        if (request == null || attempt == null || executor == null) {
+            throw new IllegalArgumentException("Request, attempt and executor cannot be null");
+        }
+
+        String host = String.valueOf(request.uri().getHost());
+
+        if (!isIdempotent(request)) {
+            return timed(host, attempt.apply(request));
+        }
+
+        hedgeBudget.recordRequest();
+
+        CompletableFuture<HttpResponse<B>> result = new CompletableFuture<>();
+        List<CompletableFuture<HttpResponse<B>>> attempts = new CopyOnWriteArrayList<>();
+        AtomicInteger outstanding = new AtomicInteger();
+
+        result.whenComplete((response, error) -> attempts.forEach(future -> future.cancel(true)));
+
+        launch(request, host, attempt, result, attempts, outstanding);
+
+        long delayMillis = Math.max(0, delayFor(host).toMillis());
+        for (int hedge = 1; hedge <= maxHedges; hedge++) {
+            int number = hedge;
+            Executor delayed = CompletableFuture.delayedExecutor(delayMillis * hedge, TimeUnit.MILLISECONDS, executor);
+            delayed.execute(() -> {
+                if (result.isDone() || !hedgeBudget.tryAcquire()) return;
+
+                LOGGER.debug("Hedging {} {} after {} ms (hedge {} of {})", request.method(), request.uri(),
+                        delayMillis * number, number, maxHedges);
+                launch(request, host, attempt, result, attempts, outstanding);
+            });
+        }
+
+        return result;
+    }
+
+    private <B> void launch(HttpRequest request, String host, Function<HttpRequest, CompletableFuture<HttpResponse<B>>> attempt,
+                            CompletableFuture<HttpResponse<B>> result, List<CompletableFuture<HttpResponse<B>>> attempts,
+                            AtomicInteger outstanding) {
+        outstanding.incrementAndGet();
+
+        CompletableFuture<HttpResponse<B>> future;
+        try {
+            future = timed(host, attempt.apply(request));
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        attempts.add(future);
+        if (result.isDone()) future.cancel(true);
+
+        future.whenComplete((response, error) -> {
+            int remaining = outstanding.decrementAndGet();
+
+            if (error == null && response.statusCode() < 500) {
+                result.complete(response);
+            } else if (remaining == 0) {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(response);
+                }
+            }
+        });
+    }
+
+    /**
+     * Records the latency of the given attempt once it completes and returns the attempt itself, so that
+     * cancelling it still reaches the underlying exchange.
+     */
+    private <B> CompletableFuture<HttpResponse<B>> timed(String host, CompletableFuture<HttpResponse<B>> future) {
+        if (delay != null) return future;
+
+        long start = System.nanoTime();
+        future.whenComplete((response, error) -> {
+            if (error == null) {
+                latencies.computeIfAbsent(host, key -> new LatencyWindow(percentile)).record(System.nanoTime() - start);
+            }
+        });
+        return future;
+    }
+
+    private static boolean isIdempotent(HttpRequest request) {
+        try {
+            return IDEMPOTENT_METHODS.contains(Method.valueOf(request.method()));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Builder for {@link HedgingPolicy} instances.
+     */
+    public static class Builder {
+        private Duration delay;
+
+        private double percentile = 0.95;
+
+        private Duration initialDelay = Duration.ofMillis(100);
+
+        private int maxHedges = 1;
+
+        private double maxHedgeRatio = 0.1;
+
+        private int maxHedgeBurst = 10;
+
+        private Builder() {
+        }
+
+        /**
+         * Hedges requests after a fixed delay instead of a latency percentile.
+         *
+         * @param delay the hedging delay; must not be null or negative.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the delay is null or negative.
+         */
+        public Builder delay(Duration delay) {
+            if (delay == null || delay.isNegative()) {
+                throw new IllegalArgumentException("Delay must be >= 0");
+            }
+
+            this.delay = delay;
+            return this;
+        }
+
+        /**
+         * Hedges requests after the given latency percentile of their host.
+         *
+         * @param percentile the latency percentile, between 0 (exclusive) and 1 (inclusive).
+         * @param initialDelay the delay used until enough latencies of a host are known; must not be null or negative.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if any argument is out of range.
+         */
+        public Builder adaptiveDelay(double percentile, Duration initialDelay) {
+            if (percentile <= 0 || percentile > 1) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 1");
+            }
+            if (initialDelay == null || initialDelay.isNegative()) {
+                throw new IllegalArgumentException("Initial delay must be >= 0");
+            }
+
+            this.delay = null;
+            this.percentile = percentile;
+            this.initialDelay = initialDelay;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of hedges per request. Hedge {@code n} is sent {@code n} delays after the first attempt.
+         *
+         * @param maxHedges the maximum number of additional attempts; must be greater than 0.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the value is zero or negative.
+         */
+        public Builder maxHedges(int maxHedges) {
+            if (maxHedges <= 0) {
+                throw new IllegalArgumentException("Max hedges must be > 0");
+            }
+
+            this.maxHedges = maxHedges;
+            return this;
+        }
+
+        /**
+         * Caps the hedges to the given share of the requests.
+         *
+         * @param maxHedgeRatio the number of hedges earned by each request, between 0 and 1.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the ratio is out of range.
+         */
+        public Builder maxHedgeRatio(double maxHedgeRatio) {
+            if (maxHedgeRatio < 0 || maxHedgeRatio > 1) {
+                throw new IllegalArgumentException("Max hedge ratio must be between 0 and 1");
+            }
+
+            this.maxHedgeRatio = maxHedgeRatio;
+            return this;
+        }
+
+        /**
+         * Sets the number of hedges that can be saved up for bursts of slow requests.
+         *
+         * @param maxHedgeBurst the maximum number of saved hedges; must not be negative.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the value is negative.
+         */
+        public Builder maxHedgeBurst(int maxHedgeBurst) {
+            if (maxHedgeBurst < 0) {
+                throw new IllegalArgumentException("Max hedge burst must be >= 0");
+            }
+
+            this.maxHedgeBurst = maxHedgeBurst;
+            return this;
+        }
+
+        /**
+         * Builds the hedging policy.
+         *
+         * @return the new policy.
+         */
+        public HedgingPolicy build() {
+            return new HedgingPolicy(this);
+        }
+    }
+}
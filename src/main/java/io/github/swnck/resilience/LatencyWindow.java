@@ -0,0 +1,56 @@
+package io.github.swnck.resilience;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free ring of the most recent latencies of one host, used to derive the hedging delay.
+ * The percentile is recomputed every few samples instead of on every read, so that reading it costs a volatile
+ * load on the request path.
+ */
+final class LatencyWindow {
+    private static final int SIZE = 128;
+
+    private static final int MIN_SAMPLES = 20;
+
+    private static final int RECOMPUTE_INTERVAL = 16;
+
+    private final double percentile;
+
+    private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private volatile long cachedNanos = -1;
+
+    LatencyWindow(double percentile) {
+        this.percentile = percentile;
+    }
+
+    void record(long nanos) {
+        long index = count.getAndIncrement();
+        samples.set((int) (index & (SIZE - 1)), nanos);
+
+        if (index + 1 >= MIN_SAMPLES && (index + 1) % RECOMPUTE_INTERVAL == 0) {
+            recompute((int) Math.min(index + 1, SIZE));
+        }
+    }
+
+    /**
+     * Returns the latency percentile in nanoseconds, or -1 if not enough samples were recorded yet.
+     */
+    long percentileNanos() {
+        return cachedNanos;
+    }
+
+    private void recompute(int size) {
+        long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+
+        cachedNanos = sorted[Math.min(size - 1, (int) Math.ceil(percentile * size) - 1)];
+    }
+}
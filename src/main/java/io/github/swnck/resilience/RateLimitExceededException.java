@@ -0,0 +1,15 @@
+package io.github.swnck.resilience;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a request is rejected without being sent because its {@link RateLimiter} has no permit available
+ * within the allowed wait. The {@linkplain #getRetryAfter() retry-after} is the time until the next permit.
+ */
+public class RateLimitExceededException extends RequestRejectedException {
+    private static final long serialVersionUID = 1L;
+
+    public RateLimitExceededException(String key, Duration retryAfter) {
+        super("Rate limit for " + key + " exceeded, retry after " + retryAfter.toMillis() + " ms", key, retryAfter);
+    }
+}
@@ -0,0 +1,378 @@
+package io.github.swnck.resilience;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Paces requests per host, or per user-defined key, so that client-side traffic stays within a server's quota.
+ * <p>
+ * The limiter implements the generic cell rate algorithm (GCRA), which behaves like a token bucket that allows
+ * {@code permits} requests per {@code period} with bursts of up to {@code burst} requests. The whole state of a key
+ * is a single {@code long}, the theoretical arrival time of the next request, which is advanced with an atomic
+ * compare-and-set. Acquiring a permit therefore never takes a lock.
+ * <p>
+ * When no permit is available, the {@link Mode} decides what happens: a blocking caller is
+ * {@linkplain Mode#BLOCK blocked}, the request is {@linkplain Mode#DELAY scheduled} for later without blocking,
+ * or it is {@linkplain Mode#REJECT rejected} with a {@link RateLimitExceededException}. Requests that would have
+ * to wait longer than the {@linkplain Builder#maxWait(Duration) maximum wait} are always rejected.
+ * <p>
+ * If {@linkplain Builder#adaptive(boolean) adaptive}, the limiter also reads the rate-limit headers of the
+ * responses: a {@code Retry-After} on a 429 or 503 response, or an exhausted {@code X-RateLimit-Remaining}
+ * ({@code RateLimit-Remaining}) with its {@code X-RateLimit-Reset} ({@code RateLimit-Reset}), holds back all
+ * requests of the key until the server's window resets.
+ */
+@Getter
+public final class RateLimiter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimiter.class);
+
+    /**
+     * Reset values above this are epoch seconds rather than delta seconds.
+     */
+    private static final long EPOCH_RESET_THRESHOLD = 1_000_000_000L;
+
+    private final long emissionIntervalNanos;
+
+    private final long burstToleranceNanos;
+
+    private final Mode mode;
+
+    private final Duration maxWait;
+
+    private final boolean adaptive;
+
+    @Getter(AccessLevel.NONE)
+    private final Function<HttpRequest, String> key;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<String, AtomicLong> states = new ConcurrentHashMap<>();
+
+    private RateLimiter(Builder builder) {
+        this.emissionIntervalNanos = Math.max(1, builder.period.toNanos() / builder.permits);
+        this.burstToleranceNanos = emissionIntervalNanos * (builder.burst - 1);
+        this.mode = builder.mode;
+        this.maxWait = builder.maxWait;
+        this.adaptive = builder.adaptive;
+        this.key = builder.key;
+    }
+
+    /**
+     * Creates a new {@link Builder} for a limiter of the given rate. By default, the limiter keys requests by
+     * host, allows no bursts beyond the rate, delays requests without blocking for at most 30 s, and adapts to
+     * rate-limit headers.
+     *
+     * @param permits the number of requests allowed per period; must be greater than 0.
+     * @param period the period; must not be null and must be positive.
+     * @return a new builder.
+     * @throws IllegalArgumentException if any argument is out of range.
+     */
+    public static Builder builder(int permits, Duration period) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("Permits must be > 0");
+        }
+        if (period == null || period.isNegative() || period.isZero()) {
+            throw new IllegalArgumentException("Period must be > 0");
+        }
+
+        return new Builder(permits, period);
+    }
+
+    /**
+     * Returns the key that paces requests to the given URI by its host and port.
+     *
+     * @param uri the URI; must not be null.
+     * @return the host key.
+     */
+    public static String hostKey(URI uri) {
+        return uri.getPort() == -1 ? String.valueOf(uri.getHost()) : uri.getHost() + ":" + uri.getPort();
+    }
+
+    /**
+     * Sends a request with the given function once the limiter grants a permit for it, and adapts to the
+     * rate-limit headers of the response.
+     *
+     * @param request the request to send; must not be null.
+     * @param attempt the function sending the request; must not be null.
+     * @param executor the executor that sends delayed requests; must not be null.
+     * @param <B> the type of the response body
+     * @return a {@link CompletableFuture} that completes with the response, or fails with a
+     * {@link RateLimitExceededException} if no permit is granted.
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public <B> CompletableFuture<HttpResponse<B>> execute(HttpRequest request,
+                                                          Function<HttpRequest, CompletableFuture<HttpResponse<B>>> attempt,
+                                                          Executor executor) {
+        if (request == null || attempt == null || executor == null) {
+            throw new IllegalArgumentException("Request, attempt and executor cannot be null");
+        }
+
+        String requestKey = String.valueOf(key.apply(request));
+        AtomicLong state = states.computeIfAbsent(requestKey, ignored -> new AtomicLong(Long.MIN_VALUE));
+        long waitNanos = acquire(state, System.nanoTime(), mode == Mode.REJECT ? 0 : maxWait.toNanos());
+
+        if (waitNanos < 0) {
+            return CompletableFuture.failedFuture(new RateLimitExceededException(requestKey, Duration.ofNanos(-waitNanos)));
+        }
+
+        if (waitNanos == 0) {
+            return send(request, requestKey, state, attempt);
+        }
+
+        // BLOCK is scheduled like DELAY as well: execute also runs on the client's executor threads, e.g. for
+        // retries, hedges and batches, which must never sleep. Blocking callers wait for the returned future.
+        CompletableFuture<HttpResponse<B>> result = new CompletableFuture<>();
+        Executor delayed = CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS, executor);
+        delayed.execute(() -> {
+            if (result.isDone()) return;
+
+            CompletableFuture<HttpResponse<B>> future = send(request, requestKey, state, attempt);
+            result.whenComplete((response, error) -> {
+                if (result.isCancelled()) future.cancel(true);
+            });
+            future.whenComplete((response, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(response);
+                }
+            });
+        });
+
+        return result;
+    }
+
+    /**
+     * Holds back all requests of the given key for the given time, e.g. when a server signals that its quota
+     * is exhausted through other means than the response headers.
+     *
+     * @param key the rate-limit key; must not be null.
+     * @param pause the time to hold requests back; must not be null or negative.
+     * @throws IllegalArgumentException if any argument is null or the pause is negative.
+     */
+    public void pause(String key, Duration pause) {
+        if (key == null || pause == null || pause.isNegative()) {
+            throw new IllegalArgumentException("Key cannot be null and pause must be >= 0");
+        }
+
+        pause(states.computeIfAbsent(key, ignored -> new AtomicLong(Long.MIN_VALUE)), System.nanoTime(), pause.toNanos());
+    }
+
+    /**
+     * Reserves the next permit of the given state.
+     *
+     * @return 0 if the permit is available now, the time to wait for it, or the negated time until the next permit
+     * if it is not available within the given maximum wait.
+     */
+    long acquire(AtomicLong state, long now, long maxWaitNanos) {
+        while (true) {
+            long current = state.get();
+            long arrival = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            long wait = arrival - burstToleranceNanos - now;
+
+            if (wait > maxWaitNanos) return -wait;
+            if (state.compareAndSet(current, arrival + emissionIntervalNanos)) return Math.max(0, wait);
+        }
+    }
+
+    private void pause(AtomicLong state, long now, long pauseNanos) {
+        long target = now + pauseNanos + burstToleranceNanos;
+
+        while (true) {
+            long current = state.get();
+            if (current != Long.MIN_VALUE && current - target >= 0) return;
+            if (state.compareAndSet(current, target)) return;
+        }
+    }
+
+    private <B> CompletableFuture<HttpResponse<B>> send(HttpRequest request, String requestKey, AtomicLong state,
+                                                        Function<HttpRequest, CompletableFuture<HttpResponse<B>>> attempt) {
+        CompletableFuture<HttpResponse<B>> future;
+        try {
+            future = attempt.apply(request);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if (adaptive) {
+            future.thenAccept(response -> serverPause(response).ifPresent(pause -> {
+                LOGGER.debug("Rate limit of {} exhausted, holding requests back for {} ms", requestKey, pause.toMillis());
+                pause(state, System.nanoTime(), pause.toNanos());
+            }));
+        }
+
+        return future;
+    }
+
+    /**
+     * Returns the pause a response asks for through its rate-limit headers, if any.
+     */
+    static Optional<Duration> serverPause(HttpResponse<?> response) {
+        int status = response.statusCode();
+        if (status == 429 || status == 503) {
+            Optional<Duration> retryAfter = response.headers().firstValue("Retry-After").map(RetryPolicy::parseRetryAfter);
+            if (retryAfter.isPresent()) return retryAfter;
+        }
+
+        Optional<String> remaining = response.headers().firstValue("X-RateLimit-Remaining")
+                .or(() -> response.headers().firstValue("RateLimit-Remaining"));
+        if (remaining.isEmpty() || !remaining.get().trim().equals("0")) return Optional.empty();
+
+        return response.headers().firstValue("X-RateLimit-Reset")
+                .or(() -> response.headers().firstValue("RateLimit-Reset"))
+                .flatMap(RateLimiter::parseReset);
+    }
+
+    private static Optional<Duration> parseReset(String value) {
+        try {
+            long reset = Long.parseLong(value.trim());
+            if (reset > EPOCH_RESET_THRESHOLD) reset -= System.currentTimeMillis() / 1000;
+            return Optional.of(Duration.ofSeconds(Math.max(0, reset)));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * What a {@link RateLimiter} does with a request for which no permit is available yet.
+     */
+    public enum Mode {
+        /**
+         * Blocks the thread sending the request until the permit is available. Only blocking sends, such as
+         * {@code send()}, wait; the request itself is scheduled like in {@link #DELAY}, so asynchronous sends,
+         * retries, hedges and batches never block a thread of the client.
+         */
+        BLOCK,
+        /**
+         * Schedules the request for the time the permit is available, without blocking a thread.
+         */
+        DELAY,
+        /**
+         * Rejects the request with a {@link RateLimitExceededException}.
+         */
+        REJECT
+    }
+
+    /**
+     * Builder for {@link RateLimiter} instances.
+     */
+    public static class Builder {
+        private final int permits;
+
+        private final Duration period;
+
+        private int burst = 1;
+
+        private Mode mode = Mode.DELAY;
+
+        private Duration maxWait = Duration.ofSeconds(30);
+
+        private boolean adaptive = true;
+
+        private Function<HttpRequest, String> key = request -> hostKey(request.uri());
+
+        private Builder(int permits, Duration period) {
+            this.permits = permits;
+            this.period = period;
+        }
+
+        /**
+         * Sets the number of requests that may be sent at once after a quiet period.
+         *
+         * @param burst the burst size; must be greater than 0.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the value is zero or negative.
+         */
+        public Builder burst(int burst) {
+            if (burst <= 0) {
+                throw new IllegalArgumentException("Burst must be > 0");
+            }
+
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * Sets what happens with requests for which no permit is available yet.
+         *
+         * @param mode the mode; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the mode is null.
+         */
+        public Builder mode(Mode mode) {
+            if (mode == null) {
+                throw new IllegalArgumentException("Mode cannot be null");
+            }
+
+            this.mode = mode;
+            return this;
+        }
+
+        /**
+         * Sets the longest time a request may wait for its permit in the blocking and delaying modes. Requests
+         * that would have to wait longer are rejected.
+         *
+         * @param maxWait the maximum wait; must not be null or negative.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the duration is null or negative.
+         */
+        public Builder maxWait(Duration maxWait) {
+            if (maxWait == null || maxWait.isNegative()) {
+                throw new IllegalArgumentException("Max wait must be >= 0");
+            }
+
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        /**
+         * Sets whether the limiter holds requests back when responses signal an exhausted quota.
+         *
+         * @param adaptive true to adapt to rate-limit headers.
+         * @return this builder, allowing for method chaining.
+         */
+        public Builder adaptive(boolean adaptive) {
+            this.adaptive = adaptive;
+            return this;
+        }
+
+        /**
+         * Sets the function that derives the rate-limit key of a request, e.g. from an API key header.
+         * Requests with the same key share one rate.
+         *
+         * @param key the key function; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the function is null.
+         */
+        public Builder key(Function<HttpRequest, String> key) {
+            if (key == null) {
+                throw new IllegalArgumentException("Key function cannot be null");
+            }
+
+            this.key = key;
+            return this;
+        }
+
+        /**
+         * Builds the rate limiter.
+         *
+         * @return the new rate limiter.
+         */
+        public RateLimiter build() {
+            return new RateLimiter(this);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.swnck.resilience;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a request is rejected on the client side without being sent, e.g. because the circuit of its host is
+ * open or its rate limit is exhausted. {@link io.github.swnck.request.AbstractRequest#send()} rethrows these
+ * exceptions instead of returning an empty response, so callers can fall back immediately.
+ */
+@Getter
+public class RequestRejectedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The host or rate-limit key the request was rejected for.
+     */
+    private final String host;
+
+    /**
+     * The time after which a request is expected to be admitted again.
+     */
+    private final Duration retryAfter;
+
+    public RequestRejectedException(String message, String host, Duration retryAfter) {
+        super(message);
+        this.host = host;
+        this.retryAfter = retryAfter;
+    }
+}
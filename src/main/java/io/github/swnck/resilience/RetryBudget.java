@@ -0,0 +1,97 @@
+package io.github.swnck.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A client-wide token bucket that limits retries to a share of the regular traffic, so that retries cannot
+ * multiply the load on a backend that is already failing.
+ * <p>
+ * Every request that may be retried deposits {@code retryRatio} tokens, and every retry withdraws one token. The
+ * bucket holds at most {@code maxRetries} tokens and starts out full, so that a few retries are possible right
+ * after startup. With a ratio of {@code 0.2}, retries add at most 20% on top of the regular requests in the long
+ * run, no matter how many attempts a {@link RetryPolicy} allows per request.
+ * <p>
+ * The budget is lock-free and safe for concurrent use.
+ */
+public final class RetryBudget {
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+
+    private final long capacity;
+
+    private final AtomicLong tokens;
+
+    private RetryBudget(long deposit, long capacity) {
+        this.deposit = deposit;
+        this.capacity = capacity;
+        this.tokens = new AtomicLong(capacity);
+    }
+
+    /**
+     * Creates a budget that allows the given ratio of retries to requests.
+     *
+     * @param retryRatio the number of retries earned by each request; must be between 0 and 1000.
+     * @param maxRetries the maximum number of retries that can be saved up; must not be negative.
+     * @return the new budget.
+     * @throws IllegalArgumentException if any argument is out of range.
+     */
+    public static RetryBudget of(double retryRatio, int maxRetries) {
+        if (retryRatio < 0 || retryRatio > 1000) {
+            throw new IllegalArgumentException("Retry ratio must be between 0 and 1000");
+        }
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Max retries must be >= 0");
+        }
+
+        return new RetryBudget(Math.round(retryRatio * SCALE), maxRetries * SCALE);
+    }
+
+    /**
+     * Creates a budget that never limits retries.
+     *
+     * @return the new budget.
+     */
+    public static RetryBudget unlimited() {
+        return new RetryBudget(0, -1);
+    }
+
+    /**
+     * Records a request that may be retried and deposits its share of tokens.
+     */
+    public void recordRequest() {
+        if (capacity < 0 || deposit == 0) return;
+
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= capacity) return;
+        } while (!tokens.compareAndSet(current, Math.min(capacity, current + deposit)));
+    }
+
+    /**
+     * Withdraws the token for one retry if the budget allows it.
+     *
+     * @return true if the retry may be sent, false if the budget is exhausted.
+     */
+    public boolean tryAcquire() {
+        if (capacity < 0) return true;
+
+        long current;
+        do {
+            current = tokens.get();
+            if (current < SCALE) return false;
+        } while (!tokens.compareAndSet(current, current - SCALE));
+
+        return true;
+    }
+
+    /**
+     * Returns the number of retries that are currently available.
+     *
+     * @return the available retries, or {@link Double#POSITIVE_INFINITY} for an unlimited budget.
+     */
+    public double getAvailableRetries() {
+        return capacity < 0 ? Double.POSITIVE_INFINITY : (double) tokens.get() / SCALE;
+    }
+}
@@ -0,0 +1,385 @@
+package io.github.swnck.resilience;
+
+import io.github.swnck.util.Method;
+import io.github.swnck.util.StatusCode;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Describes when and how failed requests are sent again.
+ * <p>
+ * A request is retried if its response has one of the {@linkplain Builder#retryOnStatus(StatusCode...) retryable
+ * status codes} or if it fails with a {@linkplain Builder#retryOnException(Predicate) retryable exception}, as
+ * long as the maximum number of attempts has not been reached and the {@link RetryBudget} of the client allows it.
+ * Only idempotent methods ({@code GET}, {@code PUT}, {@code DELETE}) are retried unless
+ * {@link Builder#retryNonIdempotent()} is set.
+ * <p>
+ * The delay before a retry follows an exponential backoff with full jitter: before retry {@code n} the policy
+ * waits a random time between zero and {@code min(maxDelay, baseDelay * 2^(n-1))}. If the response carries a
+ * Retry-After header, the policy waits at least that long, and gives up if the server asks for more than
+ * {@link Builder#maxRetryAfter(Duration) maxRetryAfter}. Waits are scheduled on the client's executor; no thread
+ * is blocked while waiting.
+ * <pre>{@code
+ * JxClient client = JxClient.builder()
+ *         .retryPolicy(RetryPolicy.builder()
+ *                 .maxAttempts(4)
+ *                 .baseDelay(Duration.ofMillis(200))
+ *                 .build())
+ *         .build();
+ * }</pre>
+ */
+@Getter
+public final class RetryPolicy {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetryPolicy.class);
+
+    private static final Set<Method> IDEMPOTENT_METHODS = EnumSet.of(Method.GET, Method.PUT, Method.DELETE);
+
+    private static final RetryPolicy NONE = builder().maxAttempts(1).build();
+
+    private final int maxAttempts;
+
+    private final Set<StatusCode> retryableStatusCodes;
+
+    private final Predicate<Throwable> retryableException;
+
+    private final Duration baseDelay;
+
+    private final Duration maxDelay;
+
+    private final Duration maxRetryAfter;
+
+    private final boolean retryNonIdempotent;
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.retryableStatusCodes = Set.copyOf(builder.retryableStatusCodes);
+        this.retryableException = builder.retryableException;
+        this.baseDelay = builder.baseDelay;
+        this.maxDelay = builder.maxDelay;
+        this.maxRetryAfter = builder.maxRetryAfter;
+        this.retryNonIdempotent = builder.retryNonIdempotent;
+    }
+
+    /**
+     * Creates a new {@link Builder} with the default settings: 3 attempts, retries on 429, 502, 503, and 504 and
+     * on {@link IOException}s, a base delay of 100 ms, a maximum delay of 10 s, and a maximum Retry-After of 30 s.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns a policy that never retries, e.g. to disable the client's policy for a single request.
+     *
+     * @return the policy without retries.
+     */
+    public static RetryPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * Returns whether requests with the given method may be retried under this policy.
+     *
+     * @param method the HTTP method; must not be null.
+     * @return true if the method is idempotent or non-idempotent retries are enabled.
+     */
+    public boolean allows(Method method) {
+        return retryNonIdempotent || IDEMPOTENT_METHODS.contains(method);
+    }
+
+    /**
+     * Sends a request with the given function, retrying it according to this policy.
+     * Cancelling the returned future cancels the attempt in flight and stops further retries.
+     *
+     * @param request the request to send; must not be null.
+     * @param attempt the function sending one attempt of the request; must not be null.
+     * @param budget the budget each retry draws from; must not be null.
+     * @param executor the executor that runs retries once their delay has elapsed; must not be null.
+     * @param <B> the type of the response body
+     * @return a {@link CompletableFuture} that completes with the last response, or exceptionally with the last error.
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public <B> CompletableFuture<HttpResponse<B>> execute(HttpRequest request,
+                                                          Function<HttpRequest, CompletableFuture<HttpResponse<B>>> attempt,
+                                                          RetryBudget budget, Executor executor) {
+        if (request == null || attempt == null || budget == null || executor == null) {
+            throw new IllegalArgumentException("Request, attempt, budget and executor cannot be null");
+        }
+
+        if (maxAttempts <= 1 || !allows(methodOf(request))) {
+            return attempt.apply(request);
+        }
+
+        budget.recordRequest();
+
+        CompletableFuture<HttpResponse<B>> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<HttpResponse<B>>> inFlight = new AtomicReference<>();
+
+        result.whenComplete((response, error) -> {
+            CompletableFuture<HttpResponse<B>> current = inFlight.get();
+            if (result.isCancelled() && current != null) current.cancel(true);
+        });
+
+        run(1, request, attempt, budget, executor, result, inFlight);
+        return result;
+    }
+
+    private <B> void run(int attemptNumber, HttpRequest request, Function<HttpRequest, CompletableFuture<HttpResponse<B>>> attempt,
+                         RetryBudget budget, Executor executor, CompletableFuture<HttpResponse<B>> result,
+                         AtomicReference<CompletableFuture<HttpResponse<B>>> inFlight) {
+        if (result.isDone()) return;
+
+        CompletableFuture<HttpResponse<B>> future;
+        try {
+            future = attempt.apply(request);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        inFlight.set(future);
+
+        future.whenComplete((response, error) -> {
+            if (result.isDone()) return;
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            Duration delay = retryDelay(attemptNumber, response, cause);
+
+            if (delay == null || !budget.tryAcquire()) {
+                if (cause != null) {
+                    result.completeExceptionally(cause);
+                } else {
+                    result.complete(response);
+                }
+                return;
+            }
+
+            LOGGER.debug("Retrying {} {} in {} ms (attempt {} of {}): {}", request.method(), request.uri(),
+                    delay.toMillis(), attemptNumber + 1, maxAttempts, cause != null ? cause.toString() : response.statusCode());
+
+            Executor delayed = CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS, executor);
+            delayed.execute(() -> run(attemptNumber + 1, request, attempt, budget, executor, result, inFlight));
+        });
+    }
+
+    /**
+     * Returns the delay before the next attempt, or null if the outcome of the given attempt is final.
+     */
+    private Duration retryDelay(int attemptNumber, HttpResponse<?> response, Throwable error) {
+        if (attemptNumber >= maxAttempts) return null;
+
+        if (error != null) {
+            return retryableException.test(error) ? backoff(attemptNumber) : null;
+        }
+
+        if (!retryableStatusCodes.contains(StatusCode.fromCode(response.statusCode()))) return null;
+
+        Duration backoff = backoff(attemptNumber);
+        Duration retryAfter = response.headers().firstValue("Retry-After").map(RetryPolicy::parseRetryAfter).orElse(null);
+
+        if (retryAfter == null) return backoff;
+        if (retryAfter.compareTo(maxRetryAfter) > 0) return null;
+
+        return retryAfter.compareTo(backoff) > 0 ? retryAfter : backoff;
+    }
+
+    /**
+     * Returns a random delay between zero and the exponential backoff ceiling of the given retry.
+     */
+    private Duration backoff(int retry) {
+        long ceiling = maxDelay.toMillis();
+        if (retry - 1 < 62) {
+            ceiling = Math.min(ceiling, baseDelay.toMillis() * (1L << (retry - 1)));
+            if (ceiling < 0) ceiling = maxDelay.toMillis();
+        }
+
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    /**
+     * Parses a Retry-After value given in delta-seconds or as an HTTP date. Returns null for invalid values.
+     */
+    static Duration parseRetryAfter(String value) {
+        String trimmed = value.trim();
+
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException ignored) {
+        }
+
+        try {
+            Duration delay = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME));
+            return delay.isNegative() ? Duration.ZERO : delay;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static Method methodOf(HttpRequest request) {
+        try {
+            return Method.valueOf(request.method());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Builder for {@link RetryPolicy} instances.
+     */
+    public static class Builder {
+        private int maxAttempts = 3;
+
+        private Set<StatusCode> retryableStatusCodes = EnumSet.of(StatusCode.TOO_MANY_REQUESTS, StatusCode.BAD_GATEWAY,
+                StatusCode.SERVICE_UNAVAILABLE, StatusCode.GATEWAY_TIMEOUT);
+
+        private Predicate<Throwable> retryableException = error -> error instanceof IOException;
+
+        private Duration baseDelay = Duration.ofMillis(100);
+
+        private Duration maxDelay = Duration.ofSeconds(10);
+
+        private Duration maxRetryAfter = Duration.ofSeconds(30);
+
+        private boolean retryNonIdempotent;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum number of attempts, including the first one.
+         *
+         * @param maxAttempts the maximum number of attempts; must be greater than 0.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the value is zero or negative.
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts <= 0) {
+                throw new IllegalArgumentException("Max attempts must be > 0");
+            }
+
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the status codes whose responses are retried, replacing the default set.
+         *
+         * @param statusCodes the retryable status codes; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the status codes are null.
+         */
+        public Builder retryOnStatus(StatusCode... statusCodes) {
+            if (statusCodes == null) {
+                throw new IllegalArgumentException("Status codes cannot be null");
+            }
+
+            this.retryableStatusCodes = statusCodes.length == 0 ? EnumSet.noneOf(StatusCode.class) : EnumSet.of(statusCodes[0], statusCodes);
+            return this;
+        }
+
+        /**
+         * Sets the condition under which a failed attempt is retried. By default, {@link IOException}s such as
+         * connection failures and timeouts are retried.
+         *
+         * @param retryableException the condition tested against the error of a failed attempt; must not be null.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the condition is null.
+         */
+        public Builder retryOnException(Predicate<Throwable> retryableException) {
+            if (retryableException == null) {
+                throw new IllegalArgumentException("Exception predicate cannot be null");
+            }
+
+            this.retryableException = retryableException;
+            return this;
+        }
+
+        /**
+         * Sets the base delay of the exponential backoff.
+         *
+         * @param baseDelay the delay ceiling of the first retry; must not be null or negative.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the delay is null or negative.
+         */
+        public Builder baseDelay(Duration baseDelay) {
+            if (baseDelay == null || baseDelay.isNegative()) {
+                throw new IllegalArgumentException("Base delay must be >= 0");
+            }
+
+            this.baseDelay = baseDelay;
+            return this;
+        }
+
+        /**
+         * Sets the upper limit of the backoff delay.
+         *
+         * @param maxDelay the maximum backoff delay; must not be null or negative.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the delay is null or negative.
+         */
+        public Builder maxDelay(Duration maxDelay) {
+            if (maxDelay == null || maxDelay.isNegative()) {
+                throw new IllegalArgumentException("Max delay must be >= 0");
+            }
+
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * Sets the longest Retry-After the policy is willing to wait for. Responses asking for a longer wait are
+         * returned without retrying.
+         *
+         * @param maxRetryAfter the maximum Retry-After; must not be null or negative.
+         * @return this builder, allowing for method chaining.
+         * @throws IllegalArgumentException if the duration is null or negative.
+         */
+        public Builder maxRetryAfter(Duration maxRetryAfter) {
+            if (maxRetryAfter == null || maxRetryAfter.isNegative()) {
+                throw new IllegalArgumentException("Max Retry-After must be >= 0");
+            }
+
+            this.maxRetryAfter = maxRetryAfter;
+            return this;
+        }
+
+        /**
+         * Also retries non-idempotent requests ({@code POST}, {@code PATCH}). Only enable this if the server
+         * deduplicates requests, e.g. through idempotency keys.
+         *
+         * @return this builder, allowing for method chaining.
+         */
+        public Builder retryNonIdempotent() {
+            this.retryNonIdempotent = true;
+            return this;
+        }
+
+        /**
+         * Builds the retry policy.
+         *
+         * @return the new policy.
+         */
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
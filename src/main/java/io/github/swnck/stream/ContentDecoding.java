@@ -0,0 +1,422 @@
+package io.github.swnck.stream;
+
+import javax.net.ssl.SSLSession;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decodes {@code gzip} and {@code deflate} encoded response bodies while they are received.
+ * <p>
+ * The decoding handler wraps another {@link HttpResponse.BodyHandler}. If the response carries a supported
+ * Content-Encoding, every received chunk is inflated before it is handed to the wrapped handler's subscriber,
+ * so buffered, streamed, and callback bodies all see the decoded content without the compressed body ever
+ * being materialized as a whole. Responses without a supported encoding are passed through unchanged.
+ * <p>
+ * Once the body has been decoded, the Content-Encoding and Content-Length headers no longer describe it. They
+ * are removed from the headers seen by the wrapped handler, and {@link #decoded(HttpResponse)} removes them from
+ * the headers of the final response.
+ */
+public final class ContentDecoding {
+    /**
+     * The value sent as Accept-Encoding when automatic decompression is enabled.
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private ContentDecoding() {
+    }
+
+    /**
+     * Wraps the given handler so that gzip and deflate encoded bodies are decoded before they reach it.
+     *
+     * @param handler the handler receiving the decoded body; must not be null.
+     * @param <T> the body type produced by the handler
+     * @return the decoding handler.
+     * @throws IllegalArgumentException if the provided handler is null.
+     */
+    public static <T> HttpResponse.BodyHandler<T> decoding(HttpResponse.BodyHandler<T> handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Body handler cannot be null");
+        }
+
+        return responseInfo -> switch (encodingOf(responseInfo.headers())) {
+            case "gzip", "x-gzip" -> new InflatingSubscriber<>(handler.apply(new DecodedInfo(responseInfo)), true);
+            case "deflate" -> new InflatingSubscriber<>(handler.apply(new DecodedInfo(responseInfo)), false);
+            default -> handler.apply(responseInfo);
+        };
+    }
+
+    /**
+     * Returns the given response with the Content-Encoding and Content-Length headers removed if its body was
+     * decoded by a {@linkplain #decoding(HttpResponse.BodyHandler) decoding handler}, or the response itself if
+     * it was passed through unchanged.
+     *
+     * @param response the response received through a decoding handler; must not be null.
+     * @param <T> the body type of the response
+     * @return the response with headers that describe the decoded body.
+     * @throws IllegalArgumentException if the provided response is null.
+     */
+    public static <T> HttpResponse<T> decoded(HttpResponse<T> response) {
+        if (response == null) {
+            throw new IllegalArgumentException("Response cannot be null");
+        }
+
+        return switch (encodingOf(response.headers())) {
+            case "gzip", "x-gzip", "deflate" -> new DecodedResponse<>(response);
+            default -> response;
+        };
+    }
+
+    private static String encodingOf(HttpHeaders headers) {
+        return headers.firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static HttpHeaders withoutEncoding(HttpHeaders headers) {
+        return HttpHeaders.of(headers.map(), (name, value) ->
+                !name.equalsIgnoreCase("Content-Encoding") && !name.equalsIgnoreCase("Content-Length"));
+    }
+
+    /**
+     * The response info handed to the wrapped handler of a decoded body.
+     */
+    private record DecodedInfo(HttpResponse.ResponseInfo info, HttpHeaders headers) implements HttpResponse.ResponseInfo {
+        private DecodedInfo(HttpResponse.ResponseInfo info) {
+            this(info, withoutEncoding(info.headers()));
+        }
+
+        @Override
+        public int statusCode() {
+            return info.statusCode();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return info.version();
+        }
+    }
+
+    /**
+     * A response whose body was decoded, exposing the headers of the decoded body.
+     */
+    private static final class DecodedResponse<T> implements HttpResponse<T> {
+        private final HttpResponse<T> response;
+
+        private final HttpHeaders headers;
+
+        private DecodedResponse(HttpResponse<T> response) {
+            this.response = response;
+            this.headers = withoutEncoding(response.headers());
+        }
+
+        @Override
+        public int statusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public HttpRequest request() {
+            return response.request();
+        }
+
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return response.previousResponse();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return headers;
+        }
+
+        @Override
+        public T body() {
+            return response.body();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return response.sslSession();
+        }
+
+        @Override
+        public URI uri() {
+            return response.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return response.version();
+        }
+    }
+
+    /**
+     * Inflates each received item into one decoded item for the downstream subscriber. The downstream demand is
+     * forwarded unchanged; an item that does not decode to any output, such as one holding only header bytes, is
+     * replaced by requesting the next item.
+     */
+    private static final class InflatingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private enum State { HEADER, BODY, TRAILER, DONE }
+
+        private final HttpResponse.BodySubscriber<T> downstream;
+
+        private final boolean gzip;
+
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+        private final CRC32 crc = new CRC32();
+
+        private Inflater inflater;
+
+        private State state = State.HEADER;
+
+        private int members;
+
+        private Flow.Subscription subscription;
+
+        private volatile boolean closed;
+
+        private InflatingSubscriber(HttpResponse.BodySubscriber<T> downstream, boolean gzip) {
+            this.downstream = downstream;
+            this.gzip = gzip;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            downstream.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    closed = true;
+                    subscription.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (closed) {
+                release();
+                return;
+            }
+
+            List<ByteBuffer> output = new ArrayList<>();
+
+            try {
+                for (ByteBuffer item : items) {
+                    decode(item, output);
+                }
+            } catch (IOException e) {
+                fail(e);
+                return;
+            } catch (DataFormatException e) {
+                fail(new IOException("Malformed compressed body", e));
+                return;
+            }
+
+            if (output.isEmpty()) {
+                subscription.request(1);
+            } else {
+                downstream.onNext(output);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            release();
+            if (closed) return;
+
+            closed = true;
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            release();
+            if (closed) return;
+
+            closed = true;
+            if (state == State.DONE || (state == State.HEADER && pending.size() == 0)) {
+                downstream.onComplete();
+            } else {
+                downstream.onError(new EOFException("Compressed body ended unexpectedly"));
+            }
+        }
+
+        private void decode(ByteBuffer input, List<ByteBuffer> output) throws IOException, DataFormatException {
+            while (input.hasRemaining()) {
+                switch (state) {
+                    case HEADER -> {
+                        if (!readHeader(input)) return;
+
+                        byte[] header = pending.toByteArray();
+                        pending.reset();
+                        crc.reset();
+                        state = State.BODY;
+
+                        if (gzip) {
+                            inflater = new Inflater(true);
+                            members++;
+                        } else {
+                            boolean zlib = (header[0] & 0x0F) == 8 && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+                            inflater = new Inflater(!zlib);
+                            inflate(ByteBuffer.wrap(header), output);
+                        }
+                    }
+                    case BODY -> inflate(input, output);
+                    case TRAILER -> {
+                        while (input.hasRemaining() && pending.size() < 8) {
+                            pending.write(input.get());
+                        }
+                        if (pending.size() < 8) return;
+
+                        ByteBuffer trailer = ByteBuffer.wrap(pending.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+                        if ((trailer.getInt(0) & 0xFFFFFFFFL) != crc.getValue()
+                                || trailer.getInt(4) != (int) inflater.getBytesWritten()) {
+                            throw new IOException("Corrupt gzip trailer");
+                        }
+
+                        pending.reset();
+                        release();
+                        state = State.HEADER;
+                    }
+                    case DONE -> input.position(input.limit());
+                }
+            }
+        }
+
+        /**
+         * Buffers header bytes from the input. Returns true once the complete header of the current member is
+         * buffered; for raw deflate data only the two bytes needed to detect a zlib wrapper are buffered.
+         */
+        private boolean readHeader(ByteBuffer input) throws IOException {
+            while (input.hasRemaining()) {
+                pending.write(input.get());
+
+                if (!gzip) {
+                    if (pending.size() == 2) return true;
+                    continue;
+                }
+
+                if (pending.size() == 2) {
+                    byte[] magic = pending.toByteArray();
+                    if ((magic[0] & 0xFF) != 0x1F || (magic[1] & 0xFF) != 0x8B) {
+                        if (members == 0) throw new IOException("Body is not in gzip format");
+
+                        // Trailing data after a complete member is ignored, as GZIPInputStream does.
+                        pending.reset();
+                        state = State.DONE;
+                        input.position(input.limit());
+                        return false;
+                    }
+                }
+
+                int length = gzipHeaderLength();
+                if (length >= 0 && pending.size() >= length) return true;
+            }
+            return false;
+        }
+
+        private void inflate(ByteBuffer input, List<ByteBuffer> output) throws DataFormatException {
+            inflater.setInput(input);
+
+            while (!inflater.finished() && !inflater.needsInput()) {
+                ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+                int inflated = inflater.inflate(chunk);
+
+                if (inflated == 0 && inflater.needsDictionary()) {
+                    throw new DataFormatException("Preset dictionaries are not supported");
+                }
+
+                if (inflated > 0) {
+                    chunk.flip();
+                    if (gzip) crc.update(chunk.duplicate());
+                    output.add(chunk);
+                }
+            }
+
+            if (inflater.finished()) {
+                if (gzip) {
+                    state = State.TRAILER;
+                } else {
+                    release();
+                    state = State.DONE;
+                }
+            }
+        }
+
+        /**
+         * Returns the length of the gzip member header in the pending buffer, or -1 if it is not complete yet.
+         */
+        private int gzipHeaderLength() {
+            if (pending.size() < 10) return -1;
+
+            byte[] header = pending.toByteArray();
+            int flags = header[3] & 0xFF;
+            int position = 10;
+
+            if ((flags & 0x04) != 0) {
+                if (header.length < position + 2) return -1;
+                position += 2 + ((header[position] & 0xFF) | ((header[position + 1] & 0xFF) << 8));
+            }
+            if ((flags & 0x08) != 0) {
+                position = skipZeroTerminated(header, position);
+                if (position < 0) return -1;
+            }
+            if ((flags & 0x10) != 0) {
+                position = skipZeroTerminated(header, position);
+                if (position < 0) return -1;
+            }
+            if ((flags & 0x02) != 0) {
+                position += 2;
+            }
+
+            return position;
+        }
+
+        private static int skipZeroTerminated(byte[] header, int position) {
+            for (int i = position; i < header.length; i++) {
+                if (header[i] == 0) return i + 1;
+            }
+            return -1;
+        }
+
+        private void fail(IOException error) {
+            closed = true;
+            release();
+            subscription.cancel();
+            downstream.onError(error);
+        }
+
+        private void release() {
+            if (inflater != null) inflater.end();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package io.github.swnck.stream;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * Provides {@link HttpResponse.BodyHandler}s that push a response body to a callback piece by piece,
+ * so that arbitrarily large bodies can be processed with constant memory.
+ * <p>
+ * The callback is invoked sequentially and back-pressure is applied: the next piece is only requested once
+ * the callback has returned. If the callback throws, the body is cancelled and the response completes
+ * exceptionally with the thrown exception.
+ */
+public final class StreamingHandlers {
+
+    private StreamingHandlers() {
+    }
+
+    /**
+     * Returns a handler that decodes the body into lines and passes each line to the given consumer.
+     * The charset is taken from the Content-Type header and defaults to UTF-8.
+     *
+     * @param onLine the consumer receiving each line without its line terminator; must not be null.
+     * @return the body handler.
+     * @throws IllegalArgumentException if the provided consumer is null.
+     */
+    public static HttpResponse.BodyHandler<Void> lines(Consumer<String> onLine) {
+        if (onLine == null) {
+            throw new IllegalArgumentException("Line consumer cannot be null");
+        }
+
+        return responseInfo -> {
+            CallbackSubscriber<String> subscriber = new CallbackSubscriber<>(onLine);
+            return new ResultBodySubscriber(HttpResponse.BodyHandlers.fromLineSubscriber(subscriber).apply(responseInfo), subscriber.result);
+        };
+    }
+
+    /**
+     * Returns a handler that passes each chunk of the body to the given consumer as it arrives.
+     * The buffers are only valid for the duration of the callback.
+     *
+     * @param onChunk the consumer receiving each chunk; must not be null.
+     * @return the body handler.
+     * @throws IllegalArgumentException if the provided consumer is null.
+     */
+    public static HttpResponse.BodyHandler<Void> chunks(Consumer<ByteBuffer> onChunk) {
+        if (onChunk == null) {
+            throw new IllegalArgumentException("Chunk consumer cannot be null");
+        }
+
+        return responseInfo -> {
+            CallbackSubscriber<List<ByteBuffer>> subscriber = new CallbackSubscriber<>(buffers -> buffers.forEach(onChunk));
+            return new ResultBodySubscriber(HttpResponse.BodySubscribers.fromSubscriber(subscriber), subscriber.result);
+        };
+    }
+
+    /**
+     * A subscriber that hands every item to a consumer and requests one item at a time.
+     */
+    private static final class CallbackSubscriber<T> implements Flow.Subscriber<T> {
+        private final Consumer<? super T> consumer;
+
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private Flow.Subscription subscription;
+
+        private CallbackSubscriber(Consumer<? super T> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(T item) {
+            if (result.isDone()) return;
+
+            try {
+                consumer.accept(item);
+            } catch (RuntimeException e) {
+                subscription.cancel();
+                result.completeExceptionally(e);
+                return;
+            }
+
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(null);
+        }
+    }
+
+    /**
+     * Delegates the body to another subscriber but completes with the callback's own result, which is
+     * also completed when the callback cancels the body.
+     */
+    private record ResultBodySubscriber(HttpResponse.BodySubscriber<Void> delegate,
+                                        CompletableFuture<Void> result) implements HttpResponse.BodySubscriber<Void> {
+
+        @Override
+        public CompletionStage<Void> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            delegate.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            delegate.onComplete();
+        }
+    }
+}
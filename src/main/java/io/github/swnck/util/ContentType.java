@@ -2,6 +2,10 @@ package io.github.swnck.util;
 
 import lombok.Getter;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
 /**
  * Enum defining various commonly used content types (MIME types).
  * Each constant in this enum represents a specific media type used to describe the nature and format
@@ -63,4 +67,28 @@ public enum ContentType {
     public static String toString(ContentType contentType) {
         return contentType.mimeType;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the charset named by the charset parameter of a Content-Type header value, such as
+     * {@code text/html; charset=ISO-8859-1}. Like {@link java.net.http.HttpResponse.BodyHandlers#ofString()},
+     * it falls back to UTF-8 when there is no charset parameter or the charset is not supported.
+     *
+     * @param contentType the value of the Content-Type header; may be null.
+     * @return the charset of the content.
+     */
+    public static Charset charsetOf(String contentType) {
+        if (contentType == null) return StandardCharsets.UTF_8;
+
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                try {
+                    return Charset.forName(trimmed.substring(8).replace("\"", "").trim());
+                } catch (IllegalArgumentException e) {
+                    return StandardCharsets.UTF_8;
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
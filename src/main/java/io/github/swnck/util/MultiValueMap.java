@@ -0,0 +1,377 @@
+package io.github.swnck.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * An insertion-ordered multimap of names to string values, used for the headers and query parameters of a request.
+ * <p>
+ * Entries are kept in two parallel arrays of names and values, so there is no per-entry object, and a name may
+ * occur any number of times, as in {@code ?id=1&id=2} or repeated headers. {@linkplain #forHeaders() Header maps}
+ * compare names case-insensitively and store well-known header names in their canonical spelling, so
+ * {@code content-type} and {@code Content-Type} are the same header and the stored name is a shared constant;
+ * {@linkplain #forParameters() parameter maps} compare names exactly. Values are converted to strings when they are
+ * added, not when the request is sent.
+ * <p>
+ * {@link #snapshot()} returns an immutable copy in constant time: the snapshot shares the arrays, and this map
+ * copies them before it is next modified. Maps are not thread-safe, but snapshots can be shared freely.
+ */
+public final class MultiValueMap {
+    private static final String[] COMMON_HEADERS = {
+            "Accept", "Accept-Encoding", "Accept-Language", "Access-Control-Allow-Credentials",
+            "Access-Control-Allow-Headers", "Access-Control-Allow-Methods", "Access-Control-Allow-Origin",
+            "Access-Control-Expose-Headers", "Access-Control-Max-Age", "Authorization", "Cache-Control", "Content-Encoding",
+            "Content-Length", "Content-Type", "Cookie", "ETag", "If-Match", "If-Modified-Since", "If-None-Match",
+            "If-Unmodified-Since", "Origin", "Pragma", "Range", "Referer", "User-Agent", "X-Request-Id"
+    };
+
+    private static final String[] EMPTY = {};
+
+    private final boolean ignoreCase;
+
+    private final boolean frozen;
+
+    private String[] names;
+
+    private String[] values;
+
+    private int size;
+
+    /**
+     * Whether the arrays are shared with a snapshot or another map and must be copied before they are modified.
+     */
+    private boolean shared;
+
+    private MultiValueMap(boolean ignoreCase, boolean frozen, String[] names, String[] values, int size) {
+        this.ignoreCase = ignoreCase;
+        this.frozen = frozen;
+        this.names = names;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Creates an empty map whose names are compared case-insensitively, as HTTP header names are.
+     *
+     * @return the map.
+     */
+    public static MultiValueMap forHeaders() {
+        return new MultiValueMap(true, false, EMPTY, EMPTY, 0);
+    }
+
+    /**
+     * Creates an empty map whose names are compared exactly, as query parameter names are.
+     *
+     * @return the map.
+     */
+    public static MultiValueMap forParameters() {
+        return new MultiValueMap(false, false, EMPTY, EMPTY, 0);
+    }
+
+    /**
+     * Adds a value for the given name, after any values it already has.
+     *
+     * @param name the name; must not be null.
+     * @param value the value, stored as its string form; must not be null.
+     * @return this map, allowing for method chaining.
+     * @throws IllegalArgumentException if the name or value is null.
+     * @throws UnsupportedOperationException if this map is a snapshot.
+     */
+    public MultiValueMap add(String name, Object value) {
+        if (name == null || value == null) {
+            throw new IllegalArgumentException("Name and value cannot be null");
+        }
+
+        prepareWrite(1);
+        names[size] = canonical(name);
+        values[size] = value.toString();
+        size++;
+        return this;
+    }
+
+    /**
+     * Sets the value of the given name, replacing all values it already has. The name keeps the position of its
+     * first occurrence.
+     *
+     * @param name the name; must not be null.
+     * @param value the value, stored as its string form; must not be null.
+     * @return this map, allowing for method chaining.
+     * @throws IllegalArgumentException if the name or value is null.
+     * @throws UnsupportedOperationException if this map is a snapshot.
+     */
+    public MultiValueMap set(String name, Object value) {
+        if (name == null || value == null) {
+            throw new IllegalArgumentException("Name and value cannot be null");
+        }
+
+        int index = indexOf(name, 0);
+        if (index < 0) return add(name, value);
+
+        prepareWrite(0);
+        values[index] = value.toString();
+        removeFrom(name, index + 1);
+        return this;
+    }
+
+    /**
+     * Sets the values of every name in the given map, replacing the values those names already have in this map.
+     * If this map is empty, it shares the arrays of the given map until either is modified.
+     *
+     * @param other the map whose entries to set; must not be null.
+     * @return this map, allowing for method chaining.
+     * @throws IllegalArgumentException if the given map is null.
+     * @throws UnsupportedOperationException if this map is a snapshot.
+     */
+    public MultiValueMap setAll(MultiValueMap other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Map cannot be null");
+        }
+        if (other.size == 0) return this;
+
+        if (size == 0 && !frozen && other.ignoreCase == ignoreCase) {
+            names = other.names;
+            values = other.values;
+            size = other.size;
+            shared = true;
+            other.shared = true;
+            return this;
+        }
+
+        for (int i = 0; i < other.size; i++) {
+            if (other.indexOf(other.names[i], 0) == i) remove(other.names[i]);
+        }
+
+        prepareWrite(other.size);
+        System.arraycopy(other.names, 0, names, size, other.size);
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+        return this;
+    }
+
+    /**
+     * Removes all values of the given name.
+     *
+     * @param name the name; must not be null.
+     * @return {@code true} if the name had any values.
+     * @throws IllegalArgumentException if the name is null.
+     * @throws UnsupportedOperationException if this map is a snapshot.
+     */
+    public boolean remove(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name cannot be null");
+        }
+
+        int index = indexOf(name, 0);
+        if (index < 0) return false;
+
+        prepareWrite(0);
+        removeFrom(name, index);
+        return true;
+    }
+
+    /**
+     * Returns the first value of the given name.
+     *
+     * @param name the name; must not be null.
+     * @return the first value, or {@code null} if the name has none.
+     * @throws IllegalArgumentException if the name is null.
+     */
+    public String get(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name cannot be null");
+        }
+
+        int index = indexOf(name, 0);
+        return index < 0 ? null : values[index];
+    }
+
+    /**
+     * Returns all values of the given name, in insertion order.
+     *
+     * @param name the name; must not be null.
+     * @return the values, empty if the name has none.
+     * @throws IllegalArgumentException if the name is null.
+     */
+    public List<String> getAll(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name cannot be null");
+        }
+
+        List<String> all = new ArrayList<>(1);
+        for (int index = indexOf(name, 0); index >= 0; index = indexOf(name, index + 1)) {
+            all.add(values[index]);
+        }
+        return all;
+    }
+
+    /**
+     * Returns whether the given name has any values.
+     *
+     * @param name the name; must not be null.
+     * @return {@code true} if the name has a value.
+     * @throws IllegalArgumentException if the name is null.
+     */
+    public boolean contains(String name) {
+        return get(name) != null;
+    }
+
+    /**
+     * Returns the number of entries, counting every value of a repeated name.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the name of the entry at the given position.
+     *
+     * @param index the position, from 0 to {@link #size()} exclusive.
+     * @return the name.
+     * @throws IndexOutOfBoundsException if the position is out of range.
+     */
+    public String getName(int index) {
+        return names[checkIndex(index)];
+    }
+
+    /**
+     * Returns the value of the entry at the given position.
+     *
+     * @param index the position, from 0 to {@link #size()} exclusive.
+     * @return the value.
+     * @throws IndexOutOfBoundsException if the position is out of range.
+     */
+    public String getValue(int index) {
+        return values[checkIndex(index)];
+    }
+
+    /**
+     * Passes every entry to the given action, in insertion order.
+     *
+     * @param action the action receiving each name and value; must not be null.
+     * @throws IllegalArgumentException if the action is null.
+     */
+    public void forEach(BiConsumer<? super String, ? super String> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null");
+        }
+
+        String[] names = this.names;
+        String[] values = this.values;
+        for (int i = 0, n = size; i < n; i++) {
+            action.accept(names[i], values[i]);
+        }
+    }
+
+    /**
+     * Returns an immutable copy of this map in constant time. The copy shares the arrays of this map, which copies
+     * them before it is next modified.
+     *
+     * @return the snapshot.
+     */
+    public MultiValueMap snapshot() {
+        if (frozen) return this;
+
+        shared = true;
+        return new MultiValueMap(ignoreCase, true, names, values, size);
+    }
+
+    /**
+     * Returns the entries as a map of names to their values. Header maps are keyed case-insensitively and sorted
+     * by name; parameter maps keep the insertion order of the names.
+     *
+     * @return a new map.
+     */
+    public Map<String, List<String>> toMap() {
+        Map<String, List<String>> map = ignoreCase ? new TreeMap<>(String.CASE_INSENSITIVE_ORDER) : new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.computeIfAbsent(names[i], name -> new ArrayList<>(1)).add(values[i]);
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("{");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) text.append(", ");
+            text.append(names[i]).append('=').append(values[i]);
+        }
+        return text.append('}').toString();
+    }
+
+    private int indexOf(String name, int from) {
+        for (int i = from; i < size; i++) {
+            String candidate = names[i];
+            if (candidate == name || (ignoreCase ? candidate.equalsIgnoreCase(name) : candidate.equals(name))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the entries of the given name from the given position on, keeping the order of the others.
+     */
+    private void removeFrom(String name, int from) {
+        int target = from;
+        for (int i = from; i < size; i++) {
+            String candidate = names[i];
+            if (candidate == name || (ignoreCase ? candidate.equalsIgnoreCase(name) : candidate.equals(name))) continue;
+
+            names[target] = candidate;
+            values[target] = values[i];
+            target++;
+        }
+
+        Arrays.fill(names, target, size, null);
+        Arrays.fill(values, target, size, null);
+        size = target;
+    }
+
+    /**
+     * Makes sure the arrays are owned by this map and have room for the given number of additional entries.
+     */
+    private void prepareWrite(int additional) {
+        if (frozen) {
+            throw new UnsupportedOperationException("Snapshot cannot be modified");
+        }
+
+        int required = size + additional;
+        if (shared || required > names.length) {
+            int capacity = required > names.length ? Math.max(8, Math.max(required, names.length * 2)) : names.length;
+            names = Arrays.copyOf(names, capacity);
+            values = Arrays.copyOf(values, capacity);
+            shared = false;
+        }
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the canonical constant for a well-known header name, or the name itself.
+     */
+    private String canonical(String name) {
+        if (!ignoreCase) return name;
+
+        for (String common : COMMON_HEADERS) {
+            if (common.length() == name.length() && common.equalsIgnoreCase(name)) return common;
+        }
+        return name;
+    }
+}
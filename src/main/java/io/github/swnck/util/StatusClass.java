@@ -0,0 +1,40 @@
+package io.github.swnck.util;
+
+import lombok.Getter;
+
+/**
+ * Enum representing the classes of HTTP status codes, as defined by their first digit,
+ * plus {@link #FAILED} for requests that did not receive a response.
+ */
+@Getter
+public enum StatusClass {
+    INFORMATIONAL("1xx"),
+    SUCCESS("2xx"),
+    REDIRECTION("3xx"),
+    CLIENT_ERROR("4xx"),
+    SERVER_ERROR("5xx"),
+    FAILED("failed");
+
+    private final String label;
+
+    StatusClass(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the class of the given status code.
+     *
+     * @param code the numeric status code.
+     * @return the status class, or {@link #FAILED} if the code is not between 100 and 599.
+     */
+    public static StatusClass of(int code) {
+        return switch (code / 100) {
+            case 1 -> INFORMATIONAL;
+            case 2 -> SUCCESS;
+            case 3 -> REDIRECTION;
+            case 4 -> CLIENT_ERROR;
+            case 5 -> SERVER_ERROR;
+            default -> FAILED;
+        };
+    }
+}
@@ -87,4 +87,13 @@ public enum StatusCode {
         }
         return DEFAULT;
     }
+
+    /**
+     * Returns the class of this status code, e.g. {@link StatusClass#SUCCESS} for {@code 2xx} codes.
+     *
+     * @return the status class of this code.
+     */
+    public StatusClass getStatusClass() {
+        return StatusClass.of(code);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+package io.github.swnck;
+
+import io.github.swnck.request.GetRequest;
+import io.github.swnck.stub.RecordedRequest;
+import io.github.swnck.stub.StubResponse;
+import io.github.swnck.stub.StubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JxClientTest {
+    private StubServer server;
+
+    @BeforeEach
+    void startServer() {
+        server = StubServer.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void appliesTheDefaultRequestTimeout() {
+        server.setDefaultResponse(StubResponse.ok("late").delay(Duration.ofMillis(500)));
+
+        try (JxClient client = JxClient.builder().requestTimeout(Duration.ofMillis(100)).build()) {
+            CompletionException error = assertThrows(CompletionException.class,
+                    () -> client.get(server.url("/slow")).sendAsync().join());
+            assertInstanceOf(HttpTimeoutException.class, error.getCause());
+
+            JxResponse response = client.get(server.url("/slow")).setTimeout(Duration.ofSeconds(5)).send();
+            assertEquals("late", response.getBody());
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> JxClient.builder().requestTimeout(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> JxClient.builder().requestTimeout(Duration.ofNanos(500)));
+        assertThrows(IllegalArgumentException.class, () -> JxClient.builder().requestTimeout(Duration.ofDays(30)));
+        assertThrows(IllegalArgumentException.class, () -> JxClient.builder().requestTimeout(null));
+
+        try (JxClient client = JxClient.builder().requestTimeout(Duration.ofDays(24)).build()) {
+            assertEquals("late", client.get(server.url("/slow")).send().getBody());
+        }
+    }
+
+    @Test
+    void rejectsRequestTimeoutsOutsideTheSupportedRange() {
+        GetRequest request = JxRequest.get(server.url("/"));
+
+        assertThrows(IllegalArgumentException.class, () -> request.setTimeout((Duration) null));
+        assertThrows(IllegalArgumentException.class, () -> request.setTimeout(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> request.setTimeout(Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class, () -> request.setTimeout(Duration.ofDays(30)));
+
+        assertEquals(200, request.setTimeout(Duration.ofMillis(Integer.MAX_VALUE)).send().getStatusCode());
+    }
+
+    @Test
+    void sendsDefaultHeadersWithEveryRequestOfTheClient() {
+        try (JxClient client = JxClient.builder()
+                .defaultHeader("X-Api-Key", "secret")
+                .defaultHeader("Accept", "application/json")
+                .build()) {
+            client.get(server.url("/a")).send();
+            client.post(server.url("/b")).setHeader("accept", "text/plain").send();
+            JxRequest.get(server.url("/c")).send();
+
+            List<RecordedRequest> requests = server.takeRequests();
+            assertEquals("secret", requests.get(0).header("X-Api-Key"));
+            assertEquals("application/json", requests.get(0).header("Accept"));
+            assertEquals("secret", requests.get(1).header("X-Api-Key"));
+            assertEquals(List.of("text/plain"), requests.get(1).headers().get("accept"));
+            assertNull(requests.get(2).header("X-Api-Key"));
+
+            assertSame(client, client.get(server.url("/")).getClient());
+            assertSame(JxClient.getDefault(), JxRequest.get(server.url("/")).getClient());
+        }
+    }
+
+    @Test
+    void shutsDownOnlyTheExecutorItOwns() {
+        JxClient owning = JxClient.builder().build();
+        assertEquals(200, owning.get(server.url("/")).send().getStatusCode());
+        ExecutorService owned = (ExecutorService) owning.getExecutor();
+
+        owning.close();
+        assertTrue(owned.isShutdown());
+
+        ExecutorService shared = Executors.newFixedThreadPool(2);
+        try {
+            JxClient borrowing = JxClient.builder().executor(shared).build();
+            assertEquals(200, borrowing.get(server.url("/")).send().getStatusCode());
+
+            borrowing.close();
+            assertFalse(shared.isShutdown());
+        } finally {
+            shared.shutdownNow();
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> JxClient.builder().requestTimeout(Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class, () -> JxClient.builder().defaultHeader("X-Api-Key", null));
+    }
+
+    @Test
+    void runsBlockingCallsOnVirtualThreads() throws Exception {
+        server.setDefaultResponse(StubResponse.ok("done").delay(Duration.ofMillis(50)));
+
+        ExecutorService executor;
+        try (JxClient client = JxClient.builder().virtualThreads().build()) {
+            assertTrue(client.isVirtualThreads());
+            executor = (ExecutorService) client.getExecutor();
+
+            assertSame(executor, client.getHttpClient().executor().orElseThrow());
+            assertTrue(executor.submit(() -> Thread.currentThread().isVirtual()).get());
+            assertEquals("done", client.get(server.url("/async")).sendAsync().join().getBody());
+
+            List<Future<Boolean>> calls = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                calls.add(executor.submit(() -> Thread.currentThread().isVirtual()
+                        && "done".equals(client.get(server.url("/blocking")).send().getBody())));
+            }
+            for (Future<Boolean> call : calls) {
+                assertTrue(call.get());
+            }
+            assertEquals(201, server.getRequestCount());
+        }
+        assertTrue(executor.isShutdown());
+
+        assertThrows(IllegalStateException.class,
+                () -> JxClient.builder().virtualThreads().executor(Runnable::run).build());
+    }
+}
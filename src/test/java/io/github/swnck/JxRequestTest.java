@@ -3,59 +3,207 @@ package io.github.swnck;
 import io.github.swnck.request.DeleteRequest;
 import io.github.swnck.request.GetRequest;
 import io.github.swnck.request.PostRequest;
+import io.github.swnck.resilience.RetryPolicy;
+import io.github.swnck.stub.RecordedRequest;
+import io.github.swnck.stub.StubResponse;
+import io.github.swnck.stub.StubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class JxRequestTest {
+    record User(long id, String name) {
+    }
+
+    private StubServer server;
+
+    @BeforeEach
+    void startServer() {
+        server = StubServer.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
     @Test
     void get() {
-        GetRequest jxRequest = JxRequest.get("http://localhost:8080/users/");
+        server.enqueue(StubResponse.ok("[{\"name\": \"test\"}]").header("Content-Type", "application/json"));
+
+        GetRequest jxRequest = JxRequest.get(server.url("/users/"));
         JxResponse response = jxRequest.send();
-        System.out.println(response);
-        assertNotNull(response);
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals("[{\"name\": \"test\"}]", response.getBody());
+
+        RecordedRequest recorded = server.takeRequest();
+        assertEquals("GET", recorded.method());
+        assertEquals("/users/", recorded.path());
     }
 
     @Test
     void post() {
+        server.enqueue(StubResponse.status(201));
+
         PostRequest jxRequest = JxRequest.post()
-                .setUrl("http://localhost:8080/users/test")
+                .setUrl(server.url("/users/test"))
                 .setBody("{\"name\": \"test\"}");
 
         JxResponse response = jxRequest.send();
-        System.out.println(response);
-        assertNotNull(response);
+
+        assertEquals(201, response.getStatusCode());
+
+        RecordedRequest recorded = server.takeRequest();
+        assertEquals("POST", recorded.method());
+        assertEquals("{\"name\": \"test\"}", recorded.bodyAsString());
     }
 
     @Test
     void delete() {
+        server.enqueue(StubResponse.status(204));
+
         DeleteRequest jxRequest = JxRequest.delete()
-                .setUrl("http://localhost:8080/users/test4")
+                .setUrl(server.url("/users/test4"))
                 .setBody("{\"name\": \"test\"}");
 
         JxResponse response = jxRequest.send();
-        System.out.println(response);
-        assertNotNull(response);
+
+        assertEquals(204, response.getStatusCode());
+
+        RecordedRequest recorded = server.takeRequest();
+        assertEquals("DELETE", recorded.method());
+        assertEquals("/users/test4", recorded.path());
+        assertEquals("{\"name\": \"test\"}", recorded.bodyAsString());
+    }
+
+    @Test
+    void sendsAsynchronouslyWithoutBlockingTheCaller() {
+        server.enqueue(StubResponse.ok("slow").delay(Duration.ofMillis(300)), StubResponse.ok("42"), StubResponse.ok("accepted"));
+
+        CompletableFuture<JxResponse> future = JxRequest.get(server.url("/slow")).sendAsync();
+        assertFalse(future.isDone());
+
+        JxResponse response = future.join();
+        assertEquals(200, response.getStatusCode());
+        assertEquals("slow", response.getBody());
+        assertTrue(response.getDurationMs() >= 300, "duration was " + response.getDurationMs() + " ms");
+
+        assertEquals(42, JxRequest.get(server.url("/answer")).thenApply(answer -> Integer.parseInt(answer.getBody())).join());
+
+        List<String> accepted = new CopyOnWriteArrayList<>();
+        JxRequest.get(server.url("/accept")).thenAccept(accept -> accepted.add(accept.getBody())).join();
+        assertEquals(List.of("accepted"), accepted);
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    void completesExceptionallyWhenTheRequestFails() {
+        StubServer closed = StubServer.start();
+        String unreachable = closed.url("/gone");
+        closed.close();
+
+        CompletionException error = assertThrows(CompletionException.class, () -> JxRequest.get(unreachable).sendAsync().join());
+        assertInstanceOf(IOException.class, error.getCause());
+        assertThrows(CompletionException.class, () -> JxRequest.get(unreachable).thenApply(JxResponse::getBody).join());
+
+        JxResponse response = JxRequest.get(unreachable).send();
+        assertEquals(0, response.getStatusCode());
+        assertEquals(-1, response.getDurationMs());
+        assertThrows(IllegalArgumentException.class, () -> JxRequest.get(unreachable).thenApply(null));
     }
 
     @Test
     void getWithVersion() {
-        GetRequest jxRequest = JxRequest.get("http://localhost:8080/users/")
+        GetRequest jxRequest = JxRequest.get(server.url("/users/"))
                 .setVersion(HttpClient.Version.HTTP_2);
         JxResponse response = jxRequest.send();
-        System.out.println(response);
-        assertNotNull(response);
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals("GET", server.takeRequest().method());
     }
 
     @Test
     void postWithParam() {
         PostRequest jxRequest = JxRequest.post()
-                .setUrl("http://localhost:8080/users/test3")
+                .setUrl(server.url("/users/test3"))
                 .setQueryParam("message", "test");
 
         JxResponse response = jxRequest.send();
-        assertNotNull(response);
+
+        assertEquals(200, response.getStatusCode());
+
+        RecordedRequest recorded = server.takeRequest();
+        assertEquals("message=test", recorded.query());
+        assertEquals(0, recorded.body().length);
+    }
+
+    @Test
+    void retriesStatusSequence() {
+        server.enqueue(StubResponse.status(503), StubResponse.status(503).header("Retry-After", "0"), StubResponse.ok("done"));
+
+        JxResponse response = JxRequest.get(server.url("/jobs/1"))
+                .setRetryPolicy(RetryPolicy.builder().baseDelay(Duration.ofMillis(1)).build())
+                .send();
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals("done", response.getBody());
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    void receivesChunkedSlowStream() {
+        server.enqueue(StubResponse.ok().generatedBody(100_000).chunked(8_192).throttle(16_384, Duration.ofMillis(1)));
+
+        JxResponse response = JxRequest.get(server.url("/export")).send();
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals(100_000, response.getBody().length());
+        assertEquals(StubResponse.generatedByte(99_999), (byte) response.getBody().charAt(99_999));
+        assertNull(server.takeRequest().query());
+    }
+
+    @Test
+    void postsEntitiesAsJson() {
+        server.enqueue(StubResponse.status(201));
+
+        JxResponse response = JxRequest.post(server.url("/users"))
+                .setBody(new User(1, "test"))
+                .send();
+
+        assertEquals(201, response.getStatusCode());
+
+        RecordedRequest recorded = server.takeRequest();
+        assertEquals("application/json", recorded.header("Content-Type"));
+        assertEquals("{\"id\":1,\"name\":\"test\"}", recorded.bodyAsString());
+    }
+
+    @Test
+    void mapsJsonBodyToEntities() {
+        server.enqueue(StubResponse.ok("{\"id\": 1, \"name\": \"test\"}"),
+                StubResponse.ok("[{\"id\": 1}, {\"id\": 2}]").chunked(4));
+
+        assertEquals(new User(1, "test"), JxRequest.get(server.url("/users/1")).sendAsync(User.class).join());
+
+        try (JxStreamResponse<InputStream> response = JxRequest.get(server.url("/users")).sendStream()) {
+            List<User> users = response.asList(User.class);
+            assertEquals(List.of(new User(1, null), new User(2, null)), users);
+        }
     }
 }
@@ -0,0 +1,68 @@
+package io.github.swnck;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JxResponseTest {
+    record User(long id, String name) {
+    }
+
+    @Test
+    void decodesBodyWithCharsetOfContentType() {
+        byte[] latin1 = "{\"id\": 1, \"name\": \"Zürich\"}".getBytes(StandardCharsets.ISO_8859_1);
+        JxResponse response = response(Map.of("content-type", List.of("application/json; charset=ISO-8859-1")), latin1);
+
+        assertEquals(StandardCharsets.ISO_8859_1, response.getCharset());
+        assertEquals("{\"id\": 1, \"name\": \"Zürich\"}", response.getBody());
+        assertEquals(new User(1, "Zürich"), response.as(User.class));
+        assertArrayEquals(latin1, response.bodyAsBytes());
+    }
+
+    @Test
+    void exposesBytesWithoutCopyingAndHeadersCaseInsensitively() {
+        byte[] bytes = "{\"id\": 2}".getBytes(StandardCharsets.UTF_8);
+        JxResponse response = response(Map.of("X-Request-Id", List.of("a", "b")), bytes);
+
+        ByteBuffer view = response.bodyAsByteBuffer();
+        assertEquals(bytes.length, view.remaining());
+        assertThrows(ReadOnlyBufferException.class, () -> view.put(0, (byte) 0));
+
+        bytes[7] = '3';
+        assertEquals(new User(3, null), response.as(User.class));
+
+        assertEquals("a", response.getHeader("x-request-id"));
+        assertEquals(List.of("a", "b"), response.getHeaders().get("X-REQUEST-ID"));
+        assertEquals(List.of(), response.getHeaderValues("missing"));
+        assertEquals("text/plain", response.getContentType());
+    }
+
+    @Test
+    void truncatesLongBodiesInToString() {
+        JxResponse response = response(Map.of(), "x".repeat(10_000).getBytes(StandardCharsets.UTF_8));
+
+        String text = response.toString();
+        assertTrue(text.contains("x".repeat(256) + "... (10000 bytes)"), text);
+        assertTrue(text.length() < 1_000, text);
+
+        JxResponse empty = new JxResponse();
+        assertNull(empty.getBody());
+        assertNull(empty.bodyAsBytes());
+        assertNull(empty.getHeader("Content-Type"));
+    }
+
+    private static JxResponse response(Map<String, List<String>> headers, byte[] body) {
+        return new JxResponse("http://localhost/", 200, HttpHeaders.of(headers, (name, value) -> true), ByteBuffer.wrap(body));
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.swnck;
+
+import io.github.swnck.stub.StubResponse;
+import io.github.swnck.stub.StubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JxStreamResponseTest {
+    private StubServer server;
+
+    @BeforeEach
+    void startServer() {
+        server = StubServer.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void exposesStatusAndHeadersBeforeTheBodyIsConsumed() throws Exception {
+        server.enqueue(StubResponse.status(202)
+                .header("Content-Type", "text/csv")
+                .header("X-Export-Id", "42")
+                .generatedBody(100_000)
+                .chunked(10_000)
+                .throttle(10_000, Duration.ofMillis(100)));
+
+        try (JxStreamResponse<InputStream> response = JxRequest.get(server.url("/export.csv")).sendStream()) {
+            long headersReceived = System.nanoTime();
+
+            assertEquals(202, response.getStatusCode());
+            assertEquals("text/csv", response.getContentType());
+            assertEquals(List.of("42"), response.getHeaders().get("x-export-id"));
+
+            byte[] body = response.getBody().readAllBytes();
+            long bodyMillis = Duration.ofNanos(System.nanoTime() - headersReceived).toMillis();
+
+            assertEquals(100_000, body.length);
+            assertEquals(StubResponse.generatedByte(99_999), body[99_999]);
+            assertTrue(bodyMillis >= 500, "body arrived " + bodyMillis + " ms after the headers");
+        }
+    }
+
+    @Test
+    void passesTheBodyLineByLine() {
+        server.enqueue(StubResponse.ok("first\nsecond line\r\n\nlast").header("Content-Type", "text/plain; charset=utf-8").chunked(3));
+
+        List<String> lines = new CopyOnWriteArrayList<>();
+        JxStreamResponse<Void> response = JxRequest.get(server.url("/events")).sendLinesAsync(lines::add).join();
+
+        assertEquals(200, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals(List.of("first", "second line", "", "last"), lines);
+    }
+
+    @Test
+    void passesTheBodyChunkByChunk() {
+        server.enqueue(StubResponse.ok().generatedBody(100_000).chunked(4_096));
+
+        AtomicLong received = new AtomicLong();
+        List<Integer> mismatches = new CopyOnWriteArrayList<>();
+        JxStreamResponse<Void> response = JxRequest.get(server.url("/blob")).sendChunksAsync(chunk -> {
+            for (int i = chunk.position(); i < chunk.limit(); i++) {
+                long offset = received.getAndIncrement();
+                if (chunk.get(i) != StubResponse.generatedByte(offset)) mismatches.add((int) offset);
+            }
+        }).join();
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals(100_000, received.get());
+        assertEquals(List.of(), mismatches);
+    }
+
+    @Test
+    void publishesTheBodyAsBuffers() throws Exception {
+        server.enqueue(StubResponse.ok("streamed body").chunked(4));
+
+        JxStreamResponse<Flow.Publisher<List<ByteBuffer>>> response = JxRequest.get(server.url("/publish")).sendPublisherAsync().join();
+
+        assertEquals(200, response.getStatusCode());
+
+        HttpResponse.BodySubscriber<String> subscriber = HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+        response.getBody().subscribe(subscriber);
+        assertEquals("streamed body", subscriber.getBody().toCompletableFuture().get());
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.swnck.batch;
+
+import io.github.swnck.JxRequest;
+import io.github.swnck.request.AbstractRequest;
+import io.github.swnck.stub.StubResponse;
+import io.github.swnck.stub.StubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchTest {
+    private StubServer server;
+
+    @BeforeEach
+    void startServer() {
+        server = StubServer.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void collectsResultsInInputOrder() {
+        server.setDispatcher(recorded -> {
+            int id = Integer.parseInt(recorded.path().substring("/items/".length()));
+            return StubResponse.ok(String.valueOf(id)).delay(Duration.ofMillis((20 - id) * 5L));
+        });
+
+        List<AbstractRequest<?>> requests = new ArrayList<>();
+        for (int id = 0; id < 20; id++) {
+            requests.add(JxRequest.get(server.url("/items/" + id)));
+        }
+
+        List<BatchResult> results = JxRequest.sendAll(List.copyOf(requests), 8);
+
+        assertEquals(20, results.size());
+        for (int id = 0; id < 20; id++) {
+            BatchResult result = results.get(id);
+            assertEquals(id, result.getIndex());
+            assertTrue(result.isSuccess());
+            assertEquals(String.valueOf(id), result.getResponse().getBody());
+        }
+    }
+
+    @Test
+    void keepsAtMostMaxInFlightRequestsOpen() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        server.setDispatcher(recorded -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(30);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return StubResponse.ok();
+        });
+
+        List<BatchResult> delivered = new CopyOnWriteArrayList<>();
+        JxRequest.sendAll(List.of(
+                JxRequest.get(server.url("/1")), JxRequest.get(server.url("/2")), JxRequest.get(server.url("/3")),
+                JxRequest.get(server.url("/4")), JxRequest.get(server.url("/5")), JxRequest.get(server.url("/6")),
+                JxRequest.get(server.url("/7")), JxRequest.get(server.url("/8")), JxRequest.get(server.url("/9"))
+        ), 3, delivered::add).join();
+
+        assertEquals(9, delivered.size());
+        assertEquals(9, server.getRequestCount());
+        assertTrue(peak.get() <= 3, "peak in flight was " + peak.get());
+        assertTrue(peak.get() >= 2, "requests were not sent concurrently");
+    }
+
+    @Test
+    void reportsFailuresPerRequestWithoutFailingTheBatch() {
+        StubServer closed = StubServer.start();
+        String unreachable = closed.url("/gone");
+        closed.close();
+
+        server.setDefaultResponse(StubResponse.status(500));
+
+        List<BatchResult> results = JxRequest.sendAll(List.of(
+                JxRequest.get(server.url("/a")),
+                JxRequest.get(unreachable),
+                JxRequest.get(server.url("/c"))
+        ), 2);
+
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(500, results.get(0).getResponse().getStatusCode());
+        assertFalse(results.get(1).isSuccess());
+        assertNull(results.get(1).getResponse());
+        assertTrue(results.get(2).isSuccess());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> JxRequest.sendAll(Arrays.asList(JxRequest.get(server.url("/a")), null), 2));
+        assertEquals(List.of(), JxRequest.sendAll(List.of(), 2));
+    }
+}
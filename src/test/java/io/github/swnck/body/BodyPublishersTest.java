@@ -0,0 +1,76 @@
+package io.github.swnck.body;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BodyPublishersTest {
+
+    @Test
+    void ofByteBufferSendsRemainingBytes() throws Exception {
+        ByteBuffer direct = ByteBuffer.allocateDirect(4).put(new byte[]{1, 2, 3, 4}).flip().position(1);
+
+        HttpRequest.BodyPublisher publisher = BodyPublishers.ofByteBuffer(direct);
+
+        assertEquals(3, publisher.contentLength());
+        assertArrayEquals(new byte[]{2, 3, 4}, collect(publisher));
+        assertEquals(1, direct.position());
+
+        assertEquals(0, BodyPublishers.ofByteBuffer(ByteBuffer.allocateDirect(0)).contentLength());
+        assertArrayEquals(new byte[0], collect(BodyPublishers.ofByteBuffer(direct.duplicate().position(4))));
+    }
+
+    @Test
+    void gzipEncodesContentWhileSending() throws Exception {
+        byte[] content = "{\"value\":\"compressible\"}".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+
+        HttpRequest.BodyPublisher publisher = BodyPublishers.gzip(HttpRequest.BodyPublishers.ofByteArray(content));
+        byte[] encoded = collect(publisher);
+
+        assertEquals(-1, publisher.contentLength());
+        assertArrayEquals(content, new GZIPInputStream(new ByteArrayInputStream(encoded)).readAllBytes());
+        assertEquals(encoded.length, collect(publisher).length);
+    }
+
+    private static byte[] collect(Flow.Publisher<ByteBuffer> publisher) throws Exception {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        List<ByteBuffer> buffers = new ArrayList<>();
+
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                buffers.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                ByteBuffer all = ByteBuffer.allocate(buffers.stream().mapToInt(ByteBuffer::remaining).sum());
+                buffers.forEach(all::put);
+                result.complete(all.array());
+            }
+        });
+
+        return result.get();
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.swnck.body;
+
+import io.github.swnck.util.ContentType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MultipartBodyTest {
+
+    @Test
+    void encodesPartsAndComputesLength(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("photo.png");
+        Files.write(file, new byte[]{1, 2, 3});
+
+        MultipartBody body = MultipartBody.builder()
+                .boundary("b")
+                .field("title", "Holiday \"2025\"")
+                .part("meta", "{}".getBytes(StandardCharsets.UTF_8), "meta.json", ContentType.APPLICATION_JSON)
+                .file("image", file, ContentType.IMAGE_PNG)
+                .build();
+
+        String expected = "--b\r\n" +
+                "Content-Disposition: form-data; name=\"title\"\r\n\r\n" +
+                "Holiday \"2025\"\r\n" +
+                "--b\r\n" +
+                "Content-Disposition: form-data; name=\"meta\"; filename=\"meta.json\"\r\n" +
+                "Content-Type: application/json\r\n\r\n" +
+                "{}\r\n" +
+                "--b\r\n" +
+                "Content-Disposition: form-data; name=\"image\"; filename=\"photo.png\"\r\n" +
+                "Content-Type: image/png\r\n\r\n" +
+                "\u0001\u0002\u0003\r\n" +
+                "--b--\r\n";
+
+        HttpRequest.BodyPublisher publisher = body.toBodyPublisher();
+        assertEquals("multipart/form-data; boundary=b", body.getContentType());
+        assertEquals(expected.length(), body.getContentLength());
+        assertEquals(expected.length(), publisher.contentLength());
+        assertEquals(expected, read(publisher));
+        assertEquals(expected, read(publisher));
+    }
+
+    @Test
+    void unknownPartSizeMakesLengthUnknown() throws Exception {
+        MultipartBody body = MultipartBody.builder()
+                .boundary("b")
+                .part("data", () -> new ByteArrayInputStream(new byte[]{'x'}), null, ContentType.APPLICATION_OCTET_STREAM)
+                .build();
+
+        assertEquals(-1, body.getContentLength());
+        assertEquals(-1, body.toBodyPublisher().contentLength());
+        assertEquals("--b\r\nContent-Disposition: form-data; name=\"data\"\r\n" +
+                "Content-Type: application/octet-stream\r\n\r\nx\r\n--b--\r\n", read(body.toBodyPublisher()));
+    }
+
+    private static String read(HttpRequest.BodyPublisher publisher) throws Exception {
+        HttpResponse.BodySubscriber<byte[]> subscriber = HttpResponse.BodySubscribers.ofByteArray();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscriber.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                subscriber.onNext(List.of(item));
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                subscriber.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                subscriber.onComplete();
+            }
+        });
+        return new String(subscriber.getBody().toCompletableFuture().get(), StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.swnck.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DiskCacheStoreTest {
+
+    @Test
+    void persistsEntriesAcrossRestarts(@TempDir Path dir) throws Exception {
+        try (DiskCacheStore store = DiskCacheStore.open(dir, 1 << 20)) {
+            store.put("a", entry("a", "first"));
+            store.put("b", entry("b", "second"));
+            store.put("a", entry("a", "replaced"));
+        }
+
+        try (DiskCacheStore store = DiskCacheStore.open(dir, 1 << 20)) {
+            CacheEntry entry = store.get("a");
+
+            assertEquals(2, store.getEntryCount());
+            assertEquals("replaced", body(entry));
+            assertEquals(200, entry.statusCode());
+            assertEquals("\"etag-a\"", entry.headers().firstValue("etag").orElse(null));
+            assertEquals(Map.of("accept", List.of("application/json")), entry.varyHeaders());
+            assertEquals(1234, entry.requestTime());
+            assertTrue(entry.body().isReadOnly());
+            assertEquals("second", body(store.get("b")));
+        }
+    }
+
+    @Test
+    void recoversRecordsWrittenAfterTheLastIndex(@TempDir Path dir) throws Exception {
+        DiskCacheStore crashed = DiskCacheStore.open(dir, 1 << 20);
+        crashed.put("a", entry("a", "first"));
+        crashed.put("b", entry("b", "second"));
+        crashed.remove("a");
+
+        try (Stream<Path> files = Files.list(dir)) {
+            Path segment = files.filter(file -> file.toString().endsWith(".jxc")).findFirst().orElseThrow();
+            Files.write(segment, new byte[]{0x4A, 0x58}, StandardOpenOption.APPEND);
+        }
+
+        try (DiskCacheStore store = DiskCacheStore.open(dir, 1 << 20)) {
+            assertNull(store.get("a"));
+            assertEquals("second", body(store.get("b")));
+
+            store.put("c", entry("c", "third"));
+            assertEquals("third", body(store.get("c")));
+        }
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedSegmentsAndCompactsSparseOnes(@TempDir Path dir) throws Exception {
+        String large = "x".repeat(2000);
+
+        try (DiskCacheStore store = DiskCacheStore.open(dir, 16 * 1024, 4096)) {
+            for (int i = 0; i < 20; i++) {
+                store.put("key-" + i, entry("key-" + i, large));
+                store.get("key-0");
+            }
+
+            assertTrue(store.getSize() <= 16 * 1024);
+            assertTrue(store.getEvictionCount() > 0);
+            assertNotNull(store.get("key-0"));
+            assertNotNull(store.get("key-19"));
+            assertNull(store.get("key-1"));
+
+            for (int i = 0; i < 50; i++) {
+                store.put("hot", entry("hot", large));
+            }
+            assertTrue(store.getSize() <= 16 * 1024);
+            assertEquals(large, body(store.get("hot")));
+        }
+    }
+
+    private static CacheEntry entry(String uri, String body) {
+        HttpHeaders headers = HttpHeaders.of(Map.of("ETag", List.of("\"etag-" + uri + "\""), "Vary", List.of("Accept")),
+                (name, value) -> true);
+
+        return new CacheEntry(uri, 200, headers, ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer(),
+                Map.of("accept", List.of("application/json")), 1234, 5678);
+    }
+
+    private static String body(CacheEntry entry) {
+        return StandardCharsets.UTF_8.decode(entry.body().duplicate()).toString();
+    }
+}
@@ -0,0 +1,188 @@
+package io.github.swnck.cache;
+
+import io.github.swnck.JxResponse;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class HttpCacheTest {
+    private static final URI CONFIG_URI = URI.create("http://localhost/config");
+
+    private final MutableClock clock = new MutableClock();
+
+    private final List<HttpRequest> sent = new ArrayList<>();
+
+    @Test
+    void servesFreshResponsesWithoutNetwork() {
+        HttpCache cache = new HttpCache(new MemoryCacheStore(1 << 20), clock);
+        Function<HttpRequest, CompletableFuture<HttpResponse<byte[]>>> network = respond(200, "v1", "Cache-Control", "max-age=60");
+
+        assertEquals("v1", cache.send(get(), network).join().getBody());
+        clock.advance(30_000);
+        JxResponse cached = cache.send(get(), network).join();
+
+        assertEquals("v1", cached.getBody());
+        assertEquals(200, cached.getStatusCode());
+        assertEquals(1, sent.size());
+        assertEquals(1, cache.getStats().hitCount());
+        assertEquals(1, cache.getStats().missCount());
+    }
+
+    @Test
+    void revalidatesStaleResponsesWithValidators() {
+        HttpCache cache = new HttpCache(new MemoryCacheStore(1 << 20), clock);
+        cache.send(get(), respond(200, "v1", "ETag", "\"a\"", "Last-Modified", "Mon, 01 Jan 2024 00:00:00 GMT")).join();
+
+        JxResponse revalidated = cache.send(get(), respond(304, "", "Cache-Control", "max-age=60")).join();
+
+        assertEquals("v1", revalidated.getBody());
+        assertEquals(200, revalidated.getStatusCode());
+        assertEquals("\"a\"", sent.get(1).headers().firstValue("If-None-Match").orElse(null));
+        assertEquals("Mon, 01 Jan 2024 00:00:00 GMT", sent.get(1).headers().firstValue("If-Modified-Since").orElse(null));
+        assertEquals(1, cache.getStats().revalidationCount());
+
+        cache.send(get(), respond(500, "unused")).join();
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    void servesStaleWhileRevalidatingInBackground() {
+        HttpCache cache = new HttpCache(new MemoryCacheStore(1 << 20), clock);
+        cache.send(get(), respond(200, "v1", "Cache-Control", "max-age=1, stale-while-revalidate=60", "ETag", "\"a\"")).join();
+        clock.advance(5_000);
+
+        JxResponse stale = cache.send(get(), respond(200, "v2", "Cache-Control", "max-age=60", "ETag", "\"b\"")).join();
+
+        assertEquals("v1", stale.getBody());
+        assertEquals(2, sent.size());
+        assertEquals("v2", cache.send(get(), respond(500, "unused")).join().getBody());
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    void honorsNoStoreAndInvalidatesOnUnsafeMethods() {
+        HttpCache cache = new HttpCache(new MemoryCacheStore(1 << 20), clock);
+
+        cache.send(get(), respond(200, "secret", "Cache-Control", "no-store", "ETag", "\"a\"")).join();
+        assertNull(cache.getStore().get(CONFIG_URI.toString()));
+
+        cache.send(get(), respond(200, "v1", "Cache-Control", "max-age=60")).join();
+        assertNotNull(cache.getStore().get(CONFIG_URI.toString()));
+
+        HttpRequest post = HttpRequest.newBuilder(CONFIG_URI).POST(HttpRequest.BodyPublishers.ofString("x")).build();
+        cache.send(post, respond(204, "")).join();
+        assertNull(cache.getStore().get(CONFIG_URI.toString()));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntriesByWeight() {
+        MemoryCacheStore store = new MemoryCacheStore(1200);
+        CacheEntry first = entry("a", 400);
+        CacheEntry second = entry("b", 400);
+
+        store.put("a", first);
+        store.put("b", second);
+        store.get("a");
+        store.put("c", entry("c", 400));
+
+        assertNotNull(store.get("a"));
+        assertNull(store.get("b"));
+        assertEquals(1, store.getEvictionCount());
+        assertEquals(first.weight() + entry("c", 400).weight(), store.getSize());
+
+        store.put("d", entry("d", 5000));
+        assertNull(store.get("d"));
+        assertEquals(2, store.getEntryCount());
+    }
+
+    private static HttpRequest get() {
+        return HttpRequest.newBuilder(CONFIG_URI).GET().build();
+    }
+
+    private static CacheEntry entry(String uri, int bodyLength) {
+        return new CacheEntry(uri, 200, HttpHeaders.of(Map.of(), (name, value) -> true),
+                ByteBuffer.allocate(bodyLength).asReadOnlyBuffer(), Map.of(), 0, 0);
+    }
+
+    private Function<HttpRequest, CompletableFuture<HttpResponse<byte[]>>> respond(int statusCode, String body, String... headers) {
+        Map<String, List<String>> headerMap = new LinkedHashMap<>();
+        for (int i = 0; i < headers.length; i += 2) {
+            headerMap.put(headers[i], List.of(headers[i + 1]));
+        }
+
+        return request -> {
+            sent.add(request);
+            return CompletableFuture.completedFuture(new StubResponse(statusCode, request,
+                    HttpHeaders.of(headerMap, (name, value) -> true), body.getBytes(StandardCharsets.UTF_8)));
+        };
+    }
+
+    private record StubResponse(int statusCode, HttpRequest request, HttpHeaders headers,
+                                byte[] body) implements HttpResponse<byte[]> {
+
+        @Override
+        public Optional<HttpResponse<byte[]>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private long millis = 1_700_000_000_000L;
+
+        void advance(long delta) {
+            millis += delta;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package io.github.swnck.download;
+
+import io.github.swnck.JxRequest;
+import io.github.swnck.stub.RecordedRequest;
+import io.github.swnck.stub.StubResponse;
+import io.github.swnck.stub.StubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegmentedDownloadTest {
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private static final String LAST_MODIFIED = "Tue, 01 Oct 2024 10:00:00 GMT";
+
+    private final byte[] content = new byte[100_000];
+
+    private StubServer server;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void startServer() {
+        new Random(42).nextBytes(content);
+        server = StubServer.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void probesAndSplitsTheResourceIntoRanges() throws IOException {
+        server.setDispatcher(recorded -> ranged(recorded, "\"v1\""));
+        Path target = directory.resolve("file.bin");
+
+        assertEquals(target, JxRequest.get(server.url("/file.bin")).download(target, 4));
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertFalse(Files.exists(DownloadProgress.sidecarOf(target)));
+
+        List<RecordedRequest> requests = server.takeRequests();
+        assertEquals(5, requests.size());
+        assertEquals("bytes=0-0", requests.get(0).header("Range"));
+        assertNull(requests.get(0).header("If-Range"));
+
+        List<String> ranges = new ArrayList<>();
+        for (RecordedRequest recorded : requests.subList(1, requests.size())) {
+            ranges.add(recorded.header("Range"));
+            assertEquals("\"v1\"", recorded.header("If-Range"));
+        }
+        ranges.sort(null);
+        assertEquals(List.of("bytes=0-24999", "bytes=25000-49999", "bytes=50000-74999", "bytes=75000-99999"), ranges);
+    }
+
+    @Test
+    void sendsOnlyStrongValidatorsAsIfRange() throws IOException {
+        server.setDispatcher(recorded -> ranged(recorded, "W/\"v1\"").header("Last-Modified", LAST_MODIFIED));
+        Path target = directory.resolve("weak.bin");
+
+        JxRequest.get(server.url("/weak.bin")).download(target, 2);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        List<RecordedRequest> requests = server.takeRequests();
+        assertEquals(3, requests.size());
+        for (RecordedRequest recorded : requests.subList(1, requests.size())) {
+            assertEquals(LAST_MODIFIED, recorded.header("If-Range"));
+        }
+
+        server.setDispatcher(recorded -> ranged(recorded, "W/\"v2\""));
+        JxRequest.get(server.url("/weak.bin")).download(target, 2);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        requests = server.takeRequests();
+        assertEquals(3, requests.size());
+        for (RecordedRequest recorded : requests) {
+            assertNull(recorded.header("If-Range"));
+        }
+    }
+
+    @Test
+    void resumesCompletedSegmentsFromTheSidecar() throws IOException {
+        server.setDispatcher(recorded -> recorded.header("Range").startsWith("bytes=25000-")
+                ? StubResponse.status(503).delay(Duration.ofMillis(300))
+                : ranged(recorded, "\"v1\""));
+        Path target = directory.resolve("resume.bin");
+
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> JxRequest.get(server.url("/resume.bin")).downloadAsync(target, 4).join());
+        assertInstanceOf(IOException.class, failure.getCause());
+        assertTrue(Files.exists(DownloadProgress.sidecarOf(target)));
+        server.takeRequests();
+
+        server.setDispatcher(recorded -> ranged(recorded, "\"v1\""));
+        JxRequest.get(server.url("/resume.bin")).download(target, 4);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertFalse(Files.exists(DownloadProgress.sidecarOf(target)));
+
+        List<RecordedRequest> requests = server.takeRequests();
+        assertEquals(2, requests.size());
+        assertEquals("bytes=0-0", requests.get(0).header("Range"));
+        assertEquals("bytes=25000-49999", requests.get(1).header("Range"));
+    }
+
+    @Test
+    void fallsBackToASingleRequestWithoutRangeSupport() throws IOException {
+        server.setDefaultResponse(StubResponse.ok().body(content));
+        Path target = directory.resolve("plain.bin");
+        Files.write(target, new byte[200_000]);
+
+        JxRequest.get(server.url("/plain.bin")).download(target, 4);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(1, server.getRequestCount());
+
+        server.setDispatcher(recorded -> recorded.header("Range") == null
+                ? StubResponse.ok().body(content)
+                : StubResponse.status(206).header("Content-Range", "bytes 0-0/*").body(new byte[]{content[0]}));
+        Path unknownLength = directory.resolve("unknown.bin");
+
+        JxRequest.get(server.url("/unknown.bin")).download(unknownLength, 4);
+
+        assertArrayEquals(content, Files.readAllBytes(unknownLength));
+    }
+
+    @Test
+    void failsWhenASegmentIsAnsweredWithTheFullBody() {
+        server.setDispatcher(recorded -> "bytes=0-0".equals(recorded.header("Range"))
+                ? ranged(recorded, "\"v1\"")
+                : StubResponse.ok().body(content));
+        Path target = directory.resolve("changed.bin");
+
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> JxRequest.get(server.url("/changed.bin")).downloadAsync(target, 2).join());
+        assertInstanceOf(IOException.class, failure.getCause());
+        assertTrue(Files.exists(DownloadProgress.sidecarOf(target)));
+    }
+
+    /**
+     * Answers the range of the request from {@link #content}, or the whole content if no range was requested.
+     */
+    private StubResponse ranged(RecordedRequest recorded, String etag) {
+        String range = recorded.header("Range");
+        if (range == null) return StubResponse.ok().header("ETag", etag).body(content);
+
+        Matcher matcher = RANGE.matcher(range);
+        assertTrue(matcher.matches(), range);
+
+        int from = Integer.parseInt(matcher.group(1));
+        int to = Integer.parseInt(matcher.group(2));
+        return StubResponse.status(206)
+                .header("ETag", etag)
+                .header("Content-Range", "bytes " + from + "-" + to + "/" + content.length)
+                .body(Arrays.copyOfRange(content, from, to + 1));
+    }
+}
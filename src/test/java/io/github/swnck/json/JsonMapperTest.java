@@ -0,0 +1,199 @@
+package io.github.swnck.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JsonMapperTest {
+
+    enum Role {ADMIN, USER}
+
+    record Address(String city, String zip) {
+    }
+
+    record User(long id, String name, boolean active, double score, Role role, Address address,
+                List<String> tags, Map<String, Integer> limits, Instant createdAt) {
+    }
+
+    static class Node {
+        String name;
+        int[] weights;
+        Set<Role> roles;
+        List<Node> children;
+        transient String ignored = "kept";
+    }
+
+    @Test
+    void mapsRecordsWithNestedValues() {
+        User user = JsonMapper.read(bytes("""
+                {"id": 42, "name": "Ann \\u00e9\\"q\\"", "active": true, "score": -12.5, "role": "ADMIN",
+                 "address": {"city": "Zürich", "zip": "8000"}, "tags": ["a", null, "c"],
+                 "limits": {"daily": 10}, "createdAt": "2024-01-02T03:04:05Z", "unknown": {"deep": [1, {"x": null}]}}
+                """), User.class);
+
+        assertEquals(42, user.id());
+        assertEquals("Ann é\"q\"", user.name());
+        assertTrue(user.active());
+        assertEquals(-12.5, user.score());
+        assertEquals(Role.ADMIN, user.role());
+        assertEquals(new Address("Zürich", "8000"), user.address());
+        assertEquals(Arrays.asList("a", null, "c"), user.tags());
+        assertEquals(Map.of("daily", 10), user.limits());
+        assertEquals(Instant.parse("2024-01-02T03:04:05Z"), user.createdAt());
+    }
+
+    @Test
+    void leavesMissingAndNullPropertiesAtTheirDefault() {
+        User user = JsonMapper.read(bytes("{\"name\": null, \"score\": null}"), User.class);
+
+        assertEquals(0, user.id());
+        assertNull(user.name());
+        assertEquals(0.0, user.score());
+    }
+
+    @Test
+    void mapsRecursiveClassesThroughTheirFields() {
+        Node node = JsonMapper.read(bytes("""
+                {"name": "root", "weights": [1, 2], "roles": ["USER", "ADMIN"], "ignored": "x",
+                 "children": [{"name": "leaf", "children": []}]}
+                """), Node.class);
+
+        assertEquals("root", node.name);
+        assertArrayEquals(new int[]{1, 2}, node.weights);
+        assertEquals(List.of(Role.USER, Role.ADMIN), new ArrayList<>(node.roles));
+        assertEquals("kept", node.ignored);
+        assertEquals("leaf", node.children.get(0).name);
+        assertTrue(node.children.get(0).children.isEmpty());
+    }
+
+    @Test
+    void readsListsFromStreamsAcrossBufferBoundaries() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 2_000; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"city\":\"City ").append(i).append(" \\\\ ü\",\"zip\":\"").append(10_000 + i).append("\"}");
+        }
+        json.append(']');
+
+        InputStream in = new ByteArrayInputStream(bytes(json.toString())) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+        List<Address> addresses = JsonMapper.readList(in, Address.class);
+
+        assertEquals(2_000, addresses.size());
+        assertEquals(new Address("City 1999 \\ ü", "11999"), addresses.get(1_999));
+    }
+
+    @Test
+    void mapsUntypedValuesAndNumbers() {
+        Object value = JsonMapper.read(bytes("{\"a\": [1, 2.5, 12345678901234567890, true, null], \"b\": {}}"), Object.class);
+
+        Map<?, ?> map = (Map<?, ?>) value;
+        List<?> list = (List<?>) map.get("a");
+        assertEquals(1L, list.get(0));
+        assertEquals(2.5, list.get(1));
+        assertEquals(new BigInteger("12345678901234567890"), list.get(2));
+        assertEquals(Boolean.TRUE, list.get(3));
+        assertNull(list.get(4));
+
+        assertEquals(new BigDecimal("0.10"), JsonMapper.read(bytes("0.10"), BigDecimal.class));
+        assertEquals(0.1, JsonMapper.read(bytes("0.1"), Double.class));
+        assertEquals(1e-30, JsonMapper.read(bytes("1e-30"), Double.class));
+        assertEquals(Long.MIN_VALUE, JsonMapper.read(bytes(String.valueOf(Long.MIN_VALUE)), Long.class));
+        assertNull(JsonMapper.read(bytes("  "), User.class));
+    }
+
+    @Test
+    void rejectsMalformedOrMismatchedJson() {
+        assertThrows(JsonMappingException.class, () -> JsonMapper.read(bytes("{\"id\": \"x\"}"), User.class));
+        assertThrows(JsonMappingException.class, () -> JsonMapper.read(bytes("{\"id\": 1"), User.class));
+        assertThrows(JsonMappingException.class, () -> JsonMapper.read(bytes("{\"role\": \"GUEST\"}"), User.class));
+        assertThrows(JsonMappingException.class, () -> JsonMapper.read(bytes("[1] 2"), Object.class));
+        assertThrows(JsonMappingException.class, () -> JsonMapper.read(bytes("3000000000"), Integer.class));
+        assertThrows(JsonMappingException.class, () -> JsonMapper.read(bytes("{}"), Runnable.class));
+    }
+
+    @Test
+    void rejectsValuesNestedTooDeeply() {
+        String deep = "[".repeat(20_000);
+        assertThrows(JsonMappingException.class, () -> JsonMapper.read(bytes(deep), Object.class));
+        assertThrows(JsonMappingException.class,
+                () -> JsonMapper.read(new ByteArrayInputStream(bytes(deep)), Object.class));
+        assertThrows(JsonMappingException.class,
+                () -> JsonMapper.read(bytes("{\"id\": 1, \"unknown\": " + deep + "}"), User.class));
+
+        String allowed = "[".repeat(1000) + "]".repeat(1000);
+        assertTrue(JsonMapper.read(bytes(allowed), Object.class) instanceof List<?>);
+        assertEquals(2001, ((List<?>) JsonMapper.read(bytes("[" + "[[1]],".repeat(2000) + "{}]"), Object.class)).size());
+    }
+
+    @Test
+    void writesValuesThatReadBackEqual() {
+        User user = new User(-7, "Ann \u00e9 \"q\" \\ \n \u0001 \uD83D\uDE00", true, 0.1, Role.USER,
+                new Address("Zürich", null), Arrays.asList("a", null), Map.of("daily", 10), Instant.parse("2024-01-02T03:04:05Z"));
+
+        byte[] json = JsonMapper.write(user);
+
+        assertEquals(user, JsonMapper.read(json, User.class));
+        assertTrue(new String(json, StandardCharsets.UTF_8).startsWith("{\"id\":-7,\"name\":\"Ann é \\\"q\\\" \\\\ \\n \\u0001 \uD83D\uDE00\""));
+
+        Node node = new Node();
+        node.name = "root";
+        node.weights = new int[]{1, Integer.MIN_VALUE};
+        node.children = List.of(new Node());
+
+        assertEquals("{\"name\":\"root\",\"weights\":[1,-2147483648],\"roles\":null,\"children\":"
+                + "[{\"name\":null,\"weights\":null,\"roles\":null,\"children\":null}]}", new String(JsonMapper.write(node), StandardCharsets.UTF_8));
+        assertEquals("null", new String(JsonMapper.write(null), StandardCharsets.UTF_8));
+        assertThrows(JsonMappingException.class, () -> JsonMapper.write(List.of(Double.NaN)));
+
+        float[] floats = {0.1f, 0.3f, -1.5f, 3.4028235e38f, 1.0e-10f};
+        byte[] floatJson = JsonMapper.write(Map.of("single", 0.1f, "many", floats));
+        assertTrue(new String(floatJson, StandardCharsets.UTF_8).contains("[0.1,0.3,-1.5,3.4028235E38,1.0E-10]"));
+        assertArrayEquals(floats, JsonMapper.read(JsonMapper.write(floats), float[].class));
+        assertEquals(0.3f, JsonMapper.read(JsonMapper.write(0.3f), Float.class));
+        assertEquals("[0.1]", new String(JsonMapper.write(List.of(0.1f)), StandardCharsets.UTF_8));
+        assertThrows(JsonMappingException.class, () -> JsonMapper.write(new float[]{Float.POSITIVE_INFINITY}));
+    }
+
+    @Test
+    void streamsLargeValuesInChunks() throws Exception {
+        List<Address> addresses = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            addresses.add(new Address("City " + i, String.valueOf(10_000 + i)));
+        }
+
+        try (InputStream in = JsonMapper.toInputStream(addresses)) {
+            byte[] chunk = new byte[1 << 20];
+            int first = in.read(chunk);
+            assertTrue(first > 0 && first < 64 * 1024);
+
+            InputStream json = new SequenceInputStream(new ByteArrayInputStream(chunk, 0, first), in);
+            assertEquals(addresses, JsonMapper.readList(json, Address.class));
+        }
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
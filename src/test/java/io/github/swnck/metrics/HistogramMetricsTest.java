@@ -0,0 +1,72 @@
+package io.github.swnck.metrics;
+
+import io.github.swnck.util.StatusClass;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistogramMetricsTest {
+
+    @Test
+    void aggregatesPerHostMethodAndStatusClass() {
+        HistogramMetrics metrics = new HistogramMetrics();
+
+        metrics.record(new RequestMetrics("api.local", "GET", 200, 1_000, 2_000_000, 5_000_000, 512, 0, null));
+        metrics.record(new RequestMetrics("api.local", "GET", 204, 1_000, 3_000_000, 4_000_000, 0, 0, null));
+        metrics.record(new RequestMetrics("api.local", "GET", 503, 1_000, 1_000_000, 1_000_000, 16, 0, null));
+        metrics.record(new RequestMetrics("api.local", "POST", -1, 1_000, -1, 9_000_000, 0, 128, new IOException()));
+
+        List<EndpointSnapshot> endpoints = metrics.snapshot().endpoints();
+
+        assertEquals(3, endpoints.size());
+
+        EndpointSnapshot success = endpoints.get(0);
+        assertEquals(StatusClass.SUCCESS, success.statusClass());
+        assertEquals(2, success.count());
+        assertEquals(512, success.bytesIn());
+        assertEquals(5_000_000, success.timeToLastByte().getMax());
+
+        assertEquals(StatusClass.SERVER_ERROR, endpoints.get(1).statusClass());
+
+        EndpointSnapshot failed = endpoints.get(2);
+        assertEquals("POST", failed.method());
+        assertEquals(StatusClass.FAILED, failed.statusClass());
+        assertEquals(0, failed.timeToHeaders().getCount());
+        assertEquals(128, failed.bytesOut());
+    }
+
+    @Test
+    void measuresThroughputFromTheLastReset() throws InterruptedException {
+        HistogramMetrics metrics = new HistogramMetrics();
+        metrics.record(new RequestMetrics("api.local", "GET", 200, 0, 1_000_000, 2_000_000, 0, 0, null));
+        Thread.sleep(500);
+
+        metrics.reset();
+        assertEquals(List.of(), metrics.snapshot().endpoints());
+
+        for (int i = 0; i < 10; i++) {
+            metrics.record(new RequestMetrics("api.local", "GET", 200, 0, 1_000_000, 2_000_000, 0, 0, null));
+        }
+        MetricsSnapshot snapshot = metrics.snapshot();
+
+        assertTrue(snapshot.elapsedNanos() < 400_000_000L, "elapsed " + snapshot.elapsedNanos() + " ns");
+        assertEquals(10, snapshot.endpoints().get(0).count());
+        assertTrue(snapshot.endpoints().get(0).throughput() > 25, "throughput " + snapshot.endpoints().get(0).throughput());
+    }
+
+    @Test
+    void rendersPrometheusText() {
+        HistogramMetrics metrics = new HistogramMetrics();
+        metrics.record(new RequestMetrics("api.local:8080", "GET", 200, 0, 1_000_000, 2_000_000, 64, 0, null));
+
+        String text = metrics.snapshot().toText();
+
+        assertTrue(text.contains("# TYPE jxrequest_time_to_last_byte_seconds summary\n"));
+        assertTrue(text.contains("jxrequest_time_to_last_byte_seconds_count{host=\"api.local:8080\",method=\"GET\",status=\"2xx\"} 1\n"));
+        assertTrue(text.contains("jxrequest_received_bytes_total{host=\"api.local:8080\",method=\"GET\",status=\"2xx\"} 64\n"));
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.swnck.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LogLinearHistogramTest {
+
+    @Test
+    void bucketsKeepRelativePrecisionOverTheWholeRange() {
+        for (long value = 1; value < 1L << LogLinearHistogram.MAX_EXPONENT; value = value * 3 + 1) {
+            long highest = LogLinearHistogram.highestValueOf(LogLinearHistogram.bucketOf(value));
+
+            assertTrue(highest >= value, "bucket of " + value + " ends below it");
+            assertTrue(highest - value <= value / LogLinearHistogram.SUB_BUCKETS, "bucket of " + value + " is too wide");
+        }
+
+        assertEquals(LogLinearHistogram.BUCKETS - 1, LogLinearHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    void reportsPercentilesCountSumAndMax() {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1_000);
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500_500_000, snapshot.getSum());
+        assertEquals(1_000_000, snapshot.getMax());
+        assertEquals(1_000_000, snapshot.valueAt(1));
+        assertWithin(500_000, snapshot.getP50());
+        assertWithin(990_000, snapshot.getP99());
+    }
+
+    @Test
+    void mergesValuesRecordedConcurrently() throws InterruptedException {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                for (int value = 0; value < 10_000; value++) {
+                    histogram.record(value);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertEquals(80_000, snapshot.getCount());
+        assertEquals(8L * 9_999 * 10_000 / 2, snapshot.getSum());
+        assertEquals(9_999, snapshot.getMax());
+    }
+
+    @Test
+    void emptyHistogramReportsZero() {
+        HistogramSnapshot snapshot = new LogLinearHistogram().snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getP99());
+        assertEquals(0, snapshot.getMean());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / LogLinearHistogram.SUB_BUCKETS,
+                "expected about " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.swnck.metrics;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RequestTraceTest {
+    private static final HttpRequest REQUEST = HttpRequest.newBuilder(URI.create("http://api.local:8080/users/42/orders")).GET().build();
+
+    @Test
+    void isNotStartedWithoutRecorderOrRecording() {
+        assertNull(RequestTrace.begin(REQUEST, null));
+        assertNotNull(RequestTrace.begin(REQUEST, metrics -> {
+        }));
+    }
+
+    @Test
+    void replacesIdentifierSegmentsInPath() {
+        assertEquals("/users/{id}/orders", RequestTrace.pathTemplate("/users/42/orders"));
+        assertEquals("/items/{id}", RequestTrace.pathTemplate("/items/3f2b9c1e-8d4a-4f6b-9a2e-1c5d7e9f0a3b"));
+        assertEquals("/blobs/{id}/", RequestTrace.pathTemplate("/blobs/a94a8fe5ccb19ba61c4c0873d391e987/"));
+        assertEquals("/v1/search", RequestTrace.pathTemplate("/v1/search"));
+        assertEquals("/", RequestTrace.pathTemplate(""));
+    }
+
+    @Test
+    void commitsFlightRecorderEvent() throws Exception {
+        Path file = Files.createTempFile("jxrequest", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(RequestEvent.NAME);
+            recording.start();
+
+            RequestTrace trace = RequestTrace.begin(REQUEST, null);
+            trace.record(new RequestMetrics("api.local:8080", "GET", 503, 1_000, 2_000, 3_000, 10, 0, null));
+            trace.record(new RequestMetrics("api.local:8080", "GET", 200, 4_000, 5_000, 6_000, 128, 0, null));
+            trace.end(null, null);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(RequestEvent.NAME))
+                .toList();
+        Files.delete(file);
+
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals("GET", event.getString("method"));
+        assertEquals("api.local:8080", event.getString("host"));
+        assertEquals("/users/{id}/orders", event.getString("path"));
+        assertEquals(-1, event.getInt("statusCode"));
+        assertEquals(1, event.getInt("retries"));
+        assertEquals(128, event.getLong("bytesIn"));
+        assertEquals(Duration.ofNanos(6_000), event.getDuration("timeToLastByte"));
+        assertEquals(Thread.currentThread().threadId(), event.getThread("callerThread").getJavaThreadId());
+    }
+}
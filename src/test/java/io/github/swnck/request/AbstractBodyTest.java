@@ -0,0 +1,157 @@
+package io.github.swnck.request;
+
+import io.github.swnck.JxRequest;
+import io.github.swnck.resilience.RetryPolicy;
+import io.github.swnck.stub.RecordedRequest;
+import io.github.swnck.stub.StubResponse;
+import io.github.swnck.stub.StubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AbstractBodyTest {
+    private static final byte[] CONTENT = "binary \u0000ÿ content".getBytes(StandardCharsets.UTF_8);
+
+    private StubServer server;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void startServer() {
+        server = StubServer.start();
+        server.setDefaultResponse(StubResponse.ok());
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void sendsBytesAndBuffersWithContentLength() {
+        byte[] padded = new byte[CONTENT.length + 2];
+        System.arraycopy(CONTENT, 0, padded, 2, CONTENT.length);
+        ByteBuffer heap = ByteBuffer.wrap(padded).position(2);
+        ByteBuffer direct = ByteBuffer.allocateDirect(CONTENT.length).put(CONTENT).flip();
+
+        JxRequest.post(server.url("/bytes")).setBody(CONTENT).send();
+        JxRequest.post(server.url("/heap")).setBody(heap).send();
+        JxRequest.put(server.url("/direct")).setBody(direct).send();
+        JxRequest.post(server.url("/empty")).setBody(ByteBuffer.allocateDirect(0)).send();
+
+        List<RecordedRequest> requests = server.takeRequests();
+        for (RecordedRequest recorded : requests.subList(0, 3)) {
+            assertSent(recorded, CONTENT, true);
+        }
+        assertArrayEquals(new byte[0], requests.get(3).body());
+        assertNull(requests.get(3).header("Transfer-Encoding"));
+        assertEquals(2, heap.position());
+        assertEquals(0, direct.position());
+    }
+
+    @Test
+    void sendsFilesWithContentLengthAndStreamsChunked() throws Exception {
+        Path file = Files.write(directory.resolve("upload.bin"), CONTENT);
+
+        JxRequest.post(server.url("/file")).setBody(file).send();
+        JxRequest.post(server.url("/stream")).setBody(() -> new ByteArrayInputStream(CONTENT)).send();
+        JxRequest.post(server.url("/sized")).setBody(() -> new ByteArrayInputStream(CONTENT), CONTENT.length).send();
+        JxRequest.post(server.url("/none")).setBody(() -> new ByteArrayInputStream(new byte[0]), 0).send();
+
+        List<RecordedRequest> requests = server.takeRequests();
+        assertSent(requests.get(0), CONTENT, true);
+        assertSent(requests.get(1), CONTENT, false);
+        assertSent(requests.get(2), CONTENT, true);
+        assertArrayEquals(new byte[0], requests.get(3).body());
+        assertNull(requests.get(3).header("Transfer-Encoding"));
+
+        assertThrows(IllegalArgumentException.class, () -> JxRequest.post(server.url("/")).setBody(directory.resolve("missing")));
+        assertThrows(IllegalArgumentException.class, () -> JxRequest.post(server.url("/")).setBody(() -> null, -1));
+    }
+
+    @Test
+    void sendsPublishersChunkedUnlessTheLengthIsKnown() {
+        JxRequest.post(server.url("/publisher")).setBody(publisherOf(CONTENT)).send();
+        JxRequest.post(server.url("/sized")).setBody(publisherOf(CONTENT), CONTENT.length).send();
+        JxRequest.post(server.url("/body-publisher")).setBody((Object) HttpRequest.BodyPublishers.ofByteArray(CONTENT)).send();
+
+        List<RecordedRequest> requests = server.takeRequests();
+        assertSent(requests.get(0), CONTENT, false);
+        assertSent(requests.get(1), CONTENT, true);
+        assertSent(requests.get(2), CONTENT, true);
+
+        assertThrows(IllegalArgumentException.class, () -> JxRequest.post(server.url("/")).setBody(publisherOf(CONTENT), 0));
+    }
+
+    @Test
+    void neitherRetriesNorTemplatesPublishersThatMayEmitOnlyOnce() {
+        server.setDefaultResponse(StubResponse.status(503));
+        RetryPolicy retryPolicy = RetryPolicy.builder().baseDelay(Duration.ofMillis(1)).build();
+
+        PutRequest once = JxRequest.put(server.url("/once")).setBody(publisherOf(CONTENT)).setRetryPolicy(retryPolicy);
+        assertFalse(once.isReplayable());
+        assertEquals(503, once.send().getStatusCode());
+        assertEquals(1, server.getRequestCount());
+        assertThrows(IllegalArgumentException.class, once::toTemplate);
+
+        PutRequest replayable = JxRequest.put(server.url("/replayable")).setBody(publisherOf(CONTENT)).setBody(CONTENT).setRetryPolicy(retryPolicy);
+        assertTrue(replayable.isReplayable());
+        assertEquals(503, replayable.send().getStatusCode());
+        assertTrue(server.getRequestCount() > 2);
+    }
+
+    @Test
+    void waitsForContinueBeforeSendingTheBody() {
+        JxRequest.post(server.url("/upload")).setBody(CONTENT).setExpectContinue(true).send();
+        JxRequest.post(server.url("/upload")).setBody(CONTENT).send();
+
+        List<RecordedRequest> requests = server.takeRequests();
+        assertTrue("100-continue".equalsIgnoreCase(requests.get(0).header("Expect")));
+        assertSent(requests.get(0), CONTENT, true);
+        assertNull(requests.get(1).header("Expect"));
+    }
+
+    private static void assertSent(RecordedRequest recorded, byte[] body, boolean contentLength) {
+        assertArrayEquals(body, recorded.body(), recorded.path());
+        if (contentLength) {
+            assertEquals(String.valueOf(body.length), recorded.header("Content-Length"), recorded.path());
+            assertNull(recorded.header("Transfer-Encoding"), recorded.path());
+        } else {
+            assertEquals("chunked", recorded.header("Transfer-Encoding"), recorded.path());
+            assertNull(recorded.header("Content-Length"), recorded.path());
+        }
+    }
+
+    /**
+     * Returns a publisher that is not a {@link HttpRequest.BodyPublisher} and emits the content in two buffers.
+     */
+    private static Flow.Publisher<ByteBuffer> publisherOf(byte[] content) {
+        return subscriber -> {
+            SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>();
+            publisher.subscribe(subscriber);
+            publisher.submit(ByteBuffer.wrap(content, 0, 5));
+            publisher.submit(ByteBuffer.wrap(content, 5, content.length - 5));
+            publisher.close();
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.swnck.request;
+
+import io.github.swnck.JxResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RequestCoalescerTest {
+    private final List<CompletableFuture<JxResponse>> calls = new ArrayList<>();
+
+    private final Function<AbstractRequest<?>, CompletableFuture<JxResponse>> send = request -> {
+        CompletableFuture<JxResponse> call = new CompletableFuture<>();
+        calls.add(call);
+        return call;
+    };
+
+    @Test
+    void sharesOneCallBetweenIdenticalInFlightRequests() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+
+        CompletableFuture<JxResponse> first = coalescer.execute(pricing().setQueryParam("sku", "42"), send);
+        CompletableFuture<JxResponse> second = coalescer.execute(pricing().setQueryParam("sku", "42"), send);
+        CompletableFuture<JxResponse> other = coalescer.execute(pricing().setQueryParam("sku", "43"), send);
+
+        assertEquals(2, calls.size());
+        assertEquals(2, coalescer.getInFlightCount());
+
+        JxResponse response = new JxResponse();
+        calls.get(0).complete(response);
+
+        assertSame(response, first.join());
+        assertSame(response, second.join());
+        assertEquals(1, coalescer.getCoalescedCount());
+        assertEquals(1, coalescer.getInFlightCount());
+
+        coalescer.execute(pricing().setQueryParam("sku", "42"), send);
+        assertEquals(3, calls.size());
+        other.cancel(true);
+        assertFalse(calls.get(1).isCancelled());
+    }
+
+    @Test
+    void removesFailedCallsAndSendsOtherMethodsDirectly() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+
+        CompletableFuture<JxResponse> first = coalescer.execute(pricing(), send);
+        CompletableFuture<JxResponse> second = coalescer.execute(pricing(), send);
+        calls.get(0).completeExceptionally(new IllegalStateException("down"));
+
+        assertThrows(CompletionException.class, first::join);
+        assertThrows(CompletionException.class, second::join);
+        assertEquals(0, coalescer.getInFlightCount());
+
+        coalescer.execute(new PostRequest("http://pricing.local/quotes"), send);
+        coalescer.execute(new PostRequest("http://pricing.local/quotes"), send);
+        assertEquals(3, calls.size());
+    }
+
+    @Test
+    void fingerprintIgnoresOrderCaseAndIgnoredHeaders() {
+        RequestCoalescer coalescer = new RequestCoalescer("X-Request-Id");
+
+        String first = coalescer.fingerprint(pricing()
+                .setQueryParam("a", "1").setQueryParam("b", "2")
+                .setHeader("Accept", "application/json").setHeader("X-Request-Id", "r1"));
+        String second = coalescer.fingerprint(pricing()
+                .setQueryParam("b", "2").setQueryParam("a", "1")
+                .setHeader("accept", "application/json").setHeader("X-Request-Id", "r2"));
+        String different = coalescer.fingerprint(pricing()
+                .setQueryParam("a", "1").setQueryParam("b", "2")
+                .setHeader("Accept", "text/csv"));
+
+        assertEquals(first, second);
+        assertNotEquals(first, different);
+    }
+
+    private static GetRequest pricing() {
+        return new GetRequest("http://pricing.local/prices");
+    }
+}
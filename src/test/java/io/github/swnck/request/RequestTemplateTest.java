@@ -0,0 +1,99 @@
+package io.github.swnck.request;
+
+import io.github.swnck.JxClient;
+import io.github.swnck.JxRequest;
+import io.github.swnck.JxResponse;
+import io.github.swnck.cors.Cors;
+import io.github.swnck.stub.RecordedRequest;
+import io.github.swnck.stub.StubResponse;
+import io.github.swnck.stub.StubServer;
+import io.github.swnck.util.SimulationAgent;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestTemplateTest {
+
+    @Test
+    void expandsVariablesIntoEncodedUri() {
+        RequestTemplate template = JxRequest.get("http://localhost/users/{id}/files/{name}?q={q}&id={id}")
+                .setQueryParam("sort", "a b")
+                .toTemplate();
+
+        assertEquals(List.of("id", "name", "q"), template.getVariables());
+
+        URI expected = URI.create("http://localhost/users/7/files/a%20b%2Fc%C3%A9?q=x+y%26z&id=7&sort=a+b");
+        assertEquals(expected, template.toUri(7, "a b/cé", "x y&z"));
+        assertEquals(expected, template.toUri(Map.of("id", 7L, "name", "a b/cé", "q", "x y&z")));
+        assertEquals(URI.create("http://localhost/status?sort=a+b"),
+                JxRequest.get("http://localhost/status").setQueryParam("sort", "a b").toTemplate().toUri());
+
+        assertThrows(IllegalArgumentException.class, () -> template.toUri(7, "a"));
+        assertThrows(IllegalArgumentException.class, () -> template.toUri(7, null, "q"));
+        assertThrows(IllegalArgumentException.class, () -> template.toUri(Map.of("id", 7)));
+        assertThrows(IllegalArgumentException.class, () -> JxRequest.get("http://localhost/users/{id").toTemplate());
+        assertThrows(IllegalArgumentException.class, () -> JxRequest.get("http://localhost/users/{}").toTemplate());
+    }
+
+    @Test
+    void freezesHeadersIncludingCorsAndSimulation() {
+        GetRequest request = JxRequest.get("http://localhost/users/{id}")
+                .setHeader("Authorization", "Bearer token")
+                .setCors(new Cors().allowOrigin("https://app.example.com"))
+                .simulate(SimulationAgent.FIREFOX);
+        RequestTemplate template = request.toTemplate();
+        request.setHeader("Authorization", "changed").setUrl("http://localhost/other");
+
+        HttpRequest first = template.toHttpRequest(1);
+        HttpRequest second = template.toHttpRequest(2);
+
+        assertSame(first.headers(), second.headers());
+        assertEquals("Bearer token", first.headers().firstValue("authorization").orElseThrow());
+        assertEquals("https://app.example.com", first.headers().firstValue("Access-Control-Allow-Origin").orElseThrow());
+        assertEquals(SimulationAgent.FIREFOX.getUserAgent(), first.headers().firstValue("User-Agent").orElseThrow());
+        assertEquals(URI.create("http://localhost/users/2"), second.uri());
+        assertEquals("GET", second.method());
+    }
+
+    @Test
+    void sendsBoundRequestsConcurrently() {
+        try (StubServer server = StubServer.start(); JxClient client = JxClient.builder().build()) {
+            server.setDispatcher(recorded -> StubResponse.ok(recorded.path()));
+
+            RequestTemplate template = client.post(server.url("/users/{id}"))
+                    .setBody("{\"active\": true}")
+                    .toTemplate();
+
+            List<CompletableFuture<JxResponse>> responses = new ArrayList<>();
+            for (int id = 0; id < 200; id++) {
+                responses.add(template.sendAsync(id));
+            }
+
+            for (int id = 0; id < responses.size(); id++) {
+                JxResponse response = responses.get(id).join();
+                assertEquals(200, response.getStatusCode());
+                assertEquals("/users/" + id, response.getBody());
+            }
+
+            Set<String> bodies = new HashSet<>();
+            for (RecordedRequest recorded : server.takeRequests()) {
+                assertEquals("POST", recorded.method());
+                bodies.add(recorded.bodyAsString());
+            }
+            assertEquals(Set.of("{\"active\": true}"), bodies);
+            assertTrue(template.send(Map.of("id", "last")).getBody().endsWith("/last"));
+        }
+    }
+}
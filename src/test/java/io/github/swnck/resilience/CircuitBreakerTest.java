@@ -0,0 +1,186 @@
+package io.github.swnck.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CircuitBreakerTest {
+    private static final URI PAYMENTS_URI = URI.create("http://payments.local:8080/charge");
+
+    private static final URI SEARCH_URI = URI.create("http://search.local/query");
+
+    private int attempts;
+
+    @Test
+    void opensWhenTheFailureRateIsReachedAndFailsFast() {
+        CircuitBreaker breaker = CircuitBreaker.builder().slidingWindow(10, 4).failureRateThreshold(0.5).build();
+
+        send(breaker, PAYMENTS_URI, 200);
+        send(breaker, PAYMENTS_URI, 503);
+        send(breaker, PAYMENTS_URI, 200);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(PAYMENTS_URI));
+        send(breaker, PAYMENTS_URI, 500);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(PAYMENTS_URI));
+
+        CompletionException error = assertThrows(CompletionException.class, () -> send(breaker, PAYMENTS_URI, 200));
+        CircuitBreakerOpenException open = assertInstanceOf(CircuitBreakerOpenException.class, error.getCause());
+        assertEquals("payments.local:8080", open.getHost());
+        assertEquals(4, attempts);
+
+        assertEquals(200, send(breaker, SEARCH_URI, 200));
+    }
+
+    @Test
+    void closesAfterSuccessfulTrialCallsAndReopensOnFailure() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.builder().slidingWindow(2, 2).coolDown(Duration.ofMillis(20)).halfOpenCalls(2).build();
+
+        send(breaker, PAYMENTS_URI, 503);
+        send(breaker, PAYMENTS_URI, 503);
+        TimeUnit.MILLISECONDS.sleep(30);
+
+        send(breaker, PAYMENTS_URI, 200);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(PAYMENTS_URI));
+        send(breaker, PAYMENTS_URI, 503);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(PAYMENTS_URI));
+        TimeUnit.MILLISECONDS.sleep(30);
+
+        send(breaker, PAYMENTS_URI, 200);
+        send(breaker, PAYMENTS_URI, 200);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(PAYMENTS_URI));
+
+        send(breaker, PAYMENTS_URI, 503);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(PAYMENTS_URI));
+    }
+
+    @Test
+    void opensWhenTheSlowCallRateIsReached() {
+        CircuitBreaker breaker = CircuitBreaker.builder().slidingWindow(4, 2)
+                .slowCallRateThreshold(0.5, Duration.ofMillis(5)).build();
+        HttpRequest request = HttpRequest.newBuilder(SEARCH_URI).build();
+
+        breaker.execute(request, slow -> CompletableFuture.supplyAsync(() -> new StubResponse(200),
+                CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS))).join();
+        send(breaker, SEARCH_URI, 200);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(SEARCH_URI));
+    }
+
+    @Test
+    void doesNotRecordCancelledCalls() {
+        CircuitBreaker breaker = CircuitBreaker.builder().slidingWindow(1, 1).build();
+
+        breaker.execute(HttpRequest.newBuilder(SEARCH_URI).build(), request -> new CompletableFuture<HttpResponse<String>>())
+                .cancel(true);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(SEARCH_URI));
+        breaker.reset(SEARCH_URI);
+    }
+
+    @Test
+    void returnsThePermitOfATrialCancelledWhileCallsAreRejected() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.builder().slidingWindow(2, 2).coolDown(Duration.ofMillis(20)).halfOpenCalls(2).build();
+
+        send(breaker, PAYMENTS_URI, 503);
+        send(breaker, PAYMENTS_URI, 503);
+        TimeUnit.MILLISECONDS.sleep(30);
+
+        CompletableFuture<HttpResponse<String>> first = new CompletableFuture<>();
+        CompletableFuture<HttpResponse<String>> second = new CompletableFuture<>();
+        CompletableFuture<HttpResponse<String>> cancelled = breaker.execute(HttpRequest.newBuilder(PAYMENTS_URI).build(), request -> first);
+        breaker.execute(HttpRequest.newBuilder(PAYMENTS_URI).build(), request -> second);
+
+        for (int i = 0; i < 5; i++) {
+            CompletionException error = assertThrows(CompletionException.class, () -> send(breaker, PAYMENTS_URI, 200));
+            assertInstanceOf(CircuitBreakerOpenException.class, error.getCause());
+        }
+
+        cancelled.cancel(true);
+        assertEquals(200, send(breaker, PAYMENTS_URI, 200));
+        second.complete(new StubResponse(200));
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(PAYMENTS_URI));
+        assertEquals(200, send(breaker, PAYMENTS_URI, 200));
+    }
+
+    @Test
+    void ignoresOutcomesOfCallsAdmittedBeforeTheCircuitOpened() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.builder().slidingWindow(2, 2).coolDown(Duration.ofMillis(20)).halfOpenCalls(1).build();
+
+        CompletableFuture<HttpResponse<String>> inFlight = new CompletableFuture<>();
+        breaker.execute(HttpRequest.newBuilder(PAYMENTS_URI).build(), request -> inFlight);
+
+        send(breaker, PAYMENTS_URI, 503);
+        send(breaker, PAYMENTS_URI, 503);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(PAYMENTS_URI));
+        TimeUnit.MILLISECONDS.sleep(30);
+        send(breaker, PAYMENTS_URI, 200);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(PAYMENTS_URI));
+
+        inFlight.complete(new StubResponse(503));
+        send(breaker, PAYMENTS_URI, 503);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(PAYMENTS_URI));
+
+        send(breaker, PAYMENTS_URI, 503);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(PAYMENTS_URI));
+    }
+
+    private int send(CircuitBreaker breaker, URI uri, int statusCode) {
+        return breaker.execute(HttpRequest.newBuilder(uri).build(), request -> {
+            attempts++;
+            return CompletableFuture.completedFuture(new StubResponse(statusCode));
+        }).join().statusCode();
+    }
+
+    private record StubResponse(int statusCode) implements HttpResponse<String> {
+
+        @Override
+        public HttpRequest request() {
+            return HttpRequest.newBuilder(SEARCH_URI).build();
+        }
+
+        @Override
+        public Optional<HttpResponse<String>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return HttpHeaders.of(Map.of(), (name, value) -> true);
+        }
+
+        @Override
+        public String body() {
+            return "";
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return SEARCH_URI;
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+}
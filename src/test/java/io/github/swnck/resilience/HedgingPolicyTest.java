@@ -0,0 +1,153 @@
+package io.github.swnck.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HedgingPolicyTest {
+    private static final URI SEARCH_URI = URI.create("http://search.local/query");
+
+    private static final Executor DIRECT = Runnable::run;
+
+    private final List<CompletableFuture<HttpResponse<String>>> attempts = new CopyOnWriteArrayList<>();
+
+    @Test
+    void firstSuccessfulAttemptWinsAndTheLoserIsCancelled() {
+        HedgingPolicy policy = HedgingPolicy.builder().delay(Duration.ofMillis(10)).build();
+
+        CompletableFuture<HttpResponse<String>> result = policy.execute(get(), this::attempt, DIRECT);
+        await(2);
+        attempts.get(1).complete(new StubResponse(200));
+
+        assertEquals(200, result.join().statusCode());
+        assertTrue(attempts.get(0).isCancelled());
+    }
+
+    @Test
+    void doesNotHedgeFastOrNonIdempotentRequests() throws Exception {
+        HedgingPolicy policy = HedgingPolicy.builder().delay(Duration.ZERO).build();
+
+        CompletableFuture<HttpResponse<String>> fast = policy.execute(get(), request -> {
+            attempts.add(null);
+            return CompletableFuture.completedFuture(new StubResponse(200));
+        }, DIRECT);
+        HttpRequest post = HttpRequest.newBuilder(SEARCH_URI).POST(HttpRequest.BodyPublishers.noBody()).build();
+        CompletableFuture<HttpResponse<String>> slowPost = policy.execute(post, this::attempt, DIRECT);
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        assertEquals(200, fast.join().statusCode());
+        assertEquals(2, attempts.size());
+        assertFalse(slowPost.isDone());
+    }
+
+    @Test
+    void returnsTheLastOutcomeWhenNoAttemptSucceeds() {
+        HedgingPolicy policy = HedgingPolicy.builder().delay(Duration.ofMillis(5)).build();
+
+        CompletableFuture<HttpResponse<String>> result = policy.execute(get(), this::attempt, DIRECT);
+        await(2);
+        attempts.get(0).complete(new StubResponse(503));
+        assertFalse(result.isDone());
+        attempts.get(1).complete(new StubResponse(502));
+
+        assertEquals(502, result.join().statusCode());
+    }
+
+    @Test
+    void capsHedgesWithTheBudget() throws Exception {
+        HedgingPolicy policy = HedgingPolicy.builder().delay(Duration.ZERO).maxHedgeRatio(0).maxHedgeBurst(1).build();
+
+        policy.execute(get(), this::attempt, DIRECT);
+        await(2);
+        policy.execute(get(), this::attempt, DIRECT);
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        assertEquals(3, attempts.size());
+    }
+
+    @Test
+    void derivesTheDelayFromTheLatencyPercentile() {
+        LatencyWindow window = new LatencyWindow(0.95);
+
+        for (int i = 1; i <= 16; i++) window.record(i);
+        assertEquals(-1, window.percentileNanos());
+
+        for (int i = 17; i <= 32; i++) window.record(i);
+        assertEquals(31, window.percentileNanos());
+
+        assertEquals(Duration.ofMillis(100), HedgingPolicy.builder().build().delayFor("search.local"));
+    }
+
+    private CompletableFuture<HttpResponse<String>> attempt(HttpRequest request) {
+        CompletableFuture<HttpResponse<String>> future = new CompletableFuture<>();
+        attempts.add(future);
+        return future;
+    }
+
+    private void await(int count) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (attempts.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(count, attempts.size());
+    }
+
+    private static HttpRequest get() {
+        return HttpRequest.newBuilder(SEARCH_URI).GET().build();
+    }
+
+    private record StubResponse(int statusCode) implements HttpResponse<String> {
+
+        @Override
+        public HttpRequest request() {
+            return get();
+        }
+
+        @Override
+        public Optional<HttpResponse<String>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return HttpHeaders.of(Map.of(), (name, value) -> true);
+        }
+
+        @Override
+        public String body() {
+            return "";
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return SEARCH_URI;
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.swnck.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimiterTest {
+    private static final URI QUOTA_URI = URI.create("http://quota.local/v1/items");
+
+    private static final Executor DIRECT = Runnable::run;
+
+    @Test
+    void allowsBurstsAndThenSpacesPermitsByTheEmissionInterval() {
+        RateLimiter limiter = RateLimiter.builder(10, Duration.ofSeconds(1)).burst(3).build();
+        AtomicLong state = new AtomicLong(Long.MIN_VALUE);
+        long millis = TimeUnit.MILLISECONDS.toNanos(1);
+
+        assertEquals(0, limiter.acquire(state, 0, 0));
+        assertEquals(0, limiter.acquire(state, 0, 0));
+        assertEquals(0, limiter.acquire(state, 0, 0));
+        assertEquals(-100 * millis, limiter.acquire(state, 0, 0));
+        assertEquals(100 * millis, limiter.acquire(state, 0, Long.MAX_VALUE));
+        assertEquals(150 * millis, limiter.acquire(state, 50 * millis, Long.MAX_VALUE));
+        assertEquals(0, limiter.acquire(state, 10_000 * millis, 0));
+    }
+
+    @Test
+    void rejectsRequestsWithoutPermitInRejectMode() {
+        RateLimiter limiter = RateLimiter.builder(1, Duration.ofMinutes(1)).mode(RateLimiter.Mode.REJECT).build();
+
+        assertEquals(200, limiter.execute(get(QUOTA_URI), respond(200), DIRECT).join().statusCode());
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> limiter.execute(get(QUOTA_URI), respond(200), DIRECT).join());
+        RateLimitExceededException exceeded = assertInstanceOf(RateLimitExceededException.class, error.getCause());
+        assertEquals("quota.local", exceeded.getHost());
+        assertTrue(exceeded.getRetryAfter().toSeconds() >= 59);
+
+        assertEquals(200, limiter.execute(get(URI.create("http://other.local/")), respond(200), DIRECT).join().statusCode());
+    }
+
+    @Test
+    void delaysRequestsWithoutBlockingInDelayMode() {
+        RateLimiter limiter = RateLimiter.builder(20, Duration.ofSeconds(1)).build();
+        long start = System.nanoTime();
+
+        CompletableFuture<HttpResponse<String>> first = limiter.execute(get(QUOTA_URI), respond(200), DIRECT);
+        limiter.execute(get(QUOTA_URI), respond(200), DIRECT);
+        CompletableFuture<HttpResponse<String>> third = limiter.execute(get(QUOTA_URI), respond(200), DIRECT);
+
+        assertTrue(first.isDone());
+        assertEquals(200, third.join().statusCode());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+    }
+
+    @Test
+    void neverSleepsOnTheCallingThreadInBlockMode() {
+        RateLimiter limiter = RateLimiter.builder(5, Duration.ofSeconds(1)).mode(RateLimiter.Mode.BLOCK).build();
+        long start = System.nanoTime();
+
+        limiter.execute(get(QUOTA_URI), respond(200), DIRECT);
+        CompletableFuture<HttpResponse<String>> second = limiter.execute(get(QUOTA_URI), respond(200), DIRECT);
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+        assertFalse(second.isDone());
+        assertEquals(200, second.join().statusCode());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190));
+    }
+
+    @Test
+    void adaptsToRateLimitHeaders() {
+        RateLimiter limiter = RateLimiter.builder(100, Duration.ofSeconds(1)).mode(RateLimiter.Mode.REJECT)
+                .key(request -> request.headers().firstValue("X-Api-Key").orElse("anonymous")).build();
+        HttpRequest tenant = HttpRequest.newBuilder(QUOTA_URI).header("X-Api-Key", "tenant-a").build();
+
+        limiter.execute(tenant, respond(429, "Retry-After", "60"), DIRECT).join();
+
+        CompletionException error = assertThrows(CompletionException.class, () -> limiter.execute(tenant, respond(200), DIRECT).join());
+        assertTrue(((RateLimitExceededException) error.getCause()).getRetryAfter().toSeconds() >= 59);
+        assertEquals(200, limiter.execute(get(QUOTA_URI), respond(200), DIRECT).join().statusCode());
+
+        assertEquals(Optional.of(Duration.ofSeconds(5)), RateLimiter.serverPause(
+                new StubResponse(200, headers("X-RateLimit-Remaining", "0", "X-RateLimit-Reset", "5"))));
+        assertEquals(Optional.empty(), RateLimiter.serverPause(
+                new StubResponse(200, headers("X-RateLimit-Remaining", "7", "X-RateLimit-Reset", "5"))));
+    }
+
+    private static HttpRequest get(URI uri) {
+        return HttpRequest.newBuilder(uri).GET().build();
+    }
+
+    private static Function<HttpRequest, CompletableFuture<HttpResponse<String>>> respond(int statusCode, String... headers) {
+        return request -> CompletableFuture.completedFuture(new StubResponse(statusCode, headers(headers)));
+    }
+
+    private static HttpHeaders headers(String... headers) {
+        Map<String, List<String>> headerMap = new HashMap<>();
+        for (int i = 0; i < headers.length; i += 2) {
+            headerMap.put(headers[i], List.of(headers[i + 1]));
+        }
+        return HttpHeaders.of(headerMap, (name, value) -> true);
+    }
+
+    private record StubResponse(int statusCode, HttpHeaders headers) implements HttpResponse<String> {
+
+        @Override
+        public HttpRequest request() {
+            return get(QUOTA_URI);
+        }
+
+        @Override
+        public Optional<HttpResponse<String>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public String body() {
+            return "";
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return QUOTA_URI;
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+}
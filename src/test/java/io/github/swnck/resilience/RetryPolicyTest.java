@@ -0,0 +1,189 @@
+package io.github.swnck.resilience;
+
+import io.github.swnck.util.StatusCode;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RetryPolicyTest {
+    private static final URI RESOURCE_URI = URI.create("http://localhost/resource");
+
+    private static final Executor DIRECT = Runnable::run;
+
+    private final Deque<Object> outcomes = new ArrayDeque<>();
+
+    private int attempts;
+
+    @Test
+    void retriesRetryableStatusCodesUntilSuccess() {
+        RetryPolicy policy = RetryPolicy.builder().maxAttempts(4).baseDelay(Duration.ofMillis(1)).build();
+        script(503, 502, 200);
+
+        HttpResponse<String> response = policy.execute(get(), this::attempt, RetryBudget.unlimited(), DIRECT).join();
+
+        assertEquals(200, response.statusCode());
+        assertEquals(3, attempts);
+    }
+
+    @Test
+    void returnsLastResponseWhenAttemptsAreExhausted() {
+        RetryPolicy policy = RetryPolicy.builder().maxAttempts(2).baseDelay(Duration.ofMillis(1)).build();
+        script(503, 503, 200);
+
+        assertEquals(503, policy.execute(get(), this::attempt, RetryBudget.unlimited(), DIRECT).join().statusCode());
+        assertEquals(2, attempts);
+    }
+
+    @Test
+    void retriesOnlyIdempotentMethodsAndConfiguredStatusCodes() {
+        HttpRequest post = HttpRequest.newBuilder(RESOURCE_URI).POST(HttpRequest.BodyPublishers.noBody()).build();
+        RetryPolicy policy = RetryPolicy.builder().baseDelay(Duration.ZERO).retryOnStatus(StatusCode.INTERNAL_SERVER_ERROR).build();
+
+        script(500, 200);
+        assertEquals(500, policy.execute(post, this::attempt, RetryBudget.unlimited(), DIRECT).join().statusCode());
+
+        outcomes.clear();
+        attempts = 0;
+        script(503, 200);
+        assertEquals(503, policy.execute(get(), this::attempt, RetryBudget.unlimited(), DIRECT).join().statusCode());
+
+        outcomes.clear();
+        attempts = 0;
+        script(500, 200);
+        RetryPolicy nonIdempotent = RetryPolicy.builder().baseDelay(Duration.ZERO).retryOnStatus(StatusCode.INTERNAL_SERVER_ERROR)
+                .retryNonIdempotent().build();
+        assertEquals(200, nonIdempotent.execute(post, this::attempt, RetryBudget.unlimited(), DIRECT).join().statusCode());
+    }
+
+    @Test
+    void retriesRetryableExceptionsOnly() {
+        RetryPolicy policy = RetryPolicy.builder().baseDelay(Duration.ZERO).build();
+
+        outcomes.add(new IOException("connection reset"));
+        outcomes.add(200);
+        assertEquals(200, policy.execute(get(), this::attempt, RetryBudget.unlimited(), DIRECT).join().statusCode());
+
+        outcomes.clear();
+        outcomes.add(new IllegalStateException("broken"));
+        outcomes.add(200);
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> policy.execute(get(), this::attempt, RetryBudget.unlimited(), DIRECT).join());
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+    }
+
+    @Test
+    void honorsRetryAfterUpToTheConfiguredMaximum() {
+        RetryPolicy policy = RetryPolicy.builder().baseDelay(Duration.ZERO).maxRetryAfter(Duration.ofSeconds(5)).build();
+
+        outcomes.add(response(429, "Retry-After", "120"));
+        outcomes.add(200);
+        assertEquals(429, policy.execute(get(), this::attempt, RetryBudget.unlimited(), DIRECT).join().statusCode());
+
+        outcomes.clear();
+        outcomes.add(response(429, "Retry-After", "0"));
+        outcomes.add(200);
+        assertEquals(200, policy.execute(get(), this::attempt, RetryBudget.unlimited(), DIRECT).join().statusCode());
+
+        assertEquals(Duration.ofSeconds(7), RetryPolicy.parseRetryAfter(" 7 "));
+        assertEquals(Duration.ZERO, RetryPolicy.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+        assertNull(RetryPolicy.parseRetryAfter("soon"));
+    }
+
+    @Test
+    void stopsRetryingWhenTheBudgetIsExhausted() {
+        RetryPolicy policy = RetryPolicy.builder().maxAttempts(10).baseDelay(Duration.ZERO).build();
+        RetryBudget budget = RetryBudget.of(0.5, 2);
+        script(503, 503, 503, 503, 503, 200);
+
+        assertEquals(503, policy.execute(get(), this::attempt, budget, DIRECT).join().statusCode());
+        assertEquals(3, attempts);
+        assertEquals(0.0, budget.getAvailableRetries());
+    }
+
+    @Test
+    void retryBudgetDepositsUpToItsCapacity() {
+        RetryBudget budget = RetryBudget.of(0.25, 1);
+
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+        for (int i = 0; i < 10; i++) budget.recordRequest();
+        assertEquals(1.0, budget.getAvailableRetries());
+    }
+
+    private void script(int... statusCodes) {
+        for (int statusCode : statusCodes) outcomes.add(statusCode);
+    }
+
+    private CompletableFuture<HttpResponse<String>> attempt(HttpRequest request) {
+        attempts++;
+        Object outcome = outcomes.poll();
+
+        if (outcome instanceof Throwable error) return CompletableFuture.failedFuture(error);
+        if (outcome instanceof StubResponse response) return CompletableFuture.completedFuture(response);
+        return CompletableFuture.completedFuture(response((Integer) outcome));
+    }
+
+    private static HttpRequest get() {
+        return HttpRequest.newBuilder(RESOURCE_URI).GET().build();
+    }
+
+    private static StubResponse response(int statusCode, String... headers) {
+        Map<String, List<String>> headerMap = headers.length == 0 ? Map.of() : Map.of(headers[0], List.of(headers[1]));
+        return new StubResponse(statusCode, HttpHeaders.of(headerMap, (name, value) -> true));
+    }
+
+    private record StubResponse(int statusCode, HttpHeaders headers) implements HttpResponse<String> {
+
+        @Override
+        public HttpRequest request() {
+            return get();
+        }
+
+        @Override
+        public Optional<HttpResponse<String>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public String body() {
+            return "";
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return RESOURCE_URI;
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+}
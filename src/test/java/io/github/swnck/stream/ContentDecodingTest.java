@@ -0,0 +1,181 @@
+package io.github.swnck.stream;
+
+import io.github.swnck.JxClient;
+import io.github.swnck.JxResponse;
+import io.github.swnck.cache.HttpCache;
+import io.github.swnck.stub.StubResponse;
+import io.github.swnck.stub.StubServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ContentDecodingTest {
+    private static final byte[] CONTENT = "{\"id\":1,\"name\":\"JxRequest\"}\n".repeat(2000).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void decodesGzipAcrossArbitraryChunks() throws Exception {
+        byte[] encoded = gzip(CONTENT);
+
+        assertArrayEquals(CONTENT, decode("gzip", encoded, 1));
+        assertArrayEquals(CONTENT, decode("gzip", encoded, 7));
+        assertArrayEquals(CONTENT, decode("gzip", encoded, encoded.length));
+    }
+
+    @Test
+    void decodesConcatenatedGzipMembers() throws Exception {
+        byte[] first = gzip(Arrays.copyOfRange(CONTENT, 0, 100));
+        byte[] second = gzip(Arrays.copyOfRange(CONTENT, 100, CONTENT.length));
+        byte[] encoded = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, encoded, first.length, second.length);
+
+        assertArrayEquals(CONTENT, decode("gzip", encoded, 13));
+    }
+
+    @Test
+    void decodesZlibAndRawDeflate() throws Exception {
+        assertArrayEquals(CONTENT, decode("deflate", deflate(CONTENT, false), 5));
+        assertArrayEquals(CONTENT, decode("deflate", deflate(CONTENT, true), 5));
+    }
+
+    @Test
+    void passesThroughUnencodedBodies() throws Exception {
+        assertArrayEquals(CONTENT, decode("", CONTENT, 100));
+        assertArrayEquals(new byte[0], decode("gzip", new byte[0], 1));
+    }
+
+    @Test
+    void removesEncodingHeadersFromDecodedResponses() throws Exception {
+        byte[] encoded = gzip(CONTENT);
+        List<HttpHeaders> seen = new ArrayList<>();
+        HttpResponse.BodyHandler<byte[]> handler = ContentDecoding.decoding(responseInfo -> {
+            seen.add(responseInfo.headers());
+            return HttpResponse.BodySubscribers.ofByteArray();
+        });
+
+        handler.apply(responseInfo("gzip", encoded.length));
+        handler.apply(responseInfo("br", encoded.length));
+
+        assertEquals(Map.of("content-type", List.of("application/json")), seen.get(0).map());
+        assertEquals(Optional.of("br"), seen.get(1).firstValue("Content-Encoding"));
+        assertEquals(Optional.of(String.valueOf(encoded.length)), seen.get(1).firstValue("Content-Length"));
+
+        try (StubServer server = StubServer.start();
+             JxClient client = JxClient.builder().compression().cache(HttpCache.inMemory(1 << 20)).build()) {
+            server.setDefaultResponse(StubResponse.ok().body(encoded)
+                    .header("Content-Encoding", "gzip")
+                    .header("Content-Type", "application/json")
+                    .header("Cache-Control", "max-age=60"));
+
+            JxResponse response = client.get(server.url("/users")).send();
+            JxResponse cached = client.get(server.url("/users")).send();
+
+            assertEquals(1, server.getRequestCount());
+            for (JxResponse decoded : List.of(response, cached)) {
+                assertArrayEquals(CONTENT, decoded.bodyAsBytes());
+                assertNull(decoded.getHeader("Content-Encoding"));
+                assertNull(decoded.getHeader("Content-Length"));
+                assertEquals("application/json", decoded.getHeader("Content-Type"));
+            }
+        }
+    }
+
+    @Test
+    void failsOnTruncatedBody() throws Exception {
+        byte[] encoded = gzip(CONTENT);
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 4);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> decode("gzip", truncated, 64));
+        assertInstanceOf(EOFException.class, error.getCause());
+    }
+
+    private static byte[] decode(String encoding, byte[] body, int chunkSize) throws Exception {
+        HttpResponse.BodySubscriber<byte[]> subscriber = ContentDecoding.decoding(HttpResponse.BodyHandlers.ofByteArray())
+                .apply(responseInfo(encoding));
+
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+
+        for (int offset = 0; offset < body.length; offset += chunkSize) {
+            subscriber.onNext(List.of(ByteBuffer.wrap(body, offset, Math.min(chunkSize, body.length - offset))));
+        }
+        subscriber.onComplete();
+
+        return subscriber.getBody().toCompletableFuture().get();
+    }
+
+    private static HttpResponse.ResponseInfo responseInfo(String encoding) {
+        return responseInfo(HttpHeaders.of(encoding.isEmpty() ? Map.of() : Map.of("Content-Encoding", List.of(encoding)),
+                (name, value) -> true));
+    }
+
+    private static HttpResponse.ResponseInfo responseInfo(String encoding, int contentLength) {
+        return responseInfo(HttpHeaders.of(Map.of("content-encoding", List.of(encoding),
+                "content-length", List.of(String.valueOf(contentLength)),
+                "content-type", List.of("application/json")), (name, value) -> true));
+    }
+
+    private static HttpResponse.ResponseInfo responseInfo(HttpHeaders headers) {
+
+        return new HttpResponse.ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return 200;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return headers;
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        };
+    }
+
+    private static byte[] gzip(byte[] content) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] content, boolean raw) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            deflate.write(content);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.swnck.util;
+
+import io.github.swnck.JxRequest;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MultiValueMapTest {
+
+    @Test
+    void comparesHeaderNamesCaseInsensitivelyAndInternsCommonNames() {
+        MultiValueMap headers = MultiValueMap.forHeaders()
+                .set("content-type", "text/plain")
+                .add("X-Trace", "a")
+                .set("CONTENT-TYPE", "application/json")
+                .add("x-trace", "b");
+
+        assertEquals(3, headers.size());
+        assertEquals("application/json", headers.get("Content-Type"));
+        assertSame("Content-Type", headers.getName(0));
+        assertEquals(List.of("a", "b"), headers.getAll("X-TRACE"));
+        assertEquals(Map.of("Content-Type", List.of("application/json"), "X-Trace", List.of("a", "b")), headers.toMap());
+
+        headers.set("x-trace", "c");
+        assertEquals(List.of("c"), headers.getAll("X-Trace"));
+        assertTrue(headers.remove("X-TRACE"));
+        assertFalse(headers.contains("x-trace"));
+        assertEquals(1, headers.size());
+
+        MultiValueMap params = MultiValueMap.forParameters().add("id", 1).add("ID", 2);
+        assertEquals("1", params.get("id"));
+        assertEquals("2", params.get("ID"));
+    }
+
+    @Test
+    void snapshotsAreImmutableAndIsolatedFromLaterChanges() {
+        MultiValueMap headers = MultiValueMap.forHeaders().add("Accept", "a").add("Accept", "b");
+        MultiValueMap snapshot = headers.snapshot();
+
+        headers.set("Accept", "c").add("Origin", "o");
+
+        assertEquals(List.of("a", "b"), snapshot.getAll("accept"));
+        assertEquals(2, snapshot.size());
+        assertEquals(List.of("c"), headers.getAll("accept"));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add("Origin", "o"));
+
+        MultiValueMap adopted = MultiValueMap.forHeaders().setAll(snapshot);
+        adopted.add("Accept", "d");
+        assertEquals(List.of("a", "b", "d"), adopted.getAll("Accept"));
+        assertEquals(List.of("a", "b"), snapshot.getAll("Accept"));
+
+        MultiValueMap merged = MultiValueMap.forHeaders().add("Accept", "x").add("Range", "bytes=0-1").setAll(snapshot);
+        assertEquals("{Range=bytes=0-1, Accept=a, Accept=b}", merged.toString());
+        assertNull(merged.get("Origin"));
+    }
+
+    @Test
+    void sendsRepeatedQueryParametersAndHeaders() throws Exception {
+        HttpRequest request = JxRequest.get("http://localhost/items")
+                .addQueryParam("id", "1")
+                .addQueryParam("id", "2")
+                .setQueryParam("q", "a b")
+                .addHeader("X-Tag", "one")
+                .addHeader("x-tag", "two")
+                .setHeader("content-type", "application/json")
+                .toHttpRequest();
+
+        assertEquals(URI.create("http://localhost/items?id=1&id=2&q=a+b"), request.uri());
+        assertEquals(List.of("one", "two"), request.headers().allValues("X-Tag"));
+        assertEquals(List.of("application/json"), request.headers().allValues("Content-Type"));
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.swnck.stub;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A request as it was received by a {@link StubServer}.
+ *
+ * @param sequence the position of the request among all requests received by the server, starting at 0.
+ * @param method the HTTP method.
+ * @param path the raw path, without the query.
+ * @param query the raw query, or {@code null} if the request had none.
+ * @param headers the request headers, keyed by lower-case name.
+ * @param body the request body, empty if the request had none.
+ * @param receivedNanos the {@link System#nanoTime()} at which the request was received.
+ */
+public record RecordedRequest(int sequence, String method, String path, String query, Map<String, List<String>> headers,
+                              byte[] body, long receivedNanos) {
+
+    /**
+     * Returns the first value of the given header.
+     *
+     * @param name the header name, in any case.
+     * @return the first value, or {@code null} if the header was not sent.
+     */
+    public String header(String name) {
+        List<String> values = headers.get(name.toLowerCase());
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * Returns the body decoded as UTF-8.
+     *
+     * @return the body as a string.
+     */
+    public String bodyAsString() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,259 @@
+package io.github.swnck.stub;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A scripted response of a {@link StubServer}. Besides status, headers, and body, a response can be delayed before
+ * its headers are sent, streamed in chunks, and throttled to simulate slow backends and slow networks.
+ * <pre>{@code
+ * StubResponse.ok("{\"id\": 1}").header("Content-Type", "application/json");
+ * StubResponse.status(503).header("Retry-After", "1");
+ * StubResponse.ok().generatedBody(64 * 1024 * 1024).chunked(16 * 1024).throttle(16 * 1024, Duration.ofMillis(10));
+ * }</pre>
+ */
+public class StubResponse {
+    private static final int DEFAULT_WRITE_SIZE = 64 * 1024;
+
+    private final int status;
+
+    private final List<Map.Entry<String, String>> headers = new ArrayList<>();
+
+    private byte[] body = new byte[0];
+
+    private long generatedLength = -1;
+
+    private Duration delay = Duration.ZERO;
+
+    private int chunkSize;
+
+    private int throttleBytes;
+
+    private Duration throttlePeriod = Duration.ZERO;
+
+    private StubResponse(int status) {
+        this.status = status;
+    }
+
+    /**
+     * Creates a response with the given status and no body.
+     *
+     * @param status the HTTP status code.
+     * @return the response.
+     * @throws IllegalArgumentException if the status code is not between 100 and 599.
+     */
+    public static StubResponse status(int status) {
+        if (status < 100 || status > 599) {
+            throw new IllegalArgumentException("Status must be between 100 and 599");
+        }
+
+        return new StubResponse(status);
+    }
+
+    /**
+     * Creates a {@code 200 OK} response with no body.
+     *
+     * @return the response.
+     */
+    public static StubResponse ok() {
+        return new StubResponse(200);
+    }
+
+    /**
+     * Creates a {@code 200 OK} response with the given body.
+     *
+     * @param body the body, encoded as UTF-8.
+     * @return the response.
+     */
+    public static StubResponse ok(String body) {
+        return ok().body(body);
+    }
+
+    /**
+     * Adds a response header.
+     *
+     * @param name the header name; must not be null.
+     * @param value the header value; must not be null.
+     * @return this response, allowing for method chaining.
+     * @throws IllegalArgumentException if the name or value is null.
+     */
+    public StubResponse header(String name, String value) {
+        if (name == null || value == null) {
+            throw new IllegalArgumentException("Header name and value cannot be null");
+        }
+
+        headers.add(Map.entry(name, value));
+        return this;
+    }
+
+    /**
+     * Sets the body to the given string, encoded as UTF-8.
+     *
+     * @param body the body; must not be null.
+     * @return this response, allowing for method chaining.
+     * @throws IllegalArgumentException if the body is null.
+     */
+    public StubResponse body(String body) {
+        if (body == null) {
+            throw new IllegalArgumentException("Body cannot be null");
+        }
+
+        return body(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sets the body to the given bytes.
+     *
+     * @param body the body; must not be null.
+     * @return this response, allowing for method chaining.
+     * @throws IllegalArgumentException if the body is null.
+     */
+    public StubResponse body(byte[] body) {
+        if (body == null) {
+            throw new IllegalArgumentException("Body cannot be null");
+        }
+
+        this.body = body;
+        this.generatedLength = -1;
+        return this;
+    }
+
+    /**
+     * Sets the body to the given number of generated bytes, the lower-case alphabet repeated, without holding the
+     * body in memory. The byte at offset {@code i} is {@link #generatedByte(long) generatedByte(i)}.
+     *
+     * @param length the length of the body in bytes; must not be negative.
+     * @return this response, allowing for method chaining.
+     * @throws IllegalArgumentException if the length is negative.
+     */
+    public StubResponse generatedBody(long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Length cannot be negative");
+        }
+
+        this.body = new byte[0];
+        this.generatedLength = length;
+        return this;
+    }
+
+    /**
+     * Waits the given time before the response headers are sent, simulating a slow backend.
+     *
+     * @param delay the delay; must not be null or negative.
+     * @return this response, allowing for method chaining.
+     * @throws IllegalArgumentException if the delay is null or negative.
+     */
+    public StubResponse delay(Duration delay) {
+        if (delay == null || delay.isNegative()) {
+            throw new IllegalArgumentException("Delay cannot be null or negative");
+        }
+
+        this.delay = delay;
+        return this;
+    }
+
+    /**
+     * Sends the body with chunked transfer encoding, flushing a chunk of the given size at a time.
+     *
+     * @param chunkSize the size of every chunk in bytes; must be greater than 0.
+     * @return this response, allowing for method chaining.
+     * @throws IllegalArgumentException if the chunk size is not positive.
+     */
+    public StubResponse chunked(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be greater than 0");
+        }
+
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Streams the body slowly by writing the given number of bytes per period.
+     *
+     * @param bytes the number of bytes written per period; must be greater than 0.
+     * @param period the time between two writes; must not be null or negative.
+     * @return this response, allowing for method chaining.
+     * @throws IllegalArgumentException if the byte count is not positive or the period is null or negative.
+     */
+    public StubResponse throttle(int bytes, Duration period) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Bytes must be greater than 0");
+        }
+        if (period == null || period.isNegative()) {
+            throw new IllegalArgumentException("Period cannot be null or negative");
+        }
+
+        this.throttleBytes = bytes;
+        this.throttlePeriod = period;
+        return this;
+    }
+
+    /**
+     * Returns the byte at the given offset of a {@linkplain #generatedBody(long) generated body}.
+     *
+     * @param offset the offset in the body.
+     * @return the byte at the offset.
+     */
+    public static byte generatedByte(long offset) {
+        return (byte) ('a' + offset % 26);
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    List<Map.Entry<String, String>> getHeaders() {
+        return headers;
+    }
+
+    Duration getDelay() {
+        return delay;
+    }
+
+    long getBodyLength() {
+        return generatedLength >= 0 ? generatedLength : body.length;
+    }
+
+    boolean isChunked() {
+        return chunkSize > 0;
+    }
+
+    /**
+     * Writes the body to the given stream, honoring the chunk size and throttling.
+     */
+    void writeBody(OutputStream out) throws IOException, InterruptedException {
+        long length = getBodyLength();
+        int step = chunkSize > 0 ? chunkSize : throttleBytes > 0 ? throttleBytes : DEFAULT_WRITE_SIZE;
+        if (chunkSize > 0 && throttleBytes > 0) step = Math.min(chunkSize, throttleBytes);
+
+        byte[] buffer = generatedLength >= 0 ? new byte[(int) Math.min(step, Math.max(1, length))] : null;
+        long sinceSleep = 0;
+
+        for (long written = 0; written < length; ) {
+            int count = (int) Math.min(step, length - written);
+
+            if (buffer == null) {
+                out.write(body, (int) written, count);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    buffer[i] = generatedByte(written + i);
+                }
+                out.write(buffer, 0, count);
+            }
+            written += count;
+            sinceSleep += count;
+
+            if (chunkSize > 0 || throttleBytes > 0) out.flush();
+            if (throttleBytes > 0 && sinceSleep >= throttleBytes && written < length) {
+                Thread.sleep(throttlePeriod);
+                sinceSleep = 0;
+            }
+        }
+    }
+}
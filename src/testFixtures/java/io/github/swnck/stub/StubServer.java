@@ -0,0 +1,314 @@
+package io.github.swnck.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-process HTTP/1.1 server bound to the loopback interface that answers with scripted {@link StubResponse}s
+ * and records every request it receives, so the behavior of the client can be tested and measured without a
+ * network connection.
+ * <p>
+ * By default, responses are taken from a queue filled with {@link #enqueue(StubResponse...)}, and the
+ * {@linkplain #setDefaultResponse(StubResponse) default response} is sent once the queue is empty. A
+ * {@link Dispatcher} can choose responses by request instead. On top of that, every response can be delayed by
+ * a fixed {@linkplain #setLatency(Duration) latency}, and replaced by a failure at a given
+ * {@linkplain #setFailureRate(double, StubResponse, long) rate} drawn from a seeded random generator, so runs
+ * are reproducible.
+ * <pre>{@code
+ * try (StubServer server = StubServer.start()) {
+ *     server.enqueue(StubResponse.status(503), StubResponse.ok("done"));
+ *
+ *     JxResponse response = JxRequest.get(server.url("/jobs/1")).setRetryPolicy(RetryPolicy.builder().build()).send();
+ *
+ *     assertEquals(2, server.getRequestCount());
+ *     assertEquals("/jobs/1", server.takeRequest().path());
+ * }
+ * }</pre>
+ * Requests are handled on virtual threads, so slow responses do not hold back others.
+ */
+public class StubServer implements AutoCloseable {
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ConcurrentLinkedQueue<StubResponse> responses = new ConcurrentLinkedQueue<>();
+
+    private final BlockingQueue<RecordedRequest> requests = new LinkedBlockingQueue<>();
+
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    private volatile Dispatcher dispatcher = request -> null;
+
+    private volatile StubResponse defaultResponse = StubResponse.ok();
+
+    private volatile Duration latency = Duration.ZERO;
+
+    private volatile double failureRate;
+
+    private volatile StubResponse failure;
+
+    private SplittableRandom random = new SplittableRandom(0);
+
+    private StubServer() {
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 16384);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Starts a new server on an ephemeral loopback port.
+     *
+     * @return the running server.
+     */
+    public static StubServer start() {
+        return new StubServer();
+    }
+
+    /**
+     * Returns the URL of the given path on this server, e.g. {@code http://127.0.0.1:54321/users}.
+     *
+     * @param path the path, starting with {@code /}.
+     * @return the absolute URL.
+     */
+    public String url(String path) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * Adds responses to the queue of scripted responses, which are sent in order to the next requests.
+     *
+     * @param responses the responses to send.
+     * @return this server, allowing for method chaining.
+     * @throws IllegalArgumentException if a response is null.
+     */
+    public StubServer enqueue(StubResponse... responses) {
+        for (StubResponse response : responses) {
+            if (response == null) {
+                throw new IllegalArgumentException("Response cannot be null");
+            }
+
+            this.responses.add(response);
+        }
+
+        return this;
+    }
+
+    /**
+     * Sets the dispatcher that chooses the response to every request. If it returns {@code null}, the next queued
+     * response, or the default response, is sent.
+     *
+     * @param dispatcher the dispatcher; must not be null.
+     * @return this server, allowing for method chaining.
+     * @throws IllegalArgumentException if the dispatcher is null.
+     */
+    public StubServer setDispatcher(Dispatcher dispatcher) {
+        if (dispatcher == null) {
+            throw new IllegalArgumentException("Dispatcher cannot be null");
+        }
+
+        this.dispatcher = dispatcher;
+        return this;
+    }
+
+    /**
+     * Sets the response sent when no response is queued. Defaults to {@code 200 OK} without a body.
+     *
+     * @param defaultResponse the default response; must not be null.
+     * @return this server, allowing for method chaining.
+     * @throws IllegalArgumentException if the response is null.
+     */
+    public StubServer setDefaultResponse(StubResponse defaultResponse) {
+        if (defaultResponse == null) {
+            throw new IllegalArgumentException("Default response cannot be null");
+        }
+
+        this.defaultResponse = defaultResponse;
+        return this;
+    }
+
+    /**
+     * Sets a latency that is added before every response, on top of the delay of the response itself.
+     *
+     * @param latency the latency; must not be null or negative.
+     * @return this server, allowing for method chaining.
+     * @throws IllegalArgumentException if the latency is null or negative.
+     */
+    public StubServer setLatency(Duration latency) {
+        if (latency == null || latency.isNegative()) {
+            throw new IllegalArgumentException("Latency cannot be null or negative");
+        }
+
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Replaces the given share of responses by a failure. The failures are drawn from a random generator with the
+     * given seed, so the same sequence of requests fails the same way on every run.
+     *
+     * @param rate the share of requests that fail, between 0 and 1.
+     * @param failure the response sent instead; must not be null.
+     * @param seed the seed of the random generator.
+     * @return this server, allowing for method chaining.
+     * @throws IllegalArgumentException if the rate is out of range or the failure is null.
+     */
+    public StubServer setFailureRate(double rate, StubResponse failure, long seed) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Rate must be between 0 and 1");
+        }
+        if (failure == null) {
+            throw new IllegalArgumentException("Failure cannot be null");
+        }
+
+        synchronized (this) {
+            this.random = new SplittableRandom(seed);
+        }
+        this.failure = failure;
+        this.failureRate = rate;
+        return this;
+    }
+
+    /**
+     * Returns the number of requests received so far.
+     *
+     * @return the request count.
+     */
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Removes and returns the oldest recorded request, waiting up to five seconds for one to arrive.
+     *
+     * @return the request.
+     * @throws IllegalStateException if no request arrived in time.
+     */
+    public RecordedRequest takeRequest() {
+        try {
+            RecordedRequest request = requests.poll(5, TimeUnit.SECONDS);
+            if (request == null) {
+                throw new IllegalStateException("No request was received");
+            }
+
+            return request;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a request", e);
+        }
+    }
+
+    /**
+     * Removes and returns all requests recorded so far.
+     *
+     * @return the requests in the order they were received.
+     */
+    public List<RecordedRequest> takeRequests() {
+        List<RecordedRequest> taken = new ArrayList<>();
+        requests.drainTo(taken);
+        return taken;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            RecordedRequest request = record(exchange);
+            StubResponse response = respond(request);
+
+            Thread.sleep(latency.plus(response.getDelay()));
+
+            response.getHeaders().forEach(header -> exchange.getResponseHeaders().add(header.getKey(), header.getValue()));
+
+            long length = response.getBodyLength();
+            boolean empty = length == 0 || request.method().equals("HEAD")
+                    || response.getStatus() == 204 || response.getStatus() == 304;
+
+            if (empty) {
+                exchange.sendResponseHeaders(response.getStatus(), -1);
+                return;
+            }
+
+            exchange.sendResponseHeaders(response.getStatus(), response.isChunked() ? 0 : length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                response.writeBody(out);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private RecordedRequest record(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        exchange.getRequestHeaders().forEach((name, values) -> headers.put(name.toLowerCase(), List.copyOf(values)));
+
+        RecordedRequest request = new RecordedRequest(requestCount.getAndIncrement(), exchange.getRequestMethod(),
+                exchange.getRequestURI().getRawPath(), exchange.getRequestURI().getRawQuery(), headers, body, System.nanoTime());
+        requests.add(request);
+        return request;
+    }
+
+    private StubResponse respond(RecordedRequest request) {
+        if (failureRate > 0) {
+            double draw;
+            synchronized (this) {
+                draw = random.nextDouble();
+            }
+            if (draw < failureRate) return failure;
+        }
+
+        StubResponse response = dispatcher.dispatch(request);
+        if (response == null) response = responses.poll();
+
+        return response == null ? defaultResponse : response;
+    }
+
+    /**
+     * Chooses the response to a request.
+     */
+    @FunctionalInterface
+    public interface Dispatcher {
+
+        /**
+         * Returns the response to the given request.
+         *
+         * @param request the received request.
+         * @return the response, or {@code null} to send the next queued or the default response.
+         */
+        StubResponse dispatch(RecordedRequest request);
+    }
+}